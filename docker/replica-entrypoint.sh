@@ -0,0 +1,17 @@
+#!/bin/bash
+# Clona il primary con pg_basebackup al primo avvio e parte come hot standby.
+set -e
+
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+    until pg_isready -h "$PRIMARY_HOST" -p 5432 -U postgres; do
+        echo "Waiting for primary $PRIMARY_HOST..."
+        sleep 2
+    done
+
+    PGPASSWORD="$REPLICATION_PASSWORD" pg_basebackup \
+        -h "$PRIMARY_HOST" -p 5432 -U "$REPLICATION_USER" \
+        -D "$PGDATA" -Fp -Xs -P -R
+    chmod 0700 "$PGDATA"
+fi
+
+exec docker-entrypoint.sh postgres -c hot_standby=on
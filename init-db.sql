@@ -1,4 +1,5 @@
 CREATE EXTENSION IF NOT EXISTS vector;
+CREATE EXTENSION IF NOT EXISTS pg_prewarm;
 
 CREATE TABLE IF NOT EXISTS users (
     id BIGSERIAL PRIMARY KEY,
@@ -32,6 +33,8 @@ CREATE TABLE IF NOT EXISTS documents (
     description TEXT
 );
 
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS categoria VARCHAR(30);
+
 CREATE TABLE IF NOT EXISTS dispositivi (
     id BIGSERIAL PRIMARY KEY,
     nome VARCHAR(255) NOT NULL,
@@ -64,9 +67,58 @@ CREATE TABLE IF NOT EXISTS profili_utente (
     CONSTRAINT uk_profili_utente_user_sessione UNIQUE (user_id, sessione_id)
 );
 
+CREATE TABLE IF NOT EXISTS chat_sessions (
+    session_id VARCHAR(64) PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    summary TEXT,
+    recent_turns TEXT,
+    turn_count INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS llm_usage (
+    scope VARCHAR(64) NOT NULL,
+    usage_date DATE NOT NULL,
+    tokens BIGINT NOT NULL DEFAULT 0,
+    requests BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (scope, usage_date)
+);
+
+CREATE TABLE IF NOT EXISTS llm_token_usage (
+    usage_date DATE NOT NULL,
+    endpoint VARCHAR(64) NOT NULL,
+    model VARCHAR(128) NOT NULL,
+    calls BIGINT NOT NULL DEFAULT 0,
+    prompt_tokens BIGINT NOT NULL DEFAULT 0,
+    completion_tokens BIGINT NOT NULL DEFAULT 0,
+    max_prompt_tokens BIGINT NOT NULL DEFAULT 0,
+    system_tokens BIGINT NOT NULL DEFAULT 0,
+    chunks_tokens BIGINT NOT NULL DEFAULT 0,
+    history_tokens BIGINT NOT NULL DEFAULT 0,
+    question_tokens BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (usage_date, endpoint, model)
+);
+
+CREATE TABLE IF NOT EXISTS query_log (
+    id BIGSERIAL PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL,
+    query TEXT NOT NULL,
+    result_count INTEGER NOT NULL,
+    top_score DOUBLE PRECISION,
+    scores TEXT,
+    chunk_ids TEXT,
+    retrieval_ms BIGINT NOT NULL,
+    generation_ms BIGINT NOT NULL,
+    total_ms BIGINT NOT NULL
+);
+
 CREATE INDEX IF NOT EXISTS idx_documents_upload_date ON documents(upload_date DESC);
 CREATE INDEX IF NOT EXISTS idx_dispositivi_categoria ON dispositivi(categoria);
 CREATE INDEX IF NOT EXISTS idx_dispositivi_prezzo ON dispositivi(prezzo_euro);
 CREATE INDEX IF NOT EXISTS idx_profili_utente_user ON profili_utente(user_id, data_creazione DESC);
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_updated ON chat_sessions(updated_at);
+CREATE INDEX IF NOT EXISTS idx_query_log_created ON query_log(created_at);
 
 GRANT ALL PRIVILEGES ON DATABASE ragassessment TO postgres;
@@ -0,0 +1,74 @@
+#!/bin/bash
+# Misura i tempi di avvio nelle tre modalità di build (JVM, AOT + CDS, immagine nativa) e stampa una tabella
+# markdown, salvata anche in target/startup-times.md. Richiede Postgres e Ollama avviati e gli artefatti già
+# costruiti; le modalità senza artefatto vengono saltate:
+#   ./mvnw package                         -> target/springai-0.0.1-SNAPSHOT.jar
+#   ./mvnw -Pfast-startup package          -> target/cds/ (jar estratto + application.jsa)
+#   ./mvnw -Pnative native:compile         -> target/springai
+# Uso: scripts/startup-times.sh [esecuzioni per modalità, default 3]
+set -euo pipefail
+
+RUNS="${1:-3}"
+PORT="${PORT:-8080}"
+JAR="target/springai-0.0.1-SNAPSHOT.jar"
+CDS_DIR="target/cds"
+NATIVE="target/springai"
+OUT="target/startup-times.md"
+LOG="$(mktemp)"
+trap 'rm -f "$LOG"' EXIT
+
+# Le istanze di scale-out non rieseguono schema e dati di esempio
+export SQL_INIT_MODE=never SEED_DATA=false
+
+now_ms() { echo $(( $(date +%s%N) / 1000000 )); }
+
+# Avvia il comando, attende la readiness e restituisce "<started s> <ready ms> <rss MB>"
+measure() {
+    local start pid started ready rss
+    start=$(now_ms)
+    "$@" --server.port="$PORT" >"$LOG" 2>&1 &
+    pid=$!
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT/actuator/health/readiness")" = "200" ]; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "avvio fallito, log:" >&2
+            tail -n 40 "$LOG" >&2
+            exit 1
+        fi
+        sleep 0.1
+    done
+    ready=$(( $(now_ms) - start ))
+    started=$(grep -oE 'Started SpringaiApplication in [0-9.]+' "$LOG" | grep -oE '[0-9.]+$' || echo "?")
+    rss=$(( $(ps -o rss= -p "$pid") / 1024 ))
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    echo "$started $ready $rss"
+}
+
+run_mode() {
+    local name="$1"
+    shift
+    local total_ready=0 line result started ready rss
+    for ((i = 1; i <= RUNS; i++)); do
+        result=$(measure "$@")
+        read -r started ready rss <<< "$result"
+        echo "$name #$i: contesto ${started}s, readiness ${ready}ms, RSS ${rss}MB" >&2
+        total_ready=$(( total_ready + ready ))
+    done
+    line="| $name | $started | $(( total_ready / RUNS )) | $rss |"
+    echo "$line" >> "$OUT"
+}
+
+mkdir -p target
+{
+    echo "Tempi di avvio su $(uname -srm), $(java -version 2>&1 | head -n 1), media di $RUNS esecuzioni"
+    echo
+    echo "| Modalità | Contesto avviato (s, ultima esecuzione) | Readiness UP (ms, media) | RSS (MB) |"
+    echo "|----------|------------------------------------------|--------------------------|----------|"
+} > "$OUT"
+
+[ -f "$JAR" ] && run_mode "JVM" java -jar "$JAR"
+[ -f "$CDS_DIR/application.jsa" ] && run_mode "JVM + AOT + CDS" java -Dspring.aot.enabled=true \
+    -XX:SharedArchiveFile="$CDS_DIR/application.jsa" -jar "$CDS_DIR/springai-0.0.1-SNAPSHOT.jar"
+[ -x "$NATIVE" ] && run_mode "Native" "$NATIVE"
+
+cat "$OUT"
@@ -0,0 +1,103 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.RetrievalTuningProperties;
+import it.unicas.spring.springai.dto.ChatTurn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Percorsi CPU di {@link ChatbotService} eseguiti a ogni turno di chat, senza retrieval né LLM:
+ * conversione dei chunk, costruzione del prompt e parsing della risposta del modello.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatbotServiceBenchmark {
+
+    /**
+     * Chunk recuperati per turno (il chatbot usa topK 8).
+     */
+    @Param({"8", "16"})
+    public int chunks;
+
+    private final RetrievalTuningProperties defaults = new RetrievalTuningProperties();
+
+    private ChatbotService service;
+    private List<Document> documents;
+    private List<ChatbotService.RetrievedChunk> retrievedChunks;
+    private List<ChatTurn> history;
+    private String summary;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkFixtures.serviceWithObjectMapper(ChatbotService.class);
+        documents = BenchmarkFixtures.documents(chunks);
+        retrievedChunks = service.toRetrievedChunks(documents, defaults.getMaxChunkChars());
+        history = BenchmarkFixtures.history(24);
+        summary = "Utente interessato a smartphone compatti con buona autonomia; già confrontati Pixel 9 e iPhone 16.";
+    }
+
+    @Benchmark
+    public List<ChatbotService.RetrievedChunk> toRetrievedChunks() {
+        return service.toRetrievedChunks(documents, defaults.getMaxChunkChars());
+    }
+
+    @Benchmark
+    public String buildChunksContext() {
+        return service.buildChunksContext(retrievedChunks);
+    }
+
+    @Benchmark
+    public String buildHistorySection() {
+        return service.buildHistorySection(history, defaults.getMaxHistoryMessages());
+    }
+
+    @Benchmark
+    public String buildHistorySectionWithSummary() {
+        return service.buildHistorySection(summary, history.subList(history.size() - 6, history.size()),
+                defaults.getMaxHistoryMessages());
+    }
+
+    /**
+     * Parsing dell'output LLM: {@code parseAnswer} include {@code extractJsonObject} e {@code parseChunkIds}.
+     */
+    @State(Scope.Benchmark)
+    public static class LlmOutput {
+
+        @Param({"clean", "fenced", "prose", "malformed"})
+        public String kind;
+
+        String raw;
+
+        @Setup
+        public void setUp() {
+            raw = BenchmarkFixtures.llmOutput(kind);
+        }
+    }
+
+    @Benchmark
+    public ChatbotService.ParsedAnswer parseAnswer(LlmOutput output) {
+        return service.parseAnswer(output.raw);
+    }
+
+    @Benchmark
+    public String extractJsonObject(LlmOutput output) {
+        return service.extractJsonObject(output.raw);
+    }
+}
@@ -0,0 +1,46 @@
+package it.unicas.spring.springai.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costruzione del contesto testuale di {@link RagService} usata dalla consultazione guidata.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RagServiceBenchmark {
+
+    @Param({"5", "16"})
+    public int chunks;
+
+    private RagService service;
+    private List<Document> documents;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkFixtures.serviceWithObjectMapper(RagService.class);
+        documents = BenchmarkFixtures.documents(chunks);
+    }
+
+    @Benchmark
+    public String buildContextFromDocuments() {
+        return service.buildContextFromDocuments(documents);
+    }
+}
@@ -0,0 +1,136 @@
+package it.unicas.spring.springai.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Client HTTP di un utente virtuale: sessione autenticata tramite form login (cookie {@code JSESSIONID}
+ * proprio), chiamate alla chat e upload di PDF. Ogni istanza corrisponde a una sessione separata sul server.
+ */
+final class AppClient {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(3);
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+
+    record Result(int status, JsonNode body) {
+
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    AppClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * Esegue il form login; Spring Security risponde con un redirect verso {@code /login?error} se le credenziali sono errate.
+     */
+    void login(String username, String password) throws IOException, InterruptedException {
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(), HttpResponse.BodyHandlers.discarding());
+
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")) {
+            throw new IOException("Login failed for " + username + ": HTTP " + response.statusCode() + " " + location);
+        }
+    }
+
+    Result chat(String question, String sessionId, long timeoutMs) throws IOException, InterruptedException {
+        ObjectNode body = OBJECT_MAPPER.createObjectNode();
+        body.put("question", question);
+        if (sessionId != null) {
+            body.put("sessionId", sessionId);
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/chatbot/chat"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body)));
+        if (timeoutMs > 0) {
+            request.header("X-Request-Timeout-Ms", String.valueOf(timeoutMs));
+        }
+        return send(request.build());
+    }
+
+    Result upload(String fileName, byte[] pdf, String categoria) throws IOException, InterruptedException {
+        String boundary = "----loadtest" + UUID.randomUUID().toString().replace("-", "");
+        ByteArrayOutputStream body = new ByteArrayOutputStream(pdf.length + 512);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(pdf);
+        body.writeBytes(("\r\n--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"categoria\"\r\n\r\n"
+                + categoria + "\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/documents/upload"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build());
+    }
+
+    Result documents() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/documents")).timeout(REQUEST_TIMEOUT).GET().build());
+    }
+
+    Result deleteDocument(long id) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/documents/" + id)).timeout(REQUEST_TIMEOUT).DELETE().build());
+    }
+
+    /**
+     * Attende che l'applicazione risponda sulla pagina di login.
+     */
+    boolean awaitReady(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                        .timeout(Duration.ofSeconds(5)).GET().build(), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) return true;
+            } catch (IOException e) {
+                // applicazione non ancora in ascolto
+            }
+            Thread.sleep(1_000);
+        }
+        return false;
+    }
+
+    private Result send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        JsonNode body;
+        try {
+            body = response.body().length == 0 ? OBJECT_MAPPER.missingNode() : OBJECT_MAPPER.readTree(response.body());
+        } catch (IOException e) {
+            body = OBJECT_MAPPER.missingNode();
+        }
+        return new Result(response.statusCode(), body);
+    }
+}
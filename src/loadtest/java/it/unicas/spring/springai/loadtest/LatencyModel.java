@@ -0,0 +1,32 @@
+package it.unicas.spring.springai.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latenza simulata dagli stub: valore base più jitter uniforme in {@code [-jitter, +jitter]}, mai negativa.
+ *
+ * @param baseMs latenza media in millisecondi
+ * @param jitterMs ampiezza massima dello scostamento dalla media
+ */
+record LatencyModel(long baseMs, long jitterMs) {
+
+    static LatencyModel fromProperties(String prefix, long defaultBaseMs, long defaultJitterMs) {
+        return new LatencyModel(
+                LoadTestConfig.longProperty(prefix + ".latency-ms", defaultBaseMs),
+                LoadTestConfig.longProperty(prefix + ".jitter-ms", defaultJitterMs));
+    }
+
+    long sampleMs() {
+        if (jitterMs <= 0) return Math.max(0, baseMs);
+        return Math.max(0, baseMs + ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1));
+    }
+
+    static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
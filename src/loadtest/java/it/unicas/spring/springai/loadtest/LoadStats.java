@@ -0,0 +1,115 @@
+package it.unicas.spring.springai.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latenze ed esiti per endpoint raccolti durante la finestra di misura (il warm-up è escluso).
+ * Le latenze sono conservate tutte: i percentili vengono calcolati a fine run ordinando i campioni.
+ */
+final class LoadStats {
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile long measureStartNanos;
+    private volatile long measureEndNanos;
+
+    record Summary(String endpoint, long requests, long errors, double errorRate, double throughputPerSecond,
+                   double p50Ms, double p95Ms, double p99Ms, double maxMs, long degraded, Map<String, Long> statuses) {
+    }
+
+    private static final class Endpoint {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+        private long degraded;
+        private final Map<String, Long> statuses = new TreeMap<>();
+
+        synchronized void add(long latencyNanos, String status, boolean error, boolean degradedAnswer) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+            statuses.merge(status, 1L, Long::sum);
+            if (error) errors++;
+            if (degradedAnswer) degraded++;
+        }
+
+        synchronized Summary summarize(String name, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new Summary(name, size, errors, size == 0 ? 0 : (double) errors / size,
+                    seconds <= 0 ? 0 : size / seconds,
+                    percentileMs(sorted, 0.50), percentileMs(sorted, 0.95), percentileMs(sorted, 0.99),
+                    size == 0 ? 0 : sorted[size - 1] / 1e6, degraded, Map.copyOf(statuses));
+        }
+    }
+
+    void startMeasuring() {
+        measureStartNanos = System.nanoTime();
+    }
+
+    void stopMeasuring() {
+        measureEndNanos = System.nanoTime();
+    }
+
+    boolean isMeasuring() {
+        return measureStartNanos != 0 && measureEndNanos == 0;
+    }
+
+    /**
+     * Registra una richiesta completata; lo status è il codice HTTP oppure il nome dell'eccezione lato client.
+     */
+    void record(String endpoint, long latencyNanos, String status, boolean error, boolean degraded) {
+        if (!isMeasuring()) return;
+        endpoints.computeIfAbsent(endpoint, e -> new Endpoint()).add(latencyNanos, status, error, degraded);
+    }
+
+    List<Summary> summaries() {
+        long end = measureEndNanos != 0 ? measureEndNanos : System.nanoTime();
+        double seconds = measureStartNanos == 0 ? 0 : (end - measureStartNanos) / 1e9;
+        List<Summary> summaries = new ArrayList<>();
+        new TreeMap<>(endpoints).forEach((name, endpoint) -> summaries.add(endpoint.summarize(name, seconds)));
+        return summaries;
+    }
+
+    String table() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-28s %9s %9s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "req/s", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms", "degraded"));
+        for (Summary s : summaries()) {
+            out.append(String.format(Locale.ROOT, "%-28s %9d %9.2f %7.2f%% %9.1f %9.1f %9.1f %9.1f %9d%n",
+                    s.endpoint(), s.requests(), s.throughputPerSecond(), s.errorRate() * 100,
+                    s.p50Ms(), s.p95Ms(), s.p99Ms(), s.maxMs(), s.degraded()));
+            out.append("    statuses: ").append(s.statuses()).append('\n');
+        }
+        return out.toString();
+    }
+
+    void write(Path file, LoadTestConfig config) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(file.toFile(), Map.of("config", config.toString(), "endpoints", summaries()));
+    }
+
+    /**
+     * Percentile nearest-rank sui campioni ordinati.
+     */
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
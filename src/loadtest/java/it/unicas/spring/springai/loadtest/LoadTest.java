@@ -0,0 +1,248 @@
+package it.unicas.spring.springai.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test end-to-end dell'applicazione avviata con il profilo Spring {@code loadtest}.
+ * <ul>
+ *     <li>{@code stubs}: avvia solo gli stub LLM ed embedding e resta in attesa;</li>
+ *     <li>{@code run} (default): avvia gli stub in-process (se {@code loadtest.stubs=true}), carica le schede
+ *     di seed mancanti, apre una sessione autenticata per utente virtuale e misura throughput, percentili
+ *     e tasso di errore di {@code /api/chatbot/chat} e {@code /api/documents/upload}.</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    private static final String CHAT = "POST /api/chatbot/chat";
+    private static final String UPLOAD = "POST /api/documents/upload";
+
+    private final LoadTestConfig config;
+    private final LoadStats stats = new LoadStats();
+    private final Queue<Long> uploadedIds = new ConcurrentLinkedQueue<>();
+    private final AtomicLong uploadSequence = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private volatile boolean running = true;
+
+    private LoadTest(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        String mode = args.length > 0 ? args[0] : "run";
+
+        if ("stubs".equals(mode)) {
+            StubOpenAiServer llm = new StubOpenAiServer(config.llmPort());
+            StubOllamaEmbeddingServer embedding = new StubOllamaEmbeddingServer(config.embeddingPort());
+            System.out.printf("Stub LLM on %s, stub embeddings on %s (Ctrl+C to stop)%n", llm.baseUrl(), embedding.baseUrl());
+            Thread.currentThread().join();
+            return;
+        }
+        if (!"run".equals(mode)) {
+            throw new IllegalArgumentException("Unknown mode: " + mode + " (expected run or stubs)");
+        }
+
+        new LoadTest(config).run();
+    }
+
+    private void run() throws Exception {
+        StubOpenAiServer llm = null;
+        StubOllamaEmbeddingServer embedding = null;
+        try {
+            if (config.startStubs()) {
+                llm = new StubOpenAiServer(config.llmPort());
+                embedding = new StubOllamaEmbeddingServer(config.embeddingPort());
+                System.out.printf("Stub LLM on %s, stub embeddings on %s%n", llm.baseUrl(), embedding.baseUrl());
+            }
+
+            AppClient admin = new AppClient(config.baseUrl());
+            if (!admin.awaitReady(Duration.ofMinutes(2))) {
+                throw new IllegalStateException("Application not reachable at " + config.baseUrl());
+            }
+            admin.login(config.adminUsername(), config.adminPassword());
+            List<SpecSheets.Product> products = seed(admin);
+
+            drive(products);
+
+            System.out.println();
+            System.out.println(stats.table());
+            if (llm != null) {
+                System.out.printf("stub LLM requests: %d, stub embedding requests: %d (%d inputs)%n",
+                        llm.requests(), embedding.requests(), embedding.inputs());
+            }
+            stats.write(config.result(), config);
+            System.out.println("Result written to " + config.result().toAbsolutePath());
+
+            if (Boolean.parseBoolean(LoadTestConfig.stringProperty("loadtest.cleanup", "true"))) {
+                for (Long id : uploadedIds) {
+                    admin.deleteDocument(id);
+                }
+            }
+        } finally {
+            if (llm != null) llm.close();
+            if (embedding != null) embedding.close();
+        }
+    }
+
+    /**
+     * Carica le schede di seed non ancora presenti nella knowledge base (fuori dalla finestra di misura).
+     */
+    private List<SpecSheets.Product> seed(AppClient admin) throws Exception {
+        List<SpecSheets.Product> products = SpecSheets.seedProducts(config.seedDocuments());
+        Set<String> existing = new HashSet<>();
+        AppClient.Result documents = admin.documents();
+        if (!documents.ok()) {
+            throw new IllegalStateException("Unable to list documents: HTTP " + documents.status());
+        }
+        for (JsonNode document : documents.body()) {
+            existing.add(document.path("fileName").asText());
+        }
+
+        for (SpecSheets.Product product : products) {
+            if (existing.contains(product.fileName())) continue;
+            AppClient.Result result = admin.upload(product.fileName(), SpecSheets.pdf(product), product.categoria());
+            if (!result.ok()) {
+                throw new IllegalStateException("Seed upload failed for " + product.fileName() + ": " + result.body());
+            }
+            System.out.println("Seeded " + product.fileName());
+        }
+        return products;
+    }
+
+    private void drive(List<SpecSheets.Product> products) throws Exception {
+        int workers = config.chatUsers() + config.uploadUsers();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workers));
+        long rampUpStepMs = workers == 0 ? 0 : config.rampUpSeconds() * 1000L / workers;
+
+        int started = 0;
+        for (int i = 0; i < config.chatUsers(); i++) {
+            long delayMs = rampUpStepMs * started++;
+            executor.submit(() -> chatUser(delayMs, products));
+        }
+        for (int i = 0; i < config.uploadUsers(); i++) {
+            long delayMs = rampUpStepMs * started++;
+            executor.submit(() -> uploadUser(delayMs));
+        }
+
+        System.out.printf("Running %d chat sessions and %d upload sessions: warm-up %ds, measure %ds%n",
+                config.chatUsers(), config.uploadUsers(), config.warmupSeconds(), config.durationSeconds());
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.warmupSeconds()));
+        stats.startMeasuring();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.durationSeconds()));
+        stats.stopMeasuring();
+
+        running = false;
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void chatUser(long delayMs, List<SpecSheets.Product> products) {
+        try {
+            Thread.sleep(delayMs);
+            AppClient client = new AppClient(config.baseUrl());
+            client.login(config.chatUsername(), config.chatPassword());
+
+            while (running) {
+                String sessionId = null;
+                for (String question : conversation(products)) {
+                    if (!running) return;
+                    long start = System.nanoTime();
+                    try {
+                        AppClient.Result result = client.chat(question, sessionId, config.chatTimeoutMs());
+                        stats.record(CHAT, System.nanoTime() - start, String.valueOf(result.status()), !result.ok(),
+                                result.body().path("degraded").asBoolean(false));
+                        if (!result.ok()) break;
+                        sessionId = result.body().path("sessionId").asText(null);
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        stats.record(CHAT, System.nanoTime() - start, e.getClass().getSimpleName(), true, false);
+                        break;
+                    }
+                    think(config.thinkTimeMs());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Chat session aborted: " + e.getMessage());
+        }
+    }
+
+    private void uploadUser(long delayMs) {
+        try {
+            Thread.sleep(delayMs);
+            AppClient client = new AppClient(config.baseUrl());
+            client.login(config.adminUsername(), config.adminPassword());
+
+            while (running) {
+                long sequence = uploadSequence.incrementAndGet();
+                String fileName = "Scheda-Tecnica-LT-" + runId + "-" + sequence + ".pdf";
+                byte[] pdf = SpecSheets.uniquePdf("Modello LT " + runId + " " + sequence, sequence);
+                long start = System.nanoTime();
+                try {
+                    AppClient.Result result = client.upload(fileName, pdf, "SMARTPHONE");
+                    stats.record(UPLOAD, System.nanoTime() - start, String.valueOf(result.status()), !result.ok(), false);
+                    if (result.body().hasNonNull("id")) {
+                        uploadedIds.add(result.body().get("id").asLong());
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    stats.record(UPLOAD, System.nanoTime() - start, e.getClass().getSimpleName(), true, false);
+                }
+                think(config.uploadThinkTimeMs());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Upload session aborted: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Conversazione di 1-3 turni: domanda fattuale, confronto tra due prodotti o follow-up brevi sulla stessa sessione.
+     */
+    private static List<String> conversation(List<SpecSheets.Product> products) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String a = products.get(random.nextInt(products.size())).name();
+        String b = products.get(random.nextInt(products.size())).name();
+
+        List<String> turns = new ArrayList<>();
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                turns.add("Che processore ha il " + a + "?");
+                turns.add("E quanto costa?");
+                turns.add("Quanto dura la batteria?");
+            }
+            case 1 -> {
+                turns.add("Quanto costa il " + a + "?");
+                turns.add("Ha una buona fotocamera?");
+            }
+            case 2 -> {
+                turns.add("Meglio il " + a + " o il " + b + " per le foto?");
+                turns.add("E per la batteria?");
+            }
+            default -> turns.add("Che capacità ha la batteria del " + a + "?");
+        }
+        return turns;
+    }
+
+    private static void think(long meanMs) throws InterruptedException {
+        if (meanMs <= 0) return;
+        Thread.sleep(ThreadLocalRandom.current().nextLong(meanMs / 2, meanMs * 3 / 2 + 1));
+    }
+}
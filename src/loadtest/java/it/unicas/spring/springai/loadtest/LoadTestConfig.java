@@ -0,0 +1,76 @@
+package it.unicas.spring.springai.loadtest;
+
+import java.nio.file.Path;
+
+/**
+ * Parametri del load test, letti dalle system property {@code loadtest.*} (vedi profilo Maven {@code loadtest}).
+ */
+record LoadTestConfig(
+        String baseUrl,
+        int chatUsers,
+        int uploadUsers,
+        int durationSeconds,
+        int warmupSeconds,
+        int rampUpSeconds,
+        long thinkTimeMs,
+        long uploadThinkTimeMs,
+        int seedDocuments,
+        long chatTimeoutMs,
+        String chatUsername,
+        String chatPassword,
+        String adminUsername,
+        String adminPassword,
+        boolean startStubs,
+        int llmPort,
+        int embeddingPort,
+        Path result
+) {
+
+    static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+                stringProperty("loadtest.base-url", "http://localhost:8080"),
+                (int) longProperty("loadtest.users", 20),
+                (int) longProperty("loadtest.upload-users", 1),
+                (int) longProperty("loadtest.duration-seconds", 120),
+                (int) longProperty("loadtest.warmup-seconds", 15),
+                (int) longProperty("loadtest.ramp-up-seconds", 10),
+                longProperty("loadtest.think-time-ms", 1_000),
+                longProperty("loadtest.upload-think-time-ms", 10_000),
+                (int) longProperty("loadtest.seed-documents", 6),
+                longProperty("loadtest.chat-timeout-ms", 0),
+                stringProperty("loadtest.chat-username", "user"),
+                stringProperty("loadtest.chat-password", "user123"),
+                stringProperty("loadtest.admin-username", "admin"),
+                stringProperty("loadtest.admin-password", "admin123"),
+                Boolean.parseBoolean(stringProperty("loadtest.stubs", "true")),
+                (int) longProperty("loadtest.llm.port", 18080),
+                (int) longProperty("loadtest.embedding.port", 18081),
+                Path.of(stringProperty("loadtest.result", "target/loadtest-result.json"))
+        );
+    }
+
+    static String stringProperty(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    static long longProperty(String name, long defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+    }
+
+    static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+    }
+}
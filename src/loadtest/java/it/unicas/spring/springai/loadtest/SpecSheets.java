@@ -0,0 +1,105 @@
+package it.unicas.spring.springai.loadtest;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Schede tecniche sintetiche in PDF: quelle di seed descrivono i prodotti citati dalle domande del load test,
+ * quelle caricate durante la misura hanno nomi univoci per non collidere tra run.
+ */
+final class SpecSheets {
+
+    /**
+     * Prodotti di seed: nome, categoria e caratteristiche distintive usate nelle domande.
+     */
+    static final List<Product> PRODUCTS = List.of(
+            new Product("Pixel 9", "SMARTPHONE", "Google Tensor G4", "4700 mAh", "50 MP", "899 euro"),
+            new Product("iPhone 16 Pro", "SMARTPHONE", "Apple A18 Pro", "3582 mAh", "48 MP", "1349 euro"),
+            new Product("Galaxy S24", "SMARTPHONE", "Exynos 2400", "4000 mAh", "50 MP", "929 euro"),
+            new Product("Galaxy Tab S10", "TABLET", "MediaTek Dimensity 9300+", "8400 mAh", "13 MP", "1099 euro"),
+            new Product("iPad Air", "TABLET", "Apple M2", "7606 mAh", "12 MP", "699 euro"),
+            new Product("Watch Ultra 2", "SMARTWATCH", "Apple S9 SiP", "564 mAh", "assente", "899 euro"),
+            new Product("ThinkPad X1 Carbon", "LAPTOP", "Intel Core Ultra 7", "57 Wh", "5 MP", "1999 euro"),
+            new Product("MacBook Air 13", "LAPTOP", "Apple M3", "52,6 Wh", "1080p", "1299 euro")
+    );
+
+    private static final String[] FILLER = {
+            "Il dispositivo supporta aggiornamenti software per almeno cinque anni dalla data di lancio.",
+            "La confezione include cavo USB Type-C, documentazione e strumento per la rimozione della SIM.",
+            "Il telaio in alluminio riciclato riduce il peso complessivo mantenendo una buona rigidita.",
+            "La certificazione IP68 garantisce resistenza a polvere e immersione fino a 1,5 metri per 30 minuti.",
+            "Connettivita Wi-Fi 7, Bluetooth 5.3 e NFC per pagamenti contactless.",
+            "Il display raggiunge una luminosita di picco di 2000 nit con refresh adattivo fino a 120 Hz.",
+    };
+
+    private SpecSheets() {
+    }
+
+    record Product(String name, String categoria, String processor, String battery, String camera, String price) {
+
+        String fileName() {
+            return "Scheda-Tecnica-" + name.replace(' ', '-') + ".pdf";
+        }
+    }
+
+    static List<Product> seedProducts(int count) {
+        return PRODUCTS.subList(0, Math.max(1, Math.min(count, PRODUCTS.size())));
+    }
+
+    static byte[] pdf(Product product) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("Scheda tecnica " + product.name());
+        lines.add("Categoria: " + product.categoria());
+        lines.add("Processore: " + product.processor() + ".");
+        lines.add("Batteria: " + product.battery() + " con ricarica rapida.");
+        lines.add("Fotocamera principale: " + product.camera() + ".");
+        lines.add("Prezzo di listino: " + product.price() + ".");
+        Random random = new Random(product.name().hashCode());
+        for (int i = 0; i < 40; i++) {
+            lines.add(product.name() + ": " + FILLER[random.nextInt(FILLER.length)]);
+        }
+        return render(lines);
+    }
+
+    /**
+     * Scheda con nome prodotto univoco, caricata durante la fase misurata.
+     */
+    static byte[] uniquePdf(String name, long seed) throws IOException {
+        Product base = PRODUCTS.get((int) Math.floorMod(seed, (long) PRODUCTS.size()));
+        return pdf(new Product(name, base.categoria(), base.processor(), base.battery(), base.camera(), base.price()));
+    }
+
+    private static byte[] render(List<String> lines) throws IOException {
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        int linesPerPage = 45;
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int start = 0; start < lines.size(); start += linesPerPage) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 11);
+                    content.setLeading(16);
+                    content.newLineAtOffset(50, 790);
+                    for (String line : lines.subList(start, Math.min(lines.size(), start + linesPerPage))) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
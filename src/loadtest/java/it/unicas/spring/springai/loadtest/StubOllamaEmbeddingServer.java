@@ -0,0 +1,160 @@
+package it.unicas.spring.springai.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Endpoint Ollama per gli embedding ({@code /api/embed} e il legacy {@code /api/embeddings}) per i load test.
+ * I vettori sono deterministici: ogni parola contribuisce a poche dimensioni scelte per hash, poi il vettore
+ * viene normalizzato. Testi che condividono parole restano vicini, quindi la ricerca pgvector resta significativa
+ * e l'indice lavora come con un modello reale della stessa dimensione.
+ */
+final class StubOllamaEmbeddingServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyModel latency;
+    private final long perInputMs;
+    private final int dimensions;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder inputs = new LongAdder();
+
+    StubOllamaEmbeddingServer(int port) throws IOException {
+        this.latency = LatencyModel.fromProperties("loadtest.embedding", 15, 5);
+        this.perInputMs = LoadTestConfig.longProperty("loadtest.embedding.per-input-ms", 2);
+        this.dimensions = (int) LoadTestConfig.longProperty("loadtest.embedding.dimensions", 768);
+
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-embedding");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("0.0.0.0", port), 256);
+        this.server.setExecutor(executor);
+        this.server.createContext("/api/embed", this::embed);
+        this.server.createContext("/api/embeddings", this::legacyEmbeddings);
+        this.server.createContext("/api/tags", exchange -> {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                send(exchange, "{\"models\":[{\"name\":\"nomic-embed-text:latest\",\"model\":\"nomic-embed-text:latest\"}]}");
+            }
+        });
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    long requests() {
+        return requests.sum();
+    }
+
+    long inputs() {
+        return inputs.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void embed(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            List<String> texts = new ArrayList<>();
+            JsonNode input = request.path("input");
+            if (input.isArray()) {
+                input.forEach(node -> texts.add(node.asText("")));
+            } else {
+                texts.add(input.asText(""));
+            }
+            inputs.add(texts.size());
+            LatencyModel.sleep(latency.sampleMs() + perInputMs * texts.size());
+
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("model", request.path("model").asText("nomic-embed-text"));
+            ArrayNode embeddings = response.putArray("embeddings");
+            for (String text : texts) {
+                ArrayNode vector = embeddings.addArray();
+                for (float value : vector(text)) {
+                    vector.add(value);
+                }
+            }
+            send(exchange, objectMapper.writeValueAsString(response));
+        }
+    }
+
+    private void legacyEmbeddings(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            inputs.increment();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            LatencyModel.sleep(latency.sampleMs() + perInputMs);
+
+            ObjectNode response = objectMapper.createObjectNode();
+            ArrayNode vector = response.putArray("embedding");
+            for (float value : vector(request.path("prompt").asText(""))) {
+                vector.add(value);
+            }
+            send(exchange, objectMapper.writeValueAsString(response));
+        }
+    }
+
+    /**
+     * Feature hashing delle parole su {@code dimensions} componenti, con segno da hash secondario.
+     */
+    float[] vector(String text) {
+        float[] vector = new float[dimensions];
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            int hash = word.hashCode();
+            for (int k = 0; k < 3; k++) {
+                int mixed = Integer.rotateLeft(hash * 0x9E3779B1, 7 * k) ^ (k * 0x85EBCA6B);
+                int index = Math.floorMod(mixed, dimensions);
+                vector[index] += (mixed & 0x100) == 0 ? 1f : -1f;
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            vector[0] = 1f;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static void send(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
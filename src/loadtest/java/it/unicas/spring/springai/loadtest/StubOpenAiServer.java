@@ -0,0 +1,224 @@
+package it.unicas.spring.springai.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Endpoint OpenAI-compatibile {@code /v1/chat/completions} per i load test, senza costi né rate limit del provider.
+ * Simula il tempo al primo token (latenza base più jitter) e la generazione a una velocità fissa in token/s;
+ * con {@code "stream": true} invia i token come eventi SSE man mano che vengono "generati".
+ * Il contenuto è il JSON atteso da {@code ChatbotService} e cita i primi chunk presenti nel prompt.
+ */
+final class StubOpenAiServer implements AutoCloseable {
+
+    private static final Pattern CHUNK_ID = Pattern.compile("\\[CHUNK (\\d+)]");
+
+    private static final String[] WORDS = {
+            "secondo", "la", "scheda", "tecnica", "il", "dispositivo", "offre", "un", "display", "da", "6,3",
+            "pollici", "con", "batteria", "da", "4700", "mAh", "e", "ricarica", "rapida", "a", "27", "W", "mentre",
+            "la", "fotocamera", "principale", "ha", "un", "sensore", "da", "50", "MP", "stabilizzato"
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyModel timeToFirstToken;
+    private final double tokensPerSecond;
+    private final int completionTokens;
+    private final double errorRate;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LongAdder requests = new LongAdder();
+
+    StubOpenAiServer(int port) throws IOException {
+        this.timeToFirstToken = LatencyModel.fromProperties("loadtest.llm", 800, 300);
+        this.tokensPerSecond = LoadTestConfig.doubleProperty("loadtest.llm.tokens-per-second", 40);
+        this.completionTokens = (int) LoadTestConfig.longProperty("loadtest.llm.completion-tokens", 120);
+        this.errorRate = LoadTestConfig.doubleProperty("loadtest.llm.error-rate", 0);
+
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-llm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("0.0.0.0", port), 256);
+        this.server.setExecutor(executor);
+        this.server.createContext("/v1/chat/completions", this::handle);
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    long requests() {
+        return requests.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String model = request.path("model").asText("stub-model");
+            String prompt = promptText(request);
+
+            LatencyModel.sleep(timeToFirstToken.sampleMs());
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                send(exchange, 503, "{\"error\":{\"message\":\"stub overloaded\",\"type\":\"server_error\"}}");
+                return;
+            }
+
+            List<String> tokens = tokens(answer(prompt));
+            int promptTokens = Math.max(1, prompt.length() / 4);
+            if (request.path("stream").asBoolean(false)) {
+                stream(exchange, model, tokens, promptTokens);
+            } else {
+                LatencyModel.sleep(generationMs(tokens.size()));
+                send(exchange, 200, objectMapper.writeValueAsString(completion(model, String.join("", tokens), promptTokens, tokens.size())));
+            }
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, List<String> tokens, int promptTokens) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        long perTokenMs = generationMs(1);
+        for (int i = 0; i < tokens.size(); i++) {
+            ObjectNode chunk = chunk(model);
+            ObjectNode choice = ((ArrayNode) chunk.get("choices")).addObject();
+            choice.put("index", 0);
+            ObjectNode delta = choice.putObject("delta");
+            if (i == 0) delta.put("role", "assistant");
+            delta.put("content", tokens.get(i));
+            choice.putNull("finish_reason");
+            writeEvent(out, objectMapper.writeValueAsString(chunk));
+            LatencyModel.sleep(perTokenMs);
+        }
+
+        ObjectNode last = chunk(model);
+        ObjectNode choice = ((ArrayNode) last.get("choices")).addObject();
+        choice.put("index", 0);
+        choice.putObject("delta");
+        choice.put("finish_reason", "stop");
+        last.set("usage", usage(promptTokens, tokens.size()));
+        writeEvent(out, objectMapper.writeValueAsString(last));
+        writeEvent(out, "[DONE]");
+        out.close();
+    }
+
+    private ObjectNode completion(String model, String content, int promptTokens, int completionTokens) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", "stub-" + requests.sum());
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", model);
+        ObjectNode choice = response.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        choice.put("finish_reason", "stop");
+        response.set("usage", usage(promptTokens, completionTokens));
+        return response;
+    }
+
+    private ObjectNode chunk(String model) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("id", "stub-" + requests.sum());
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", System.currentTimeMillis() / 1000);
+        chunk.put("model", model);
+        chunk.putArray("choices");
+        return chunk;
+    }
+
+    private ObjectNode usage(int promptTokens, int completionTokens) {
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return usage;
+    }
+
+    /**
+     * Risposta nel formato {@code {"answer": ..., "chunkIds": [...]}} che cita fino a due chunk del prompt.
+     */
+    private String answer(String prompt) throws IOException {
+        Set<Integer> chunkIds = new LinkedHashSet<>();
+        Matcher matcher = CHUNK_ID.matcher(prompt);
+        while (matcher.find() && chunkIds.size() < 2) {
+            chunkIds.add(Integer.parseInt(matcher.group(1)));
+        }
+
+        StringBuilder text = new StringBuilder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // ~4 caratteri per token, come nel conteggio del provider
+        while (text.length() < completionTokens * 4) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        ObjectNode answer = objectMapper.createObjectNode();
+        answer.put("answer", text.toString().trim() + ".");
+        ArrayNode ids = answer.putArray("chunkIds");
+        chunkIds.forEach(ids::add);
+        return objectMapper.writeValueAsString(answer);
+    }
+
+    private List<String> tokens(String content) {
+        List<String> tokens = new ArrayList<>(content.length() / 4 + 1);
+        for (int i = 0; i < content.length(); i += 4) {
+            tokens.add(content.substring(i, Math.min(content.length(), i + 4)));
+        }
+        return tokens;
+    }
+
+    private long generationMs(int tokens) {
+        return tokensPerSecond <= 0 ? 0 : Math.round(tokens * 1000 / tokensPerSecond);
+    }
+
+    private String promptText(JsonNode request) {
+        StringBuilder prompt = new StringBuilder();
+        for (JsonNode message : request.path("messages")) {
+            prompt.append(message.path("content").asText("")).append('\n');
+        }
+        return prompt.toString();
+    }
+
+    private void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configurazione del caricamento massivo dei chunk vettoriali via COPY.
+ * Letta da {@code BulkVectorLoader}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rag.bulk-load")
+public class BulkLoadProperties {
+
+    /**
+     * Righe oltre le quali conviene eliminare gli indici HNSW e ricostruirli a fine caricamento.
+     */
+    private int indexRebuildThreshold = 10_000;
+
+    /**
+     * Abilita l'eliminazione/ricostruzione degli indici oltre la soglia.
+     */
+    private boolean deferIndexBuild = true;
+
+    /**
+     * {@code maintenance_work_mem} usato per la ricostruzione degli indici (il grafo HNSW deve starci).
+     */
+    private String maintenanceWorkMem = "1GB";
+
+    /**
+     * {@code max_parallel_maintenance_workers} usato per la ricostruzione degli indici.
+     */
+    private int parallelWorkers = 4;
+
+    /**
+     * Testi per ogni chiamata batch al modello di embedding.
+     */
+    private int embeddingBatchSize = 64;
+}
@@ -0,0 +1,22 @@
+package it.unicas.spring.springai.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registra le proprietà applicative del chatbot ({@code app.chat.*}).
+ */
+@Configuration
+@EnableConfigurationProperties({
+        ChatSessionProperties.class,
+        FollowUpRetrievalProperties.class,
+        ModelRoutingProperties.class,
+        UsageQuotaProperties.class,
+        DegradedModeProperties.class,
+        RequestDeadlineProperties.class,
+        PrefetchProperties.class,
+        TracingProperties.class,
+        TokenUsageProperties.class
+})
+public class ChatConfig {
+}
@@ -0,0 +1,45 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione delle sessioni di conversazione lato server del chatbot.
+ * Letta da {@code ConversationSessionService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat.sessions")
+public class ChatSessionProperties {
+
+    /**
+     * Numero massimo di sessioni tenute in memoria; oltre, le meno recenti vengono scaricate su Postgres.
+     */
+    private int maxSessions = 10_000;
+
+    /**
+     * Inattività dopo la quale una sessione viene rimossa dalla memoria (resta su Postgres).
+     */
+    private Duration idleTimeout = Duration.ofMinutes(30);
+
+    /**
+     * Turni recenti inviati al modello testualmente; i precedenti confluiscono nel riassunto.
+     */
+    private int recentTurns = 6;
+
+    /**
+     * Lunghezza massima del riassunto dei turni più vecchi.
+     */
+    private int summaryMaxChars = 1_200;
+
+    /**
+     * Lunghezza massima di ogni riga del riassunto.
+     */
+    private int summaryLineChars = 160;
+
+    /**
+     * Intervallo di scrittura su Postgres delle sessioni modificate (write-behind) e di eviction.
+     */
+    private Duration flushInterval = Duration.ofSeconds(5);
+}
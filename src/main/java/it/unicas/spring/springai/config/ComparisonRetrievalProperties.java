@@ -0,0 +1,30 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configurazione della scomposizione delle domande di confronto in una ricerca per prodotto.
+ * Letta da {@code ComparisonRetrievalService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rag.comparison")
+public class ComparisonRetrievalProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Prodotti massimi per domanda; oltre, si usano i primi citati.
+     */
+    private int maxProducts = 4;
+
+    /**
+     * TopK minimo di ciascuna ricerca per prodotto.
+     */
+    private int minTopKPerProduct = 3;
+
+    /**
+     * Ricerche per prodotto eseguite in parallelo (su tutte le richieste).
+     */
+    private int parallelism = 8;
+}
@@ -7,6 +7,7 @@ import it.unicas.spring.springai.repository.DispositivoRepository;
 import it.unicas.spring.springai.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,9 +25,19 @@ public class DataInitializer {
     private final DispositivoRepository dispositivoRepository;
     private final PasswordEncoder passwordEncoder;
 
+    /**
+     * Disattivabile sulle istanze aggiunte in scale-out, dove utenti e catalogo esistono già.
+     */
+    @Value("${app.init.seed-data:true}")
+    private boolean seedData;
+
     @Bean
     public CommandLineRunner initData() {
         return args -> {
+            if (!seedData) {
+                return;
+            }
+
             // Crea utente admin di default se non esiste
             if (!userRepository.existsByUsername("admin")) {
                 User admin = new User();
@@ -0,0 +1,45 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configurazione del routing lettura/scrittura tra primary e repliche PostgreSQL.
+ * Letta da {@link DataSourceRoutingConfig} quando {@code app.datasource.routing.enabled=true}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource.routing")
+public class DataSourceRoutingProperties {
+
+    /**
+     * Abilita il routing verso le repliche; se falso resta il solo datasource standard.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Repliche in streaming replication usate per le transazioni read-only.
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * Finestra dopo una scrittura in cui anche le letture dello stesso utente vanno sul primary (read-your-writes).
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /**
+     * Ritardo massimo di replica tollerato prima di escludere una replica dal routing.
+     */
+    private Duration maxReplicaLag = Duration.ofSeconds(2);
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
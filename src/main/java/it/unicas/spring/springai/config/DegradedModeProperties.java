@@ -0,0 +1,48 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione della modalità degradata del chatbot: se il modello non risponde entro la scadenza,
+ * si restituisce una risposta estrattiva costruita dai chunk recuperati.
+ * Letta da {@code DeferredAnswerService} e {@code ChatbotService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat.degraded")
+public class DegradedModeProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Tempo massimo di attesa della generazione prima di rispondere in modalità degradata.
+     */
+    private Duration generationDeadline = Duration.ofSeconds(20);
+
+    /**
+     * Frasi massime nella risposta estrattiva.
+     */
+    private int maxSentences = 4;
+
+    /**
+     * Thread dedicati alle chiamate al modello.
+     */
+    private int generationThreads = 32;
+
+    /**
+     * Conserva la generazione scaduta e rende la risposta completa disponibile in polling.
+     */
+    private boolean deferredAnswers = true;
+
+    /**
+     * Permanenza delle risposte differite non ritirate.
+     */
+    private Duration pendingTtl = Duration.ofMinutes(5);
+
+    /**
+     * Risposte differite conservate al massimo; oltre, la generazione scaduta non viene tracciata.
+     */
+    private int maxPending = 500;
+}
@@ -0,0 +1,35 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione delle registrazioni JFR avviate dall'endpoint admin.
+ * Letta da {@code FlightRecorderService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.jfr")
+public class FlightRecorderProperties {
+
+    /**
+     * Profilo JFR dell'applicazione che abilita gli eventi delle pipeline di chat e ingestione.
+     */
+    private String settings = "classpath:jfr/springai.jfc";
+
+    /**
+     * Configurazione JDK ({@code default} o {@code profile}) a cui si sommano gli eventi dell'applicazione.
+     */
+    private String baseConfiguration = "default";
+
+    /**
+     * Durata massima di una registrazione: scaduta, JFR la chiude da solo.
+     */
+    private Duration maxDuration = Duration.ofMinutes(10);
+
+    /**
+     * Cartella dei file {@code .jfr}; se vuota si usa la cartella temporanea di sistema.
+     */
+    private String directory;
+}
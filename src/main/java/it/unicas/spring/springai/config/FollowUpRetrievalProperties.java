@@ -0,0 +1,40 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione del riuso dei chunk recuperati nel turno precedente per le domande di follow-up.
+ * Letta da {@code FollowUpRetrievalService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat.follow-up")
+public class FollowUpRetrievalProperties {
+
+    /**
+     * Abilita il riuso dei chunk della sessione per le domande di follow-up.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Lunghezza massima (in parole) di una domanda senza prodotti citati per essere trattata come follow-up.
+     */
+    private int maxWords = 10;
+
+    /**
+     * Similarità coseno minima tra domanda e chunk in cache perché il chunk sia riusato.
+     */
+    private double minScore = 0.6;
+
+    /**
+     * Numero minimo di chunk in cache sopra {@link #minScore}; altrimenti si esegue una nuova ricerca.
+     */
+    private int minChunks = 2;
+
+    /**
+     * Età massima del set di chunk in cache.
+     */
+    private Duration maxAge = Duration.ofMinutes(10);
+}
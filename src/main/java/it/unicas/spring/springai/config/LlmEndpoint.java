@@ -0,0 +1,155 @@
+package it.unicas.spring.springai.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.function.FunctionCallbackResolver;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.http.HttpClient;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Singolo endpoint LLM OpenAI-compatibile con circuit breaker e finestra delle latenze recenti.
+ * Usato da {@link RoutingChatModel}.
+ */
+@Slf4j
+public class LlmEndpoint {
+
+    private final String name;
+    private final ChatModel chatModel;
+    private final LlmRoutingProperties.Endpoint config;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntilNanos;
+
+    private final long[] latencies;
+    private int latencyCount;
+    private int latencyNext;
+
+    public LlmEndpoint(String name, ChatModel chatModel, LlmRoutingProperties.Endpoint config,
+                       LlmRoutingProperties properties) {
+        this.name = name;
+        this.chatModel = chatModel;
+        this.config = config;
+        this.failureThreshold = Math.max(1, properties.getCircuitBreaker().getFailureThreshold());
+        this.openDurationNanos = properties.getCircuitBreaker().getOpenDuration().toNanos();
+        this.latencies = new long[Math.max(1, properties.getHedging().getWindow())];
+    }
+
+    /**
+     * Crea un endpoint OpenAI-compatibile con timeout dedicati e senza retry interni
+     * (i tentativi sono gestiti dal failover di {@link RoutingChatModel}).
+     * Chiamata da {@code LlmRoutingConfig} per ogni voce di {@code app.llm.routing.endpoints}.
+     *
+     * Il modello riceve l'{@code ObservationRegistry} dell'applicazione, così span e token della chiamata LLM
+     * restano osservati anche con il routing attivo.
+     *
+     * @param config configurazione dell'endpoint
+     * @param properties configurazione del routing
+     * @param observationRegistry registry delle observation dell'applicazione
+     * @return endpoint pronto all'uso
+     */
+    public static LlmEndpoint openAiCompatible(LlmRoutingProperties.Endpoint config, LlmRoutingProperties properties,
+                                               ObservationRegistry observationRegistry) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(config.getConnectTimeout())
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(config.getTimeout());
+
+        OpenAiApi api = new OpenAiApi(config.getBaseUrl(), config.getApiKey(),
+                RestClient.builder().requestFactory(requestFactory), WebClient.builder());
+
+        OpenAiChatOptions options = OpenAiChatOptions.builder()
+                .model(config.getModel())
+                .temperature(config.getTemperature())
+                .maxTokens(config.getMaxTokens())
+                .build();
+
+        RetryTemplate noRetry = RetryTemplate.builder().maxAttempts(1).build();
+        OpenAiChatModel chatModel = new OpenAiChatModel(api, options, (FunctionCallbackResolver) null, List.of(),
+                noRetry, observationRegistry);
+
+        String name = config.getName() != null ? config.getName() : config.getBaseUrl();
+        return new LlmEndpoint(name, chatModel, config, properties);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public ChatModel chatModel() {
+        return chatModel;
+    }
+
+    /**
+     * Indica se il modello richiesto può essere inoltrato a questo endpoint.
+     *
+     * @param model modello richiesto a runtime
+     * @return {@code true} se l'endpoint lo serve
+     */
+    public boolean serves(String model) {
+        return model != null && (model.equals(config.getModel()) || config.getModels().contains(model));
+    }
+
+    public String defaultModel() {
+        return config.getModel();
+    }
+
+    /**
+     * @return {@code false} mentre il circuit breaker è aperto
+     */
+    public boolean isAvailable() {
+        return System.nanoTime() >= openUntilNanos;
+    }
+
+    public void recordSuccess(long latencyNanos) {
+        if (consecutiveFailures.getAndSet(0) >= failureThreshold) {
+            log.info("LLM endpoint {} recovered, circuit closed", name);
+        }
+        synchronized (latencies) {
+            latencies[latencyNext] = latencyNanos;
+            latencyNext = (latencyNext + 1) % latencies.length;
+            latencyCount = Math.min(latencyCount + 1, latencies.length);
+        }
+    }
+
+    public void recordFailure(Throwable error) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= failureThreshold) {
+            openUntilNanos = System.nanoTime() + openDurationNanos;
+            log.warn("LLM endpoint {} failed {} times in a row, circuit open: {}", name, failures, error.toString());
+        } else {
+            log.debug("LLM endpoint {} failed: {}", name, error.toString());
+        }
+    }
+
+    /**
+     * Percentile delle latenze recenti.
+     *
+     * @param percentile valore in (0, 1]
+     * @param minSamples campioni minimi richiesti
+     * @return latenza in nanosecondi, oppure {@code -1} se i campioni sono insufficienti
+     */
+    public long latencyPercentileNanos(double percentile, int minSamples) {
+        long[] snapshot;
+        synchronized (latencies) {
+            if (latencyCount < Math.max(1, minSamples)) return -1;
+            snapshot = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(snapshot);
+        int index = (int) Math.ceil(percentile * snapshot.length) - 1;
+        return snapshot[Math.max(0, Math.min(snapshot.length - 1, index))];
+    }
+}
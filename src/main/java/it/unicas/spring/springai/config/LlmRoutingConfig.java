@@ -0,0 +1,34 @@
+package it.unicas.spring.springai.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.List;
+
+/**
+ * Attiva il routing multi-provider del modello di chat: il {@link RoutingChatModel} diventa il
+ * {@code ChatModel} primario, quindi il {@code ChatClient.Builder} usato dai servizi passa da lui.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.llm.routing", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(LlmRoutingProperties.class)
+@Slf4j
+public class LlmRoutingConfig {
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    public RoutingChatModel routingChatModel(LlmRoutingProperties properties,
+                                             ObservationRegistry observationRegistry) {
+        List<LlmEndpoint> endpoints = properties.getEndpoints().stream()
+                .map(endpoint -> LlmEndpoint.openAiCompatible(endpoint, properties, observationRegistry))
+                .toList();
+
+        log.info("LLM routing enabled across endpoints {}", endpoints.stream().map(LlmEndpoint::name).toList());
+        return new RoutingChatModel(endpoints, properties);
+    }
+}
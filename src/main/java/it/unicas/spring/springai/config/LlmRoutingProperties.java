@@ -0,0 +1,116 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configurazione del routing multi-provider verso endpoint OpenAI-compatibili
+ * (provider ospitato, Ollama locale, ...), con circuit breaker, failover e richieste hedged.
+ * Letta da {@link LlmRoutingConfig}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.llm.routing")
+public class LlmRoutingProperties {
+
+    /**
+     * Abilita il routing; se disattivo si usa il solo endpoint {@code spring.ai.openai.*}.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Endpoint in ordine di preferenza: il primo disponibile è il primario, i successivi sono i backup.
+     */
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    /**
+     * Tempo massimo complessivo di una chiamata, inclusi failover e hedging.
+     */
+    private Duration totalTimeout = Duration.ofSeconds(90);
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private Hedging hedging = new Hedging();
+
+    @Data
+    public static class Endpoint {
+
+        /**
+         * Nome logico usato nei log.
+         */
+        private String name;
+
+        /**
+         * Base URL OpenAI-compatibile (es. {@code http://localhost:11434} per Ollama).
+         */
+        private String baseUrl;
+
+        private String apiKey = "";
+
+        /**
+         * Modello usato di default su questo endpoint.
+         */
+        private String model;
+
+        /**
+         * Altri modelli serviti dall'endpoint: un modello richiesto a runtime viene inoltrato solo se
+         * coincide con {@link #model} o compare qui, altrimenti si usa {@link #model}.
+         */
+        private List<String> models = new ArrayList<>();
+
+        private Double temperature;
+
+        private Integer maxTokens;
+
+        private Duration connectTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Timeout di lettura della risposta.
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class CircuitBreaker {
+
+        /**
+         * Errori consecutivi dopo i quali l'endpoint viene escluso.
+         */
+        private int failureThreshold = 3;
+
+        /**
+         * Durata dell'esclusione; scaduta, una richiesta di prova decide se riammetterlo.
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Hedging {
+
+        private boolean enabled = true;
+
+        /**
+         * Percentile della latenza del primario oltre il quale parte la richiesta di backup.
+         */
+        private double percentile = 0.95;
+
+        /**
+         * Numero di latenze recenti conservate per endpoint.
+         */
+        private int window = 200;
+
+        /**
+         * Campioni minimi prima di usare il percentile; sotto si usa {@link #initialDelay}.
+         */
+        private int minSamples = 20;
+
+        private Duration initialDelay = Duration.ofSeconds(4);
+
+        private Duration minDelay = Duration.ofMillis(300);
+
+        private Duration maxDelay = Duration.ofSeconds(15);
+    }
+}
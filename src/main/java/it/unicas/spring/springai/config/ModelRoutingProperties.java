@@ -0,0 +1,52 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configurazione del routing per complessità: domande fattuali brevi su un solo prodotto vanno a un
+ * modello piccolo con budget di token ridotto, confronti e raccomandazioni restano sul modello grande.
+ * Letta da {@code ModelRoutingPolicy}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.llm.model-routing")
+public class ModelRoutingProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Route per le domande semplici.
+     */
+    private Route small = new Route("Llama-3.1-8B-Instruct", 512);
+
+    /**
+     * Route per confronti, raccomandazioni e domande incerte; modello vuoto = modello di default.
+     */
+    private Route large = new Route(null, 2048);
+
+    /**
+     * Numero massimo di parole di una domanda semplice.
+     */
+    private int maxSimpleWords = 14;
+
+    /**
+     * Score minimo del miglior chunk recuperato perché la risposta sia considerata un lookup diretto.
+     */
+    private double minSimpleScore = 0.75;
+
+    @Data
+    public static class Route {
+
+        private String model;
+
+        private int maxTokens;
+
+        public Route() {
+        }
+
+        public Route(String model, int maxTokens) {
+            this.model = model;
+            this.maxTokens = maxTokens;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package it.unicas.spring.springai.config;
+
+import it.unicas.spring.springai.dto.CancelledWorkStats;
+import it.unicas.spring.springai.dto.ChatTurn;
+import it.unicas.spring.springai.dto.ChatbotChatRequest;
+import it.unicas.spring.springai.dto.ChatbotChatResponse;
+import it.unicas.spring.springai.dto.ChatbotSource;
+import it.unicas.spring.springai.dto.ExperimentArmStats;
+import it.unicas.spring.springai.dto.FlightRecordingStatus;
+import it.unicas.spring.springai.dto.ModelRouteStats;
+import it.unicas.spring.springai.dto.QuantizationBenchmarkReport;
+import it.unicas.spring.springai.dto.QuantizationBenchmarkResult;
+import it.unicas.spring.springai.dto.RetrievalBenchmarkReport;
+import it.unicas.spring.springai.dto.RetrievalBenchmarkResult;
+import it.unicas.spring.springai.dto.RetrievalExperimentArm;
+import it.unicas.spring.springai.dto.RetrievalParameters;
+import it.unicas.spring.springai.dto.RetrievalTuningConfig;
+import it.unicas.spring.springai.dto.RetrievalTuningStatus;
+import it.unicas.spring.springai.dto.SlowSearch;
+import it.unicas.spring.springai.dto.SlowSearchReport;
+import it.unicas.spring.springai.dto.SnapshotSummary;
+import it.unicas.spring.springai.dto.TokenHistogram;
+import it.unicas.spring.springai.dto.TokenUsageDaily;
+import it.unicas.spring.springai.dto.TokenUsageReport;
+import it.unicas.spring.springai.dto.TopQuery;
+import it.unicas.spring.springai.dto.UsageQuotaStatus;
+import it.unicas.spring.springai.dto.VectorIndexStats;
+import it.unicas.spring.springai.model.DocumentEntity;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * Hint di reflection e risorse per l'immagine nativa GraalVM ({@code ./mvnw -Pnative native:compile}),
+ * usati anche dal processing AOT del profilo {@code fast-startup}.
+ * I DTO restituiti dai controller tramite {@code ResponseEntity<?>} non sono ricavabili dalle firme,
+ * quindi vanno registrati per la serializzazione Jackson; PDFBox carica font, glifi e CMap come risorse
+ * solo alla prima lettura di un PDF.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.ApplicationRuntimeHints.class)
+@RegisterReflectionForBinding({
+        CancelledWorkStats.class,
+        ChatTurn.class,
+        ChatbotChatRequest.class,
+        ChatbotChatResponse.class,
+        ChatbotSource.class,
+        ExperimentArmStats.class,
+        FlightRecordingStatus.class,
+        ModelRouteStats.class,
+        QuantizationBenchmarkReport.class,
+        QuantizationBenchmarkResult.class,
+        RetrievalBenchmarkReport.class,
+        RetrievalBenchmarkResult.class,
+        RetrievalExperimentArm.class,
+        RetrievalParameters.class,
+        RetrievalTuningConfig.class,
+        RetrievalTuningStatus.class,
+        SlowSearch.class,
+        SlowSearchReport.class,
+        SnapshotSummary.class,
+        TokenHistogram.class,
+        TokenUsageDaily.class,
+        TokenUsageReport.class,
+        TopQuery.class,
+        UsageQuotaStatus.class,
+        VectorIndexStats.class,
+        DocumentEntity.class
+})
+public class NativeHintsConfig {
+
+    public static class ApplicationRuntimeHints implements RuntimeHintsRegistrar {
+
+        private static final String[] PDFBOX_RESOURCES = {
+                "org/apache/pdfbox/resources/afm/*",
+                "org/apache/pdfbox/resources/glyphlist/*",
+                "org/apache/pdfbox/resources/icc/*",
+                "org/apache/pdfbox/resources/text/*",
+                "org/apache/pdfbox/resources/ttf/*",
+                "org/apache/pdfbox/resources/version.properties",
+                "org/apache/fontbox/cmap/*",
+                "org/apache/fontbox/unicode/*"
+        };
+
+        /**
+         * Record del golden set del benchmark, letti con Jackson ma non visibili fuori dal package service.
+         */
+        private static final String[] GOLDEN_SET_TYPES = {
+                "it.unicas.spring.springai.service.RetrievalBenchmarkService$GoldenSet",
+                "it.unicas.spring.springai.service.RetrievalBenchmarkService$GoldenQuestion"
+        };
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            for (String pattern : PDFBOX_RESOURCES) {
+                hints.resources().registerPattern(pattern);
+            }
+            hints.resources().registerPattern("retrieval-benchmark/*");
+            hints.resources().registerPattern("retrieval-benchmark/corpus/*");
+            hints.resources().registerPattern("jfr/*.jfc");
+
+            for (String type : GOLDEN_SET_TYPES) {
+                hints.reflection().registerType(TypeReference.of(type),
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_DECLARED_METHODS,
+                        MemberCategory.DECLARED_FIELDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione della retrieval speculativa mentre l'utente scrive.
+ * Letta da {@code RetrievalPrefetchService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat.prefetch")
+public class PrefetchProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Lunghezza minima del testo parziale perché valga la pena di anticiparne la retrieval.
+     */
+    private int minChars = 12;
+
+    /**
+     * Intervallo minimo tra due prefetch dello stesso utente; le richieste più ravvicinate ricevono 429.
+     */
+    private Duration minInterval = Duration.ofMillis(1500);
+
+    /**
+     * Validità del risultato anticipato.
+     */
+    private Duration ttl = Duration.ofSeconds(30);
+
+    /**
+     * Prefetch eseguiti in parallelo su tutto il nodo; oltre, vengono scartati.
+     */
+    private int parallelism = 4;
+}
@@ -0,0 +1,39 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configurazione della quantizzazione degli embedding per l'indice ANN.
+ * Letta da {@code VectorPartitionService} e {@code VectorPartitionRepository}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rag.quantization")
+public class QuantizationProperties {
+
+    public enum Mode {
+        /** Indice HNSW standard su {@code vector} float32 (comportamento dello starter PGVector). */
+        FULL,
+        /** Indice HNSW su espressione {@code halfvec} (float16): metà memoria, recall quasi invariata. */
+        HALFVEC,
+        /** Indice HNSW su {@code binary_quantize(embedding)}: 1 bit per dimensione, richiede rescoring. */
+        BINARY
+    }
+
+    /**
+     * Modalità di memorizzazione/ricerca dell'indice ANN.
+     */
+    private Mode mode = Mode.FULL;
+
+    /**
+     * Candidati recuperati dall'indice quantizzato per ogni risultato richiesto (topK × fattore),
+     * poi riordinati con la distanza esatta sui vettori full-precision.
+     */
+    private int rescoreFactor = 4;
+
+    /**
+     * Elimina l'indice HNSW full-precision quando è attiva una modalità quantizzata.
+     * Tenere {@code spring.ai.vectorstore.pgvector.initialize-schema=false} per non ricrearlo all'avvio.
+     */
+    private boolean dropFullPrecisionIndex = false;
+}
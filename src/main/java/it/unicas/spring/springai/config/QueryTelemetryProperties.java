@@ -0,0 +1,60 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione del log delle query e del warm-up dalle query più frequenti.
+ * Letta da {@code QueryTelemetryService} e {@code StartupWarmupService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rag.telemetry")
+public class QueryTelemetryProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Eventi in attesa di scrittura; oltre, i nuovi eventi vengono scartati per non rallentare le richieste.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * Righe massime per batch di INSERT.
+     */
+    private int batchSize = 500;
+
+    private Duration flushInterval = Duration.ofSeconds(2);
+
+    private Warmup warmup = new Warmup();
+
+    @Data
+    public static class Warmup {
+
+        /**
+         * Ripete le query più frequenti nel warm-up di avvio (fase {@code top-queries}, prima che la readiness
+         * diventi UP) e dopo ogni ingestion.
+         */
+        private boolean enabled = true;
+
+        private int topQueries = 50;
+
+        /**
+         * Finestra temporale da cui estrarre le query più frequenti.
+         */
+        private Duration window = Duration.ofDays(7);
+
+        private int topK = 8;
+
+        /**
+         * Query eseguite in parallelo, per aprire anche più connessioni del pool.
+         */
+        private int parallelism = 4;
+
+        /**
+         * Durata massima di una ripetizione delle query più frequenti.
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+    }
+}
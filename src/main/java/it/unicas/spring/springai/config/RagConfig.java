@@ -0,0 +1,21 @@
+package it.unicas.spring.springai.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registra le proprietà applicative della pipeline RAG ({@code app.rag.*}).
+ */
+@Configuration
+@EnableConfigurationProperties({
+        VectorPartitionProperties.class,
+        QuantizationProperties.class,
+        BulkLoadProperties.class,
+        QueryTelemetryProperties.class,
+        ComparisonRetrievalProperties.class,
+        RetrievalBenchmarkProperties.class,
+        SlowSearchProperties.class,
+        RetrievalTuningProperties.class
+})
+public class RagConfig {
+}
@@ -0,0 +1,54 @@
+package it.unicas.spring.springai.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * DataSource che instrada le transazioni {@code readOnly} verso le repliche e tutto il resto sul primary.
+ * Va avvolto in un {@code LazyConnectionDataSourceProxy} così il flag read-only è già noto
+ * quando la connessione viene effettivamente richiesta.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY_KEY = "primary";
+
+    private final ReplicaLagTracker lagTracker;
+
+    public ReadWriteRoutingDataSource(ReplicaLagTracker lagTracker) {
+        this.lagTracker = lagTracker;
+    }
+
+    /**
+     * Determina il datasource da usare per la connessione corrente.
+     * Chiamata da {@link AbstractRoutingDataSource} a ogni richiesta di connessione.
+     *
+     * @return chiave del primary o della replica scelta
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY_KEY;
+        }
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            registerWriteMarker();
+            return PRIMARY_KEY;
+        }
+
+        return lagTracker.pickReplica().orElse(PRIMARY_KEY);
+    }
+
+    private void registerWriteMarker() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lagTracker.markWrite();
+            }
+        });
+    }
+}
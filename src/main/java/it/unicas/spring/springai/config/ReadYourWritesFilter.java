@@ -0,0 +1,30 @@
+package it.unicas.spring.springai.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Lega al thread l'utente autenticato della richiesta, così che {@link ReplicaLagTracker} applichi
+ * read-your-writes solo alle letture di chi ha scritto. Registrato da {@link DataSourceRoutingConfig}.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Principal principal = request.getUserPrincipal();
+        if (principal == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try (ReplicaLagTracker.Scope ignored = ReplicaLagTracker.bindUser(principal.getName())) {
+            chain.doFilter(request, response);
+        }
+    }
+}
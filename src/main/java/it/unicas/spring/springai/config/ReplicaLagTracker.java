@@ -0,0 +1,193 @@
+package it.unicas.spring.springai.config;
+
+import lombok.extern.slf4j.Slf4j;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.context.ContextRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tiene traccia dello stato delle repliche (lag di replica) e dell'ultima scrittura sul primary di ogni utente.
+ * Usato da {@link ReadWriteRoutingDataSource} per decidere se una lettura può andare su una replica.
+ * <p>
+ * Read-your-writes vale per l'utente che ha scritto: l'utente della richiesta è legato al thread da
+ * {@link ReadYourWritesFilter} e segue la richiesta sui pool interni tramite {@code TracingContext}.
+ * Le scritture dei thread di background (scheduler, flush write-behind) non hanno utente e non spostano le
+ * letture di nessuno. Limiti: la finestra è per nodo, quindi con più istanze vale solo con sessioni sticky
+ * (già necessarie per il login con sessione HTTP in memoria); le scritture fuori transazione (autocommit)
+ * non vengono registrate e vanno eseguite in una transazione non read-only per essere coperte.
+ */
+@Slf4j
+public class ReplicaLagTracker {
+
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+            END
+            """;
+
+    private static final ThreadLocal<String> CURRENT_USER = new ThreadLocal<>();
+
+    static {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(
+                ReplicaLagTracker.class.getName(), CURRENT_USER::get, CURRENT_USER::set, CURRENT_USER::remove);
+    }
+
+    private final Map<String, DataSource> replicas;
+    private final long readYourWritesWindowNanos;
+    private final double maxLagSeconds;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final Map<String, Long> lastWriteNanos = new ConcurrentHashMap<>();
+    private final Map<String, Double> lastKnownLag = new LinkedHashMap<>();
+
+    private volatile List<String> healthyReplicas;
+
+    /**
+     * Ripristina l'utente precedente del thread.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public ReplicaLagTracker(Map<String, DataSource> replicas, Duration readYourWritesWindow, Duration maxReplicaLag) {
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        this.readYourWritesWindowNanos = readYourWritesWindow.toNanos();
+        this.maxLagSeconds = maxReplicaLag.toMillis() / 1000.0;
+        this.healthyReplicas = List.copyOf(replicas.keySet());
+    }
+
+    /**
+     * Lega al thread l'utente della richiesta corrente, a cui vengono attribuite scritture e letture.
+     * Chiamata da {@link ReadYourWritesFilter} per ogni richiesta HTTP autenticata.
+     *
+     * @param username utente autenticato
+     * @return scope da chiudere a fine richiesta
+     */
+    public static Scope bindUser(String username) {
+        String previous = CURRENT_USER.get();
+        CURRENT_USER.set(username);
+        return () -> {
+            if (previous != null) {
+                CURRENT_USER.set(previous);
+            } else {
+                CURRENT_USER.remove();
+            }
+        };
+    }
+
+    /**
+     * Registra una scrittura appena confermata sul primary dall'utente legato al thread.
+     * Senza utente (thread di background) la scrittura non viene registrata.
+     * Chiamata da {@link ReadWriteRoutingDataSource} al commit delle transazioni non read-only.
+     */
+    public void markWrite() {
+        String username = CURRENT_USER.get();
+        if (username != null) {
+            lastWriteNanos.put(username, System.nanoTime());
+        }
+    }
+
+    /**
+     * Sceglie una replica sana in round-robin, se le letture possono lasciare il primary.
+     * Chiamata da {@link ReadWriteRoutingDataSource#determineCurrentLookupKey()}.
+     *
+     * @return chiave della replica scelta oppure vuoto per usare il primary
+     */
+    public Optional<String> pickReplica() {
+        String username = CURRENT_USER.get();
+        Long lastWrite = username != null ? lastWriteNanos.get(username) : null;
+        if (lastWrite != null && System.nanoTime() - lastWrite < readYourWritesWindowNanos) {
+            return Optional.empty();
+        }
+
+        List<String> candidates = healthyReplicas;
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+
+        int index = Math.floorMod(cursor.getAndIncrement(), candidates.size());
+        return Optional.of(candidates.get(index));
+    }
+
+    /**
+     * Misura il lag di ogni replica, aggiorna l'insieme di quelle utilizzabili e dimentica le scritture
+     * uscite dalla finestra read-your-writes.
+     * Chiamata periodicamente dallo scheduler Spring ({@code app.datasource.routing.lag-check-interval}).
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.routing.lag-check-interval:5s}")
+    public void refreshLag() {
+        List<String> healthy = new ArrayList<>(replicas.size());
+        for (Map.Entry<String, DataSource> entry : replicas.entrySet()) {
+            Double lag = measureLag(entry.getValue());
+            synchronized (lastKnownLag) {
+                lastKnownLag.put(entry.getKey(), lag);
+            }
+
+            if (lag != null && lag <= maxLagSeconds) {
+                healthy.add(entry.getKey());
+            } else {
+                log.warn("Replica {} excluded from read routing (lag: {}s)", entry.getKey(), lag);
+            }
+        }
+        healthyReplicas = List.copyOf(healthy);
+
+        long now = System.nanoTime();
+        lastWriteNanos.values().removeIf(nanos -> now - nanos >= readYourWritesWindowNanos);
+    }
+
+    /**
+     * Restituisce l'ultimo lag misurato per replica (in secondi, {@code null} se non raggiungibile).
+     *
+     * @return snapshot del lag per replica
+     */
+    public Map<String, Double> lastKnownLag() {
+        synchronized (lastKnownLag) {
+            return new LinkedHashMap<>(lastKnownLag);
+        }
+    }
+
+    /**
+     * Espone i pool delle repliche indicizzati per chiave di routing.
+     * Chiamata da {@link DataSourceRoutingConfig} per configurare il datasource di routing.
+     *
+     * @return datasource delle repliche
+     */
+    public Map<String, DataSource> replicaDataSources() {
+        return replicas;
+    }
+
+    /**
+     * Chiude i pool delle repliche allo shutdown del contesto.
+     */
+    public void close() {
+        for (DataSource dataSource : replicas.values()) {
+            if (dataSource instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        }
+    }
+
+    private Double measureLag(DataSource dataSource) {
+        try {
+            Number lag = new JdbcTemplate(dataSource).queryForObject(LAG_QUERY, Number.class);
+            return lag != null ? lag.doubleValue() : 0.0;
+        } catch (Exception e) {
+            log.debug("Unable to measure replica lag: {}", e.getMessage());
+            return null;
+        }
+    }
+}
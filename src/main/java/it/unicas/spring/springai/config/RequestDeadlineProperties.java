@@ -0,0 +1,36 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione del budget di tempo delle richieste di chat.
+ * Letta da {@code RequestDeadlineService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat.deadline")
+public class RequestDeadlineProperties {
+
+    /**
+     * Budget usato quando il client non invia l'header {@code X-Request-Timeout-Ms}.
+     */
+    private Duration defaultBudget = Duration.ofSeconds(30);
+
+    /**
+     * Budget massimo accettato dall'header.
+     */
+    private Duration maxBudget = Duration.ofSeconds(120);
+
+    /**
+     * Thread che eseguono le richieste di chat fuori dal thread del web server.
+     */
+    private int workerThreads = 64;
+
+    /**
+     * Richieste in attesa di un thread oltre le quali le nuove vengono rifiutate con 503, invece di consumare
+     * il proprio budget in coda.
+     */
+    private int queueCapacity = 32;
+}
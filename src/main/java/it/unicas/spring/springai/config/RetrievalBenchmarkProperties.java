@@ -0,0 +1,64 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configurazione del benchmark di qualità e latenza del retrieval su corpus e domande di riferimento.
+ * Letta da {@code RetrievalBenchmarkService}; le liste sono i valori di default della griglia, sovrascrivibili
+ * dai parametri dell'endpoint admin.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rag.benchmark")
+public class RetrievalBenchmarkProperties {
+
+    public enum Mode {
+        /** Scansione sequenziale senza indice: riferimento di recall. */
+        EXACT,
+        /** Indice HNSW full-precision. */
+        FULL,
+        /** Indice HNSW su {@code halfvec} con rescoring full-precision. */
+        HALFVEC,
+        /** Indice HNSW binario con rescoring full-precision. */
+        BINARY
+    }
+
+    /**
+     * PDF del corpus di riferimento (pattern di risorse Spring).
+     */
+    private String corpus = "classpath:retrieval-benchmark/corpus/*.pdf";
+
+    /**
+     * Domande di riferimento con file e pagine attese.
+     */
+    private String goldenSet = "classpath:retrieval-benchmark/golden-set.json";
+
+    /**
+     * Prefisso delle tabelle temporanee, una per dimensione dei chunk.
+     */
+    private String tablePrefix = "vector_store_bench_";
+
+    /**
+     * Mantiene le tabelle temporanee a fine run (utile per ripetere query a mano).
+     */
+    private boolean keepTables = false;
+
+    private List<Integer> topK = new ArrayList<>(List.of(3, 5, 8, 12));
+
+    private List<Double> thresholds = new ArrayList<>(List.of(0.0, 0.5, 0.6, 0.7));
+
+    /**
+     * Valori di {@code hnsw.ef_search} (il default di pgvector è 40).
+     */
+    private List<Integer> efSearch = new ArrayList<>(List.of(16, 40, 100));
+
+    /**
+     * Dimensioni dei chunk in token per {@code TokenTextSplitter} (in produzione 800).
+     */
+    private List<Integer> chunkSizes = new ArrayList<>(List.of(128, 256, 800));
+
+    private List<Mode> modes = new ArrayList<>(List.of(Mode.EXACT, Mode.FULL, Mode.HALFVEC));
+}
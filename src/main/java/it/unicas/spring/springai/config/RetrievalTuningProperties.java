@@ -0,0 +1,73 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parametri iniziali di retrieval e prompt, e bracci di esperimento A/B.
+ * Letta da {@code RetrievalTuningService} all'avvio; a runtime i valori si modificano dall'endpoint admin
+ * {@code PUT /api/admin/retrieval-tuning} e tornano a questi al riavvio.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rag.tuning")
+public class RetrievalTuningProperties {
+
+    /**
+     * Chunk recuperati dalle ricerche senza topK esplicito.
+     */
+    private int searchTopK = 5;
+
+    /**
+     * Chunk recuperati per ogni turno di chat.
+     */
+    private int chatTopK = 8;
+
+    /**
+     * Similarità coseno minima dei chunk restituiti.
+     */
+    private double similarityThreshold = 0.7;
+
+    /**
+     * Caratteri massimi di ogni chunk inserito nel prompt.
+     */
+    private int maxChunkChars = 2_000;
+
+    /**
+     * Messaggi della storia client inseriti nel prompt.
+     */
+    private int maxHistoryMessages = 10;
+
+    /**
+     * Sale dell'hash che assegna gli utenti ai bracci: cambiarlo rimescola le assegnazioni.
+     */
+    private String salt = "rag-tuning";
+
+    /**
+     * Bracci dell'esperimento; gli utenti non assegnati a nessun braccio usano i valori sopra ({@code control}).
+     */
+    private List<Arm> arms = new ArrayList<>();
+
+    @Data
+    public static class Arm {
+
+        private String name;
+
+        /**
+         * Percentuale di utenti assegnati al braccio.
+         */
+        private int percent;
+
+        private Integer searchTopK;
+
+        private Integer chatTopK;
+
+        private Double similarityThreshold;
+
+        private Integer maxChunkChars;
+
+        private Integer maxHistoryMessages;
+    }
+}
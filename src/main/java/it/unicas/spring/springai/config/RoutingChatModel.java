@@ -0,0 +1,186 @@
+package it.unicas.spring.springai.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ChatModel} che distribuisce le chiamate su più endpoint OpenAI-compatibili:
+ * salta gli endpoint con circuit breaker aperto, passa al successivo in caso di errore e,
+ * se il primario supera il proprio p95 di latenza, invia una richiesta hedged al backup
+ * restituendo la prima risposta valida.
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel, AutoCloseable {
+
+    private final List<LlmEndpoint> endpoints;
+    private final LlmRoutingProperties properties;
+    private final ExecutorService executor;
+
+    public RoutingChatModel(List<LlmEndpoint> endpoints, LlmRoutingProperties properties) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Configurare almeno un endpoint in app.llm.routing.endpoints");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.properties = properties;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "llm-routing-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Esegue la chiamata sul primo endpoint disponibile con failover e hedging.
+     * Chiamata da {@code ChatClient} (quindi da {@code ChatbotService}) per ogni prompt.
+     *
+     * @param prompt prompt da inviare
+     * @return prima risposta valida ricevuta
+     */
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        List<LlmEndpoint> candidates = candidates();
+        long deadline = System.nanoTime() + properties.getTotalTimeout().toNanos();
+        LlmRoutingProperties.Hedging hedging = properties.getHedging();
+
+        CompletionService<ChatResponse> completion = new ExecutorCompletionService<>(executor);
+        List<Future<ChatResponse>> inFlight = new ArrayList<>();
+        int next = 0;
+        boolean hedged = false;
+        Throwable lastError = null;
+
+        inFlight.add(submit(completion, candidates.get(next++), prompt));
+        try {
+            while (!inFlight.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) break;
+
+                boolean canHedge = hedging.isEnabled() && !hedged && next < candidates.size();
+                long wait = canHedge ? Math.min(remaining, hedgeDelayNanos(candidates.get(next - 1))) : remaining;
+
+                Future<ChatResponse> done = completion.poll(wait, TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (canHedge) {
+                        LlmEndpoint backup = candidates.get(next++);
+                        log.debug("LLM primary slower than hedge delay, sending hedged request to {}", backup.name());
+                        inFlight.add(submit(completion, backup, prompt));
+                        hedged = true;
+                    }
+                    continue;
+                }
+
+                inFlight.remove(done);
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    lastError = e.getCause();
+                    if (inFlight.isEmpty() && next < candidates.size()) {
+                        LlmEndpoint fallback = candidates.get(next++);
+                        log.debug("LLM request failed, failing over to {}", fallback.name());
+                        inFlight.add(submit(completion, fallback, prompt));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Chiamata al modello interrotta", e);
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+
+        if (lastError != null && inFlight.isEmpty()) {
+            throw new IllegalStateException("Nessun provider LLM ha risposto: " + lastError.getMessage(), lastError);
+        }
+        throw new IllegalStateException("Timeout nella chiamata al modello");
+    }
+
+    /**
+     * Streaming sul primo endpoint disponibile (senza hedging: i token parziali non sono ripetibili).
+     *
+     * @param prompt prompt da inviare
+     * @return flusso di risposte parziali
+     */
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        LlmEndpoint endpoint = candidates().get(0);
+        return endpoint.chatModel().stream(forEndpoint(endpoint, prompt))
+                .doOnError(endpoint::recordFailure);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return endpoints.get(0).chatModel().getDefaultOptions();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private List<LlmEndpoint> candidates() {
+        List<LlmEndpoint> available = endpoints.stream().filter(LlmEndpoint::isAvailable).toList();
+        // Con tutti i circuit breaker aperti si riprova comunque in ordine: meglio un tentativo che un errore certo.
+        return available.isEmpty() ? endpoints : available;
+    }
+
+    private Future<ChatResponse> submit(CompletionService<ChatResponse> completion, LlmEndpoint endpoint, Prompt prompt) {
+        Prompt routed = forEndpoint(endpoint, prompt);
+        return completion.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                ChatResponse response = endpoint.chatModel().call(routed);
+                endpoint.recordSuccess(System.nanoTime() - start);
+                return response;
+            } catch (RuntimeException e) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    endpoint.recordFailure(e);
+                }
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Adatta le opzioni runtime all'endpoint: copia tutte le opzioni del chiamante e sostituisce solo il modello,
+     * mantenuto se l'endpoint lo serve.
+     */
+    private Prompt forEndpoint(LlmEndpoint endpoint, Prompt prompt) {
+        ChatOptions requested = prompt.getOptions();
+        if (requested == null) {
+            return prompt;
+        }
+
+        OpenAiChatOptions options = requested instanceof OpenAiChatOptions openAiOptions
+                ? OpenAiChatOptions.fromOptions(openAiOptions)
+                : ModelOptionsUtils.copyToTarget(requested, ChatOptions.class, OpenAiChatOptions.class);
+        options.setModel(endpoint.serves(requested.getModel()) ? requested.getModel() : endpoint.defaultModel());
+        return new Prompt(prompt.getInstructions(), options);
+    }
+
+    private long hedgeDelayNanos(LlmEndpoint primary) {
+        LlmRoutingProperties.Hedging hedging = properties.getHedging();
+        long percentile = primary.latencyPercentileNanos(hedging.getPercentile(), hedging.getMinSamples());
+        if (percentile < 0) {
+            return hedging.getInitialDelay().toNanos();
+        }
+        return Math.max(hedging.getMinDelay().toNanos(), Math.min(hedging.getMaxDelay().toNanos(), percentile));
+    }
+}
@@ -0,0 +1,42 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione del log delle ricerche vettoriali lente e della cattura automatica del piano di esecuzione.
+ * Letta da {@code SlowSearchService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rag.slow-search")
+public class SlowSearchProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Durata oltre la quale una ricerca è considerata lenta.
+     */
+    private Duration threshold = Duration.ofMillis(500);
+
+    /**
+     * Frazione delle ricerche lente per cui rieseguire la query con {@code EXPLAIN (ANALYZE, BUFFERS)}.
+     */
+    private double explainSampleRate = 0.25;
+
+    /**
+     * Intervallo minimo tra due catture del piano, per non aggiungere carico a un database già lento.
+     */
+    private Duration explainMinInterval = Duration.ofSeconds(30);
+
+    /**
+     * {@code statement_timeout} della query di {@code EXPLAIN ANALYZE}.
+     */
+    private Duration explainTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Ricerche lente conservate in memoria per l'endpoint admin.
+     */
+    private int maxEntries = 200;
+}
@@ -0,0 +1,71 @@
+package it.unicas.spring.springai.config;
+
+import it.unicas.spring.springai.dto.SnapshotSummary;
+import it.unicas.spring.springai.service.KnowledgeBaseSnapshotService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runner CLI per export/import degli snapshot della knowledge base.
+ * Esempio: {@code java -jar app.jar --spring.main.web-application-type=none --snapshot.import=kb.snap --snapshot.replace=true}.
+ * Se viene richiesta un'operazione di snapshot l'applicazione termina al completamento.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class SnapshotCliConfig {
+
+    private final KnowledgeBaseSnapshotService snapshotService;
+    private final ApplicationContext applicationContext;
+
+    @Bean
+    public ApplicationRunner snapshotRunner() {
+        return args -> {
+            String exportPath = option(args, "snapshot.export");
+            String importPath = option(args, "snapshot.import");
+            if (exportPath == null && importPath == null) {
+                return;
+            }
+
+            int exitCode = 0;
+            try {
+                if (exportPath != null) {
+                    try (OutputStream out = Files.newOutputStream(Path.of(exportPath))) {
+                        SnapshotSummary summary = snapshotService.exportSnapshot(out);
+                        log.info("Snapshot written to {}: {}", exportPath, summary);
+                    }
+                }
+                if (importPath != null) {
+                    boolean replace = Boolean.parseBoolean(option(args, "snapshot.replace"));
+                    try (InputStream in = Files.newInputStream(Path.of(importPath))) {
+                        SnapshotSummary summary = snapshotService.importSnapshot(in, replace);
+                        log.info("Snapshot imported from {}: {}", importPath, summary);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Snapshot operation failed: {}", e.getMessage(), e);
+                exitCode = 1;
+            }
+
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        };
+    }
+
+    private String option(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
@@ -0,0 +1,43 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configurazione del warm-up eseguito all'avvio prima che la readiness probe risponda UP.
+ * Letta da {@code StartupWarmupService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.warmup")
+public class StartupWarmupProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Tempo massimo per cui il warm-up trattiene la readiness; scaduto, l'istanza diventa pronta
+     * anche se il warm-up è ancora in corso.
+     */
+    private Duration timeout = Duration.ofSeconds(120);
+
+    /**
+     * Carica in memoria gli indici HNSW con {@code pg_prewarm}.
+     */
+    private boolean prewarmIndexes = true;
+
+    /**
+     * Domande sintetiche usate per embedding e ricerca vettoriale.
+     */
+    private List<String> queries = new ArrayList<>(List.of(
+            "Quanto dura la batteria dello smartphone?",
+            "Confronta le fotocamere dei due modelli",
+            "Che display ha il tablet?"));
+
+    /**
+     * Iterazioni dei percorsi CPU della chat (chunk, prompt, parsing) eseguite per far compilare al JIT.
+     */
+    private int jitIterations = 2_000;
+}
@@ -0,0 +1,27 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configurazione della contabilità dei token delle chiamate al modello.
+ * Letta da {@code TokenUsageService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat.token-usage")
+public class TokenUsageProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Intervallo di scrittura degli aggregati giornalieri su Postgres ({@code llm_token_usage}).
+     */
+    private Duration flushInterval = Duration.ofSeconds(30);
+
+    /**
+     * Giorni massimi restituiti dall'endpoint admin.
+     */
+    private int maxDays = 90;
+}
@@ -0,0 +1,28 @@
+package it.unicas.spring.springai.config;
+
+import it.unicas.spring.springai.service.PipelineEventObservationHandler;
+import it.unicas.spring.springai.service.StageTimingObservationHandler;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registra l'handler che ricava dalle observation della chat le durate per l'header {@code Server-Timing}
+ * e quello che trasforma le observation di embedding in eventi JFR; Spring Boot li aggiunge
+ * all'{@code ObservationRegistry} accanto all'handler di tracing OpenTelemetry.
+ * Registra anche le proprietà delle registrazioni JFR ({@code app.jfr.*}).
+ */
+@Configuration
+@EnableConfigurationProperties(FlightRecorderProperties.class)
+public class TracingConfig {
+
+    @Bean
+    public StageTimingObservationHandler stageTimingObservationHandler() {
+        return new StageTimingObservationHandler();
+    }
+
+    @Bean
+    public PipelineEventObservationHandler pipelineEventObservationHandler() {
+        return new PipelineEventObservationHandler();
+    }
+}
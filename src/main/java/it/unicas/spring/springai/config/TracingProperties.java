@@ -0,0 +1,19 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configurazione del dettaglio dei tempi delle richieste di chat.
+ * Letta dal controller chatbot; l'export delle span è configurato dalle proprietà {@code management.tracing.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat.tracing")
+public class TracingProperties {
+
+    /**
+     * Aggiunge alla risposta di {@code POST /api/chatbot/chat} l'header {@code Server-Timing}
+     * con la durata di retrieval, embedding, ricerca vettoriale, LLM e parsing.
+     */
+    private boolean serverTiming = false;
+}
@@ -0,0 +1,30 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Limiti di utilizzo del modello per utente e globali: richieste al minuto e token (prompt + completion) al giorno.
+ * Letta da {@code UsageQuotaService}; un limite {@code <= 0} è disattivato.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat.quotas")
+public class UsageQuotaProperties {
+
+    private boolean enabled = true;
+
+    private int userRequestsPerMinute = 20;
+
+    private long userTokensPerDay = 200_000;
+
+    private int globalRequestsPerMinute = 300;
+
+    private long globalTokensPerDay = 5_000_000;
+
+    /**
+     * Intervallo di scrittura dei contatori su Postgres e di rilettura dei totali condivisi tra nodi.
+     */
+    private Duration flushInterval = Duration.ofSeconds(10);
+}
@@ -0,0 +1,28 @@
+package it.unicas.spring.springai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configurazione delle partizioni vettoriali per categoria di dispositivo.
+ * Letta da {@code VectorPartitionService} e {@code RagService}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rag.partitioning")
+public class VectorPartitionProperties {
+
+    /**
+     * Abilita una tabella (e un indice HNSW) separata per ogni categoria di dispositivo.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Tabella condivisa per i chunk senza categoria (quella gestita dallo starter PGVector).
+     */
+    private String defaultTable = "vector_store";
+
+    /**
+     * Prefisso delle tabelle di partizione: {@code <prefisso><categoria>}.
+     */
+    private String tablePrefix = "vector_store_";
+}
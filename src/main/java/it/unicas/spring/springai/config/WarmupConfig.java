@@ -0,0 +1,21 @@
+package it.unicas.spring.springai.config;
+
+import it.unicas.spring.springai.service.StartupWarmupService;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registra le proprietà del warm-up ({@code app.warmup.*}) e l'health indicator {@code warmup},
+ * incluso nel gruppo {@code readiness}: finché il warm-up non termina la probe risponde OUT_OF_SERVICE.
+ */
+@Configuration
+@EnableConfigurationProperties(StartupWarmupProperties.class)
+public class WarmupConfig {
+
+    @Bean
+    public HealthIndicator warmupHealthIndicator(StartupWarmupService startupWarmupService) {
+        return startupWarmupService::health;
+    }
+}
@@ -0,0 +1,434 @@
+package it.unicas.spring.springai.controller;
+
+import it.unicas.spring.springai.config.RetrievalBenchmarkProperties;
+import it.unicas.spring.springai.dto.QuantizationBenchmarkReport;
+import it.unicas.spring.springai.dto.RetrievalBenchmarkReport;
+import it.unicas.spring.springai.dto.RetrievalTuningConfig;
+import it.unicas.spring.springai.dto.SnapshotSummary;
+import it.unicas.spring.springai.service.FlightRecorderService;
+import it.unicas.spring.springai.service.KnowledgeBaseSnapshotService;
+import it.unicas.spring.springai.service.ModelRouteMetrics;
+import it.unicas.spring.springai.service.QuantizationBenchmarkService;
+import it.unicas.spring.springai.service.QueryTelemetryService;
+import it.unicas.spring.springai.service.RequestDeadlineService;
+import it.unicas.spring.springai.service.RetrievalBenchmarkService;
+import it.unicas.spring.springai.service.RetrievalTuningService;
+import it.unicas.spring.springai.service.SlowSearchService;
+import it.unicas.spring.springai.service.TokenUsageService;
+import it.unicas.spring.springai.service.UsageQuotaService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+
+    private static final int MAX_BENCHMARK_QUERIES = 1_000;
+    private static final int MAX_TOP_QUERIES = 500;
+    private static final int MAX_SLOW_SEARCHES = 500;
+
+    private final QuantizationBenchmarkService quantizationBenchmarkService;
+    private final KnowledgeBaseSnapshotService snapshotService;
+    private final ModelRouteMetrics modelRouteMetrics;
+    private final UsageQuotaService usageQuotaService;
+    private final QueryTelemetryService queryTelemetryService;
+    private final RequestDeadlineService requestDeadlineService;
+    private final RetrievalBenchmarkService retrievalBenchmarkService;
+    private final TokenUsageService tokenUsageService;
+    private final SlowSearchService slowSearchService;
+    private final RetrievalTuningService retrievalTuningService;
+    private final FlightRecorderService flightRecorderService;
+
+    /**
+     * Confronta recall e latenza delle modalità di quantizzazione (FULL, HALFVEC, BINARY) sul corpus caricato.
+     * Chiamata da Spring MVC tramite {@code POST /api/admin/vector-benchmark}; delega a
+     * {@link QuantizationBenchmarkService#run(String, int, int, boolean)}.
+     *
+     * @param table tabella vettoriale da misurare (default: tabella condivisa)
+     * @param queries numero di query campionate dal corpus
+     * @param topK profondità della ricerca
+     * @param createIndexes crea gli indici quantizzati mancanti prima della misura
+     * @return report del benchmark o errore di validazione
+     */
+    @PostMapping("/vector-benchmark")
+    public ResponseEntity<?> vectorBenchmark(@RequestParam(value = "table", required = false) String table,
+                                             @RequestParam(value = "queries", defaultValue = "50") int queries,
+                                             @RequestParam(value = "topK", defaultValue = "8") int topK,
+                                             @RequestParam(value = "createIndexes", defaultValue = "false") boolean createIndexes,
+                                             Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        if (queries < 1 || queries > MAX_BENCHMARK_QUERIES || topK < 1) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Parametri benchmark non validi"));
+        }
+
+        try {
+            QuantizationBenchmarkReport report = quantizationBenchmarkService.run(table, queries, topK, createIndexes);
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Misura recall@k, MRR e latenza del retrieval sul corpus di riferimento al variare di topK, soglia,
+     * {@code hnsw.ef_search}, dimensione dei chunk e modalità di ricerca. I parametri omessi usano la griglia
+     * di {@code app.rag.benchmark.*}; le liste sono separate da virgole.
+     * Chiamata da Spring MVC tramite {@code POST /api/admin/retrieval-benchmark}; delega a
+     * {@link RetrievalBenchmarkService#run(RetrievalBenchmarkService.Sweep)}.
+     *
+     * @param topK valori di topK
+     * @param thresholds soglie di similarità
+     * @param efSearch valori di {@code hnsw.ef_search}
+     * @param chunkSizes dimensioni dei chunk in token
+     * @param modes modalità di ricerca (EXACT, FULL, HALFVEC, BINARY)
+     * @param format {@code json} (default) o {@code table} per una tabella di testo
+     * @return report del benchmark, errore di validazione o 409 se un benchmark è già in corso
+     */
+    @PostMapping("/retrieval-benchmark")
+    public ResponseEntity<?> retrievalBenchmark(@RequestParam(value = "topK", required = false) List<Integer> topK,
+                                                @RequestParam(value = "thresholds", required = false) List<Double> thresholds,
+                                                @RequestParam(value = "efSearch", required = false) List<Integer> efSearch,
+                                                @RequestParam(value = "chunkSizes", required = false) List<Integer> chunkSizes,
+                                                @RequestParam(value = "modes", required = false) List<RetrievalBenchmarkProperties.Mode> modes,
+                                                @RequestParam(value = "format", defaultValue = "json") String format,
+                                                Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        try {
+            RetrievalBenchmarkReport report = retrievalBenchmarkService.run(
+                    retrievalBenchmarkService.sweep(topK, thresholds, efSearch, chunkSizes, modes));
+            if ("table".equalsIgnoreCase(format)) {
+                return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(retrievalBenchmarkService.formatTable(report));
+            }
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Esporta in streaming lo snapshot binario compresso della knowledge base.
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/snapshot}; delega a
+     * {@link KnowledgeBaseSnapshotService#exportSnapshot(java.io.OutputStream)}.
+     *
+     * @return flusso dello snapshot come allegato
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<?> exportSnapshot(Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        StreamingResponseBody body = out -> snapshotService.exportSnapshot(out);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "knowledge-base-" + LocalDate.now() + ".kbsnap");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Importa uno snapshot inviato come corpo binario della richiesta, senza ricalcolare embedding.
+     * Chiamata da Spring MVC tramite {@code POST /api/admin/snapshot}; delega a
+     * {@link KnowledgeBaseSnapshotService#importSnapshot(java.io.InputStream, boolean)}.
+     *
+     * @param replace svuota la knowledge base esistente prima dell'import
+     * @param request richiesta HTTP il cui corpo è lo snapshot
+     * @return conteggi importati o errore
+     */
+    @PostMapping(value = "/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> importSnapshot(@RequestParam(value = "replace", defaultValue = "false") boolean replace,
+                                            HttpServletRequest request,
+                                            Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        try {
+            SnapshotSummary summary = snapshotService.importSnapshot(request.getInputStream(), replace);
+            return ResponseEntity.ok(summary);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Snapshot import failed: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(Map.of("error", "Snapshot non valido: " + e.getMessage()));
+        } catch (RuntimeException e) {
+            log.error("Snapshot import failed: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Errore durante l'import dello snapshot: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Espone latenza e token medi per route del routing per complessità (modello piccolo vs grande).
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/model-routes}; delega a
+     * {@link ModelRouteMetrics#snapshot()}.
+     *
+     * @return statistiche per route
+     */
+    @GetMapping("/model-routes")
+    public ResponseEntity<?> modelRoutes(Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(modelRouteMetrics.snapshot());
+    }
+
+    /**
+     * Espone l'utilizzo odierno del modello per utente e globale rispetto alle quote.
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/usage}; delega a
+     * {@link UsageQuotaService#currentUsage()}.
+     *
+     * @return utilizzo per utente, con il totale globale in testa
+     */
+    @GetMapping("/usage")
+    public ResponseEntity<?> usage(Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(usageQuotaService.currentUsage());
+    }
+
+    /**
+     * Espone i token consumati per giorno, endpoint e modello, con i token di prompt ripartiti per sezione
+     * (sistema, chunk, storia, domanda), e le distribuzioni recenti dei token sul nodo.
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/token-usage}; delega a
+     * {@link TokenUsageService#report(int)}.
+     *
+     * @param days giorni da includere, oggi compreso
+     * @return aggregati giornalieri e istogrammi
+     */
+    @GetMapping("/token-usage")
+    public ResponseEntity<?> tokenUsage(@RequestParam(value = "days", defaultValue = "7") int days,
+                                        Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        if (days < 1) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Parametri non validi"));
+        }
+        return ResponseEntity.ok(tokenUsageService.report(days));
+    }
+
+    /**
+     * Elenca le ricerche vettoriali lente più recenti, con parametri, piano di esecuzione catturato
+     * e statistiche degli indici vettoriali.
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/slow-searches}; delega a
+     * {@link SlowSearchService#report(int)}.
+     *
+     * @param limit numero massimo di ricerche
+     * @return ricerche lente dalla più recente e statistiche correnti degli indici
+     */
+    @GetMapping("/slow-searches")
+    public ResponseEntity<?> slowSearches(@RequestParam(value = "limit", defaultValue = "50") int limit,
+                                          Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        if (limit < 1 || limit > MAX_SLOW_SEARCHES) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Parametri non validi"));
+        }
+        return ResponseEntity.ok(slowSearchService.report(limit));
+    }
+
+    /**
+     * Mostra i parametri di retrieval in uso, i bracci dell'esperimento e le metriche raccolte per ciascun braccio.
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/retrieval-tuning}; delega a
+     * {@link RetrievalTuningService#status()}.
+     *
+     * @return configurazione corrente e statistiche per braccio
+     */
+    @GetMapping("/retrieval-tuning")
+    public ResponseEntity<?> retrievalTuning(Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(retrievalTuningService.status());
+    }
+
+    /**
+     * Sostituisce a caldo i parametri di retrieval e i bracci dell'esperimento, senza riavvio.
+     * La modifica vale per il solo nodo corrente e si perde al riavvio.
+     * Chiamata da Spring MVC tramite {@code PUT /api/admin/retrieval-tuning}; delega a
+     * {@link RetrievalTuningService#update(RetrievalTuningConfig)}.
+     *
+     * @param config nuovi parametri di default e bracci
+     * @return configurazione applicata e statistiche per braccio
+     */
+    @PutMapping("/retrieval-tuning")
+    public ResponseEntity<?> updateRetrievalTuning(@RequestBody RetrievalTuningConfig config,
+                                                   Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        try {
+            return ResponseEntity.ok(retrievalTuningService.update(config));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Elenca le domande più frequenti registrate nel log delle query.
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/top-queries}; delega a
+     * {@link QueryTelemetryService#topQueries(int, LocalDateTime)}.
+     *
+     * @param limit numero massimo di domande
+     * @param days ampiezza della finestra in giorni
+     * @return domande con frequenza, score medio e durata media
+     */
+    @GetMapping("/top-queries")
+    public ResponseEntity<?> topQueries(@RequestParam(value = "limit", defaultValue = "20") int limit,
+                                        @RequestParam(value = "days", defaultValue = "7") int days,
+                                        Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        if (limit < 1 || limit > MAX_TOP_QUERIES || days < 1) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Parametri non validi"));
+        }
+        return ResponseEntity.ok(queryTelemetryService.topQueries(limit, LocalDateTime.now().minusDays(days)));
+    }
+
+    /**
+     * Espone il lavoro annullato dalle richieste di chat per budget esaurito o annullamento del client.
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/cancelled-work}; delega a
+     * {@link RequestDeadlineService#snapshot()}.
+     *
+     * @return richieste annullate per motivo e lavoro annullato per fase
+     */
+    @GetMapping("/cancelled-work")
+    public ResponseEntity<?> cancelledWork(Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(requestDeadlineService.snapshot());
+    }
+
+    /**
+     * Mostra lo stato della registrazione JFR di questa istanza.
+     * Chiamata da Spring MVC tramite {@code GET /api/admin/jfr}; delega a {@link FlightRecorderService#status()}.
+     *
+     * @return nome, stato, durata e dimensione della registrazione
+     */
+    @GetMapping("/jfr")
+    public ResponseEntity<?> flightRecording(Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(flightRecorderService.status());
+    }
+
+    /**
+     * Avvia una registrazione JFR con gli eventi delle pipeline di chat e ingestione.
+     * La registrazione riguarda il solo nodo che riceve la richiesta.
+     * Chiamata da Spring MVC tramite {@code POST /api/admin/jfr/start}; delega a
+     * {@link FlightRecorderService#start(String, Duration)}.
+     *
+     * @param settings configurazione JDK di base ({@code default} o {@code profile})
+     * @param seconds durata in secondi prima dell'arresto automatico, al più {@code app.jfr.max-duration}
+     * @return stato della registrazione avviata o errore
+     */
+    @PostMapping("/jfr/start")
+    public ResponseEntity<?> startFlightRecording(@RequestParam(value = "settings", required = false) String settings,
+                                                  @RequestParam(value = "seconds", required = false) Long seconds,
+                                                  Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        try {
+            Duration duration = seconds != null ? Duration.ofSeconds(seconds) : null;
+            return ResponseEntity.ok(flightRecorderService.start(settings, duration));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("JFR recording start failed: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Impossibile avviare la registrazione JFR: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Ferma la registrazione JFR e la scarica come allegato {@code .jfr}, da aprire con JDK Mission Control
+     * o {@code jfr print}; il file viene eliminato dal server dopo l'invio.
+     * Chiamata da Spring MVC tramite {@code POST /api/admin/jfr/stop}; delega a {@link FlightRecorderService#stop()}.
+     *
+     * @return file della registrazione o errore
+     */
+    @PostMapping("/jfr/stop")
+    public ResponseEntity<?> stopFlightRecording(Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        Path file;
+        try {
+            file = flightRecorderService.stop();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("JFR recording stop failed: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Impossibile completare la registrazione JFR: " + e.getMessage()));
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", file.getFileName().toString());
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    private boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
+
+    private ResponseEntity<Map<String, String>> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Accesso riservato agli admin"));
+    }
+}
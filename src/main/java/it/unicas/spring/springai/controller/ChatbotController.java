@@ -1,18 +1,38 @@
 package it.unicas.spring.springai.controller;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import it.unicas.spring.springai.config.TracingProperties;
 import it.unicas.spring.springai.dto.ChatbotChatRequest;
 import it.unicas.spring.springai.dto.ChatbotChatResponse;
 import it.unicas.spring.springai.service.ChatbotService;
+import it.unicas.spring.springai.service.ConversationSessionService;
+import it.unicas.spring.springai.service.DeadlineExceededException;
+import it.unicas.spring.springai.service.DeferredAnswerService;
+import it.unicas.spring.springai.service.QuotaExceededException;
+import it.unicas.spring.springai.service.RequestDeadline;
+import it.unicas.spring.springai.service.RequestDeadlineService;
+import it.unicas.spring.springai.service.StageTimings;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/chatbot")
@@ -20,6 +40,26 @@ import java.util.Map;
 public class ChatbotController {
 
     private final ChatbotService chatbotService;
+    private final ConversationSessionService conversationSessionService;
+    private final DeferredAnswerService deferredAnswerService;
+    private final RequestDeadlineService requestDeadlineService;
+    private final ObservationRegistry observationRegistry;
+    private final TracingProperties tracingProperties;
+
+    /**
+     * Margine oltre il budget concesso alla richiesta per restituire la risposta degradata prima del 504.
+     */
+    private static final long RESPONSE_GRACE_MS = 1_000;
+
+    /**
+     * Attesa suggerita al client quando il pool delle richieste di chat è saturo.
+     */
+    private static final int OVERLOAD_RETRY_AFTER_SECONDS = 2;
+
+    /**
+     * Stato restituito alle richieste annullate dal client (convenzione "client closed request").
+     */
+    private static final int CLIENT_CLOSED_REQUEST = 499;
 
     /**
      * Espone il prompt di sistema di default usato dal chatbot.
@@ -36,18 +76,126 @@ public class ChatbotController {
     /**
      * Gestisce una richiesta di chat RAG e restituisce risposta con fonti.
      * Chiamata da Spring MVC tramite {@code POST /api/chatbot/chat}; delega a
-     * {@link ChatbotService#chat(ChatbotChatRequest)}.
+     * {@link ChatbotService#chat(ChatbotChatRequest, String)} su un thread dedicato, con un budget di tempo
+     * letto dall'header {@code X-Request-Timeout-Ms} (o di default). Allo scadere del budget retrieval e generazione
+     * ancora in corso vengono annullate. Il Servlet API non segnala la disconnessione del client: se la richiesta
+     * porta l'header {@code X-Request-Id}, il client la annulla esplicitamente con
+     * {@link #cancelChat(String, Authentication)}. Con {@code app.chat.tracing.server-timing}
+     * la risposta riporta la durata delle fasi nell'header {@code Server-Timing}.
      *
-     * @param request domanda utente, storia conversazione e prompt opzionale
-     * @return risposta chatbot o errore di validazione/esecuzione
+     * @param request domanda utente, id sessione (o storia iniziale) e prompt opzionale
+     * @param timeoutMs budget richiesto dal client in millisecondi, opzionale
+     * @param requestId identificativo scelto dal client per annullare la richiesta, opzionale
+     * @param authentication utente autenticato proprietario della sessione
+     * @return risposta chatbot, 429 se le quote sono esaurite, 503 se il pool delle richieste è saturo,
+     *         504 se il budget è esaurito, o errore di validazione/esecuzione
      */
     @PostMapping("/chat")
-    public ResponseEntity<?> chat(@RequestBody ChatbotChatRequest request) {
+    public DeferredResult<ResponseEntity<?>> chat(@RequestBody ChatbotChatRequest request,
+                                                  @RequestHeader(name = RequestDeadlineService.HEADER, required = false) Long timeoutMs,
+                                                  @RequestHeader(name = RequestDeadlineService.REQUEST_ID_HEADER, required = false) String requestId,
+                                                  Authentication authentication) {
+        String username = authentication != null ? authentication.getName() : null;
+        RequestDeadline deadline = requestDeadlineService.start(timeoutMs);
+
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(deadline.remainingMillis() + RESPONSE_GRACE_MS);
+        Future<?> execution;
+        try {
+            execution = requestDeadlineService.execute(deadline, () -> result.setResult(tracedChatResponse(request, username)));
+        } catch (RejectedExecutionException e) {
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(OVERLOAD_RETRY_AFTER_SECONDS))
+                    .body(Map.of("error", "Servizio momentaneamente sovraccarico, riprova tra poco")));
+            return result;
+        }
+
+        result.onTimeout(() -> {
+            requestDeadlineService.cancel(deadline, execution, RequestDeadline.CancelReason.BUDGET_EXHAUSTED);
+            result.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(Map.of("error", "La richiesta ha superato il tempo massimo di risposta")));
+        });
+        if (username != null && requestId != null && !requestId.isBlank()) {
+            requestDeadlineService.track(username, requestId, () -> {
+                requestDeadlineService.cancel(deadline, execution, RequestDeadline.CancelReason.CLIENT_CANCELLED);
+                result.setResult(ResponseEntity.status(CLIENT_CLOSED_REQUEST)
+                        .body(Map.of("error", "Richiesta annullata")));
+            });
+            result.onCompletion(() -> requestDeadlineService.untrack(username, requestId));
+        }
+        return result;
+    }
+
+    /**
+     * Annulla una richiesta di chat ancora in corso, interrompendo retrieval e generazione.
+     * Chiamata da Spring MVC tramite {@code POST /api/chatbot/chat/{requestId}/cancel}, inviata dal client
+     * quando abbandona la risposta (nuova chat, chiusura della pagina).
+     *
+     * @param requestId identificativo inviato nell'header {@code X-Request-Id} della richiesta
+     * @param authentication utente autenticato proprietario della richiesta
+     * @return 204 anche se la richiesta è già conclusa
+     */
+    @PostMapping("/chat/{requestId}/cancel")
+    public ResponseEntity<?> cancelChat(@PathVariable String requestId, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Non autenticato"));
+        }
+        requestDeadlineService.cancel(authentication.getName(), requestId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Esegue il turno di chat dentro l'observation {@value StageTimings#OBSERVATION}, padre delle span di retrieval,
+     * embedding, query vettoriali e chiamata LLM, e aggiunge l'header {@code Server-Timing} se abilitato.
+     * Chiamata da {@link #chat(ChatbotChatRequest, Long, String, Authentication)} sul thread della richiesta.
+     *
+     * @param request richiesta di chat
+     * @param username utente autenticato
+     * @return risposta HTTP da pubblicare sul {@link DeferredResult}
+     */
+    private ResponseEntity<?> tracedChatResponse(ChatbotChatRequest request, String username) {
+        StageTimings timings = new StageTimings();
+        Observation observation = Observation.createNotStarted(StageTimings.OBSERVATION, observationRegistry)
+                .contextualName("chat");
+        observation.getContext().put(StageTimings.class, timings);
+
+        ResponseEntity<?> response;
+        observation.start();
+        try (Observation.Scope ignored = observation.openScope()) {
+            response = chatResponse(request, username);
+            observation.lowCardinalityKeyValue("http.status_code", String.valueOf(response.getStatusCode().value()));
+        } finally {
+            observation.stop();
+        }
+
+        if (!tracingProperties.isServerTiming()) {
+            return response;
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header("Server-Timing", timings.toHeader())
+                .body(response.getBody());
+    }
+
+    /**
+     * Esegue il turno di chat e traduce le eccezioni del servizio in risposte HTTP.
+     * Chiamata da {@link #tracedChatResponse(ChatbotChatRequest, String)}.
+     *
+     * @param request richiesta di chat
+     * @param username utente autenticato
+     * @return risposta HTTP da pubblicare sul {@link DeferredResult}
+     */
+    private ResponseEntity<?> chatResponse(ChatbotChatRequest request, String username) {
         try {
-            ChatbotChatResponse response = chatbotService.chat(request);
+            ChatbotChatResponse response = chatbotService.chat(request, username);
             return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of("error", e.getMessage()));
+        } catch (DeadlineExceededException e) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             String message = e.getMessage() != null ? e.getMessage() : "Errore durante la chat";
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", message));
@@ -56,4 +204,77 @@ public class ChatbotController {
                     .body(Map.of("error", "Errore durante la chat: " + e.getMessage()));
         }
     }
+
+    /**
+     * Avvia la retrieval speculativa della domanda che l'utente sta scrivendo; la successiva
+     * {@code POST /api/chatbot/chat} con la stessa domanda riusa il risultato.
+     * Chiamata da Spring MVC tramite {@code POST /api/chatbot/prefetch}, con debounce lato frontend; delega a
+     * {@link ChatbotService#prefetch(String, String)}.
+     *
+     * @param request domanda parziale
+     * @param authentication utente autenticato
+     * @return 202 se avviata, 204 se non necessaria, 429 se l'utente supera il limite di frequenza
+     */
+    @PostMapping("/prefetch")
+    public ResponseEntity<?> prefetch(@RequestBody ChatbotChatRequest request, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Non autenticato"));
+        }
+
+        String question = request != null ? request.question() : null;
+        return switch (chatbotService.prefetch(question, authentication.getName())) {
+            case ACCEPTED -> ResponseEntity.accepted().build();
+            case SKIPPED -> ResponseEntity.noContent().build();
+            case RATE_LIMITED -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        };
+    }
+
+    /**
+     * Chiude una sessione chatbot server-side eliminandone riassunto e turni.
+     * Chiamata da Spring MVC tramite {@code DELETE /api/chatbot/sessions/{sessionId}} quando l'utente
+     * avvia una nuova chat.
+     *
+     * @param sessionId id sessione da chiudere
+     * @param authentication utente autenticato
+     * @return 204 anche se la sessione non esiste più
+     */
+    @DeleteMapping("/sessions/{sessionId}")
+    public ResponseEntity<?> closeSession(@PathVariable String sessionId, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Non autenticato"));
+        }
+        conversationSessionService.close(sessionId, authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Restituisce la risposta completa di un turno a cui il chatbot ha risposto in modalità degradata.
+     * Chiamata da Spring MVC tramite {@code GET /api/chatbot/answers/{id}}; il client interroga l'endpoint
+     * con il {@code pendingAnswerId} ricevuto finché la risposta non è pronta.
+     *
+     * @param id id della risposta differita
+     * @param authentication utente autenticato proprietario della risposta
+     * @return 200 con la risposta completa, 202 se ancora in generazione, 404 se sconosciuta o scaduta
+     */
+    @GetMapping("/answers/{id}")
+    public ResponseEntity<?> pendingAnswer(@PathVariable String id, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Non autenticato"));
+        }
+
+        Optional<DeferredAnswerService.PendingAnswer> pending = deferredAnswerService.find(id, authentication.getName());
+        if (pending.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Risposta non disponibile"));
+        }
+
+        CompletableFuture<ChatbotChatResponse> answer = pending.get().answer();
+        if (!answer.isDone()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("status", "PENDING"));
+        }
+        if (answer.isCompletedExceptionally()) {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                    .body(Map.of("error", "Il modello non è riuscito a completare la risposta"));
+        }
+        return ResponseEntity.ok(answer.join());
+    }
 }
@@ -1,5 +1,6 @@
 package it.unicas.spring.springai.controller;
 
+import it.unicas.spring.springai.model.CategoriaDispositivo;
 import it.unicas.spring.springai.model.DocumentEntity;
 import it.unicas.spring.springai.service.PdfIngestionService;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +16,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -31,10 +33,13 @@ public class DocumentController {
      * {@link PdfIngestionService#uploadAndProcessPdf(MultipartFile)}.
      *
      * @param file file PDF inviato dal client
+     * @param categoria categoria opzionale (SMARTPHONE, SMARTWATCH, TABLET) per la partizione vettoriale
      * @return payload JSON con metadati del documento o errore di validazione/elaborazione
      */
     @PostMapping("/upload")
-    public ResponseEntity<?> uploadPdf(@RequestParam("file") MultipartFile file, Authentication authentication) {
+    public ResponseEntity<?> uploadPdf(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "categoria", required = false) String categoria,
+                                       Authentication authentication) {
         if (!isAdmin(authentication)) {
             return forbidden();
         }
@@ -50,8 +55,17 @@ public class DocumentController {
             return ResponseEntity.badRequest().body(Map.of("error", "Solo file PDF sono accettati"));
         }
 
+        CategoriaDispositivo categoriaDispositivo = null;
+        if (categoria != null && !categoria.isBlank()) {
+            try {
+                categoriaDispositivo = CategoriaDispositivo.valueOf(categoria.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Categoria non valida: " + categoria));
+            }
+        }
+
         try {
-            DocumentEntity document = pdfIngestionService.uploadAndProcessPdf(file);
+            DocumentEntity document = pdfIngestionService.uploadAndProcessPdf(file, categoriaDispositivo);
             //log.info("File uploaded and processed: {}", document.getOriginalFileName());
             Map<String, Object> response = new HashMap<>();
             response.put("id", document.getId());
@@ -60,6 +74,7 @@ public class DocumentController {
             response.put("uploadDate", document.getUploadDate());
             response.put("processed", document.isProcessed());
             response.put("chunkCount", document.getChunkCount());
+            response.put("categoria", document.getCategoria());
             response.put("message", "File caricato e processato con successo");
 
             return ResponseEntity.ok(response);
@@ -71,6 +86,65 @@ public class DocumentController {
         }
     }
 
+    /**
+     * Carica più PDF in un'unica operazione usando il percorso massivo (embedding a batch + COPY).
+     * Chiamata da Spring MVC tramite {@code POST /api/documents/bulk-upload}; delega a
+     * {@link PdfIngestionService#bulkUploadAndProcessPdfs(List, CategoriaDispositivo)}.
+     *
+     * @param files file PDF inviati dal client
+     * @param categoria categoria opzionale comune a tutti i file
+     * @return riepilogo dei documenti caricati o errore di validazione/elaborazione
+     */
+    @PostMapping("/bulk-upload")
+    public ResponseEntity<?> bulkUploadPdfs(@RequestParam("files") List<MultipartFile> files,
+                                            @RequestParam(value = "categoria", required = false) String categoria,
+                                            Authentication authentication) {
+        if (!isAdmin(authentication)) {
+            return forbidden();
+        }
+
+        if (files == null || files.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Nessun file caricato"));
+        }
+        for (MultipartFile file : files) {
+            String originalName = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+            boolean isPdf = MediaType.APPLICATION_PDF_VALUE.equals(file.getContentType()) || originalName.endsWith(".pdf");
+            if (file.isEmpty() || !isPdf) {
+                return ResponseEntity.badRequest().body(Map.of("error", "File non valido: " + file.getOriginalFilename()));
+            }
+        }
+
+        CategoriaDispositivo categoriaDispositivo = null;
+        if (categoria != null && !categoria.isBlank()) {
+            try {
+                categoriaDispositivo = CategoriaDispositivo.valueOf(categoria.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Categoria non valida: " + categoria));
+            }
+        }
+
+        try {
+            List<DocumentEntity> documents = pdfIngestionService.bulkUploadAndProcessPdfs(files, categoriaDispositivo);
+            List<Map<String, Object>> items = documents.stream().map(doc -> {
+                Map<String, Object> map = new HashMap<>();
+                map.put("id", doc.getId());
+                map.put("fileName", doc.getOriginalFileName());
+                map.put("chunkCount", doc.getChunkCount());
+                map.put("categoria", doc.getCategoria());
+                return map;
+            }).toList();
+
+            return ResponseEntity.ok(Map.of(
+                    "documents", items,
+                    "message", documents.size() + " file caricati e processati con successo"
+            ));
+        } catch (IOException e) {
+            log.error("Error bulk uploading files: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Errore durante il caricamento dei file: " + e.getMessage()));
+        }
+    }
+
     /**
      * Restituisce la lista dei documenti caricati con i metadati principali.
      * Chiamata da Spring MVC tramite {@code GET /api/documents}; usa
@@ -94,6 +168,7 @@ public class DocumentController {
             map.put("uploadDate", doc.getUploadDate());
             map.put("processed", doc.isProcessed());
             map.put("chunkCount", doc.getChunkCount());
+            map.put("categoria", doc.getCategoria());
             return map;
         }).toList();
 
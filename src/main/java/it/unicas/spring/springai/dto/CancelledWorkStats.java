@@ -0,0 +1,18 @@
+package it.unicas.spring.springai.dto;
+
+import java.util.Map;
+
+/**
+ * Lavoro annullato per budget esaurito o annullamento del client, dall'avvio del nodo.
+ * Costruita da {@code RequestDeadlineService} ed esposta da {@code GET /api/admin/cancelled-work}.
+ *
+ * @param cancelledRequests richieste di chat annullate
+ * @param requestsByReason richieste annullate per motivo
+ * @param workByStage unità di lavoro saltate o interrotte per fase (embedding, vector-search, generation, ...)
+ */
+public record CancelledWorkStats(
+        long cancelledRequests,
+        Map<String, Long> requestsByReason,
+        Map<String, Long> workByStage
+) {
+}
@@ -7,12 +7,18 @@ import java.util.List;
  * Ricevuto dal controller chatbot e consumato da {@code ChatbotService}.
  *
  * @param question domanda principale utente
- * @param history ultimi turni conversazione
+ * @param history ultimi turni conversazione (usati solo per inizializzare una nuova sessione)
  * @param systemPrompt istruzioni custom opzionali per il modello
+ * @param sessionId id della sessione server-side restituito dalla risposta precedente
  */
 public record ChatbotChatRequest(
         String question,
         List<ChatTurn> history,
-        String systemPrompt
+        String systemPrompt,
+        String sessionId
 ) {
+
+    public ChatbotChatRequest(String question, List<ChatTurn> history, String systemPrompt) {
+        this(question, history, systemPrompt, null);
+    }
 }
@@ -8,9 +8,23 @@ import java.util.List;
  *
  * @param answer testo della risposta assistente
  * @param sources fonti/chunk usati per la risposta
+ * @param sessionId id della sessione server-side da inviare nelle richieste successive
+ * @param degraded {@code true} se la risposta è estrattiva perché il modello non ha risposto in tempo
+ * @param pendingAnswerId id della risposta completa da ritirare con {@code GET /api/chatbot/answers/{id}}, se prevista
  */
 public record ChatbotChatResponse(
         String answer,
-        List<ChatbotSource> sources
+        List<ChatbotSource> sources,
+        String sessionId,
+        boolean degraded,
+        String pendingAnswerId
 ) {
+
+    public ChatbotChatResponse(String answer, List<ChatbotSource> sources, String sessionId) {
+        this(answer, sources, sessionId, false, null);
+    }
+
+    public ChatbotChatResponse(String answer, List<ChatbotSource> sources) {
+        this(answer, sources, null);
+    }
 }
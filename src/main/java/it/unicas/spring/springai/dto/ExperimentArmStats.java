@@ -0,0 +1,26 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Metriche di un braccio dell'esperimento sui parametri di retrieval, dall'avvio del nodo.
+ * Costruite da {@code RetrievalTuningService} ed esposte dall'endpoint admin.
+ *
+ * @param arm nome del braccio ({@code control} per i valori di default)
+ * @param parameters parametri correnti del braccio ({@code null} se il braccio è stato rimosso)
+ * @param turns turni di chat serviti
+ * @param avgLatencyMs durata media del turno in millisecondi
+ * @param p95LatencyMs durata al 95° percentile sulla finestra recente
+ * @param emptyResultRate frazione di turni senza chunk recuperati
+ * @param avgPromptTokens token di input medi per chiamata al modello
+ * @param avgCompletionTokens token di output medi per chiamata al modello
+ */
+public record ExperimentArmStats(
+        String arm,
+        RetrievalParameters parameters,
+        long turns,
+        double avgLatencyMs,
+        double p95LatencyMs,
+        double emptyResultRate,
+        double avgPromptTokens,
+        double avgCompletionTokens
+) {
+}
@@ -0,0 +1,23 @@
+package it.unicas.spring.springai.dto;
+
+import java.time.Instant;
+
+/**
+ * Stato della registrazione JFR avviata dall'endpoint admin su questa istanza.
+ *
+ * @param name nome della registrazione, {@code null} se non ne è stata avviata nessuna
+ * @param state stato JFR ({@code RUNNING}, {@code STOPPED}, ...) oppure {@code NONE}
+ * @param startedAt istante di avvio
+ * @param maxDurationSeconds durata massima prima dell'arresto automatico
+ * @param baseConfiguration configurazione JDK sommata al profilo dell'applicazione
+ * @param sizeBytes byte registrati finora
+ */
+public record FlightRecordingStatus(
+        String name,
+        String state,
+        Instant startedAt,
+        Long maxDurationSeconds,
+        String baseConfiguration,
+        long sizeBytes
+) {
+}
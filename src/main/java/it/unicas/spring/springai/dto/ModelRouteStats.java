@@ -0,0 +1,24 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Statistiche cumulative di una route del routing per complessità.
+ * Costruite da {@code ModelRouteMetrics} ed esposte dall'endpoint admin.
+ *
+ * @param route fascia del modello (SMALL, LARGE)
+ * @param model modello configurato per la route
+ * @param maxTokens limite token di output della route
+ * @param requests chiamate servite
+ * @param avgLatencyMs latenza media della chiamata al modello
+ * @param avgPromptTokens token di input medi
+ * @param avgCompletionTokens token di output medi
+ */
+public record ModelRouteStats(
+        String route,
+        String model,
+        Integer maxTokens,
+        long requests,
+        double avgLatencyMs,
+        double avgPromptTokens,
+        double avgCompletionTokens
+) {
+}
@@ -0,0 +1,19 @@
+package it.unicas.spring.springai.dto;
+
+import java.util.List;
+
+/**
+ * Report complessivo del benchmark di quantizzazione su una tabella vettoriale.
+ *
+ * @param table tabella misurata
+ * @param queries numero di query campionate dal corpus
+ * @param topK profondità della ricerca
+ * @param modes risultati per modalità
+ */
+public record QuantizationBenchmarkReport(
+        String table,
+        int queries,
+        int topK,
+        List<QuantizationBenchmarkResult> modes
+) {
+}
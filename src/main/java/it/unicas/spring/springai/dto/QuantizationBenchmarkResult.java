@@ -0,0 +1,24 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Esito del benchmark di una modalità di quantizzazione rispetto alla ricerca esatta.
+ * Costruito da {@code QuantizationBenchmarkService} ed esposto dall'endpoint admin.
+ *
+ * @param mode modalità di indice (FULL, HALFVEC, BINARY)
+ * @param indexPresent se l'indice HNSW della modalità esisteva al momento della misura
+ * @param recallAtK recall@k media rispetto alla ricerca esatta
+ * @param avgLatencyMs latenza media per query in millisecondi
+ * @param p95LatencyMs latenza al 95° percentile in millisecondi
+ * @param recallLossVsFull perdita di recall rispetto alla modalità FULL (punti percentuali)
+ * @param latencyGainVsFullPct riduzione percentuale di latenza media rispetto a FULL
+ */
+public record QuantizationBenchmarkResult(
+        String mode,
+        boolean indexPresent,
+        double recallAtK,
+        double avgLatencyMs,
+        double p95LatencyMs,
+        double recallLossVsFull,
+        double latencyGainVsFullPct
+) {
+}
@@ -0,0 +1,20 @@
+package it.unicas.spring.springai.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Report del benchmark del retrieval sul corpus di riferimento.
+ *
+ * @param documents PDF del corpus
+ * @param questions domande di riferimento
+ * @param chunksBySize numero di chunk prodotti per dimensione dei chunk
+ * @param results risultati per combinazione di parametri
+ */
+public record RetrievalBenchmarkReport(
+        int documents,
+        int questions,
+        Map<Integer, Integer> chunksBySize,
+        List<RetrievalBenchmarkResult> results
+) {
+}
@@ -0,0 +1,35 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Qualità e latenza del retrieval per una combinazione di parametri della griglia.
+ * Costruito da {@code RetrievalBenchmarkService} ed esposto dall'endpoint admin.
+ *
+ * @param chunkSize dimensione dei chunk in token
+ * @param mode modalità di ricerca (EXACT, FULL, HALFVEC, BINARY)
+ * @param efSearch valore di {@code hnsw.ef_search} ({@code null} per la ricerca esatta)
+ * @param topK numero massimo di chunk recuperati
+ * @param threshold similarità minima dei chunk restituiti
+ * @param recallAtK frazione media delle pagine attese presenti tra i chunk restituiti
+ * @param mrr mean reciprocal rank del primo chunk pertinente
+ * @param avgChunks numero medio di chunk restituiti dopo la soglia
+ * @param avgLatencyMs latenza media della query SQL in millisecondi
+ * @param p95LatencyMs latenza al 95° percentile in millisecondi
+ * @param recallLossVsExact perdita di recall rispetto alla ricerca esatta con stessi chunk, topK e soglia
+ *                          (punti percentuali, {@code null} se EXACT non è nella griglia)
+ * @param production se la combinazione corrisponde ai parametri in uso in produzione
+ */
+public record RetrievalBenchmarkResult(
+        int chunkSize,
+        String mode,
+        Integer efSearch,
+        int topK,
+        double threshold,
+        double recallAtK,
+        double mrr,
+        double avgChunks,
+        double avgLatencyMs,
+        double p95LatencyMs,
+        Double recallLossVsExact,
+        boolean production
+) {
+}
@@ -0,0 +1,23 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Braccio di un esperimento A/B sui parametri di retrieval: i campi {@code null} ereditano i valori di default.
+ *
+ * @param name nome del braccio, riportato nelle metriche
+ * @param percent percentuale di utenti assegnati
+ * @param searchTopK chunk delle ricerche senza topK esplicito
+ * @param chatTopK chunk per turno di chat
+ * @param similarityThreshold similarità minima
+ * @param maxChunkChars caratteri massimi per chunk
+ * @param maxHistoryMessages messaggi di storia nel prompt
+ */
+public record RetrievalExperimentArm(
+        String name,
+        int percent,
+        Integer searchTopK,
+        Integer chatTopK,
+        Double similarityThreshold,
+        Integer maxChunkChars,
+        Integer maxHistoryMessages
+) {
+}
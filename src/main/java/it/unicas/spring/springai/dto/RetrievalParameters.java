@@ -0,0 +1,20 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Parametri di retrieval e prompt applicati a un turno di chat.
+ * Risolti da {@code RetrievalTuningService} per il braccio dell'utente.
+ *
+ * @param searchTopK chunk recuperati dalle ricerche senza topK esplicito
+ * @param chatTopK chunk recuperati per ogni turno di chat
+ * @param similarityThreshold similarità coseno minima dei chunk
+ * @param maxChunkChars caratteri massimi di ogni chunk nel prompt
+ * @param maxHistoryMessages messaggi della storia client nel prompt
+ */
+public record RetrievalParameters(
+        int searchTopK,
+        int chatTopK,
+        double similarityThreshold,
+        int maxChunkChars,
+        int maxHistoryMessages
+) {
+}
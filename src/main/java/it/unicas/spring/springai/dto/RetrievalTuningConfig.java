@@ -0,0 +1,16 @@
+package it.unicas.spring.springai.dto;
+
+import java.util.List;
+
+/**
+ * Configurazione runtime dei parametri di retrieval: valori di default (braccio {@code control}) ed esperimenti.
+ * Letta e scritta dall'endpoint admin {@code /api/admin/retrieval-tuning}.
+ *
+ * @param defaults parametri degli utenti non assegnati a un braccio
+ * @param arms bracci dell'esperimento
+ */
+public record RetrievalTuningConfig(
+        RetrievalParameters defaults,
+        List<RetrievalExperimentArm> arms
+) {
+}
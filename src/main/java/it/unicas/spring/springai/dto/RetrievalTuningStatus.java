@@ -0,0 +1,15 @@
+package it.unicas.spring.springai.dto;
+
+import java.util.List;
+
+/**
+ * Configurazione corrente dei parametri di retrieval e metriche per braccio.
+ *
+ * @param config valori di default ed esperimenti in vigore
+ * @param arms metriche per braccio
+ */
+public record RetrievalTuningStatus(
+        RetrievalTuningConfig config,
+        List<ExperimentArmStats> arms
+) {
+}
@@ -0,0 +1,42 @@
+package it.unicas.spring.springai.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ricerca vettoriale che ha superato la soglia di lentezza, con l'eventuale piano di esecuzione catturato.
+ * Costruita da {@code SlowSearchService} ed esposta dall'endpoint admin.
+ *
+ * @param id identificativo progressivo
+ * @param at istante della ricerca
+ * @param query testo cercato
+ * @param topK numero massimo di chunk richiesti
+ * @param similarityThreshold similarità minima
+ * @param path percorso di ricerca ({@code partitions} o {@code vector-store})
+ * @param tables tabelle vettoriali interrogate
+ * @param mode modalità di quantizzazione
+ * @param results chunk restituiti
+ * @param durationMs durata della ricerca in millisecondi
+ * @param explain stato della cattura del piano ({@code NOT_SAMPLED}, {@code PENDING}, {@code DONE}, {@code FAILED})
+ * @param plans righe di {@code EXPLAIN (ANALYZE, BUFFERS)} per tabella
+ * @param indexStats statistiche degli indici delle tabelle al momento della cattura
+ * @param explainError errore della cattura, se fallita
+ */
+public record SlowSearch(
+        long id,
+        LocalDateTime at,
+        String query,
+        int topK,
+        double similarityThreshold,
+        String path,
+        List<String> tables,
+        String mode,
+        int results,
+        long durationMs,
+        String explain,
+        Map<String, List<String>> plans,
+        List<VectorIndexStats> indexStats,
+        String explainError
+) {
+}
@@ -0,0 +1,23 @@
+package it.unicas.spring.springai.dto;
+
+import java.util.List;
+
+/**
+ * Report delle ricerche vettoriali lente del nodo.
+ *
+ * @param thresholdMs soglia di lentezza in millisecondi
+ * @param searches ricerche eseguite dall'avvio
+ * @param slowSearches ricerche lente dall'avvio
+ * @param explained piani di esecuzione catturati dall'avvio
+ * @param entries ricerche lente più recenti, dalla più recente
+ * @param indexStats statistiche correnti degli indici vettoriali
+ */
+public record SlowSearchReport(
+        long thresholdMs,
+        long searches,
+        long slowSearches,
+        long explained,
+        List<SlowSearch> entries,
+        List<VectorIndexStats> indexStats
+) {
+}
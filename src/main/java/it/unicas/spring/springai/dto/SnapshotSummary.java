@@ -0,0 +1,16 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Esito di un export/import di snapshot della knowledge base.
+ * Costruito da {@code KnowledgeBaseSnapshotService} e restituito dagli endpoint admin e dal runner CLI.
+ *
+ * @param documents documenti (metadati + PDF) trasferiti
+ * @param chunks chunk vettoriali trasferiti
+ * @param durationMs durata complessiva in millisecondi
+ */
+public record SnapshotSummary(
+        long documents,
+        long chunks,
+        long durationMs
+) {
+}
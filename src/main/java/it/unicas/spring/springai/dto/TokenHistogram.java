@@ -0,0 +1,29 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Distribuzione recente dei token per endpoint, modello e tipo, letta dagli istogrammi Micrometer del nodo.
+ * Costruita da {@code TokenUsageService} ed esposta dall'endpoint admin.
+ *
+ * @param endpoint endpoint applicativo
+ * @param model modello
+ * @param type {@code prompt}, {@code completion}, {@code total} o la sezione del prompt
+ *             ({@code prompt.system}, {@code prompt.chunks}, {@code prompt.history}, {@code prompt.question})
+ * @param count chiamate registrate dall'avvio
+ * @param mean media dall'avvio
+ * @param p50 mediana sulla finestra recente
+ * @param p95 95° percentile sulla finestra recente
+ * @param p99 99° percentile sulla finestra recente
+ * @param max massimo sulla finestra recente
+ */
+public record TokenHistogram(
+        String endpoint,
+        String model,
+        String type,
+        long count,
+        double mean,
+        double p50,
+        double p95,
+        double p99,
+        double max
+) {
+}
@@ -0,0 +1,40 @@
+package it.unicas.spring.springai.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Token consumati in una giornata per endpoint e modello, con i token di prompt ripartiti per sezione.
+ * Costruito da {@code TokenUsageRepository} ed esposto dall'endpoint admin.
+ *
+ * @param day giornata
+ * @param endpoint endpoint applicativo che ha chiamato il modello (es. {@code chat})
+ * @param model modello che ha risposto
+ * @param calls chiamate al modello
+ * @param promptTokens token di input
+ * @param completionTokens token di output
+ * @param totalTokens token complessivi
+ * @param avgPromptTokens token di input medi per chiamata
+ * @param avgCompletionTokens token di output medi per chiamata
+ * @param maxPromptTokens prompt più lungo della giornata
+ * @param systemTokens token di input del prompt di sistema
+ * @param chunksTokens token di input dei chunk recuperati
+ * @param historyTokens token di input della storia della conversazione
+ * @param questionTokens token di input della domanda
+ */
+public record TokenUsageDaily(
+        LocalDate day,
+        String endpoint,
+        String model,
+        long calls,
+        long promptTokens,
+        long completionTokens,
+        long totalTokens,
+        double avgPromptTokens,
+        double avgCompletionTokens,
+        long maxPromptTokens,
+        long systemTokens,
+        long chunksTokens,
+        long historyTokens,
+        long questionTokens
+) {
+}
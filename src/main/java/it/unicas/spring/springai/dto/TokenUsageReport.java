@@ -0,0 +1,15 @@
+package it.unicas.spring.springai.dto;
+
+import java.util.List;
+
+/**
+ * Report dei token consumati dalle chiamate al modello.
+ *
+ * @param daily aggregati giornalieri persistiti, dal giorno più recente
+ * @param histograms distribuzioni recenti del nodo
+ */
+public record TokenUsageReport(
+        List<TokenUsageDaily> daily,
+        List<TokenHistogram> histograms
+) {
+}
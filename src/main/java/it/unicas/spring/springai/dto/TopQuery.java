@@ -0,0 +1,18 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Domanda normalizzata tra le più frequenti nel log delle query.
+ * Costruita da {@code QueryLogRepository}; usata dal warm-up e dall'endpoint admin.
+ *
+ * @param query testo normalizzato della domanda
+ * @param count numero di occorrenze nella finestra
+ * @param avgTopScore score medio del miglior chunk recuperato
+ * @param avgTotalMs durata media del turno completo in millisecondi
+ */
+public record TopQuery(
+        String query,
+        long count,
+        double avgTopScore,
+        double avgTotalMs
+) {
+}
@@ -0,0 +1,22 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Utilizzo corrente del modello per un utente (o globale) rispetto ai limiti configurati.
+ * Costruito da {@code UsageQuotaService} ed esposto dall'endpoint admin.
+ *
+ * @param scope username, oppure {@code *} per il totale globale
+ * @param tokensToday token consumati oggi (tutti i nodi, più gli incrementi locali non ancora salvati)
+ * @param tokensPerDayLimit limite giornaliero di token
+ * @param requestsToday richieste servite oggi
+ * @param requestsLastMinute richieste nel minuto corrente su questo nodo
+ * @param requestsPerMinuteLimit limite di richieste al minuto
+ */
+public record UsageQuotaStatus(
+        String scope,
+        long tokensToday,
+        long tokensPerDayLimit,
+        long requestsToday,
+        long requestsLastMinute,
+        int requestsPerMinuteLimit
+) {
+}
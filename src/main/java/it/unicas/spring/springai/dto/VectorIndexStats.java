@@ -0,0 +1,30 @@
+package it.unicas.spring.springai.dto;
+
+/**
+ * Dimensione e utilizzo di un indice di una tabella vettoriale, da {@code pg_stat_user_indexes}
+ * e {@code pg_statio_user_indexes}.
+ *
+ * @param table tabella
+ * @param index nome dell'indice
+ * @param sizeBytes dimensione su disco in byte
+ * @param size dimensione leggibile (es. {@code 412 MB})
+ * @param scans scansioni dell'indice dall'ultimo reset delle statistiche
+ * @param tuplesRead voci dell'indice lette
+ * @param tuplesFetched righe della tabella lette tramite l'indice
+ * @param blocksHit blocchi dell'indice trovati in shared buffers
+ * @param blocksRead blocchi dell'indice letti da disco (o page cache)
+ * @param hitRatio frazione di blocchi trovati in shared buffers ({@code null} se mai letto)
+ */
+public record VectorIndexStats(
+        String table,
+        String index,
+        long sizeBytes,
+        String size,
+        long scans,
+        long tuplesRead,
+        long tuplesFetched,
+        long blocksHit,
+        long blocksRead,
+        Double hitRatio
+) {
+}
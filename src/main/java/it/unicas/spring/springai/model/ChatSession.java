@@ -0,0 +1,34 @@
+package it.unicas.spring.springai.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "chat_sessions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSession {
+
+    @Id
+    @Column(name = "session_id", length = 64)
+    private String sessionId;
+
+    @Column(name = "username", nullable = false, length = 50)
+    private String username;
+
+    @Column(name = "summary", columnDefinition = "TEXT")
+    private String summary;
+
+    @Column(name = "recent_turns", columnDefinition = "TEXT")
+    private String recentTurns;
+
+    @Column(name = "turn_count")
+    private int turnCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -47,6 +47,10 @@ public class DocumentEntity {
     @Column(name = "description")
     private String description;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "categoria", length = 30)
+    private CategoriaDispositivo categoria;
+
     @PrePersist
     protected void onCreate() {
         uploadDate = LocalDateTime.now();
@@ -0,0 +1,13 @@
+package it.unicas.spring.springai.repository;
+
+import it.unicas.spring.springai.model.ChatSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ChatSessionRepository extends JpaRepository<ChatSession, String> {
+
+    Optional<ChatSession> findBySessionIdAndUsername(String sessionId, String username);
+}
@@ -2,6 +2,7 @@ package it.unicas.spring.springai.repository;
 
 import it.unicas.spring.springai.model.DocumentEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,4 +18,7 @@ public interface DocumentRepository extends JpaRepository<DocumentEntity, Long>
     List<DocumentEntity> findAllByOrderByUploadDateDesc();
 
     boolean existsByOriginalFileName(String originalFileName);
+
+    @Query("SELECT d.originalFileName FROM DocumentEntity d WHERE d.processed = true")
+    List<String> findProcessedOriginalFileNames();
 }
@@ -0,0 +1,63 @@
+package it.unicas.spring.springai.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Totali giornalieri di utilizzo del modello per utente (e globale), condivisi tra i nodi.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LlmUsageRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Totali persistiti di una giornata.
+     *
+     * @param tokens token consumati
+     * @param requests richieste servite
+     */
+    public record UsageTotals(long tokens, long requests) {
+    }
+
+    /**
+     * Somma gli incrementi locali ai totali della giornata.
+     * Chiamata da {@code UsageQuotaService} a ogni flush periodico.
+     *
+     * @param scope username o {@code *} per il totale globale
+     * @param day giornata
+     * @param tokens token da aggiungere
+     * @param requests richieste da aggiungere
+     */
+    public void addUsage(String scope, LocalDate day, long tokens, long requests) {
+        jdbcTemplate.update("""
+                INSERT INTO llm_usage (scope, usage_date, tokens, requests, updated_at)
+                VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)
+                ON CONFLICT (scope, usage_date) DO UPDATE
+                SET tokens = llm_usage.tokens + EXCLUDED.tokens,
+                    requests = llm_usage.requests + EXCLUDED.requests,
+                    updated_at = CURRENT_TIMESTAMP
+                """, scope, Date.valueOf(day), tokens, requests);
+    }
+
+    /**
+     * Legge i totali di una giornata (somma di tutti i nodi).
+     *
+     * @param scope username o {@code *}
+     * @param day giornata
+     * @return totali, zero se non ci sono righe
+     */
+    public UsageTotals findTotals(String scope, LocalDate day) {
+        List<UsageTotals> rows = jdbcTemplate.query(
+                "SELECT tokens, requests FROM llm_usage WHERE scope = ? AND usage_date = ?",
+                (rs, rowNum) -> new UsageTotals(rs.getLong("tokens"), rs.getLong("requests")),
+                scope, Date.valueOf(day));
+        return rows.isEmpty() ? new UsageTotals(0, 0) : rows.get(0);
+    }
+}
@@ -0,0 +1,95 @@
+package it.unicas.spring.springai.repository;
+
+import it.unicas.spring.springai.dto.TopQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Persistenza del log delle query chatbot ({@code query_log}).
+ */
+@Repository
+@RequiredArgsConstructor
+public class QueryLogRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Riga del log delle query.
+     *
+     * @param createdAt istante della richiesta
+     * @param query domanda normalizzata
+     * @param resultCount chunk recuperati
+     * @param topScore score del miglior chunk ({@code null} se assente)
+     * @param scores score dei chunk separati da virgola
+     * @param chunkIds id dei chunk recuperati separati da virgola
+     * @param retrievalMs durata della retrieval
+     * @param generationMs durata della chiamata al modello (0 se non eseguita)
+     * @param totalMs durata complessiva del turno
+     */
+    public record QueryLogRow(
+            LocalDateTime createdAt,
+            String query,
+            int resultCount,
+            Double topScore,
+            String scores,
+            String chunkIds,
+            long retrievalMs,
+            long generationMs,
+            long totalMs
+    ) {
+    }
+
+    /**
+     * Inserisce un batch di righe con un'unica istruzione preparata.
+     * Chiamata da {@code QueryTelemetryService} dal thread di scrittura asincrono.
+     *
+     * @param rows righe da inserire
+     */
+    public void insertBatch(List<QueryLogRow> rows) {
+        jdbcTemplate.batchUpdate("""
+                        INSERT INTO query_log (created_at, query, result_count, top_score, scores, chunk_ids,
+                                               retrieval_ms, generation_ms, total_ms)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        """,
+                rows, rows.size(), (ps, row) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(row.createdAt()));
+                    ps.setString(2, row.query());
+                    ps.setInt(3, row.resultCount());
+                    ps.setObject(4, row.topScore());
+                    ps.setString(5, row.scores());
+                    ps.setString(6, row.chunkIds());
+                    ps.setLong(7, row.retrievalMs());
+                    ps.setLong(8, row.generationMs());
+                    ps.setLong(9, row.totalMs());
+                });
+    }
+
+    /**
+     * Aggrega le domande più frequenti in una finestra temporale.
+     *
+     * @param limit numero massimo di domande
+     * @param since inizio della finestra
+     * @return domande ordinate per frequenza decrescente
+     */
+    public List<TopQuery> findTopQueries(int limit, LocalDateTime since) {
+        return jdbcTemplate.query("""
+                        SELECT query, COUNT(*) AS occurrences, AVG(top_score) AS avg_top_score, AVG(total_ms) AS avg_total_ms
+                        FROM query_log
+                        WHERE created_at >= ?
+                        GROUP BY query
+                        ORDER BY occurrences DESC
+                        LIMIT ?
+                        """,
+                (rs, rowNum) -> new TopQuery(
+                        rs.getString("query"),
+                        rs.getLong("occurrences"),
+                        rs.getDouble("avg_top_score"),
+                        rs.getDouble("avg_total_ms")),
+                Timestamp.valueOf(since), limit);
+    }
+}
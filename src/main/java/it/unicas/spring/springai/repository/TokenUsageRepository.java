@@ -0,0 +1,125 @@
+package it.unicas.spring.springai.repository;
+
+import it.unicas.spring.springai.dto.TokenUsageDaily;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Aggregati giornalieri dei token per endpoint e modello ({@code llm_token_usage}), condivisi tra i nodi.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TokenUsageRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Incremento locale da sommare agli aggregati della giornata.
+     *
+     * @param day giornata
+     * @param endpoint endpoint applicativo
+     * @param model modello
+     * @param calls chiamate
+     * @param promptTokens token di input
+     * @param completionTokens token di output
+     * @param maxPromptTokens prompt più lungo dell'incremento
+     * @param systemTokens token del prompt di sistema
+     * @param chunksTokens token dei chunk
+     * @param historyTokens token della storia
+     * @param questionTokens token della domanda
+     */
+    public record UsageDelta(
+            LocalDate day,
+            String endpoint,
+            String model,
+            long calls,
+            long promptTokens,
+            long completionTokens,
+            long maxPromptTokens,
+            long systemTokens,
+            long chunksTokens,
+            long historyTokens,
+            long questionTokens
+    ) {
+    }
+
+    /**
+     * Somma gli incrementi locali agli aggregati giornalieri.
+     * Chiamata da {@code TokenUsageService} a ogni flush periodico.
+     *
+     * @param deltas incrementi per giornata, endpoint e modello
+     */
+    public void addUsage(List<UsageDelta> deltas) {
+        jdbcTemplate.batchUpdate("""
+                        INSERT INTO llm_token_usage (usage_date, endpoint, model, calls, prompt_tokens, completion_tokens,
+                                                     max_prompt_tokens, system_tokens, chunks_tokens, history_tokens,
+                                                     question_tokens, updated_at)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+                        ON CONFLICT (usage_date, endpoint, model) DO UPDATE
+                        SET calls = llm_token_usage.calls + EXCLUDED.calls,
+                            prompt_tokens = llm_token_usage.prompt_tokens + EXCLUDED.prompt_tokens,
+                            completion_tokens = llm_token_usage.completion_tokens + EXCLUDED.completion_tokens,
+                            max_prompt_tokens = GREATEST(llm_token_usage.max_prompt_tokens, EXCLUDED.max_prompt_tokens),
+                            system_tokens = llm_token_usage.system_tokens + EXCLUDED.system_tokens,
+                            chunks_tokens = llm_token_usage.chunks_tokens + EXCLUDED.chunks_tokens,
+                            history_tokens = llm_token_usage.history_tokens + EXCLUDED.history_tokens,
+                            question_tokens = llm_token_usage.question_tokens + EXCLUDED.question_tokens,
+                            updated_at = CURRENT_TIMESTAMP
+                        """,
+                deltas, deltas.size(), (ps, delta) -> {
+                    ps.setDate(1, Date.valueOf(delta.day()));
+                    ps.setString(2, delta.endpoint());
+                    ps.setString(3, delta.model());
+                    ps.setLong(4, delta.calls());
+                    ps.setLong(5, delta.promptTokens());
+                    ps.setLong(6, delta.completionTokens());
+                    ps.setLong(7, delta.maxPromptTokens());
+                    ps.setLong(8, delta.systemTokens());
+                    ps.setLong(9, delta.chunksTokens());
+                    ps.setLong(10, delta.historyTokens());
+                    ps.setLong(11, delta.questionTokens());
+                });
+    }
+
+    /**
+     * Legge gli aggregati giornalieri a partire da una data (somma di tutti i nodi).
+     *
+     * @param since prima giornata inclusa
+     * @return aggregati dal giorno più recente, poi per endpoint e token decrescenti
+     */
+    public List<TokenUsageDaily> findDaily(LocalDate since) {
+        return jdbcTemplate.query("""
+                        SELECT usage_date, endpoint, model, calls, prompt_tokens, completion_tokens, max_prompt_tokens,
+                               system_tokens, chunks_tokens, history_tokens, question_tokens
+                        FROM llm_token_usage
+                        WHERE usage_date >= ?
+                        ORDER BY usage_date DESC, endpoint, prompt_tokens + completion_tokens DESC
+                        """,
+                (rs, rowNum) -> {
+                    long calls = rs.getLong("calls");
+                    long prompt = rs.getLong("prompt_tokens");
+                    long completion = rs.getLong("completion_tokens");
+                    return new TokenUsageDaily(
+                            rs.getDate("usage_date").toLocalDate(),
+                            rs.getString("endpoint"),
+                            rs.getString("model"),
+                            calls,
+                            prompt,
+                            completion,
+                            prompt + completion,
+                            calls == 0 ? 0 : (double) prompt / calls,
+                            calls == 0 ? 0 : (double) completion / calls,
+                            rs.getLong("max_prompt_tokens"),
+                            rs.getLong("system_tokens"),
+                            rs.getLong("chunks_tokens"),
+                            rs.getLong("history_tokens"),
+                            rs.getLong("question_tokens"));
+                },
+                Date.valueOf(since));
+    }
+}
@@ -0,0 +1,255 @@
+package it.unicas.spring.springai.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Scrive chunk vettoriali tramite {@code COPY ... FROM STDIN (FORMAT binary)}.
+ * Usato per i caricamenti massivi (import snapshot, upload multipli), dove gli INSERT riga per riga sono troppo lenti.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class VectorCopyWriter {
+
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int FLUSH_THRESHOLD_BYTES = 256 * 1024;
+    private static final short FIELD_COUNT = 4;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Singola riga da scrivere in una tabella vettoriale.
+     *
+     * @param id identificativo del chunk
+     * @param content testo del chunk
+     * @param metadataJson metadati serializzati in JSON
+     * @param embedding vettore full-precision
+     */
+    public record VectorRow(UUID id, String content, String metadataJson, float[] embedding) {
+    }
+
+    /**
+     * Apre una sessione COPY sulla tabella indicata, usando la connessione della transazione corrente.
+     * Chiamata dai servizi di caricamento massivo; la sessione va chiusa con {@link CopySession#finish()},
+     * oppure con {@link CopySession#abort()} se il caricamento fallisce.
+     *
+     * @param table nome tabella (deve provenire dalla configurazione, mai dall'utente)
+     * @return sessione COPY aperta
+     */
+    public CopySession open(String table) {
+        boolean jsonb = "jsonb".equals(jdbcTemplate.queryForObject("""
+                SELECT data_type FROM information_schema.columns
+                WHERE table_name = ? AND column_name = 'metadata'
+                """, String.class, table));
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY " + table + " (id, content, metadata, embedding) FROM STDIN (FORMAT binary)");
+            return new CopySession(table, connection, copyIn, jsonb);
+        } catch (SQLException e) {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            throw new RuntimeException("Impossibile avviare COPY su " + table + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Elimina gli indici HNSW della tabella restituendone le definizioni, per ricrearli a fine caricamento.
+     *
+     * @param table nome tabella
+     * @return definizioni {@code CREATE INDEX} degli indici eliminati
+     */
+    public List<String> dropHnswIndexes(String table) {
+        List<Map<String, Object>> indexes = jdbcTemplate.queryForList(
+                "SELECT indexname, indexdef FROM pg_indexes WHERE tablename = ? AND indexdef ILIKE '%USING hnsw%'",
+                table);
+
+        List<String> definitions = new ArrayList<>(indexes.size());
+        for (Map<String, Object> index : indexes) {
+            definitions.add(index.get("indexdef").toString());
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + index.get("indexname"));
+        }
+        return definitions;
+    }
+
+    /**
+     * Ricrea gli indici a partire dalle definizioni salvate e aggiorna le statistiche della tabella.
+     * I parametri di manutenzione valgono solo per la transazione corrente ({@code SET LOCAL}).
+     *
+     * @param table nome tabella
+     * @param definitions definizioni restituite da {@link #dropHnswIndexes(String)}
+     * @param maintenanceWorkMem valore di {@code maintenance_work_mem} (es. {@code 1GB})
+     * @param parallelWorkers valore di {@code max_parallel_maintenance_workers}
+     */
+    public void rebuildIndexes(String table, List<String> definitions, String maintenanceWorkMem, int parallelWorkers) {
+        if (!definitions.isEmpty()) {
+            jdbcTemplate.queryForObject("SELECT set_config('maintenance_work_mem', ?, true)", String.class, maintenanceWorkMem);
+            jdbcTemplate.queryForObject("SELECT set_config('max_parallel_maintenance_workers', ?, true)",
+                    String.class, Integer.toString(parallelWorkers));
+        }
+
+        for (String definition : definitions) {
+            long start = System.nanoTime();
+            jdbcTemplate.execute(definition);
+            log.info("Rebuilt index on {} in {} ms", table, (System.nanoTime() - start) / 1_000_000);
+        }
+        jdbcTemplate.execute("ANALYZE " + table);
+    }
+
+    /**
+     * Conta le righe di una tabella vettoriale (stima dal catalogo, senza scansione).
+     *
+     * @param table nome tabella
+     * @return numero stimato di righe
+     */
+    public long estimatedRows(String table) {
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE relname = ?", Long.class, table);
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * Sessione COPY binaria aperta su una tabella vettoriale.
+     */
+    public final class CopySession {
+
+        private final String table;
+        private final Connection connection;
+        private final CopyIn copyIn;
+        private final boolean jsonb;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(FLUSH_THRESHOLD_BYTES + 16 * 1024);
+        private final DataOutputStream out = new DataOutputStream(buffer);
+        private long rows;
+
+        private CopySession(String table, Connection connection, CopyIn copyIn, boolean jsonb) {
+            this.table = table;
+            this.connection = connection;
+            this.copyIn = copyIn;
+            this.jsonb = jsonb;
+            try {
+                out.write(COPY_SIGNATURE);
+                out.writeInt(0);
+                out.writeInt(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Accoda una riga nel formato binario di PostgreSQL.
+         *
+         * @param row riga da scrivere
+         */
+        public void write(VectorRow row) {
+            try {
+                out.writeShort(FIELD_COUNT);
+
+                out.writeInt(16);
+                out.writeLong(row.id().getMostSignificantBits());
+                out.writeLong(row.id().getLeastSignificantBits());
+
+                writeText(row.content());
+
+                byte[] metadata = (row.metadataJson() != null ? row.metadataJson() : "{}").getBytes(StandardCharsets.UTF_8);
+                if (jsonb) {
+                    out.writeInt(metadata.length + 1);
+                    out.writeByte(1);
+                } else {
+                    out.writeInt(metadata.length);
+                }
+                out.write(metadata);
+
+                // formato binario pgvector: int16 dimensioni, int16 riservato, float4 big-endian
+                float[] embedding = row.embedding();
+                ByteBuffer vector = ByteBuffer.allocate(4 + embedding.length * 4);
+                vector.putShort((short) embedding.length).putShort((short) 0);
+                vector.asFloatBuffer().put(embedding);
+                out.writeInt(vector.capacity());
+                out.write(vector.array());
+
+                rows++;
+                if (buffer.size() >= FLUSH_THRESHOLD_BYTES) {
+                    flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Chiude il flusso COPY e rilascia la connessione.
+         *
+         * @return numero di righe scritte
+         */
+        public long finish() {
+            try {
+                out.writeShort(-1);
+                flush();
+                copyIn.endCopy();
+                log.info("COPY into {} completed: {} rows", table, rows);
+                return rows;
+            } catch (IOException | SQLException e) {
+                throw new RuntimeException("COPY su " + table + " fallita: " + e.getMessage(), e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+
+        /**
+         * Annulla il flusso COPY senza confermare le righe e rilascia la connessione.
+         * Non lancia eccezioni, così l'errore che ha interrotto il caricamento resta quello propagato.
+         */
+        public void abort() {
+            try {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                log.warn("COPY into {} aborted after {} rows", table, rows);
+            } catch (SQLException e) {
+                log.warn("Cancelling COPY into {} failed: {}", table, e.getMessage());
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+
+        private void writeText(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void flush() throws IOException {
+            try {
+                copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+            } catch (SQLException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            buffer.reset();
+        }
+    }
+}
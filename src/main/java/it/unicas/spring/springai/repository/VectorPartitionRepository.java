@@ -0,0 +1,387 @@
+package it.unicas.spring.springai.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import it.unicas.spring.springai.config.QuantizationProperties;
+import it.unicas.spring.springai.dto.VectorIndexStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accesso JDBC diretto alle tabelle vettoriali PGVector.
+ * Permette di interrogare più tabelle con un solo embedding già calcolato e di usare
+ * indici quantizzati ({@code halfvec}/binari) con rescoring full-precision.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class VectorPartitionRepository {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${spring.ai.vectorstore.pgvector.dimensions:768}")
+    private int dimensions;
+
+    /**
+     * Imposta lo {@code statement_timeout} della sola transazione corrente ({@code set_config(..., true)}),
+     * così le query di ricerca successive vengono annullate da Postgres allo scadere del budget della richiesta.
+     * Chiamata da {@code RagService} prima di ogni ricerca vettoriale.
+     *
+     * @param millis timeout in millisecondi
+     */
+    public void setLocalStatementTimeout(long millis) {
+        jdbcTemplate.queryForObject("SELECT set_config('statement_timeout', ?, true)", String.class, Long.toString(millis));
+    }
+
+    /**
+     * Imposta {@code hnsw.ef_search} e disattiva la scansione sequenziale per la sola transazione corrente,
+     * così anche su tabelle piccole il planner passa dall'indice HNSW. Più candidati esplorati nel grafo
+     * significano recall più alta e query più lente. Chiamata dal benchmark del retrieval.
+     *
+     * @param efSearch dimensione della lista dinamica di candidati
+     */
+    public void setLocalHnswSearch(int efSearch) {
+        jdbcTemplate.queryForObject("SELECT set_config('hnsw.ef_search', ?, true)", String.class, Integer.toString(efSearch));
+        jdbcTemplate.queryForObject("SELECT set_config('enable_seqscan', 'off', true)", String.class);
+    }
+
+    /**
+     * Ricerca per similarità coseno su una singola tabella vettoriale usando l'indice full-precision.
+     * Chiamata da {@code VectorPartitionService} per ogni partizione selezionata dal router.
+     *
+     * @param table nome tabella (deve provenire dalla configurazione, mai dall'utente)
+     * @param embedding embedding della query
+     * @param topK numero massimo di risultati
+     * @param similarityThreshold similarità minima (1 - distanza coseno)
+     * @return chunk ordinati per similarità decrescente, con score valorizzato
+     */
+    public List<Document> search(String table, float[] embedding, int topK, double similarityThreshold) {
+        PGvector vector = new PGvector(embedding);
+        return jdbcTemplate.query(searchSql(table), (rs, rowNum) -> toDocument(rs),
+                vector, vector, 1 - similarityThreshold, topK);
+    }
+
+    /**
+     * Ricerca a due fasi: candidati dall'indice quantizzato, poi riordino con la distanza coseno esatta.
+     * Chiamata da {@code VectorPartitionService} quando {@code app.rag.quantization.mode} non è {@code FULL}.
+     *
+     * @param table nome tabella
+     * @param embedding embedding della query
+     * @param topK numero massimo di risultati
+     * @param similarityThreshold similarità minima sul punteggio full-precision
+     * @param mode modalità di quantizzazione dell'indice
+     * @param candidates numero di candidati da rileggere dall'indice quantizzato
+     * @return chunk riordinati con score full-precision
+     */
+    public List<Document> searchQuantized(String table, float[] embedding, int topK, double similarityThreshold,
+                                          QuantizationProperties.Mode mode, int candidates) {
+        if (mode == QuantizationProperties.Mode.FULL) {
+            return search(table, embedding, topK, similarityThreshold);
+        }
+
+        PGvector vector = new PGvector(embedding);
+        return jdbcTemplate.query(quantizedSearchSql(table, mode), (rs, rowNum) -> toDocument(rs),
+                vector, vector, Math.max(candidates, topK), 1 - similarityThreshold, topK);
+    }
+
+    /**
+     * Riesegue la stessa query di {@link #searchQuantized} con {@code EXPLAIN (ANALYZE, BUFFERS)}.
+     * Chiamata da {@code SlowSearchService} in background per un campione delle ricerche lente.
+     *
+     * @param table nome tabella
+     * @param embedding embedding della query
+     * @param topK numero massimo di risultati
+     * @param similarityThreshold similarità minima
+     * @param mode modalità di quantizzazione dell'indice
+     * @param candidates numero di candidati dell'indice quantizzato
+     * @return righe del piano di esecuzione con tempi e buffer letti
+     */
+    public List<String> explainSearch(String table, float[] embedding, int topK, double similarityThreshold,
+                                      QuantizationProperties.Mode mode, int candidates) {
+        PGvector vector = new PGvector(embedding);
+        if (mode == QuantizationProperties.Mode.FULL) {
+            return jdbcTemplate.queryForList("EXPLAIN (ANALYZE, BUFFERS) " + searchSql(table), String.class,
+                    vector, vector, 1 - similarityThreshold, topK);
+        }
+        return jdbcTemplate.queryForList("EXPLAIN (ANALYZE, BUFFERS) " + quantizedSearchSql(table, mode), String.class,
+                vector, vector, Math.max(candidates, topK), 1 - similarityThreshold, topK);
+    }
+
+    /**
+     * Dimensione e statistiche di utilizzo degli indici di una tabella vettoriale
+     * ({@code pg_stat_user_indexes} e {@code pg_statio_user_indexes}).
+     * Chiamata da {@code SlowSearchService} insieme alla cattura del piano e dall'endpoint admin.
+     *
+     * @param table nome tabella
+     * @return statistiche per indice, dal più grande
+     */
+    public List<VectorIndexStats> indexStats(String table) {
+        return jdbcTemplate.query("""
+                        SELECT s.relname, s.indexrelname, pg_relation_size(s.indexrelid) AS size_bytes,
+                               pg_size_pretty(pg_relation_size(s.indexrelid)) AS size, s.idx_scan, s.idx_tup_read,
+                               s.idx_tup_fetch, io.idx_blks_hit, io.idx_blks_read
+                        FROM pg_stat_user_indexes s
+                        JOIN pg_statio_user_indexes io ON io.indexrelid = s.indexrelid
+                        WHERE s.relname = ?
+                        ORDER BY size_bytes DESC
+                        """,
+                (rs, rowNum) -> {
+                    long hit = rs.getLong("idx_blks_hit");
+                    long read = rs.getLong("idx_blks_read");
+                    return new VectorIndexStats(
+                            rs.getString("relname"),
+                            rs.getString("indexrelname"),
+                            rs.getLong("size_bytes"),
+                            rs.getString("size"),
+                            rs.getLong("idx_scan"),
+                            rs.getLong("idx_tup_read"),
+                            rs.getLong("idx_tup_fetch"),
+                            hit,
+                            read,
+                            hit + read == 0 ? null : (double) hit / (hit + read));
+                },
+                table);
+    }
+
+    /**
+     * Ricerca esatta (scansione sequenziale) usata come riferimento di recall nei benchmark.
+     * L'espressione {@code + 0} impedisce al planner di usare l'indice HNSW.
+     *
+     * @param table nome tabella
+     * @param embedding embedding della query
+     * @param topK numero di risultati
+     * @return id dei chunk più vicini in ordine di distanza
+     */
+    public List<String> exactSearchIds(String table, float[] embedding, int topK) {
+        String sql = "SELECT id FROM %s ORDER BY (embedding <=> ?) + 0 LIMIT ?".formatted(table);
+        return jdbcTemplate.queryForList(sql, String.class, new PGvector(embedding), topK);
+    }
+
+    /**
+     * Ricerca esatta che restituisce i chunk con metadati e score, senza usare l'indice HNSW.
+     * Chiamata dal benchmark del retrieval come modalità di riferimento.
+     *
+     * @param table nome tabella
+     * @param embedding embedding della query
+     * @param topK numero di risultati
+     * @return chunk ordinati per similarità decrescente
+     */
+    public List<Document> exactSearch(String table, float[] embedding, int topK) {
+        String sql = """
+                SELECT id, content, metadata::text AS metadata, embedding <=> ? AS distance
+                FROM %s
+                ORDER BY (embedding <=> ?) + 0
+                LIMIT ?
+                """.formatted(table);
+
+        PGvector vector = new PGvector(embedding);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> toDocument(rs), vector, vector, topK);
+    }
+
+    /**
+     * Crea una tabella vettoriale con lo schema dello starter PGVector e indice HNSW full-precision.
+     * Chiamata dal benchmark del retrieval per le tabelle temporanee, una per dimensione dei chunk.
+     *
+     * @param table nome tabella (deve provenire dalla configurazione, mai dall'utente)
+     */
+    public void createVectorTable(String table) {
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS %s (
+                    id uuid PRIMARY KEY,
+                    content text,
+                    metadata json,
+                    embedding vector(%d)
+                )""".formatted(table, dimensions));
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS %s_hnsw_idx ON %s USING hnsw (embedding vector_cosine_ops)"
+                .formatted(table, table));
+    }
+
+    /**
+     * Elimina una tabella vettoriale con i suoi indici.
+     *
+     * @param table nome tabella (deve provenire dalla configurazione, mai dall'utente)
+     */
+    public void dropTable(String table) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+    }
+
+    /**
+     * Crea l'indice HNSW su espressione quantizzata, se non esiste già.
+     * Chiamata all'avvio da {@code VectorPartitionService} e dal benchmark di quantizzazione.
+     *
+     * @param table nome tabella
+     * @param mode modalità di quantizzazione
+     */
+    public void ensureQuantizedIndex(String table, QuantizationProperties.Mode mode) {
+        String ddl = switch (mode) {
+            case FULL -> null;
+            case HALFVEC -> "CREATE INDEX IF NOT EXISTS %s_halfvec_idx ON %s USING hnsw ((embedding::halfvec(%d)) halfvec_cosine_ops)"
+                    .formatted(table, table, dimensions);
+            case BINARY -> "CREATE INDEX IF NOT EXISTS %s_bit_idx ON %s USING hnsw ((binary_quantize(embedding)::bit(%d)) bit_hamming_ops)"
+                    .formatted(table, table, dimensions);
+        };
+        if (ddl == null) return;
+
+        log.info("Ensuring {} index on {}", mode, table);
+        jdbcTemplate.execute(ddl);
+    }
+
+    /**
+     * Elimina gli indici HNSW full-precision sulla colonna {@code embedding} della tabella.
+     *
+     * @param table nome tabella
+     * @return numero di indici eliminati
+     */
+    public int dropFullPrecisionIndexes(String table) {
+        List<String> indexes = jdbcTemplate.queryForList("""
+                SELECT indexname FROM pg_indexes
+                WHERE tablename = ? AND indexdef ILIKE '%USING hnsw (embedding %'
+                """, String.class, table);
+        for (String index : indexes) {
+            log.info("Dropping full-precision index {} on {}", index, table);
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + index);
+        }
+        return indexes.size();
+    }
+
+    /**
+     * Carica in {@code shared_buffers} tutti gli indici HNSW della tabella con {@code pg_prewarm},
+     * così le prime ricerche dopo un riavvio non leggono il grafo da disco.
+     * Richiede l'estensione {@code pg_prewarm}. Chiamata da {@code StartupWarmupService}.
+     *
+     * @param table nome tabella
+     * @return blocchi caricati
+     */
+    public long prewarmIndexes(String table) {
+        Long blocks = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(SUM(pg_prewarm(format('%I.%I', schemaname, indexname)::regclass)), 0)
+                FROM pg_indexes
+                WHERE tablename = ? AND indexdef ILIKE '%USING hnsw%'
+                """, Long.class, table);
+        return blocks != null ? blocks : 0;
+    }
+
+    /**
+     * Verifica la presenza di un indice HNSW per la modalità indicata.
+     *
+     * @param table nome tabella
+     * @param mode modalità di quantizzazione
+     * @return {@code true} se esiste un indice adatto
+     */
+    public boolean hasIndex(String table, QuantizationProperties.Mode mode) {
+        String pattern = switch (mode) {
+            case FULL -> "%USING hnsw (embedding %";
+            case HALFVEC -> "%halfvec_cosine_ops%";
+            case BINARY -> "%bit_hamming_ops%";
+        };
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_indexes WHERE tablename = ? AND indexdef ILIKE ?",
+                Integer.class, table, pattern);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Estrae un campione casuale di embedding già memorizzati da usare come query di benchmark.
+     *
+     * @param table nome tabella
+     * @param limit numero di embedding
+     * @return embedding campionati
+     */
+    public List<float[]> sampleEmbeddings(String table, int limit) {
+        String sql = "SELECT embedding::text FROM %s ORDER BY random() LIMIT ?".formatted(table);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new PGvector(rs.getString(1)).toArray(), limit);
+    }
+
+    /**
+     * Legge gli embedding memorizzati dei chunk indicati, senza ricalcolarli.
+     * Chiamata da {@code FollowUpRetrievalService} per riordinare localmente i chunk di una sessione.
+     *
+     * @param table nome tabella
+     * @param ids id dei chunk
+     * @return embedding per id (i chunk non presenti nella tabella sono omessi)
+     */
+    public Map<String, float[]> findEmbeddings(String table, Collection<String> ids) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        if (ids.isEmpty()) {
+            return embeddings;
+        }
+
+        String sql = "SELECT id::text AS id, embedding::text AS embedding FROM %s WHERE id = ANY (?::uuid[])".formatted(table);
+        jdbcTemplate.query(sql, rs -> {
+            embeddings.put(rs.getString("id"), new PGvector(rs.getString("embedding")).toArray());
+        }, "{" + String.join(",", ids) + "}");
+        return embeddings;
+    }
+
+    private String searchSql(String table) {
+        return """
+                SELECT id, content, metadata::text AS metadata, embedding <=> ? AS distance
+                FROM %s
+                WHERE embedding <=> ? < ?
+                ORDER BY distance
+                LIMIT ?
+                """.formatted(table);
+    }
+
+    private String quantizedSearchSql(String table, QuantizationProperties.Mode mode) {
+        return """
+                SELECT id, content, metadata, distance FROM (
+                    SELECT id, content, metadata::text AS metadata, embedding <=> ? AS distance
+                    FROM (SELECT id, content, metadata, embedding FROM %s ORDER BY %s LIMIT ?) candidates
+                ) rescored
+                WHERE distance < ?
+                ORDER BY distance
+                LIMIT ?
+                """.formatted(table, candidateOrdering(mode));
+    }
+
+    private String candidateOrdering(QuantizationProperties.Mode mode) {
+        return switch (mode) {
+            case HALFVEC -> "embedding::halfvec(%d) <=> ?::halfvec(%d)".formatted(dimensions, dimensions);
+            case BINARY -> "binary_quantize(embedding)::bit(%d) <~> binary_quantize(?::vector)::bit(%d)".formatted(dimensions, dimensions);
+            case FULL -> "embedding <=> ?";
+        };
+    }
+
+    private Document toDocument(ResultSet rs) throws SQLException {
+        double distance = rs.getDouble("distance");
+        Map<String, Object> metadata = parseMetadata(rs.getString("metadata"));
+        metadata.put("distance", distance);
+
+        return Document.builder()
+                .id(rs.getString("id"))
+                .text(rs.getString("content"))
+                .metadata(metadata)
+                .score(1 - distance)
+                .build();
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null || json.isBlank()) {
+            return new HashMap<>();
+        }
+
+        try {
+            return new HashMap<>(objectMapper.readValue(json, METADATA_TYPE));
+        } catch (Exception e) {
+            log.debug("Unable to parse chunk metadata: {}", e.getMessage());
+            return new HashMap<>();
+        }
+    }
+}
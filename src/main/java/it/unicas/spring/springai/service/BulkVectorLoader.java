@@ -0,0 +1,160 @@
+package it.unicas.spring.springai.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicas.spring.springai.config.BulkLoadProperties;
+import it.unicas.spring.springai.repository.VectorCopyWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Percorso di caricamento massivo dei chunk: embedding a batch, scrittura via COPY binaria e,
+ * oltre soglia, indici HNSW eliminati prima del caricamento e ricostruiti una sola volta con
+ * parametri di manutenzione dedicati. Gli upload singoli restano sugli INSERT incrementali del {@code VectorStore}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkVectorLoader {
+
+    private final VectorCopyWriter vectorCopyWriter;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final BulkLoadProperties properties;
+
+    /**
+     * Indici eliminati in attesa di ricostruzione, per tabella.
+     *
+     * @param definitions definizioni {@code CREATE INDEX} per tabella
+     */
+    public record IndexDeferral(Map<String, List<String>> definitions) {
+    }
+
+    /**
+     * Elimina gli indici HNSW delle tabelle indicate, da ricostruire con {@link #rebuildIndexes(IndexDeferral)}.
+     * Chiamata dall'import snapshot e da {@link #loadDocuments(Map)} quando il carico supera la soglia.
+     *
+     * @param tables tabelle da preparare
+     * @return indici eliminati
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public IndexDeferral deferIndexes(Collection<String> tables) {
+        Map<String, List<String>> definitions = new LinkedHashMap<>();
+        for (String table : tables) {
+            definitions.put(table, vectorCopyWriter.dropHnswIndexes(table));
+        }
+        return new IndexDeferral(definitions);
+    }
+
+    /**
+     * Ricostruisce gli indici eliminati con {@code maintenance_work_mem} e worker paralleli configurati.
+     *
+     * @param deferral indici da ricreare
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void rebuildIndexes(IndexDeferral deferral) {
+        for (Map.Entry<String, List<String>> entry : deferral.definitions().entrySet()) {
+            vectorCopyWriter.rebuildIndexes(entry.getKey(), entry.getValue(),
+                    properties.getMaintenanceWorkMem(), properties.getParallelWorkers());
+        }
+    }
+
+    /**
+     * Calcola gli embedding a batch e scrive i chunk via COPY, tabella per tabella.
+     * Gli embedding sono calcolati prima di toccare gli indici: il {@code DROP INDEX} prende un lock
+     * ACCESS EXCLUSIVE fino al commit, quindi eliminazione, COPY e ricostruzione restano in coda alla
+     * transazione del chiamante e le ricerche della chat non attendono le chiamate al modello di embedding.
+     * Chiamata da {@link PdfIngestionService#bulkUploadAndProcessPdfs(List, it.unicas.spring.springai.model.CategoriaDispositivo)}.
+     *
+     * @param chunksByTable chunk da caricare raggruppati per tabella di destinazione
+     * @return numero totale di righe scritte
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long loadDocuments(Map<String, List<Document>> chunksByTable) {
+        Map<String, List<VectorCopyWriter.VectorRow>> rowsByTable = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Document>> entry : chunksByTable.entrySet()) {
+            rowsByTable.put(entry.getKey(), embed(entry.getValue()));
+        }
+
+        int total = chunksByTable.values().stream().mapToInt(List::size).sum();
+        IndexDeferral deferral = null;
+        if (shouldDeferIndexes(chunksByTable, total)) {
+            deferral = deferIndexes(chunksByTable.keySet());
+            log.info("Bulk load of {} chunks: HNSW indexes deferred on {}", total, chunksByTable.keySet());
+        }
+
+        long written = 0;
+        for (Map.Entry<String, List<VectorCopyWriter.VectorRow>> entry : rowsByTable.entrySet()) {
+            VectorCopyWriter.CopySession session = vectorCopyWriter.open(entry.getKey());
+            try {
+                entry.getValue().forEach(session::write);
+            } catch (RuntimeException e) {
+                session.abort();
+                throw e;
+            }
+            written += session.finish();
+        }
+
+        if (deferral != null) {
+            rebuildIndexes(deferral);
+        }
+        return written;
+    }
+
+    private boolean shouldDeferIndexes(Map<String, List<Document>> chunksByTable, int total) {
+        if (!properties.isDeferIndexBuild() || total < properties.getIndexRebuildThreshold()) {
+            return false;
+        }
+
+        // ricostruire conviene solo se il carico è paragonabile a quanto già indicizzato
+        long existing = chunksByTable.keySet().stream().mapToLong(vectorCopyWriter::estimatedRows).sum();
+        return total >= existing / 2;
+    }
+
+    private List<VectorCopyWriter.VectorRow> embed(List<Document> chunks) {
+        int batchSize = Math.max(1, properties.getEmbeddingBatchSize());
+        List<VectorCopyWriter.VectorRow> rows = new ArrayList<>(chunks.size());
+
+        for (int from = 0; from < chunks.size(); from += batchSize) {
+            List<Document> batch = chunks.subList(from, Math.min(chunks.size(), from + batchSize));
+            List<float[]> embeddings = embeddingModel.embed(batch.stream()
+                    .map(doc -> doc.getText() != null ? doc.getText() : "")
+                    .toList());
+
+            for (int i = 0; i < batch.size(); i++) {
+                Document doc = batch.get(i);
+                rows.add(new VectorCopyWriter.VectorRow(
+                        parseId(doc.getId()), doc.getText(), toJson(doc.getMetadata()), embeddings.get(i)));
+            }
+        }
+        return rows;
+    }
+
+    private UUID parseId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return UUID.randomUUID();
+        }
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize chunk metadata: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package it.unicas.spring.springai.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+
+/**
+ * Evento JFR di una fase della pipeline di chat (retrieval, embedding, prompt, chiamata LLM, parsing).
+ * La durata è quella dell'evento; l'id richiesta permette di collegare GC, lock e campioni CPU dello stesso
+ * intervallo a un turno di chat. Creato tramite {@link PipelineEvents#chat(String)}.
+ */
+@Name("it.unicas.springai.ChatStage")
+@Label("Chat Stage")
+@Category({"Spring AI", "Chat"})
+@Description("Fase di un turno di chat")
+@StackTrace(false)
+public class ChatStageEvent extends jdk.jfr.Event {
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Input Chars")
+    int inputChars;
+
+    @Label("Output Chars")
+    int outputChars;
+
+    @Label("Chunks")
+    int chunks;
+
+    @Label("Prompt Tokens")
+    long promptTokens;
+
+    @Label("Completion Tokens")
+    long completionTokens;
+
+    /**
+     * Copia sull'evento lunghezza dell'output e token letti dai metadati della risposta del modello.
+     *
+     * @param response risposta del modello, anche {@code null} se la chiamata è fallita
+     */
+    void response(ChatResponse response) {
+        if (response == null) {
+            return;
+        }
+        if (response.getResult() != null && response.getResult().getOutput() != null
+                && response.getResult().getOutput().getContent() != null) {
+            outputChars = response.getResult().getOutput().getContent().length();
+        }
+        Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage != null) {
+            promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+            completionTokens = usage.getGenerationTokens() != null ? usage.getGenerationTokens() : 0;
+        }
+    }
+}
@@ -2,14 +2,21 @@ package it.unicas.spring.springai.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import it.unicas.spring.springai.config.DegradedModeProperties;
 import it.unicas.spring.springai.dto.ChatTurn;
 import it.unicas.spring.springai.dto.ChatbotChatRequest;
 import it.unicas.spring.springai.dto.ChatbotChatResponse;
 import it.unicas.spring.springai.dto.ChatbotSource;
+import it.unicas.spring.springai.dto.RetrievalParameters;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -20,6 +27,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
@@ -27,18 +36,40 @@ import java.util.Set;
 public class ChatbotService {
 
     private final ChatClient.Builder chatClientBuilder;
-    private final RagService ragService;
     private final ObjectMapper objectMapper;
+    private final ConversationSessionService conversationSessionService;
+    private final FollowUpRetrievalService followUpRetrievalService;
+    private final ModelRoutingPolicy modelRoutingPolicy;
+    private final ModelRouteMetrics modelRouteMetrics;
+    private final UsageQuotaService usageQuotaService;
+    private final QueryTelemetryService queryTelemetryService;
+    private final DeferredAnswerService deferredAnswerService;
+    private final ExtractiveAnswerService extractiveAnswerService;
+    private final DegradedModeProperties degradedModeProperties;
+    private final RetrievalPrefetchService retrievalPrefetchService;
+    private final TokenUsageService tokenUsageService;
+    private final RetrievalTuningService retrievalTuningService;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Observation del parsing della risposta del modello.
+     */
+    public static final String PARSE_OBSERVATION = "chat.parse";
+
+    /**
+     * Endpoint con cui sono contabilizzati i token delle chiamate al modello di questo servizio.
+     */
+    private static final String USAGE_ENDPOINT = "chat";
 
-    private static final int DEFAULT_TOP_K = 8;
-    private static final int MAX_HISTORY_MESSAGES = 10;
     private static final int MAX_QUESTION_CHARS = 2_000;
     private static final int MAX_SYSTEM_PROMPT_CHARS = 12_000;
-    private static final int MAX_CHUNK_CHARS = 2_000;
     private static final int MAX_SOURCE_EXCERPT_CHARS = 1_200;
     private static final String NO_INFO_MESSAGE = "Non ho trovato abbastanza informazioni nelle schede tecniche caricate.";
     private static final String NO_INFO_WITH_HINT = NO_INFO_MESSAGE + " " +
             "Prova a riformulare la domanda oppure carica PDF con schede tecniche, confronti ufficiali o manuali del prodotto.";
+    private static final String DEGRADED_INTRO =
+            "Il servizio di generazione sta rispondendo lentamente: ecco i passaggi più pertinenti delle schede tecniche.";
+    private static final String DEGRADED_PENDING_NOTE = "La risposta completa sarà disponibile a breve.";
 
     private static final String CHAT_SYSTEM_PROMPT = """
             Sei un assistente virtuale specializzato in tecnologia consumer.
@@ -58,7 +89,8 @@ public class ChatbotService {
             - "chunkIds" deve contenere SOLO numeri presenti nell'elenco chunk (CHUNK 1..N).
             """;
 
-    private record RetrievedChunk(
+    // Record e helper di prompt/parsing hanno visibilità di package per i benchmark JMH (src/jmh/java).
+    record RetrievedChunk(
             int chunkId,
             String fileName,
             Integer page,
@@ -67,20 +99,56 @@ public class ChatbotService {
     ) {
     }
 
-    private record ParsedAnswer(
+    record ParsedAnswer(
             String answer,
             List<Integer> chunkIds
     ) {
     }
 
     /**
-     * Gestisce un turno di chat completo con retrieval, prompt building, chiamata LLM e mapping delle fonti.
-     * Chiamata dal controller chatbot nell'endpoint {@code POST /api/chatbot/chat}.
+     * Gestisce un turno di chat senza sessione server-side, usando solo la storia inviata dal client.
      *
      * @param request richiesta utente con domanda, storia e prompt opzionale
      * @return risposta finale + fonti usate
      */
     public ChatbotChatResponse chat(ChatbotChatRequest request) {
+        return chat(request, null);
+    }
+
+    /**
+     * Gestisce un turno di chat completo con retrieval, prompt building, chiamata LLM e mapping delle fonti.
+     * Chiamata dal controller chatbot nell'endpoint {@code POST /api/chatbot/chat}.
+     * Se è noto l'utente, la storia viene letta dalla sessione server-side (riassunto + ultimi turni).
+     *
+     * @param request richiesta utente con domanda, storia/sessione e prompt opzionale
+     * @param username utente autenticato, {@code null} per disabilitare le sessioni
+     * @return risposta finale + fonti usate + id sessione; estrattiva e marcata come degradata
+     *         se il modello non risponde entro {@code app.chat.degraded.generation-deadline} o entro il budget
+     *         della richiesta ({@link RequestDeadline})
+     * @throws QuotaExceededException se l'utente ha superato le quote di utilizzo
+     * @throws DeadlineExceededException se la richiesta viene annullata o esaurisce il budget prima della generazione
+     */
+    public ChatbotChatResponse chat(ChatbotChatRequest request, String username) {
+        RetrievalTuningService.Assignment assignment = retrievalTuningService.assign(username);
+        try (RetrievalTuningService.Scope ignored = retrievalTuningService.bind(assignment);
+             PipelineEvents.Scope events = PipelineEvents.bind(PipelineEvents.CHAT, PipelineEvents.newRequestId())) {
+            return chatTurn(request, username, assignment);
+        }
+    }
+
+    /**
+     * Esegue il turno di chat con i parametri di retrieval e prompt del braccio assegnato all'utente,
+     * registrando durata, token e ricerche vuote del braccio.
+     * Chiamata da {@link #chat(ChatbotChatRequest, String)} con il braccio già legato al thread.
+     *
+     * @param request richiesta utente
+     * @param username utente autenticato, anche {@code null}
+     * @param assignment braccio dell'esperimento e relativi parametri
+     * @return risposta del turno
+     */
+    private ChatbotChatResponse chatTurn(ChatbotChatRequest request, String username,
+                                         RetrievalTuningService.Assignment assignment) {
+        RetrievalParameters parameters = assignment.parameters();
         String question = request != null ? request.question() : null;
         if (question == null || question.isBlank()) {
             throw new IllegalArgumentException("La domanda è obbligatoria");
@@ -91,19 +159,52 @@ public class ChatbotService {
             throw new IllegalArgumentException("Domanda troppo lunga (max " + MAX_QUESTION_CHARS + " caratteri)");
         }
 
-        List<Document> relevantDocs = ragService.searchRelevantDocuments(question, DEFAULT_TOP_K);
-        List<RetrievedChunk> retrievedChunks = toRetrievedChunks(relevantDocs);
+        usageQuotaService.acquire(username);
+        long turnStart = System.nanoTime();
+
+        ConversationSession session = username != null
+                ? conversationSessionService.resolve(request.sessionId(), username, request.history())
+                : null;
+        String sessionId = session != null ? session.id() : null;
+
+        ChatStageEvent retrievalEvent = PipelineEvents.chat(PipelineEvents.RETRIEVAL);
+        List<Document> relevantDocs = followUpRetrievalService.retrieve(session, question, parameters.chatTopK());
+        long retrievalNanos = System.nanoTime() - turnStart;
+        List<RetrievedChunk> retrievedChunks = toRetrievedChunks(relevantDocs, parameters.maxChunkChars());
+        retrievalEvent.inputChars = question.length();
+        retrievalEvent.chunks = retrievedChunks.size();
+        retrievalEvent.commit();
+        Observation observation = observationRegistry.getCurrentObservation();
+        if (observation != null) {
+            observation.lowCardinalityKeyValue("rag.arm", assignment.arm());
+            observation.highCardinalityKeyValue("request.id", PipelineEvents.current().requestId());
+            observation.highCardinalityKeyValue("chat.chunks", String.valueOf(retrievedChunks.size()));
+        }
 
         if (retrievedChunks.isEmpty()) {
+            queryTelemetryService.record(question, relevantDocs, retrievalNanos, 0, System.nanoTime() - turnStart);
+            retrievalTuningService.recordTurn(assignment.arm(), System.nanoTime() - turnStart, true);
+            if (session != null) {
+                conversationSessionService.recordExchange(session, question, NO_INFO_WITH_HINT);
+            }
             return new ChatbotChatResponse(
                     NO_INFO_WITH_HINT,
-                    List.of()
+                    List.of(),
+                    sessionId
             );
         }
 
+        ChatStageEvent promptEvent = PipelineEvents.chat(PipelineEvents.PROMPT);
         String context = buildChunksContext(retrievedChunks);
-        String history = buildHistorySection(request != null ? request.history() : null);
-        String systemPrompt = normalizeSystemPrompt(request != null ? request.systemPrompt() : null);
+        String history;
+        if (session != null) {
+            ConversationSession.Context sessionContext = session.context();
+            history = buildHistorySection(sessionContext.summary(), sessionContext.recentTurns(),
+                    parameters.maxHistoryMessages());
+        } else {
+            history = buildHistorySection(request.history(), parameters.maxHistoryMessages());
+        }
+        String systemPrompt = normalizeSystemPrompt(request.systemPrompt());
 
         String userPrompt = """
                 %s
@@ -113,16 +214,131 @@ public class ChatbotService {
                 === DOMANDA UTENTE ===
                 %s
                 """.formatted(context, history, question);
+        promptEvent.chunks = retrievedChunks.size();
+        promptEvent.inputChars = question.length();
+        promptEvent.outputChars = systemPrompt.length() + userPrompt.length();
+        promptEvent.commit();
+
+        ModelRoutingPolicy.Decision route = modelRoutingPolicy.decide(question, relevantDocs);
+        log.debug("Chat routed to {} model ({})", route.tier(), route.reason());
 
         ChatClient chatClient = chatClientBuilder.build();
-        String raw = chatClient.prompt()
+        ChatClient.ChatClientRequestSpec spec = chatClient.prompt()
                 .system(systemPrompt)
-                .user(userPrompt)
-                .call()
-                .content();
+                .user(userPrompt);
+        if (modelRoutingPolicy.isEnabled()) {
+            spec = spec.options(OpenAiChatOptions.builder()
+                    .model(route.model())
+                    .maxTokens(route.maxTokens())
+                    .build());
+        }
+
+        ChatClient.ChatClientRequestSpec generationRequest = spec;
+        TokenUsageService.PromptSections sections = new TokenUsageService.PromptSections(
+                systemPrompt, context, history, question);
+        long generationStart = System.nanoTime();
+        CompletableFuture<ChatResponse> generation = deferredAnswerService
+                .submit(() -> {
+                    ChatStageEvent llmEvent = PipelineEvents.chat(PipelineEvents.LLM);
+                    llmEvent.inputChars = systemPrompt.length() + userPrompt.length();
+                    llmEvent.chunks = retrievedChunks.size();
+                    ChatResponse chatResponse = null;
+                    try {
+                        chatResponse = generationRequest.call().chatResponse();
+                        return chatResponse;
+                    } finally {
+                        llmEvent.response(chatResponse);
+                        llmEvent.commit();
+                    }
+                })
+                .whenComplete((response, error) -> {
+                    if (response != null) {
+                        modelRouteMetrics.record(route.tier(), System.nanoTime() - generationStart, response);
+                        usageQuotaService.recordUsage(username, response);
+                        tokenUsageService.record(USAGE_ENDPOINT, route.model(), response, sections);
+                        retrievalTuningService.recordTokens(assignment.arm(), response);
+                        tagUsage(observation, route.tier().name(), response);
+                    }
+                });
+
+        ChatbotChatResponse response;
+        try {
+            response = toChatResponse(deferredAnswerService.await(generation), retrievedChunks, sessionId);
+        } catch (TimeoutException e) {
+            RequestDeadline deadline = RequestDeadline.current();
+            String pendingAnswerId = null;
+            if (deadline != null && deadline.isExpired()) {
+                log.warn("Request budget exhausted during LLM generation, answering extractively");
+                deadline.cancel(RequestDeadline.CancelReason.BUDGET_EXHAUSTED);
+            } else {
+                log.warn("LLM generation exceeded its deadline, answering extractively");
+                pendingAnswerId = deferredAnswerService.defer(username,
+                        generation.thenApply(r -> toChatResponse(r, retrievedChunks, sessionId)));
+            }
+            response = degradedResponse(question, retrievedChunks, sessionId, pendingAnswerId);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (!deferredAnswerService.isEnabled()) {
+                throw e;
+            }
+            log.warn("LLM generation failed, answering extractively: {}", e.getMessage());
+            response = degradedResponse(question, retrievedChunks, sessionId, null);
+        }
+        long generationNanos = System.nanoTime() - generationStart;
+
+        if (session != null) {
+            conversationSessionService.recordExchange(session, question, response.answer());
+        }
+        queryTelemetryService.record(question, relevantDocs, retrievalNanos, generationNanos, System.nanoTime() - turnStart);
+        retrievalTuningService.recordTurn(assignment.arm(), System.nanoTime() - turnStart, false);
+        return response;
+    }
+
+    /**
+     * Riporta sull'observation della richiesta il modello scelto e i token consumati.
+     * Chiamata da {@link #chat(ChatbotChatRequest, String)} al termine della generazione.
+     *
+     * @param observation observation {@value StageTimings#OBSERVATION}, {@code null} fuori da una richiesta tracciata
+     * @param tier fascia del modello scelta dal routing
+     * @param response risposta del modello
+     */
+    private void tagUsage(Observation observation, String tier, ChatResponse response) {
+        if (observation == null) {
+            return;
+        }
+        observation.lowCardinalityKeyValue("chat.model.tier", tier);
+        Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage != null) {
+            observation.highCardinalityKeyValue("gen_ai.usage.input_tokens", String.valueOf(usage.getPromptTokens()));
+            observation.highCardinalityKeyValue("gen_ai.usage.output_tokens", String.valueOf(usage.getGenerationTokens()));
+        }
+    }
+
+    /**
+     * Converte l'output del modello nella risposta REST: parsing del JSON e mapping dei chunk citati in fonti.
+     * Chiamata da {@link #chat(ChatbotChatRequest, String)} e, per le risposte differite, al termine della generazione.
+     *
+     * @param chatResponse risposta del modello
+     * @param retrievedChunks chunk forniti nel prompt
+     * @param sessionId id della sessione server-side
+     * @return risposta completa con fonti
+     */
+    private ChatbotChatResponse toChatResponse(ChatResponse chatResponse, List<RetrievedChunk> retrievedChunks,
+                                               String sessionId) {
+        String raw = chatResponse != null && chatResponse.getResult() != null
+                ? chatResponse.getResult().getOutput().getContent()
+                : null;
 
         String normalizedRaw = raw != null ? raw.trim() : "";
-        ParsedAnswer parsed = parseAnswer(normalizedRaw);
+        ChatStageEvent parseEvent = PipelineEvents.chat(PipelineEvents.PARSE);
+        ParsedAnswer parsed = Observation.createNotStarted(PARSE_OBSERVATION, observationRegistry)
+                .contextualName("chat parse")
+                .observe(() -> parseAnswer(normalizedRaw));
+        parseEvent.inputChars = normalizedRaw.length();
+        parseEvent.outputChars = parsed.answer() != null ? parsed.answer().length() : 0;
+        parseEvent.chunks = parsed.chunkIds() != null ? parsed.chunkIds().size() : 0;
+        parseEvent.commit();
 
         String answer = parsed.answer() != null ? parsed.answer().trim() : "";
         if (answer.isBlank()) {
@@ -133,8 +349,60 @@ public class ChatbotService {
         if (sources.isEmpty()) {
             sources = buildDefaultSources(retrievedChunks);
         }
+        return new ChatbotChatResponse(answer, sources, sessionId);
+    }
+
+    /**
+     * Costruisce la risposta degradata: frasi dei chunk più vicine alla domanda, con le relative fonti.
+     * Chiamata da {@link #chat(ChatbotChatRequest, String)} quando il modello supera la scadenza o fallisce.
+     *
+     * @param question domanda utente
+     * @param retrievedChunks chunk recuperati
+     * @param sessionId id della sessione server-side
+     * @param pendingAnswerId id della risposta completa differita, {@code null} se non prevista
+     * @return risposta estrattiva marcata come degradata
+     */
+    private ChatbotChatResponse degradedResponse(String question, List<RetrievedChunk> retrievedChunks,
+                                                 String sessionId, String pendingAnswerId) {
+        List<ExtractiveAnswerService.ExtractedSentence> sentences = extractiveAnswerService.extract(
+                question,
+                retrievedChunks.stream().map(RetrievedChunk::text).toList(),
+                degradedModeProperties.getMaxSentences());
+
+        StringBuilder answer = new StringBuilder(DEGRADED_INTRO).append("\n");
+        Set<Integer> chunkIds = new LinkedHashSet<>();
+        for (ExtractiveAnswerService.ExtractedSentence sentence : sentences) {
+            answer.append("\n- ").append(sentence.text());
+            chunkIds.add(sentence.chunkId());
+        }
+        if (pendingAnswerId != null) {
+            answer.append("\n\n").append(DEGRADED_PENDING_NOTE);
+        }
+
+        List<ChatbotSource> sources = buildSources(List.copyOf(chunkIds), retrievedChunks);
+        if (sources.isEmpty()) {
+            sources = buildDefaultSources(retrievedChunks);
+        }
+        return new ChatbotChatResponse(answer.toString(), sources, sessionId, true, pendingAnswerId);
+    }
 
-        return new ChatbotChatResponse(answer, sources);
+    /**
+     * Anticipa la retrieval di una domanda ancora in scrittura, con gli stessi parametri che userà la chat
+     * (braccio dell'esperimento dell'utente).
+     * Chiamata dal controller chatbot nell'endpoint {@code POST /api/chatbot/prefetch}.
+     *
+     * @param question testo parziale della domanda
+     * @param username utente autenticato
+     * @return esito del prefetch
+     */
+    public RetrievalPrefetchService.Outcome prefetch(String question, String username) {
+        if (question == null || question.length() > MAX_QUESTION_CHARS) {
+            return RetrievalPrefetchService.Outcome.SKIPPED;
+        }
+        RetrievalTuningService.Assignment assignment = retrievalTuningService.assign(username);
+        try (RetrievalTuningService.Scope ignored = retrievalTuningService.bind(assignment)) {
+            return retrievalPrefetchService.prefetch(username, question, assignment.parameters().chatTopK());
+        }
     }
 
     /**
@@ -171,9 +439,10 @@ public class ChatbotService {
      * Chiamata da {@link #chat(ChatbotChatRequest)} subito dopo la retrieval.
      *
      * @param documents chunk grezzi del vector store
+     * @param maxChunkChars lunghezza massima del testo di ciascun chunk
      * @return chunk interni con id, pagina, confidenza e testo
      */
-    private List<RetrievedChunk> toRetrievedChunks(List<Document> documents) {
+    List<RetrievedChunk> toRetrievedChunks(List<Document> documents, int maxChunkChars) {
         if (documents == null || documents.isEmpty()) return List.of();
 
         List<RetrievedChunk> chunks = new ArrayList<>(documents.size());
@@ -198,8 +467,8 @@ public class ChatbotService {
             }
 
             String text = doc.getText() != null ? doc.getText() : "";
-            if (text.length() > MAX_CHUNK_CHARS) {
-                text = text.substring(0, MAX_CHUNK_CHARS) + "…";
+            if (text.length() > maxChunkChars) {
+                text = text.substring(0, maxChunkChars) + "…";
             }
 
             chunks.add(new RetrievedChunk(i + 1, fileName, page, text, confidence));
@@ -215,7 +484,7 @@ public class ChatbotService {
      * @param chunks chunk recuperati e normalizzati
      * @return sezione testuale da allegare al prompt utente
      */
-    private String buildChunksContext(List<RetrievedChunk> chunks) {
+    String buildChunksContext(List<RetrievedChunk> chunks) {
         StringBuilder sb = new StringBuilder();
         sb.append("=== CHUNKS RECUPERATI (RAG) ===\n");
         sb.append("Usa SOLO questi chunk come fonti. Per citare un chunk usa il suo chunkId (numero).\n\n");
@@ -241,9 +510,10 @@ public class ChatbotService {
      * Chiamata da {@link #chat(ChatbotChatRequest)}.
      *
      * @param history storia conversazione lato client
+     * @param maxMessages numero massimo di messaggi da mantenere
      * @return sezione "storia chat" pronta per il prompt
      */
-    private String buildHistorySection(List<ChatTurn> history) {
+    String buildHistorySection(List<ChatTurn> history, int maxMessages) {
         if (history == null || history.isEmpty()) {
             return "=== STORIA CHAT ===\nNessuna.\n";
         }
@@ -258,7 +528,7 @@ public class ChatbotService {
             return "=== STORIA CHAT ===\nNessuna.\n";
         }
 
-        int from = Math.max(0, normalized.size() - MAX_HISTORY_MESSAGES);
+        int from = Math.max(0, normalized.size() - maxMessages);
         List<ChatTurn> last = normalized.subList(from, normalized.size());
 
         StringBuilder sb = new StringBuilder("=== STORIA CHAT (ultimi messaggi) ===\n");
@@ -269,6 +539,24 @@ public class ChatbotService {
         return sb.toString();
     }
 
+    /**
+     * Costruisce la sezione storia a partire dalla sessione server-side: riassunto dei turni vecchi
+     * seguito dagli ultimi turni testuali.
+     * Chiamata da {@link #chat(ChatbotChatRequest, String)} quando la sessione è attiva.
+     *
+     * @param summary riassunto compatto dei turni precedenti
+     * @param recentTurns ultimi turni della sessione
+     * @param maxMessages numero massimo di messaggi da mantenere
+     * @return sezioni "riassunto" e "storia chat" pronte per il prompt
+     */
+    String buildHistorySection(String summary, List<ChatTurn> recentTurns, int maxMessages) {
+        String recent = buildHistorySection(recentTurns, maxMessages);
+        if (summary == null || summary.isBlank()) {
+            return recent;
+        }
+        return "=== RIASSUNTO CONVERSAZIONE ===\n" + summary.trim() + "\n\n" + recent;
+    }
+
     /**
      * Interpreta la risposta LLM (preferibilmente JSON) in una struttura tipizzata.
      * Chiamata da {@link #chat(ChatbotChatRequest)}.
@@ -276,7 +564,7 @@ public class ChatbotService {
      * @param raw output grezzo del modello
      * @return risposta normalizzata con testo e id chunk citati
      */
-    private ParsedAnswer parseAnswer(String raw) {
+    ParsedAnswer parseAnswer(String raw) {
         if (raw == null || raw.isBlank()) {
             return new ParsedAnswer("", List.of());
         }
@@ -304,7 +592,7 @@ public class ChatbotService {
      * @param text output grezzo LLM
      * @return JSON object come stringa o {@code {}}
      */
-    private String extractJsonObject(String text) {
+    String extractJsonObject(String text) {
         if (text == null) {
             return "{}";
         }
@@ -338,7 +626,7 @@ public class ChatbotService {
      * @param node nodo JSON associato a {@code chunkIds}
      * @return lista ordinata di ID univoci
      */
-    private List<Integer> parseChunkIds(JsonNode node) {
+    List<Integer> parseChunkIds(JsonNode node) {
         if (node == null || !node.isArray()) return List.of();
 
         Set<Integer> ids = new LinkedHashSet<>();
@@ -458,7 +746,7 @@ public class ChatbotService {
 
     /**
      * Converte metadati eterogenei in intero quando possibile.
-     * Chiamata da {@link #toRetrievedChunks(List)} per i campi pagina.
+     * Chiamata da {@link #toRetrievedChunks(List, int)} per i campi pagina.
      *
      * @param value valore metadato grezzo
      * @return intero opzionale
@@ -478,7 +766,7 @@ public class ChatbotService {
 
     /**
      * Calcola una confidenza euristica in base al rank quando lo score non è disponibile.
-     * Chiamata da {@link #toRetrievedChunks(List)}.
+     * Chiamata da {@link #toRetrievedChunks(List, int)}.
      *
      * @param rankIndex posizione del chunk nei risultati retrieval
      * @return score normalizzato in range operativo
@@ -0,0 +1,258 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.ComparisonRetrievalProperties;
+import it.unicas.spring.springai.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Retrieval per le domande di confronto ("meglio il Pixel 9 o l'iPhone 16 per le foto?").
+ * Una sola ricerca vettoriale tende a riempire il contesto con i chunk del prodotto più "vicino"
+ * alla domanda; qui la domanda viene scomposta in una sottoquery per prodotto, eseguite in parallelo
+ * con un topK ridotto, e i risultati vengono alternati così che ogni prodotto sia rappresentato.
+ * I prodotti si riconoscono dal catalogo {@code dispositivi} e dai nomi dei PDF caricati, senza chiamate LLM.
+ */
+@Service
+@Slf4j
+public class ComparisonRetrievalService {
+
+    private static final long FILE_NAMES_TTL_NANOS = 5L * 60 * 1_000_000_000L;
+
+    /**
+     * Parole dei nomi file che non identificano il prodotto.
+     */
+    private static final Set<String> FILE_NAME_NOISE = Set.of(
+            "scheda", "schede", "tecnica", "tecniche", "datasheet", "manuale", "specifiche", "specs",
+            "brochure", "ufficiale", "guida", "utente", "it", "ita", "en", "eng", "pdf");
+
+    /**
+     * Connettivi di confronto rimossi dalla domanda prima di costruire le sottoquery.
+     */
+    private static final Pattern COMPARISON_WORDS = Pattern.compile(
+            "\\b(confronta(re)?|confronto|paragona(re)?|differenz[ae]|vs|versus|contro|rispetto a(l|llo|lla|i|gli|lle)?|"
+                    + "meglio|migliore|quale|oppure|o|e|tra|fra|per|di|del|della|il|lo|la|l|i|gli|le|un|una)\\b");
+
+    private final ComparisonRetrievalProperties properties;
+    private final RagService ragService;
+    private final QueryCategoryRouter queryCategoryRouter;
+    private final DocumentRepository documentRepository;
+    private final ExecutorService executor;
+
+    private volatile Set<String> fileProducts = Set.of();
+    private volatile long fileProductsLoadedAt;
+
+    public ComparisonRetrievalService(ComparisonRetrievalProperties properties, RagService ragService,
+                                      QueryCategoryRouter queryCategoryRouter, DocumentRepository documentRepository) {
+        this.properties = properties;
+        this.ragService = ragService;
+        this.queryCategoryRouter = queryCategoryRouter;
+        this.documentRepository = documentRepository;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getParallelism()), runnable -> {
+            Thread thread = new Thread(runnable, "comparison-retrieval");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Recupera i chunk per una domanda, con una ricerca per prodotto se la domanda ne cita più d'uno.
+     * Chiamata da {@link FollowUpRetrievalService} per ogni ricerca vettoriale non servita dalla cache di sessione.
+     *
+     * @param question domanda utente
+     * @param topK numero massimo di chunk
+     * @return chunk bilanciati tra i prodotti citati, o il risultato della ricerca singola
+     */
+    public List<Document> search(String question, int topK) {
+        if (!properties.isEnabled() || question == null) {
+            return ragService.searchRelevantDocuments(question, topK);
+        }
+
+        List<String> products = detectProducts(question);
+        if (products.size() < 2) {
+            return ragService.searchRelevantDocuments(question, topK);
+        }
+
+        int perProduct = Math.max(properties.getMinTopKPerProduct(), (topK + products.size() - 1) / products.size());
+        String aspects = aspects(question, products);
+
+        List<CompletableFuture<List<Document>>> futures = new ArrayList<>(products.size());
+        for (String product : products) {
+            String subquery = aspects.isEmpty() ? product : product + " " + aspects;
+            futures.add(submit(() -> ragService.searchRelevantDocuments(subquery, perProduct)));
+        }
+
+        List<List<Document>> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<List<Document>> future : futures) {
+                results.add(future.join());
+            }
+        } catch (Exception e) {
+            futures.forEach(future -> future.cancel(true));
+            RequestDeadline.checkCurrent("vector-search");
+            log.warn("Comparison retrieval failed, falling back to single search: {}", e.getMessage());
+            return ragService.searchRelevantDocuments(question, topK);
+        }
+
+        List<Document> merged = interleave(results, topK);
+        log.debug("Comparison retrieval for {} products ({} per product): {} chunks", products.size(), perProduct, merged.size());
+        return merged;
+    }
+
+    /**
+     * Esegue una sottoquery sul pool dedicato. Sul {@link RequestDeadline} corrente è registrato il task
+     * dell'executor, così la cancellazione interrompe davvero il thread della ricerca; il future restituito
+     * termina con il task (anche se annullato prima di partire) e annullarlo annulla il task.
+     *
+     * @param search ricerca da eseguire
+     * @return risultato della sottoquery
+     */
+    private CompletableFuture<List<Document>> submit(Supplier<List<Document>> search) {
+        CompletableFuture<List<Document>> result = new CompletableFuture<>();
+        Supplier<List<Document>> propagated = RequestDeadline.propagate(search);
+        FutureTask<List<Document>> task = new FutureTask<>(propagated::get) {
+            @Override
+            protected void done() {
+                try {
+                    result.complete(get());
+                } catch (CancellationException e) {
+                    result.cancel(false);
+                } catch (ExecutionException e) {
+                    result.completeExceptionally(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null) {
+            deadline.register("vector-search", task);
+        }
+        executor.execute(task);
+        return result;
+    }
+
+    /**
+     * Prodotti citati nella domanda, nell'ordine in cui compaiono; un nome contenuto in un altro
+     * più lungo già trovato ("iphone 16" dentro "iphone 16 pro") viene scartato.
+     */
+    List<String> detectProducts(String question) {
+        String normalized = QueryCategoryRouter.normalize(question);
+
+        Set<String> candidates = new LinkedHashSet<>(queryCategoryRouter.mentionedDevices(question));
+        for (String product : fileProducts()) {
+            if (QueryCategoryRouter.containsWord(normalized, product)) {
+                candidates.add(product);
+            }
+        }
+
+        List<String> products = new ArrayList<>();
+        for (String candidate : candidates) {
+            boolean shadowed = candidates.stream()
+                    .anyMatch(other -> other.length() > candidate.length() && QueryCategoryRouter.containsWord(other, candidate));
+            if (!shadowed) {
+                products.add(candidate);
+            }
+        }
+
+        products.sort(Comparator.comparingInt(normalized::indexOf));
+        return products.size() > properties.getMaxProducts() ? products.subList(0, properties.getMaxProducts()) : products;
+    }
+
+    /**
+     * Parte della domanda che descrive cosa confrontare, senza nomi dei prodotti né connettivi.
+     */
+    private String aspects(String question, List<String> products) {
+        String text = QueryCategoryRouter.normalize(question);
+        for (String product : products) {
+            text = text.replace(product, " ");
+        }
+        text = text.replaceAll("[^\\p{L}\\p{N}]+", " ");
+        text = COMPARISON_WORDS.matcher(text).replaceAll(" ");
+        return text.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Alterna i risultati per rango (primo di ogni prodotto, poi secondo, ...) eliminando i duplicati.
+     */
+    private List<Document> interleave(List<List<Document>> results, int topK) {
+        Map<String, Document> merged = new LinkedHashMap<>();
+        int depth = results.stream().mapToInt(List::size).max().orElse(0);
+        for (int rank = 0; rank < depth && merged.size() < topK; rank++) {
+            for (List<Document> result : results) {
+                if (rank < result.size() && merged.size() < topK) {
+                    Document document = result.get(rank);
+                    merged.putIfAbsent(document.getId(), document);
+                }
+            }
+        }
+        return List.copyOf(merged.values());
+    }
+
+    private Set<String> fileProducts() {
+        long now = System.nanoTime();
+        if (fileProductsLoadedAt != 0 && now - fileProductsLoadedAt < FILE_NAMES_TTL_NANOS) {
+            return fileProducts;
+        }
+
+        try {
+            Set<String> products = new LinkedHashSet<>();
+            for (String fileName : documentRepository.findProcessedOriginalFileNames()) {
+                String product = productName(fileName);
+                if (!product.isEmpty()) {
+                    products.add(product);
+                }
+            }
+            fileProducts = Set.copyOf(products);
+        } catch (Exception e) {
+            log.warn("Unable to load document names for comparison retrieval: {}", e.getMessage());
+        }
+        fileProductsLoadedAt = now;
+        return fileProducts;
+    }
+
+    /**
+     * Ricava il nome prodotto dal nome file: "Scheda_Tecnica-Pixel-9.pdf" diventa "pixel 9".
+     */
+    static String productName(String fileName) {
+        if (fileName == null) return "";
+
+        String base = fileName.replaceFirst("(?i)\\.pdf$", "").replaceAll("[-_.()\\[\\]]+", " ");
+        List<String> words = new ArrayList<>();
+        for (String word : QueryCategoryRouter.normalize(base).split(" ")) {
+            if (!word.isEmpty() && !FILE_NAME_NOISE.contains(word)) {
+                words.add(word);
+            }
+        }
+        String product = String.join(" ", words);
+        return product.length() < 3 ? "" : product;
+    }
+}
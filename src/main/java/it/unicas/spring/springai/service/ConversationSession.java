@@ -0,0 +1,144 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.dto.ChatTurn;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Stato in memoria di una conversazione chatbot: ultimi turni testuali più un riassunto compatto
+ * dei turni precedenti, così il costo in token della storia resta costante.
+ * Thread-safe: i metodi pubblici sono sincronizzati sull'istanza.
+ */
+public final class ConversationSession {
+
+    /**
+     * Vista immutabile della storia da inserire nel prompt.
+     *
+     * @param summary riassunto dei turni più vecchi (vuoto se assente)
+     * @param recentTurns ultimi turni in ordine cronologico
+     */
+    public record Context(String summary, List<ChatTurn> recentTurns) {
+    }
+
+    private final String id;
+    private final String username;
+    private final int recentTurnsLimit;
+    private final int summaryMaxChars;
+    private final int summaryLineChars;
+
+    private final Deque<ChatTurn> recentTurns = new ArrayDeque<>();
+    private final Deque<String> summaryLines = new ArrayDeque<>();
+    private int summaryChars;
+    private int turnCount;
+    private volatile long lastAccessNanos = System.nanoTime();
+    private volatile FollowUpRetrievalService.CachedRetrieval lastRetrieval;
+
+    ConversationSession(String id, String username, int recentTurnsLimit, int summaryMaxChars, int summaryLineChars) {
+        this.id = id;
+        this.username = username;
+        this.recentTurnsLimit = Math.max(2, recentTurnsLimit);
+        this.summaryMaxChars = Math.max(0, summaryMaxChars);
+        this.summaryLineChars = Math.max(40, summaryLineChars);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String username() {
+        return username;
+    }
+
+    long lastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    FollowUpRetrievalService.CachedRetrieval lastRetrieval() {
+        return lastRetrieval;
+    }
+
+    void lastRetrieval(FollowUpRetrievalService.CachedRetrieval retrieval) {
+        lastRetrieval = retrieval;
+    }
+
+    /**
+     * Aggiunge un turno e comprime nel riassunto quelli che escono dalla finestra recente.
+     *
+     * @param turn turno utente o assistente
+     */
+    public synchronized void append(ChatTurn turn) {
+        if (turn == null || turn.content() == null || turn.content().isBlank()) {
+            return;
+        }
+
+        recentTurns.addLast(new ChatTurn(turn.role(), turn.content().trim()));
+        turnCount++;
+        while (recentTurns.size() > recentTurnsLimit) {
+            fold(recentTurns.removeFirst());
+        }
+        touch();
+    }
+
+    /**
+     * Restituisce riassunto e turni recenti da usare nel prompt.
+     *
+     * @return contesto corrente della conversazione
+     */
+    public synchronized Context context() {
+        return new Context(String.join("\n", summaryLines), List.copyOf(recentTurns));
+    }
+
+    synchronized int turnCount() {
+        return turnCount;
+    }
+
+    synchronized void restore(String summary, List<ChatTurn> turns, int totalTurns) {
+        summaryLines.clear();
+        summaryChars = 0;
+        if (summary != null && !summary.isBlank()) {
+            for (String line : summary.split("\n")) {
+                addSummaryLine(line);
+            }
+        }
+        recentTurns.clear();
+        for (ChatTurn turn : turns) {
+            append(turn);
+        }
+        turnCount = Math.max(totalTurns, turnCount);
+    }
+
+    private void fold(ChatTurn turn) {
+        String role = "assistant".equalsIgnoreCase(turn.role()) ? "Assistente" : "Utente";
+        String text = "assistant".equalsIgnoreCase(turn.role()) ? firstSentence(turn.content()) : turn.content();
+        text = text.replaceAll("\\s+", " ").trim();
+        if (text.length() > summaryLineChars) {
+            text = text.substring(0, summaryLineChars) + "…";
+        }
+        addSummaryLine("- " + role + ": " + text);
+    }
+
+    private void addSummaryLine(String line) {
+        if (line.isBlank()) return;
+        summaryLines.addLast(line);
+        summaryChars += line.length() + 1;
+        while (summaryChars > summaryMaxChars && !summaryLines.isEmpty()) {
+            summaryChars -= summaryLines.removeFirst().length() + 1;
+        }
+    }
+
+    private String firstSentence(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c == '.' || c == '!' || c == '?') && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1)))) {
+                return text.substring(0, i + 1);
+            }
+        }
+        return text;
+    }
+}
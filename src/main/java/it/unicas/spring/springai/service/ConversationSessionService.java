@@ -0,0 +1,214 @@
+package it.unicas.spring.springai.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicas.spring.springai.config.ChatSessionProperties;
+import it.unicas.spring.springai.dto.ChatTurn;
+import it.unicas.spring.springai.model.ChatSession;
+import it.unicas.spring.springai.repository.ChatSessionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessioni di conversazione lato server: cache in memoria limitata con eviction per inattività/LRU
+ * e persistenza write-behind su Postgres, così i client inviano solo l'id sessione e la domanda.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationSessionService {
+
+    private static final TypeReference<List<ChatTurn>> TURNS_TYPE = new TypeReference<>() {
+    };
+
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatSessionProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, ConversationSession> sessions = new ConcurrentHashMap<>();
+    /**
+     * Sessioni modificate e non ancora salvate, per riferimento: una sessione rimossa dalla cache mentre una
+     * richiesta la sta ancora usando viene comunque salvata.
+     */
+    private final Set<ConversationSession> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Restituisce la sessione indicata (dalla memoria o da Postgres) oppure ne crea una nuova.
+     * Chiamata da {@link ChatbotService#chat(it.unicas.spring.springai.dto.ChatbotChatRequest, String)}.
+     *
+     * @param sessionId id sessione inviato dal client, anche {@code null}
+     * @param username utente autenticato proprietario della sessione
+     * @param seedHistory storia inviata dal client, usata solo per inizializzare una sessione nuova
+     * @return sessione dell'utente
+     * @throws IllegalArgumentException se la sessione appartiene a un altro utente
+     */
+    public ConversationSession resolve(String sessionId, String username, List<ChatTurn> seedHistory) {
+        if (sessionId != null && !sessionId.isBlank()) {
+            ConversationSession session = cachedOrLoaded(sessionId.trim());
+            if (session != null) {
+                if (!session.username().equals(username)) {
+                    throw new IllegalArgumentException("Sessione chat non valida");
+                }
+                session.touch();
+                return session;
+            }
+        }
+
+        ConversationSession session = newSession(UUID.randomUUID().toString(), username);
+        if (seedHistory != null) {
+            seedHistory.stream()
+                    .filter(Objects::nonNull)
+                    .filter(t -> "user".equalsIgnoreCase(t.role()) || "assistant".equalsIgnoreCase(t.role()))
+                    .forEach(session::append);
+        }
+        sessions.put(session.id(), session);
+        dirty.add(session);
+        return session;
+    }
+
+    /**
+     * Registra domanda e risposta di un turno completato.
+     * Chiamata da {@link ChatbotService} al termine di ogni chat.
+     *
+     * @param session sessione corrente
+     * @param question domanda utente
+     * @param answer risposta assistente
+     */
+    public void recordExchange(ConversationSession session, String question, String answer) {
+        session.append(new ChatTurn("user", question));
+        session.append(new ChatTurn("assistant", answer));
+        dirty.add(session);
+    }
+
+    /**
+     * Chiude una sessione rimuovendola da memoria e database.
+     * Chiamata dall'endpoint {@code DELETE /api/chatbot/sessions/{sessionId}}.
+     *
+     * @param sessionId id sessione
+     * @param username utente proprietario
+     */
+    public void close(String sessionId, String username) {
+        ConversationSession session = sessions.get(sessionId);
+        if (session != null && session.username().equals(username)) {
+            sessions.remove(sessionId);
+            dirty.remove(session);
+        }
+        chatSessionRepository.findBySessionIdAndUsername(sessionId, username)
+                .ifPresent(chatSessionRepository::delete);
+    }
+
+    /**
+     * Scrive su Postgres le sessioni modificate e rimuove dalla memoria quelle inattive o in eccesso.
+     * Chiamata dallo scheduler Spring ogni {@code app.chat.sessions.flush-interval}.
+     */
+    @Scheduled(fixedDelayString = "${app.chat.sessions.flush-interval:5s}")
+    public void flushAndEvict() {
+        flushDirty();
+
+        long idleNanos = properties.getIdleTimeout().toNanos();
+        long now = System.nanoTime();
+        sessions.values().removeIf(s -> now - s.lastAccessNanos() > idleNanos && !dirty.contains(s));
+
+        int excess = sessions.size() - properties.getMaxSessions();
+        if (excess > 0) {
+            sessions.values().stream()
+                    .filter(s -> !dirty.contains(s))
+                    .sorted(Comparator.comparingLong(ConversationSession::lastAccessNanos))
+                    .limit(excess)
+                    .map(ConversationSession::id)
+                    .toList()
+                    .forEach(sessions::remove);
+        }
+    }
+
+    /**
+     * Salva le sessioni in sospeso allo shutdown dell'applicazione.
+     */
+    @PreDestroy
+    void flushOnShutdown() {
+        flushDirty();
+    }
+
+    private void flushDirty() {
+        Iterator<ConversationSession> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            ConversationSession session = iterator.next();
+            iterator.remove();
+
+            try {
+                ConversationSession.Context context = session.context();
+                ChatSession entity = new ChatSession(
+                        session.id(),
+                        session.username(),
+                        context.summary(),
+                        objectMapper.writeValueAsString(context.recentTurns()),
+                        session.turnCount(),
+                        LocalDateTime.now()
+                );
+                chatSessionRepository.save(entity);
+            } catch (Exception e) {
+                log.warn("Unable to persist chat session {}: {}", session.id(), e.getMessage());
+                dirty.add(session);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sessione dalla cache oppure letta da Postgres. La lettura avviene fuori da {@code computeIfAbsent},
+     * per non bloccare il bin della mappa durante la query; se due richieste la caricano insieme vince la prima.
+     *
+     * @param sessionId id sessione
+     * @return sessione, {@code null} se non esiste
+     */
+    private ConversationSession cachedOrLoaded(String sessionId) {
+        ConversationSession session = sessions.get(sessionId);
+        if (session != null) {
+            return session;
+        }
+        ConversationSession loaded = load(sessionId);
+        if (loaded == null) {
+            return null;
+        }
+        ConversationSession existing = sessions.putIfAbsent(sessionId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private ConversationSession load(String sessionId) {
+        return chatSessionRepository.findById(sessionId)
+                .map(entity -> {
+                    ConversationSession session = newSession(entity.getSessionId(), entity.getUsername());
+                    session.restore(entity.getSummary(), parseTurns(entity.getRecentTurns()), entity.getTurnCount());
+                    return session;
+                })
+                .orElse(null);
+    }
+
+    private ConversationSession newSession(String id, String username) {
+        return new ConversationSession(id, username,
+                properties.getRecentTurns(), properties.getSummaryMaxChars(), properties.getSummaryLineChars());
+    }
+
+    private List<ChatTurn> parseTurns(String json) {
+        if (json == null || json.isBlank()) return List.of();
+        try {
+            return objectMapper.readValue(json, TURNS_TYPE);
+        } catch (Exception e) {
+            log.debug("Unable to parse stored chat turns: {}", e.getMessage());
+            return List.of();
+        }
+    }
+}
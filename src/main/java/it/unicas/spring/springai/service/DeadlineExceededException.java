@@ -0,0 +1,25 @@
+package it.unicas.spring.springai.service;
+
+/**
+ * Segnala che una richiesta di chat è stata annullata o ha esaurito il suo budget prima di una fase.
+ * Lanciata dai checkpoint di {@link RequestDeadline} e tradotta in HTTP 504 dal controller chatbot.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private final String stage;
+    private final RequestDeadline.CancelReason reason;
+
+    public DeadlineExceededException(String stage, RequestDeadline.CancelReason reason) {
+        super("La richiesta ha superato il tempo massimo di risposta");
+        this.stage = stage;
+        this.reason = reason;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public RequestDeadline.CancelReason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,200 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.DegradedModeProperties;
+import it.unicas.spring.springai.dto.ChatbotChatResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Esegue le chiamate al modello con una scadenza per richiesta e conserva le generazioni scadute,
+ * così la risposta completa può essere ritirata in seguito con
+ * {@code GET /api/chatbot/answers/{id}} dopo che il client ha ricevuto la risposta degradata.
+ */
+@Service
+@Slf4j
+public class DeferredAnswerService {
+
+    private final DegradedModeProperties properties;
+    private final ExecutorService executor;
+    private final Map<String, PendingAnswer> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Risposta completa in attesa di essere ritirata.
+     *
+     * @param owner utente che ha posto la domanda
+     * @param answer generazione in corso o completata
+     * @param createdNanos istante di registrazione ({@link System#nanoTime()})
+     */
+    public record PendingAnswer(String owner, CompletableFuture<ChatbotChatResponse> answer, long createdNanos) {
+    }
+
+    public DeferredAnswerService(DegradedModeProperties properties) {
+        this.properties = properties;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getGenerationThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "chat-generation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Avvia una chiamata al modello sul pool dedicato. Annullare il future interrompe il thread della chiamata,
+     * chiudendo la connessione HTTP verso il provider; la generazione è registrata sul {@link RequestDeadline}
+     * corrente, così viene annullata anche quando il client annulla la richiesta. La span della chiamata resta figlia
+     * della richiesta ({@link TracingContext}).
+     * Chiamata da {@link ChatbotService} per ogni generazione.
+     *
+     * @param generation chiamata bloccante al modello
+     * @return generazione in corso
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> generation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Supplier<T> traced = TracingContext.wrap(generation);
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(traced.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null) {
+            deadline.register("generation", result);
+        }
+        return result;
+    }
+
+    /**
+     * Attende la generazione entro {@code app.chat.degraded.generation-deadline} e comunque non oltre il budget
+     * residuo della richiesta, o senza limite se la modalità degradata è disattiva.
+     * Chiamata da {@link ChatbotService} subito dopo {@link #submit(Supplier)}.
+     *
+     * @param generation generazione in corso
+     * @return risultato della generazione
+     * @throws TimeoutException se la scadenza è trascorsa; la generazione resta in esecuzione
+     */
+    public <T> T await(CompletableFuture<T> generation) throws TimeoutException {
+        RequestDeadline deadline = RequestDeadline.current();
+        try {
+            if (!properties.isEnabled()) {
+                return deadline != null ? awaitWithinBudget(generation, deadline) : generation.get();
+            }
+            long timeout = properties.getGenerationDeadline().toMillis();
+            if (deadline != null) {
+                timeout = Math.min(timeout, deadline.remainingMillis());
+            }
+            return generation.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (CancellationException e) {
+            throw new DeadlineExceededException("generation", deadline != null && deadline.isCancelled()
+                    ? deadline.cancelReason()
+                    : RequestDeadline.CancelReason.BUDGET_EXHAUSTED);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            generation.cancel(true);
+            throw new IllegalStateException("Generazione interrotta", e);
+        }
+    }
+
+    /**
+     * Senza modalità degradata non c'è risposta alternativa: allo scadere del budget la generazione viene annullata.
+     */
+    private <T> T awaitWithinBudget(CompletableFuture<T> generation, RequestDeadline deadline)
+            throws ExecutionException, InterruptedException {
+        try {
+            return generation.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            deadline.cancel(RequestDeadline.CancelReason.BUDGET_EXHAUSTED);
+            throw new DeadlineExceededException("generation", RequestDeadline.CancelReason.BUDGET_EXHAUSTED);
+        }
+    }
+
+    /**
+     * Registra la risposta completa di una generazione scaduta.
+     * Chiamata da {@link ChatbotService} quando risponde in modalità degradata.
+     *
+     * @param username utente proprietario
+     * @param answer risposta completa in arrivo
+     * @return id da interrogare, {@code null} se le risposte differite sono disattive o al limite
+     */
+    public String defer(String username, CompletableFuture<ChatbotChatResponse> answer) {
+        if (!properties.isDeferredAnswers() || username == null || pending.size() >= properties.getMaxPending()) {
+            return null;
+        }
+
+        String id = UUID.randomUUID().toString();
+        pending.put(id, new PendingAnswer(username, answer, System.nanoTime()));
+        return id;
+    }
+
+    /**
+     * Restituisce una risposta differita dell'utente; se completata viene rimossa.
+     * Chiamata dal controller chatbot nell'endpoint {@code GET /api/chatbot/answers/{id}}.
+     *
+     * @param id id restituito nella risposta degradata
+     * @param username utente autenticato
+     * @return risposta in attesa, vuoto se sconosciuta, scaduta o di un altro utente
+     */
+    public Optional<PendingAnswer> find(String id, String username) {
+        if (id == null) return Optional.empty();
+
+        PendingAnswer answer = pending.get(id);
+        if (answer == null || !answer.owner().equals(username)) {
+            return Optional.empty();
+        }
+        if (answer.answer().isDone()) {
+            pending.remove(id, answer);
+        }
+        return Optional.of(answer);
+    }
+
+    /**
+     * Scarta le risposte differite non ritirate entro {@code app.chat.degraded.pending-ttl},
+     * interrompendo le generazioni ancora in corso.
+     * Chiamata dallo scheduler Spring.
+     */
+    @Scheduled(fixedDelayString = "${app.chat.degraded.pending-ttl:5m}")
+    public void evictExpired() {
+        long cutoff = System.nanoTime() - properties.getPendingTtl().toNanos();
+        pending.entrySet().removeIf(entry -> {
+            PendingAnswer answer = entry.getValue();
+            if (answer.createdNanos() - cutoff > 0) return false;
+
+            answer.answer().cancel(true);
+            return true;
+        });
+    }
+}
@@ -0,0 +1,133 @@
+package it.unicas.spring.springai.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Costruisce una risposta estrattiva senza LLM: seleziona dai chunk recuperati le frasi
+ * che condividono più termini con la domanda. Usata dal chatbot in modalità degradata.
+ */
+@Service
+public class ExtractiveAnswerService {
+
+    private static final Pattern SENTENCE_SPLIT = Pattern.compile("(?<=[.!?;])\\s+|\\n+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MIN_SENTENCE_CHARS = 15;
+    private static final int MAX_SENTENCE_CHARS = 400;
+    private static final int STEM_LENGTH = 6;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "che", "chi", "come", "con", "cosa", "del", "dello", "della", "delle", "dei", "degli", "per",
+            "una", "uno", "sono", "quale", "quali", "quanto", "quanta", "quanti", "quante", "hanno", "nel",
+            "nella", "nelle", "sul", "sulla", "dal", "dalla", "tra", "fra", "non", "piu", "meno", "anche",
+            "questo", "questa", "puoi", "dimmi", "vorrei", "sapere", "mio", "mia", "suo", "sua", "gli");
+
+    /**
+     * Frase selezionata per la risposta estrattiva.
+     *
+     * @param chunkId id del chunk di provenienza (1..N, nell'ordine dei chunk forniti)
+     * @param text frase originale
+     */
+    public record ExtractedSentence(int chunkId, String text) {
+    }
+
+    private record Candidate(int chunkId, int position, String text, double score) {
+    }
+
+    /**
+     * Seleziona le frasi più pertinenti alla domanda, nell'ordine dei chunk e del testo.
+     * Chiamata da {@link ChatbotService} quando la generazione supera la scadenza o fallisce.
+     *
+     * @param question domanda utente
+     * @param chunkTexts testi dei chunk recuperati, in ordine di pertinenza
+     * @param maxSentences numero massimo di frasi
+     * @return frasi selezionate; se nessuna frase condivide termini con la domanda, l'inizio dei primi chunk
+     */
+    public List<ExtractedSentence> extract(String question, List<String> chunkTexts, int maxSentences) {
+        if (chunkTexts == null || chunkTexts.isEmpty() || maxSentences <= 0) {
+            return List.of();
+        }
+
+        Set<String> questionTerms = terms(question);
+        List<Candidate> candidates = new ArrayList<>();
+        List<Candidate> leads = new ArrayList<>();
+
+        for (int i = 0; i < chunkTexts.size(); i++) {
+            String text = chunkTexts.get(i);
+            if (text == null || text.isBlank()) continue;
+
+            double rankBonus = 0.1 * (chunkTexts.size() - i) / chunkTexts.size();
+            String[] sentences = SENTENCE_SPLIT.split(text.trim());
+            int position = 0;
+            for (String raw : sentences) {
+                String sentence = raw.trim();
+                if (sentence.length() < MIN_SENTENCE_CHARS) continue;
+                if (sentence.length() > MAX_SENTENCE_CHARS) {
+                    sentence = sentence.substring(0, MAX_SENTENCE_CHARS) + "…";
+                }
+
+                if (position == 0 && leads.size() < maxSentences) {
+                    leads.add(new Candidate(i + 1, position, sentence, 0));
+                }
+
+                double score = score(questionTerms, sentence);
+                if (score > 0) {
+                    candidates.add(new Candidate(i + 1, position, sentence, score + rankBonus));
+                }
+                position++;
+            }
+        }
+
+        List<Candidate> selected = candidates.isEmpty()
+                ? leads.subList(0, Math.min(2, leads.size()))
+                : candidates.stream()
+                    .sorted(Comparator.comparingDouble(Candidate::score).reversed())
+                    .limit(maxSentences)
+                    .toList();
+
+        return selected.stream()
+                .sorted(Comparator.comparingInt(Candidate::chunkId).thenComparingInt(Candidate::position))
+                .map(candidate -> new ExtractedSentence(candidate.chunkId(), candidate.text()))
+                .toList();
+    }
+
+    /**
+     * Quota dei termini della domanda presenti nella frase, con un piccolo bonus per le frasi
+     * con valori numerici (le specifiche tecniche sono quasi sempre numeri e unità di misura).
+     */
+    private double score(Set<String> questionTerms, String sentence) {
+        if (questionTerms.isEmpty()) return 0;
+
+        Set<String> sentenceTerms = terms(sentence);
+        int overlap = 0;
+        for (String term : questionTerms) {
+            if (sentenceTerms.contains(term)) {
+                overlap++;
+            }
+        }
+        if (overlap == 0) return 0;
+
+        double score = (double) overlap / questionTerms.size();
+        if (sentence.chars().anyMatch(Character::isDigit)) {
+            score += 0.15;
+        }
+        return score;
+    }
+
+    private Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) return terms;
+
+        for (String word : NON_WORD.split(QueryCategoryRouter.normalize(text))) {
+            if (word.length() < 3 || STOP_WORDS.contains(word)) continue;
+            terms.add(word.length() > STEM_LENGTH ? word.substring(0, STEM_LENGTH) : word);
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,175 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.FlightRecorderProperties;
+import it.unicas.spring.springai.dto.FlightRecordingStatus;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Avvia e ferma su richiesta una registrazione JFR con gli eventi delle pipeline di chat e ingestione
+ * ({@link ChatStageEvent}, {@link IngestionStageEvent}) sommati a una configurazione del JDK.
+ * È attiva al più una registrazione per istanza.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FlightRecorderService {
+
+    private static final Set<String> BASE_CONFIGURATIONS = Set.of("default", "profile");
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final FlightRecorderProperties properties;
+    private final ResourceLoader resourceLoader;
+
+    private Recording recording;
+    private String recordingBase;
+
+    /**
+     * Avvia una registrazione su file con il profilo dell'applicazione.
+     * Chiamata dall'endpoint admin {@code POST /api/admin/jfr/start}.
+     *
+     * @param baseConfiguration {@code default} o {@code profile}; se {@code null} quella configurata
+     * @param duration durata prima dell'arresto automatico; se {@code null} o oltre il massimo, il massimo configurato
+     * @return stato della registrazione avviata
+     * @throws IllegalArgumentException se la configurazione base non è valida
+     * @throws IllegalStateException se una registrazione è già in corso
+     * @throws IOException se il profilo o la cartella di destinazione non sono utilizzabili
+     */
+    public synchronized FlightRecordingStatus start(String baseConfiguration, Duration duration) throws IOException {
+        String base = baseConfiguration != null && !baseConfiguration.isBlank()
+                ? baseConfiguration.trim()
+                : properties.getBaseConfiguration();
+        if (!BASE_CONFIGURATIONS.contains(base)) {
+            throw new IllegalArgumentException("Configurazione JFR non valida: " + base + " (ammesse: default, profile)");
+        }
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Una registrazione JFR è già in corso: " + recording.getName());
+        }
+        discard();
+
+        Duration maxDuration = properties.getMaxDuration();
+        Duration effective = duration == null || duration.isNegative() || duration.isZero()
+                || duration.compareTo(maxDuration) > 0 ? maxDuration : duration;
+
+        Map<String, String> settings = new HashMap<>(loadConfiguration(base).getSettings());
+        settings.putAll(loadApplicationSettings().getSettings());
+
+        String name = "springai-" + LocalDateTime.now().format(FILE_TIMESTAMP);
+        Recording started = new Recording(settings);
+        started.setName(name);
+        started.setToDisk(true);
+        started.setDuration(effective);
+        started.setDestination(directory().resolve(name + ".jfr"));
+        started.start();
+
+        recording = started;
+        recordingBase = base;
+        log.info("JFR recording {} started with {} settings for {}", name, base, effective);
+        return status();
+    }
+
+    /**
+     * Ferma la registrazione (se non già scaduta) e restituisce il file prodotto; il chiamante lo elimina
+     * dopo averlo inviato.
+     * Chiamata dall'endpoint admin {@code POST /api/admin/jfr/stop}.
+     *
+     * @return percorso del file {@code .jfr}
+     * @throws IllegalStateException se non è stata avviata nessuna registrazione
+     * @throws IOException se il file non è stato scritto
+     */
+    public synchronized Path stop() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("Nessuna registrazione JFR avviata");
+        }
+        Recording current = recording;
+        Path destination = current.getDestination();
+        recording = null;
+        recordingBase = null;
+        try {
+            if (current.getState() == RecordingState.RUNNING) {
+                current.stop();
+            }
+        } finally {
+            current.close();
+        }
+        if (destination == null || !Files.exists(destination)) {
+            throw new IOException("File della registrazione JFR non trovato");
+        }
+        log.info("JFR recording {} stopped ({} bytes)", current.getName(), Files.size(destination));
+        return destination;
+    }
+
+    /**
+     * Stato della registrazione corrente o dell'ultima scaduta e non ancora scaricata.
+     * Chiamata dall'endpoint admin {@code GET /api/admin/jfr}.
+     *
+     * @return stato della registrazione
+     */
+    public synchronized FlightRecordingStatus status() {
+        if (recording == null) {
+            return new FlightRecordingStatus(null, "NONE", null, null, null, 0);
+        }
+        return new FlightRecordingStatus(
+                recording.getName(),
+                recording.getState().name(),
+                recording.getStartTime(),
+                recording.getDuration() != null ? recording.getDuration().toSeconds() : null,
+                recordingBase,
+                recording.getSize());
+    }
+
+    private void discard() throws IOException {
+        if (recording == null) {
+            return;
+        }
+        Path destination = recording.getDestination();
+        recording.close();
+        recording = null;
+        if (destination != null) {
+            Files.deleteIfExists(destination);
+        }
+    }
+
+    private Configuration loadConfiguration(String base) throws IOException {
+        try {
+            return Configuration.getConfiguration(base);
+        } catch (ParseException e) {
+            throw new IOException("Configurazione JFR " + base + " non leggibile", e);
+        }
+    }
+
+    private Configuration loadApplicationSettings() throws IOException {
+        try (Reader reader = new InputStreamReader(
+                resourceLoader.getResource(properties.getSettings()).getInputStream(), StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        } catch (ParseException e) {
+            throw new IOException("Profilo JFR " + properties.getSettings() + " non valido", e);
+        }
+    }
+
+    private Path directory() throws IOException {
+        Path directory = properties.getDirectory() != null && !properties.getDirectory().isBlank()
+                ? Path.of(properties.getDirectory())
+                : Path.of(System.getProperty("java.io.tmpdir"));
+        return Files.createDirectories(directory);
+    }
+}
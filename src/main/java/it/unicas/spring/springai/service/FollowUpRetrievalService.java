@@ -0,0 +1,215 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.FollowUpRetrievalProperties;
+import it.unicas.spring.springai.model.CategoriaDispositivo;
+import it.unicas.spring.springai.repository.VectorPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Retrieval consapevole della sessione: per le domande di follow-up sullo stesso prodotto
+ * ("e la batteria?", "quanto costa?") riordina localmente i chunk del turno precedente
+ * invece di rifare la ricerca vettoriale, che su domande così brevi restituisce chunk peggiori.
+ * Il riconoscimento del follow-up usa solo nomi di catalogo e categorie, senza chiamate LLM.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FollowUpRetrievalService {
+
+    private final ComparisonRetrievalService comparisonRetrievalService;
+    private final RetrievalPrefetchService retrievalPrefetchService;
+    private final QueryCategoryRouter queryCategoryRouter;
+    private final VectorPartitionService vectorPartitionService;
+    private final VectorPartitionRepository vectorPartitionRepository;
+    private final EmbeddingModel embeddingModel;
+    private final FollowUpRetrievalProperties properties;
+
+    /**
+     * Ultimo set di chunk recuperato in una sessione.
+     *
+     * @param anchorQuery ultima domanda non di follow-up (identifica il prodotto di cui si parla)
+     * @param devices nomi di catalogo citati nella domanda o nei chunk
+     * @param categories categorie citate nella domanda o nelle fonti
+     * @param chunks chunk recuperati
+     * @param embeddings embedding dei chunk per id, caricati al primo follow-up
+     * @param createdNanos istante di creazione ({@link System#nanoTime()})
+     */
+    record CachedRetrieval(
+            String anchorQuery,
+            Set<String> devices,
+            Set<CategoriaDispositivo> categories,
+            List<Document> chunks,
+            Map<String, float[]> embeddings,
+            long createdNanos
+    ) {
+
+        CachedRetrieval withEmbeddings(Map<String, float[]> loaded) {
+            return new CachedRetrieval(anchorQuery, devices, categories, chunks, loaded, createdNanos);
+        }
+    }
+
+    /**
+     * Recupera i chunk per un turno di chat, riusando quelli della sessione quando la domanda è un follow-up.
+     * Chiamata da {@link ChatbotService#chat(it.unicas.spring.springai.dto.ChatbotChatRequest, String)}.
+     *
+     * @param session sessione corrente, {@code null} per una ricerca senza cache
+     * @param question domanda utente
+     * @param topK numero massimo di chunk
+     * @return chunk ordinati per pertinenza
+     */
+    public List<Document> retrieve(ConversationSession session, String question, int topK) {
+        if (session == null || !properties.isEnabled()) {
+            return comparisonRetrievalService.search(question, topK);
+        }
+
+        CachedRetrieval cached = session.lastRetrieval();
+        boolean followUp = cached != null && isFollowUp(question, cached);
+
+        if (followUp) {
+            List<Document> reused = rerank(session, cached, question, topK);
+            if (!reused.isEmpty()) {
+                log.debug("Follow-up question answered from {} cached chunks", reused.size());
+                return reused;
+            }
+        }
+
+        String anchorQuery = followUp ? cached.anchorQuery() : question;
+        String searchQuery = followUp ? anchorQuery + " " + question : question;
+        List<Document> fresh = retrievalPrefetchService.take(session.username(), searchQuery, topK)
+                .orElseGet(() -> comparisonRetrievalService.search(searchQuery, topK));
+        if (!fresh.isEmpty()) {
+            session.lastRetrieval(snapshot(anchorQuery, fresh));
+        }
+        return fresh;
+    }
+
+    /**
+     * Stabilisce, senza LLM, se la domanda resta sul prodotto del turno precedente:
+     * i dispositivi citati devono essere già noti, la categoria non deve cambiare e,
+     * se non cita alcun dispositivo, la domanda deve essere breve.
+     */
+    private boolean isFollowUp(String question, CachedRetrieval cached) {
+        if (System.nanoTime() - cached.createdNanos() > properties.getMaxAge().toNanos()) {
+            return false;
+        }
+
+        Set<String> devices = queryCategoryRouter.mentionedDevices(question);
+        if (!devices.isEmpty()) {
+            return cached.devices().containsAll(devices);
+        }
+
+        Set<CategoriaDispositivo> categories = queryCategoryRouter.detect(question);
+        if (!categories.isEmpty() && !cached.categories().containsAll(categories)) {
+            return false;
+        }
+
+        return question.trim().split("\\s+").length <= properties.getMaxWords();
+    }
+
+    /**
+     * Riordina i chunk in cache per similarità con la domanda ancorata al prodotto precedente.
+     * Restituisce una lista vuota se troppo pochi chunk superano la soglia, così da forzare una nuova ricerca.
+     */
+    private List<Document> rerank(ConversationSession session, CachedRetrieval cached, String question, int topK) {
+        Map<String, float[]> embeddings = cached.embeddings();
+        if (embeddings.isEmpty()) {
+            embeddings = loadEmbeddings(cached.chunks());
+            if (embeddings.isEmpty()) {
+                return List.of();
+            }
+            session.lastRetrieval(cached.withEmbeddings(embeddings));
+        }
+
+        RequestDeadline.checkCurrent("embedding");
+        float[] query = embeddingModel.embed(cached.anchorQuery() + " " + question);
+
+        List<Document> ranked = new ArrayList<>();
+        for (Document chunk : cached.chunks()) {
+            float[] embedding = embeddings.get(chunk.getId());
+            if (embedding == null) continue;
+
+            double score = cosine(query, embedding);
+            if (score >= properties.getMinScore()) {
+                ranked.add(chunk.mutate().score(score).build());
+            }
+        }
+
+        if (ranked.size() < properties.getMinChunks()) {
+            return List.of();
+        }
+
+        return ranked.stream()
+                .sorted(Comparator.comparing(Document::getScore, Comparator.reverseOrder()))
+                .limit(topK)
+                .toList();
+    }
+
+    private Map<String, float[]> loadEmbeddings(List<Document> chunks) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (Document chunk : chunks) {
+            missing.add(chunk.getId());
+        }
+
+        Map<String, float[]> embeddings = new HashMap<>();
+        try {
+            for (String table : vectorPartitionService.allTables()) {
+                if (missing.isEmpty()) break;
+                Map<String, float[]> found = vectorPartitionRepository.findEmbeddings(table, missing);
+                embeddings.putAll(found);
+                missing.removeAll(found.keySet());
+            }
+        } catch (Exception e) {
+            log.warn("Unable to load cached chunk embeddings: {}", e.getMessage());
+            return Map.of();
+        }
+        return Map.copyOf(embeddings);
+    }
+
+    private CachedRetrieval snapshot(String anchorQuery, List<Document> chunks) {
+        StringBuilder sources = new StringBuilder(anchorQuery);
+        for (Document chunk : chunks) {
+            Object fileName = chunk.getMetadata().get("fileName");
+            if (fileName != null) {
+                sources.append('\n').append(fileName);
+            }
+        }
+
+        Set<String> devices = new LinkedHashSet<>(queryCategoryRouter.mentionedDevices(sources.toString()));
+        for (Document chunk : chunks) {
+            devices.addAll(queryCategoryRouter.mentionedDevices(chunk.getText()));
+        }
+
+        Set<CategoriaDispositivo> categories = EnumSet.noneOf(CategoriaDispositivo.class);
+        categories.addAll(queryCategoryRouter.detect(sources.toString()));
+
+        return new CachedRetrieval(anchorQuery, Set.copyOf(devices), categories, List.copyOf(chunks), Map.of(), System.nanoTime());
+    }
+
+    private double cosine(float[] a, float[] b) {
+        if (a.length != b.length) return 0;
+
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0 || normB == 0) return 0;
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
@@ -0,0 +1,46 @@
+package it.unicas.spring.springai.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR di una fase dell'ingestione di un PDF (parsing, split, embedding, scrittura nel vector store).
+ * Nel percorso a upload singolo l'embedding è annidato nella scrittura, perché lo esegue il {@code VectorStore}.
+ * Creato tramite {@link PipelineEvents#ingestion(String)}.
+ */
+@Name("it.unicas.springai.IngestionStage")
+@Label("Ingestion Stage")
+@Category({"Spring AI", "Ingestion"})
+@Description("Fase dell'ingestione di un documento")
+@StackTrace(false)
+public class IngestionStageEvent extends jdk.jfr.Event {
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Document Id")
+    long documentId;
+
+    @Label("File Name")
+    String fileName;
+
+    @Label("PDF Size")
+    @DataAmount(DataAmount.BYTES)
+    long bytes;
+
+    @Label("Text Chars")
+    long chars;
+
+    @Label("Pages")
+    int pages;
+
+    @Label("Chunks")
+    int chunks;
+}
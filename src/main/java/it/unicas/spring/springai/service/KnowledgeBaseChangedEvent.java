@@ -0,0 +1,9 @@
+package it.unicas.spring.springai.service;
+
+/**
+ * Pubblicato quando cambia il contenuto della knowledge base (upload, caricamento massivo, import snapshot).
+ *
+ * @param chunks numero di chunk aggiunti
+ */
+public record KnowledgeBaseChangedEvent(long chunks) {
+}
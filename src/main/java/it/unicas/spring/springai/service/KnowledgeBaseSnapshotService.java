@@ -0,0 +1,306 @@
+package it.unicas.spring.springai.service;
+
+import com.pgvector.PGvector;
+import it.unicas.spring.springai.config.VectorPartitionProperties;
+import it.unicas.spring.springai.dto.SnapshotSummary;
+import it.unicas.spring.springai.repository.VectorCopyWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Esporta e importa l'intera knowledge base (documenti, PDF, chunk ed embedding) in un formato binario compresso.
+ * L'import non richiede chiamate al modello di embedding: i vettori vengono scritti via COPY così come sono
+ * e gli indici HNSW vengono ricostruiti una sola volta a fine caricamento tramite {@link BulkVectorLoader}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KnowledgeBaseSnapshotService {
+
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    private static final int FETCH_SIZE = 500;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorCopyWriter vectorCopyWriter;
+    private final BulkVectorLoader bulkVectorLoader;
+    private final VectorPartitionService vectorPartitionService;
+    private final VectorPartitionProperties partitionProperties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${spring.ai.vectorstore.pgvector.dimensions:768}")
+    private int dimensions;
+
+    /**
+     * Scrive lo snapshot completo sullo stream indicato, leggendo il database a cursore.
+     * Chiamata dall'endpoint admin {@code GET /api/admin/snapshot} e dal runner CLI.
+     *
+     * @param target stream di destinazione (non viene chiuso)
+     * @return conteggi dello snapshot prodotto
+     * @throws IOException se la scrittura fallisce
+     */
+    @Transactional(readOnly = true)
+    public SnapshotSummary exportSnapshot(OutputStream target) throws IOException {
+        long start = System.nanoTime();
+        GZIPOutputStream gzip = new GZIPOutputStream(target, STREAM_BUFFER_BYTES);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip, STREAM_BUFFER_BYTES));
+
+        out.write(SnapshotFormat.MAGIC);
+        out.writeInt(SnapshotFormat.VERSION);
+        out.writeInt(dimensions);
+
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(FETCH_SIZE);
+
+        AtomicLong documents = new AtomicLong();
+        try {
+            streaming.query("""
+                    SELECT id, file_name, original_file_name, file_size, content_type, file_content, testo_estratto,
+                           upload_date, processed, chunk_count, description, categoria
+                    FROM documents ORDER BY id
+                    """, rs -> {
+                try {
+                    out.writeByte(SnapshotFormat.DOCUMENT);
+                    out.writeLong(rs.getLong("id"));
+                    SnapshotFormat.writeString(out, rs.getString("file_name"));
+                    SnapshotFormat.writeString(out, rs.getString("original_file_name"));
+                    out.writeLong(rs.getLong("file_size"));
+                    SnapshotFormat.writeString(out, rs.getString("content_type"));
+                    SnapshotFormat.writeBytes(out, rs.getBytes("file_content"));
+                    SnapshotFormat.writeString(out, rs.getString("testo_estratto"));
+                    Timestamp uploadDate = rs.getTimestamp("upload_date");
+                    out.writeLong(uploadDate != null ? uploadDate.getTime() : Long.MIN_VALUE);
+                    out.writeBoolean(rs.getBoolean("processed"));
+                    out.writeInt(rs.getInt("chunk_count"));
+                    SnapshotFormat.writeString(out, rs.getString("description"));
+                    SnapshotFormat.writeString(out, rs.getString("categoria"));
+                    documents.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            AtomicLong chunks = new AtomicLong();
+            for (String table : vectorPartitionService.allTables()) {
+                out.writeByte(SnapshotFormat.TABLE);
+                SnapshotFormat.writeString(out, table);
+
+                streaming.query("SELECT id, content, metadata::text AS metadata, vector_send(embedding) AS embedding FROM " + table, rs -> {
+                    try {
+                        out.writeByte(SnapshotFormat.CHUNK);
+                        SnapshotFormat.writeString(out, rs.getString("id"));
+                        SnapshotFormat.writeString(out, rs.getString("content"));
+                        SnapshotFormat.writeString(out, rs.getString("metadata"));
+                        SnapshotFormat.writeFloats(out, readEmbedding(rs));
+                        chunks.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+
+            out.writeByte(SnapshotFormat.END);
+            out.writeLong(documents.get());
+            out.writeLong(chunks.get());
+            out.flush();
+            gzip.finish();
+
+            SnapshotSummary summary = new SnapshotSummary(documents.get(), chunks.get(), elapsedMs(start));
+            log.info("Knowledge base snapshot exported: {}", summary);
+            return summary;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Ripristina uno snapshot: documenti via INSERT, chunk via COPY binaria, indici ricostruiti alla fine.
+     * Qualsiasi errore, anche un {@link IOException} su uno snapshot troncato, annulla l'intera transazione:
+     * svuotamento delle tabelle, righe già inserite ed eliminazione degli indici HNSW.
+     * Chiamata dall'endpoint admin {@code POST /api/admin/snapshot} e dal runner CLI.
+     *
+     * @param source stream dello snapshot
+     * @param replace se {@code true} svuota la knowledge base prima dell'import; altrimenti deve essere vuota
+     * @return conteggi dei dati importati
+     * @throws IOException se lo snapshot non è leggibile o è incompatibile
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public SnapshotSummary importSnapshot(InputStream source, boolean replace) throws IOException {
+        long start = System.nanoTime();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(source, STREAM_BUFFER_BYTES), STREAM_BUFFER_BYTES));
+
+        byte[] magic = in.readNBytes(SnapshotFormat.MAGIC.length);
+        if (!Arrays.equals(magic, SnapshotFormat.MAGIC)) {
+            throw new IOException("Il file non è uno snapshot della knowledge base");
+        }
+        int version = in.readInt();
+        if (version != SnapshotFormat.VERSION) {
+            throw new IOException("Versione snapshot non supportata: " + version);
+        }
+        int snapshotDimensions = in.readInt();
+        if (snapshotDimensions != dimensions) {
+            throw new IOException("Dimensioni embedding incompatibili: snapshot " + snapshotDimensions
+                    + ", configurazione " + dimensions);
+        }
+
+        List<String> tables = vectorPartitionService.allTables();
+        prepareTarget(tables, replace);
+
+        BulkVectorLoader.IndexDeferral deferral = bulkVectorLoader.deferIndexes(tables);
+
+        long documents = 0;
+        long chunks = 0;
+        VectorCopyWriter.CopySession session = null;
+        try {
+            while (true) {
+                byte tag = in.readByte();
+                if (tag == SnapshotFormat.END) {
+                    long expectedDocuments = in.readLong();
+                    long expectedChunks = in.readLong();
+                    if (expectedDocuments != documents || expectedChunks != chunks) {
+                        throw new IOException("Snapshot incompleto: attesi " + expectedDocuments + " documenti e "
+                                + expectedChunks + " chunk");
+                    }
+                    break;
+                }
+
+                switch (tag) {
+                    case SnapshotFormat.DOCUMENT -> {
+                        insertDocument(in);
+                        documents++;
+                    }
+                    case SnapshotFormat.TABLE -> {
+                        if (session != null) {
+                            VectorCopyWriter.CopySession completed = session;
+                            session = null;
+                            completed.finish();
+                        }
+                        String table = SnapshotFormat.readString(in);
+                        String target = tables.contains(table) ? table : partitionProperties.getDefaultTable();
+                        session = vectorCopyWriter.open(target);
+                    }
+                    case SnapshotFormat.CHUNK -> {
+                        if (session == null) {
+                            throw new IOException("Chunk senza tabella di destinazione");
+                        }
+                        session.write(readChunk(in));
+                        chunks++;
+                    }
+                    default -> throw new IOException("Record snapshot sconosciuto: " + tag);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (session != null) {
+                session.abort();
+            }
+            throw e;
+        }
+        if (session != null) {
+            session.finish();
+        }
+
+        bulkVectorLoader.rebuildIndexes(deferral);
+        jdbcTemplate.execute("SELECT setval(pg_get_serial_sequence('documents', 'id'), COALESCE((SELECT MAX(id) FROM documents), 1))");
+
+        SnapshotSummary summary = new SnapshotSummary(documents, chunks, elapsedMs(start));
+        log.info("Knowledge base snapshot imported: {}", summary);
+        eventPublisher.publishEvent(new KnowledgeBaseChangedEvent(chunks));
+        return summary;
+    }
+
+    private void prepareTarget(List<String> tables, boolean replace) {
+        if (replace) {
+            jdbcTemplate.execute("TRUNCATE documents");
+            for (String table : tables) {
+                jdbcTemplate.execute("TRUNCATE " + table);
+            }
+            return;
+        }
+
+        // anche le tabelle vettoriali: chunk orfani resterebbero mescolati a quelli importati
+        if (!isEmpty("documents") || !tables.stream().allMatch(this::isEmpty)) {
+            throw new IllegalStateException("La knowledge base non è vuota: usa replace=true per sovrascriverla");
+        }
+    }
+
+    private boolean isEmpty(String table) {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + table + ")", Boolean.class));
+    }
+
+    private void insertDocument(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        String fileName = SnapshotFormat.readString(in);
+        String originalFileName = SnapshotFormat.readString(in);
+        long fileSize = in.readLong();
+        String contentType = SnapshotFormat.readString(in);
+        byte[] fileContent = SnapshotFormat.readBytes(in);
+        String testoEstratto = SnapshotFormat.readString(in);
+        long uploadDate = in.readLong();
+        boolean processed = in.readBoolean();
+        int chunkCount = in.readInt();
+        String description = SnapshotFormat.readString(in);
+        String categoria = SnapshotFormat.readString(in);
+
+        jdbcTemplate.update("""
+                        INSERT INTO documents (id, file_name, original_file_name, file_size, content_type, file_content,
+                                               testo_estratto, upload_date, processed, chunk_count, description, categoria)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        """,
+                id, fileName, originalFileName, fileSize, contentType, fileContent, testoEstratto,
+                uploadDate != Long.MIN_VALUE ? new Timestamp(uploadDate) : null,
+                processed, chunkCount, description, categoria);
+    }
+
+    private VectorCopyWriter.VectorRow readChunk(DataInputStream in) throws IOException {
+        UUID id = UUID.fromString(SnapshotFormat.readString(in));
+        String content = SnapshotFormat.readString(in);
+        String metadata = SnapshotFormat.readString(in);
+        float[] embedding = SnapshotFormat.readFloats(in);
+        if (embedding.length != dimensions) {
+            throw new IOException("Embedding con dimensione inattesa: " + embedding.length);
+        }
+        return new VectorCopyWriter.VectorRow(id, content, metadata, embedding);
+    }
+
+    /**
+     * Legge l'embedding nel formato binario di pgvector ({@code vector_send}), evitando la conversione in testo.
+     *
+     * @param rs riga corrente con la colonna {@code embedding}
+     * @return vettore full-precision
+     * @throws SQLException se il valore non è un vettore valido
+     */
+    private float[] readEmbedding(ResultSet rs) throws SQLException {
+        PGvector vector = new PGvector();
+        vector.setByteValue(rs.getBytes("embedding"), 0);
+        return vector.toArray();
+    }
+
+    private long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
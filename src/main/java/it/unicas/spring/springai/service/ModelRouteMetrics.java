@@ -0,0 +1,87 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.ModelRoutingProperties;
+import it.unicas.spring.springai.dto.ModelRouteStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contatori per route di latenza e token consumati, per confrontare il costo del modello piccolo e di quello grande.
+ */
+@Service
+@RequiredArgsConstructor
+public class ModelRouteMetrics {
+
+    private final ModelRoutingProperties properties;
+
+    private final Map<ModelRoutingPolicy.Tier, Counters> counters = new EnumMap<>(Map.of(
+            ModelRoutingPolicy.Tier.SMALL, new Counters(),
+            ModelRoutingPolicy.Tier.LARGE, new Counters()
+    ));
+
+    private static final class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder latencyNanos = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+    }
+
+    /**
+     * Registra una chiamata al modello.
+     * Chiamata da {@link ChatbotService} dopo ogni risposta del modello.
+     *
+     * @param tier route usata
+     * @param latencyNanos durata della chiamata
+     * @param response risposta del modello (può non avere usage)
+     */
+    public void record(ModelRoutingPolicy.Tier tier, long latencyNanos, ChatResponse response) {
+        Counters c = counters.get(tier);
+        c.requests.increment();
+        c.latencyNanos.add(latencyNanos);
+
+        Usage usage = response != null && response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage != null) {
+            c.promptTokens.add(usage.getPromptTokens() != null ? usage.getPromptTokens() : 0);
+            c.completionTokens.add(usage.getGenerationTokens() != null ? usage.getGenerationTokens() : 0);
+        }
+    }
+
+    /**
+     * Restituisce le statistiche correnti per route.
+     * Chiamata dall'endpoint admin {@code GET /api/admin/model-routes}.
+     *
+     * @return statistiche per SMALL e LARGE
+     */
+    public List<ModelRouteStats> snapshot() {
+        List<ModelRouteStats> stats = new ArrayList<>();
+        for (Map.Entry<ModelRoutingPolicy.Tier, Counters> entry : counters.entrySet()) {
+            ModelRoutingProperties.Route route = entry.getKey() == ModelRoutingPolicy.Tier.SMALL
+                    ? properties.getSmall()
+                    : properties.getLarge();
+            Counters c = entry.getValue();
+            long requests = c.requests.sum();
+            stats.add(new ModelRouteStats(
+                    entry.getKey().name(),
+                    route.getModel() != null ? route.getModel() : "default",
+                    route.getMaxTokens(),
+                    requests,
+                    average(c.latencyNanos.sum() / 1_000_000.0, requests),
+                    average(c.promptTokens.sum(), requests),
+                    average(c.completionTokens.sum(), requests)
+            ));
+        }
+        return stats;
+    }
+
+    private double average(double total, long count) {
+        return count == 0 ? 0 : total / count;
+    }
+}
@@ -0,0 +1,96 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.ModelRoutingProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Sceglie il modello per un turno di chat in base alla complessità della domanda, senza chiamate LLM:
+ * lunghezza, confidenza della retrieval, numero di prodotti citati e presenza di confronti o richieste di consiglio.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ModelRoutingPolicy {
+
+    private static final Pattern COMPARISON = Pattern.compile(
+            "\\b(vs|versus|contro|confront\\w*|paragon\\w*|differenz\\w*|rispetto a|meglio|migliore|peggiore"
+                    + "|consigl\\w*|raccomand\\w*|scegliere|quale (compro|prendo|scelgo)|conviene|alternativ\\w*)\\b");
+
+    private final ModelRoutingProperties properties;
+    private final QueryCategoryRouter queryCategoryRouter;
+
+    public enum Tier {
+        SMALL,
+        LARGE
+    }
+
+    /**
+     * Route scelta per un turno.
+     *
+     * @param tier fascia del modello
+     * @param model modello da richiedere ({@code null} = modello di default)
+     * @param maxTokens limite token di output ({@code null} = default dell'endpoint)
+     * @param reason motivo della scelta, per i log
+     */
+    public record Decision(Tier tier, String model, Integer maxTokens, String reason) {
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Classifica la domanda e restituisce modello e budget di token.
+     * Chiamata da {@link ChatbotService} dopo la retrieval, prima della chiamata al modello.
+     *
+     * @param question domanda utente
+     * @param retrieved chunk recuperati (lo score del primo indica quanto la risposta è un lookup diretto)
+     * @return route da usare
+     */
+    public Decision decide(String question, List<Document> retrieved) {
+        if (!properties.isEnabled()) {
+            return large("routing disabled");
+        }
+
+        String normalized = QueryCategoryRouter.normalize(question);
+        if (COMPARISON.matcher(normalized).find()) {
+            return large("comparison/recommendation");
+        }
+
+        int devices = queryCategoryRouter.mentionedDevices(question).size();
+        if (devices > 1) {
+            return large(devices + " devices mentioned");
+        }
+
+        int words = normalized.isEmpty() ? 0 : normalized.split(" ").length;
+        if (words > properties.getMaxSimpleWords()) {
+            return large(words + " words");
+        }
+
+        double topScore = retrieved.stream()
+                .map(Document::getScore)
+                .filter(Objects::nonNull)
+                .mapToDouble(Double::doubleValue)
+                .max()
+                .orElse(0);
+        if (topScore < properties.getMinSimpleScore()) {
+            return large("low retrieval confidence");
+        }
+
+        ModelRoutingProperties.Route small = properties.getSmall();
+        return new Decision(Tier.SMALL, small.getModel(), small.getMaxTokens(), "short factual lookup");
+    }
+
+    private Decision large(String reason) {
+        ModelRoutingProperties.Route large = properties.getLarge();
+        Integer maxTokens = properties.isEnabled() ? large.getMaxTokens() : null;
+        return new Decision(Tier.LARGE, large.getModel(), maxTokens, reason);
+    }
+}
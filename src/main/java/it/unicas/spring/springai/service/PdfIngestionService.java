@@ -1,5 +1,6 @@
 package it.unicas.spring.springai.service;
 
+import it.unicas.spring.springai.model.CategoriaDispositivo;
 import it.unicas.spring.springai.model.DocumentEntity;
 import it.unicas.spring.springai.repository.DocumentRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +10,7 @@ import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
 import org.springframework.ai.transformer.splitter.TextSplitter;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,8 +19,10 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -28,6 +32,10 @@ public class PdfIngestionService {
 
     private final VectorStore vectorStore;
     private final DocumentRepository documentRepository;
+    private final VectorPartitionService vectorPartitionService;
+    private final QueryCategoryRouter queryCategoryRouter;
+    private final BulkVectorLoader bulkVectorLoader;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Registra il file PDF nel database e avvia subito l'ingestione nel vector store.
@@ -39,6 +47,20 @@ public class PdfIngestionService {
      */
     @Transactional
     public DocumentEntity uploadAndProcessPdf(MultipartFile file) throws IOException {
+        return uploadAndProcessPdf(file, null);
+    }
+
+    /**
+     * Registra il file PDF con una categoria di dispositivo opzionale e avvia l'ingestione.
+     * Chiamata dal controller documenti endpoint upload quando il client indica la categoria.
+     *
+     * @param file file caricato dall'utente
+     * @param categoria categoria dei chunk; se {@code null} viene dedotta da nome file e contenuto
+     * @return entità documento persistita e processata
+     * @throws IOException se la lettura del file fallisce
+     */
+    @Transactional
+    public DocumentEntity uploadAndProcessPdf(MultipartFile file, CategoriaDispositivo categoria) throws IOException {
         log.info("Processing PDF file: {}", file.getOriginalFilename());
 
         // Salva il documento nel database
@@ -49,6 +71,7 @@ public class PdfIngestionService {
         documentEntity.setContentType(file.getContentType());
         documentEntity.setFileContent(file.getBytes());
         documentEntity.setProcessed(false);
+        documentEntity.setCategoria(categoria);
 
         documentEntity = documentRepository.save(documentEntity);
 
@@ -58,6 +81,70 @@ public class PdfIngestionService {
         return documentEntity;
     }
 
+    /**
+     * Registra più PDF e li indicizza con il percorso di caricamento massivo (embedding a batch + COPY).
+     * Chiamata dal controller documenti endpoint upload multiplo; gli upload singoli restano su
+     * {@link #uploadAndProcessPdf(MultipartFile, CategoriaDispositivo)}.
+     *
+     * @param files file caricati dall'utente
+     * @param categoria categoria comune opzionale; se {@code null} viene dedotta per ogni documento
+     * @return entità documento persistite e processate
+     * @throws IOException se la lettura di un file fallisce
+     */
+    @Transactional
+    public List<DocumentEntity> bulkUploadAndProcessPdfs(List<MultipartFile> files, CategoriaDispositivo categoria) throws IOException {
+        log.info("Bulk processing {} PDF files", files.size());
+        try (PipelineEvents.Scope events = PipelineEvents.bind(PipelineEvents.INGESTION, PipelineEvents.newRequestId())) {
+            return bulkIngest(files, categoria);
+        }
+    }
+
+    /**
+     * Salva i documenti, ne prepara i chunk e li scrive con un unico caricamento massivo.
+     * Chiamata da {@link #bulkUploadAndProcessPdfs(List, CategoriaDispositivo)} con la richiesta legata al thread.
+     *
+     * @param files file caricati dall'utente
+     * @param categoria categoria comune opzionale
+     * @return entità documento persistite e processate
+     * @throws IOException se la lettura di un file fallisce
+     */
+    private List<DocumentEntity> bulkIngest(List<MultipartFile> files, CategoriaDispositivo categoria) throws IOException {
+        List<DocumentEntity> saved = new ArrayList<>(files.size());
+        Map<String, List<Document>> chunksByTable = new LinkedHashMap<>();
+        for (MultipartFile file : files) {
+            DocumentEntity documentEntity = new DocumentEntity();
+            documentEntity.setFileName(UUID.randomUUID().toString() + ".pdf");
+            documentEntity.setOriginalFileName(file.getOriginalFilename());
+            documentEntity.setFileSize(file.getSize());
+            documentEntity.setContentType(file.getContentType());
+            documentEntity.setFileContent(file.getBytes());
+            documentEntity.setProcessed(false);
+            documentEntity.setCategoria(categoria);
+            documentEntity = documentRepository.save(documentEntity);
+
+            List<Document> chunks = prepareChunks(documentEntity);
+            chunksByTable.computeIfAbsent(vectorPartitionService.tableFor(documentEntity.getCategoria()), t -> new ArrayList<>())
+                    .addAll(chunks);
+
+            documentEntity.setChunkCount(chunks.size());
+            saved.add(documentEntity);
+        }
+
+        IngestionStageEvent storeEvent = PipelineEvents.ingestion(PipelineEvents.STORE);
+        long written = bulkVectorLoader.loadDocuments(chunksByTable);
+        storeEvent.chunks = (int) written;
+        storeEvent.commit();
+
+        for (DocumentEntity documentEntity : saved) {
+            documentEntity.setProcessed(true);
+            documentRepository.save(documentEntity);
+        }
+
+        log.info("Bulk processed {} documents with {} chunks", saved.size(), written);
+        eventPublisher.publishEvent(new KnowledgeBaseChangedEvent(written));
+        return saved;
+    }
+
     /**
      * Legge il PDF, crea i chunk semantici, arricchisce i metadati e li salva nel vector store.
      * Chiamata da {@link #uploadAndProcessPdf(MultipartFile)}.
@@ -68,50 +155,20 @@ public class PdfIngestionService {
     public void processAndStoreEmbeddings(DocumentEntity documentEntity) {
         log.info("Generating embeddings for document: {}", documentEntity.getOriginalFileName());
 
-        try {
-            // Crea una risorsa dal contenuto del file
-            ByteArrayResource resource = new ByteArrayResource(documentEntity.getFileContent()) {
-                /**
-                 * Fornisce il nome originale del documento al reader PDF.
-                 * Chiamata internamente da {@link PagePdfDocumentReader}.
-                 *
-                 * @return nome file originale caricato
-                 */
-                @Override
-                public String getFilename() {
-                    return documentEntity.getOriginalFileName();
-                }
-            };
-
-            // Leggi il PDF
-            PagePdfDocumentReader pdfReader = new PagePdfDocumentReader(resource);
-            List<Document> documents = pdfReader.get();
-
-            // Splitter per dividere in chunks
-            TextSplitter textSplitter = new TokenTextSplitter();
-            List<Document> chunks = textSplitter.apply(documents);
-
-            // Aggiungi metadata a ogni chunk (Document è immutabile: crea una copia arricchita)
-            List<Document> enrichedChunks = new ArrayList<>(chunks.size());
-            for (int i = 0; i < chunks.size(); i++) {
-                Document chunk = chunks.get(i);
-                Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
-                metadata.put("documentId", documentEntity.getId());
-                metadata.put("fileName", documentEntity.getOriginalFileName());
-                metadata.put("source", "uploaded_pdf");
-                metadata.put("chunkIndex", i + 1);
-
-                Integer page = extractPageNumber(metadata);
-                if (page != null) {
-                    metadata.put("page", page);
-                }
-
-                enrichedChunks.add(chunk.mutate().metadata(metadata).build());
-            }
+        try (PipelineEvents.Scope events = PipelineEvents.bind(PipelineEvents.INGESTION, PipelineEvents.newRequestId())) {
+            List<Document> enrichedChunks = prepareChunks(documentEntity);
+            CategoriaDispositivo categoria = documentEntity.getCategoria();
 
             // Salva nel vector store
             log.info("Adding {} chunks to vector store for document: {}", enrichedChunks.size(), documentEntity.getOriginalFileName());
-            vectorStore.add(enrichedChunks);
+            IngestionStageEvent storeEvent = stageEvent(PipelineEvents.STORE, documentEntity);
+            if (categoria != null && vectorPartitionService.isEnabled()) {
+                vectorPartitionService.storeFor(categoria).add(enrichedChunks);
+            } else {
+                vectorStore.add(enrichedChunks);
+            }
+            storeEvent.chunks = enrichedChunks.size();
+            storeEvent.commit();
 
             log.info("Update document status to processed for: {}", documentEntity.getOriginalFileName());
             // Aggiorna lo stato del documento
@@ -121,6 +178,7 @@ public class PdfIngestionService {
 
             log.info("Successfully processed {} chunks for document: {}",
                     enrichedChunks.size(), documentEntity.getOriginalFileName());
+            eventPublisher.publishEvent(new KnowledgeBaseChangedEvent(enrichedChunks.size()));
 
         } catch (Exception e) {
             log.error("Error processing PDF: {}", e.getMessage(), e);
@@ -128,14 +186,127 @@ public class PdfIngestionService {
         }
     }
 
+    /**
+     * Legge il PDF, lo divide in chunk e arricchisce i metadati; imposta sul documento la categoria risolta.
+     * Chiamata da {@link #processAndStoreEmbeddings(DocumentEntity)} e
+     * {@link #bulkUploadAndProcessPdfs(List, CategoriaDispositivo)}.
+     *
+     * @param documentEntity documento già salvato nel DB con contenuto binario
+     * @return chunk pronti per il vector store (senza embedding)
+     */
+    private List<Document> prepareChunks(DocumentEntity documentEntity) {
+        // Crea una risorsa dal contenuto del file
+        ByteArrayResource resource = new ByteArrayResource(documentEntity.getFileContent()) {
+            /**
+             * Fornisce il nome originale del documento al reader PDF.
+             * Chiamata internamente da {@link PagePdfDocumentReader}.
+             *
+             * @return nome file originale caricato
+             */
+            @Override
+            public String getFilename() {
+                return documentEntity.getOriginalFileName();
+            }
+        };
+
+        // Leggi il PDF
+        IngestionStageEvent parseEvent = stageEvent(PipelineEvents.PDF_PARSE, documentEntity);
+        PagePdfDocumentReader pdfReader = new PagePdfDocumentReader(resource);
+        List<Document> documents = pdfReader.get();
+        long textChars = documents.stream().mapToLong(d -> d.getText() != null ? d.getText().length() : 0).sum();
+        parseEvent.bytes = documentEntity.getFileContent().length;
+        parseEvent.pages = documents.size();
+        parseEvent.chars = textChars;
+        parseEvent.commit();
+
+        // Splitter per dividere in chunks
+        IngestionStageEvent splitEvent = stageEvent(PipelineEvents.SPLIT, documentEntity);
+        TextSplitter textSplitter = new TokenTextSplitter();
+        List<Document> chunks = textSplitter.apply(documents);
+        splitEvent.pages = documents.size();
+        splitEvent.chars = textChars;
+        splitEvent.chunks = chunks.size();
+        splitEvent.commit();
+
+        CategoriaDispositivo categoria = resolveCategoria(documentEntity, documents);
+        documentEntity.setCategoria(categoria);
+
+        // Aggiungi metadata a ogni chunk (Document è immutabile: crea una copia arricchita)
+        List<Document> enrichedChunks = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+            metadata.put("documentId", documentEntity.getId());
+            metadata.put("fileName", documentEntity.getOriginalFileName());
+            metadata.put("source", "uploaded_pdf");
+            metadata.put("chunkIndex", i + 1);
+            if (categoria != null) {
+                metadata.put("categoria", categoria.name());
+            }
+
+            Integer page = extractPageNumber(metadata);
+            if (page != null) {
+                metadata.put("page", page);
+            }
+
+            enrichedChunks.add(chunk.mutate().metadata(metadata).build());
+        }
+
+        return enrichedChunks;
+    }
+
+    /**
+     * Apre l'evento JFR di una fase di ingestione con gli identificativi del documento.
+     * Chiamata da {@link #prepareChunks(DocumentEntity)} e {@link #processAndStoreEmbeddings(DocumentEntity)}.
+     *
+     * @param stage fase della pipeline ({@link PipelineEvents})
+     * @param documentEntity documento in ingestione
+     * @return evento già iniziato
+     */
+    private static IngestionStageEvent stageEvent(String stage, DocumentEntity documentEntity) {
+        IngestionStageEvent event = PipelineEvents.ingestion(stage);
+        event.documentId = documentEntity.getId() != null ? documentEntity.getId() : 0;
+        event.fileName = documentEntity.getOriginalFileName();
+        return event;
+    }
+
+    /**
+     * Determina la categoria del documento: quella esplicita, altrimenti quella dedotta in modo univoco
+     * da nome file e prime pagine tramite {@link QueryCategoryRouter}.
+     * Chiamata da {@link #prepareChunks(DocumentEntity)}.
+     *
+     * @param documentEntity documento in ingestione
+     * @param pages pagine lette dal PDF
+     * @return categoria o {@code null} se non determinabile
+     */
+    private CategoriaDispositivo resolveCategoria(DocumentEntity documentEntity, List<Document> pages) {
+        if (documentEntity.getCategoria() != null) {
+            return documentEntity.getCategoria();
+        }
+
+        StringBuilder sample = new StringBuilder(documentEntity.getOriginalFileName() != null
+                ? documentEntity.getOriginalFileName().replaceAll("[-_.]", " ")
+                : "");
+        for (Document page : pages) {
+            if (sample.length() > 4_000) break;
+            if (page.getText() != null) {
+                sample.append('\n').append(page.getText());
+            }
+        }
+
+        Set<CategoriaDispositivo> detected = queryCategoryRouter.detect(sample.toString());
+        return detected.size() == 1 ? detected.iterator().next() : null;
+    }
+
     /**
      * Estrae il numero pagina da metadati eterogenei prodotti dal reader/splitter.
-     * Chiamata da {@link #processAndStoreEmbeddings(DocumentEntity)} durante l'arricchimento chunk.
+     * Chiamata da {@link #processAndStoreEmbeddings(DocumentEntity)} durante l'arricchimento chunk
+     * e da {@link RetrievalBenchmarkService} per i chunk del corpus di riferimento.
      *
      * @param metadata metadati chunk
      * @return numero pagina o {@code null} se non interpretabile
      */
-    private Integer extractPageNumber(Map<String, Object> metadata) {
+    static Integer extractPageNumber(Map<String, Object> metadata) {
         if (metadata == null || metadata.isEmpty()) return null;
 
         Object page = metadata.get("page");
@@ -166,6 +337,7 @@ public class PdfIngestionService {
      *
      * @return documenti persistiti
      */
+    @Transactional(readOnly = true)
     public List<DocumentEntity> getAllDocuments() {
         return documentRepository.findAllByOrderByUploadDateDesc();
     }
@@ -177,6 +349,7 @@ public class PdfIngestionService {
      * @param id identificativo documento
      * @return documento trovato
      */
+    @Transactional(readOnly = true)
     public DocumentEntity getDocument(Long id) {
         return documentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Document not found with id: " + id));
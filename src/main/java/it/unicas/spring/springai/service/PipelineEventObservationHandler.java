@@ -0,0 +1,53 @@
+package it.unicas.spring.springai.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.springframework.ai.embedding.observation.EmbeddingModelObservationContext;
+
+import java.util.List;
+
+/**
+ * Emette l'evento JFR {@value PipelineEvents#EMBED} a partire dall'observation dell'{@code EmbeddingModel},
+ * così da coprire sia l'embedding della domanda sia quello dei chunk fatto dal {@code VectorStore} o dal
+ * caricamento massivo. Fuori da una richiesta legata con {@link PipelineEvents#bind(String, String)} non emette nulla.
+ * Registrato da {@code TracingConfig}.
+ */
+public class PipelineEventObservationHandler implements ObservationHandler<EmbeddingModelObservationContext> {
+
+    private static final String EVENT_KEY = PipelineEventObservationHandler.class.getName() + ".event";
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context instanceof EmbeddingModelObservationContext;
+    }
+
+    @Override
+    public void onStart(EmbeddingModelObservationContext context) {
+        PipelineEvents.Current current = PipelineEvents.current();
+        if (current == null) {
+            return;
+        }
+        context.put(EVENT_KEY, PipelineEvents.INGESTION.equals(current.pipeline())
+                ? PipelineEvents.ingestion(PipelineEvents.EMBED)
+                : PipelineEvents.chat(PipelineEvents.EMBED));
+    }
+
+    @Override
+    public void onStop(EmbeddingModelObservationContext context) {
+        Object event = context.get(EVENT_KEY);
+        if (event == null) {
+            return;
+        }
+        List<String> inputs = context.getRequest() != null ? context.getRequest().getInstructions() : List.of();
+        int chars = inputs.stream().mapToInt(input -> input != null ? input.length() : 0).sum();
+        if (event instanceof IngestionStageEvent ingestion) {
+            ingestion.chunks = inputs.size();
+            ingestion.chars = chars;
+            ingestion.commit();
+        } else if (event instanceof ChatStageEvent chat) {
+            chat.chunks = inputs.size();
+            chat.inputChars = chars;
+            chat.commit();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package it.unicas.spring.springai.service;
+
+import io.micrometer.context.ContextRegistry;
+
+import java.util.UUID;
+
+/**
+ * Crea gli eventi JFR delle fasi di chat e ingestione con l'id della richiesta in corso.
+ * L'id è legato al thread da {@link #bind(String, String)} e, come l'observation corrente,
+ * segue la richiesta sui pool interni tramite {@link TracingContext}.
+ */
+public final class PipelineEvents {
+
+    public static final String CHAT = "chat";
+    public static final String INGESTION = "ingestion";
+
+    public static final String RETRIEVAL = "retrieval";
+    public static final String PROMPT = "prompt";
+    public static final String LLM = "llm";
+    public static final String PARSE = "parse";
+    public static final String PDF_PARSE = "pdf-parse";
+    public static final String SPLIT = "split";
+    public static final String EMBED = "embed";
+    public static final String STORE = "store";
+
+    private static final ThreadLocal<Current> CURRENT = new ThreadLocal<>();
+
+    static {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(
+                PipelineEvents.class.getName(), CURRENT::get, CURRENT::set, CURRENT::remove);
+    }
+
+    /**
+     * Pipeline e id della richiesta legati al thread.
+     *
+     * @param pipeline {@link #CHAT} o {@link #INGESTION}
+     * @param requestId id della richiesta
+     */
+    public record Current(String pipeline, String requestId) {
+    }
+
+    /**
+     * Ripristina il contesto precedente del thread.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private PipelineEvents() {
+    }
+
+    /**
+     * Lega al thread una nuova richiesta.
+     * Chiamata da {@link ChatbotService} a ogni turno e da {@link PdfIngestionService} a ogni ingestione.
+     *
+     * @param pipeline {@link #CHAT} o {@link #INGESTION}
+     * @param requestId id della richiesta
+     * @return scope da chiudere a fine richiesta
+     */
+    public static Scope bind(String pipeline, String requestId) {
+        Current previous = CURRENT.get();
+        CURRENT.set(new Current(pipeline, requestId));
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Genera un id di richiesta.
+     *
+     * @return id univoco
+     */
+    public static String newRequestId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Contesto legato al thread.
+     *
+     * @return pipeline e id della richiesta, {@code null} fuori da una richiesta
+     */
+    public static Current current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Apre l'evento di una fase di chat; la durata termina al {@code commit()}.
+     *
+     * @param stage nome della fase
+     * @return evento già iniziato
+     */
+    public static ChatStageEvent chat(String stage) {
+        ChatStageEvent event = new ChatStageEvent();
+        event.stage = stage;
+        event.requestId = requestId();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Apre l'evento di una fase di ingestione; la durata termina al {@code commit()}.
+     *
+     * @param stage nome della fase
+     * @return evento già iniziato
+     */
+    public static IngestionStageEvent ingestion(String stage) {
+        IngestionStageEvent event = new IngestionStageEvent();
+        event.stage = stage;
+        event.requestId = requestId();
+        event.begin();
+        return event;
+    }
+
+    private static String requestId() {
+        Current current = CURRENT.get();
+        return current != null ? current.requestId() : null;
+    }
+}
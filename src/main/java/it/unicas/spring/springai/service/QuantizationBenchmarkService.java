@@ -0,0 +1,115 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.QuantizationProperties;
+import it.unicas.spring.springai.config.VectorPartitionProperties;
+import it.unicas.spring.springai.dto.QuantizationBenchmarkReport;
+import it.unicas.spring.springai.dto.QuantizationBenchmarkResult;
+import it.unicas.spring.springai.repository.VectorPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Misura recall e latenza delle modalità di quantizzazione sul corpus reale.
+ * Le query sono embedding già presenti nella tabella, quindi il benchmark non chiama il modello di embedding.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QuantizationBenchmarkService {
+
+    private static final double NO_THRESHOLD = -1.0;
+
+    private final VectorPartitionRepository vectorPartitionRepository;
+    private final VectorPartitionProperties partitionProperties;
+    private final QuantizationProperties quantizationProperties;
+
+    /**
+     * Esegue il benchmark su tutte le modalità di indice.
+     * Chiamata dall'endpoint admin {@code POST /api/admin/vector-benchmark}.
+     *
+     * @param table tabella da misurare ({@code null} per la tabella condivisa)
+     * @param queries numero di query da campionare
+     * @param topK profondità della ricerca
+     * @param createMissingIndexes crea gli indici quantizzati mancanti prima di misurare
+     * @return report con recall@k e latenza per modalità
+     */
+    public QuantizationBenchmarkReport run(String table, int queries, int topK, boolean createMissingIndexes) {
+        String target = table != null && !table.isBlank() ? table : partitionProperties.getDefaultTable();
+        if (!target.matches("[a-z0-9_]+") || !target.startsWith(partitionProperties.getDefaultTable())) {
+            throw new IllegalArgumentException("Tabella non ammessa: " + target);
+        }
+
+        List<float[]> samples = vectorPartitionRepository.sampleEmbeddings(target, queries);
+        if (samples.isEmpty()) {
+            return new QuantizationBenchmarkReport(target, 0, topK, List.of());
+        }
+
+        List<Set<String>> groundTruth = new ArrayList<>(samples.size());
+        for (float[] sample : samples) {
+            groundTruth.add(new HashSet<>(vectorPartitionRepository.exactSearchIds(target, sample, topK)));
+        }
+
+        int candidates = topK * Math.max(1, quantizationProperties.getRescoreFactor());
+        List<Measure> measures = new ArrayList<>();
+        for (QuantizationProperties.Mode mode : QuantizationProperties.Mode.values()) {
+            if (createMissingIndexes) {
+                vectorPartitionRepository.ensureQuantizedIndex(target, mode);
+            }
+            boolean indexPresent = vectorPartitionRepository.hasIndex(target, mode);
+            measures.add(measure(target, mode, indexPresent, samples, groundTruth, topK, candidates));
+        }
+
+        Measure full = measures.get(0);
+        List<QuantizationBenchmarkResult> results = measures.stream()
+                .map(m -> new QuantizationBenchmarkResult(
+                        m.mode().name(),
+                        m.indexPresent(),
+                        m.recall(),
+                        m.avgMs(),
+                        m.p95Ms(),
+                        (full.recall() - m.recall()) * 100,
+                        full.avgMs() > 0 ? (full.avgMs() - m.avgMs()) / full.avgMs() * 100 : 0
+                ))
+                .toList();
+
+        log.info("Quantization benchmark on {} ({} queries, topK {}): {}", target, samples.size(), topK, results);
+        return new QuantizationBenchmarkReport(target, samples.size(), topK, results);
+    }
+
+    private record Measure(QuantizationProperties.Mode mode, boolean indexPresent, double recall, double avgMs, double p95Ms) {
+    }
+
+    private Measure measure(String table, QuantizationProperties.Mode mode, boolean indexPresent,
+                            List<float[]> samples, List<Set<String>> groundTruth, int topK, int candidates) {
+        // riscaldamento: porta in cache le pagine dell'indice prima di misurare
+        vectorPartitionRepository.searchQuantized(table, samples.get(0), topK, NO_THRESHOLD, mode, candidates);
+
+        double[] latencies = new double[samples.size()];
+        double recallSum = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            long start = System.nanoTime();
+            List<Document> found = vectorPartitionRepository.searchQuantized(
+                    table, samples.get(i), topK, NO_THRESHOLD, mode, candidates);
+            latencies[i] = (System.nanoTime() - start) / 1_000_000.0;
+
+            Set<String> expected = groundTruth.get(i);
+            if (!expected.isEmpty()) {
+                long hits = found.stream().map(Document::getId).filter(expected::contains).count();
+                recallSum += (double) hits / expected.size();
+            }
+        }
+
+        Arrays.sort(latencies);
+        double avg = Arrays.stream(latencies).average().orElse(0);
+        double p95 = latencies[Math.min(latencies.length - 1, (int) Math.ceil(latencies.length * 0.95) - 1)];
+        return new Measure(mode, indexPresent, recallSum / samples.size(), avg, p95);
+    }
+}
@@ -0,0 +1,175 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.model.CategoriaDispositivo;
+import it.unicas.spring.springai.model.Dispositivo;
+import it.unicas.spring.springai.repository.DispositivoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Classifica una domanda (o un documento) nelle categorie di dispositivo pertinenti.
+ * Usa solo parole chiave e nomi del catalogo {@code dispositivi}, senza chiamate LLM.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QueryCategoryRouter {
+
+    private static final long CATALOG_TTL_NANOS = 5L * 60 * 1_000_000_000L;
+
+    /**
+     * Parole chiave per categoria, come espressioni regolari sul testo normalizzato; devono comparire come parole
+     * intere. Le famiglie di modelli ("galaxy s24", "galaxy z fold6") ammettono il numero attaccato alla lettera.
+     */
+    private static final Map<CategoriaDispositivo, List<String>> KEYWORDS = new EnumMap<>(Map.of(
+            CategoriaDispositivo.SMARTPHONE, List.of(
+                    "smartphone", "telefono", "cellulare", "iphone", "pixel", "galaxy [sz]\\d*",
+                    "xiaomi", "oneplus", "sim", "chiamate"),
+            CategoriaDispositivo.SMARTWATCH, List.of(
+                    "smartwatch", "orologio", "watch", "garmin", "fitbit", "cinturino", "cardio",
+                    "battito", "ecg", "allenamento", "fitness", "polso"),
+            CategoriaDispositivo.TABLET, List.of(
+                    "tablet", "ipad", "galaxy tab", "pennino", "pencil", "s pen", "tastiera",
+                    "magic keyboard", "disegno")
+    ));
+
+    private static final Map<CategoriaDispositivo, List<Pattern>> KEYWORD_PATTERNS = new EnumMap<>(CategoriaDispositivo.class);
+
+    static {
+        KEYWORDS.forEach((categoria, keywords) -> KEYWORD_PATTERNS.put(categoria, keywords.stream()
+                .map(keyword -> Pattern.compile("(?<![\\p{L}\\p{N}])" + keyword + "(?![\\p{L}\\p{N}])"))
+                .toList()));
+    }
+
+    private final DispositivoRepository dispositivoRepository;
+
+    private volatile List<CatalogEntry> catalog = List.of();
+    private volatile long catalogLoadedAt;
+
+    private record CatalogEntry(String name, CategoriaDispositivo categoria) {
+    }
+
+    /**
+     * Determina le categorie da interrogare per una domanda.
+     * Chiamata da {@link RagService} prima della ricerca vettoriale partizionata.
+     *
+     * @param text domanda utente
+     * @return categorie individuate; tutte le categorie se la classificazione è incerta
+     */
+    public Set<CategoriaDispositivo> route(String text) {
+        Set<CategoriaDispositivo> detected = detect(text);
+        return detected.isEmpty() ? EnumSet.allOf(CategoriaDispositivo.class) : detected;
+    }
+
+    /**
+     * Rileva le categorie menzionate esplicitamente nel testo.
+     * Chiamata da {@link #route(String)} e da {@link PdfIngestionService} per taggare i documenti senza categoria.
+     *
+     * @param text testo da classificare
+     * @return categorie rilevate (vuoto se nessun indizio)
+     */
+    public Set<CategoriaDispositivo> detect(String text) {
+        Set<CategoriaDispositivo> detected = EnumSet.noneOf(CategoriaDispositivo.class);
+        if (text == null || text.isBlank()) {
+            return detected;
+        }
+
+        String normalized = normalize(text);
+        for (CatalogEntry entry : catalog()) {
+            if (containsWord(normalized, entry.name())) {
+                detected.add(entry.categoria());
+            }
+        }
+
+        for (Map.Entry<CategoriaDispositivo, List<Pattern>> entry : KEYWORD_PATTERNS.entrySet()) {
+            for (Pattern keyword : entry.getValue()) {
+                if (keyword.matcher(normalized).find()) {
+                    detected.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+
+        return detected;
+    }
+
+    /**
+     * Restituisce i nomi di catalogo (normalizzati) citati nel testo.
+     * Chiamata da {@link FollowUpRetrievalService} per capire se un follow-up resta sullo stesso prodotto
+     * e da {@link ComparisonRetrievalService} per scomporre le domande di confronto.
+     *
+     * @param text testo da analizzare
+     * @return nomi dispositivo trovati (vuoto se nessuno)
+     */
+    public Set<String> mentionedDevices(String text) {
+        if (text == null || text.isBlank()) {
+            return Set.of();
+        }
+
+        String normalized = normalize(text);
+        Set<String> names = new LinkedHashSet<>();
+        for (CatalogEntry entry : catalog()) {
+            if (containsWord(normalized, entry.name())) {
+                names.add(entry.name());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Normalizza il testo per il matching: minuscolo, senza accenti, spazi compattati.
+     *
+     * @param text testo originale
+     * @return testo normalizzato
+     */
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return decomposed.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+    }
+
+    static boolean containsWord(String text, String keyword) {
+        int from = 0;
+        while (true) {
+            int index = text.indexOf(keyword, from);
+            if (index < 0) return false;
+
+            int end = index + keyword.length();
+            boolean startOk = index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1));
+            boolean endOk = end == text.length() || !Character.isLetterOrDigit(text.charAt(end));
+            if (startOk && endOk) return true;
+            from = index + 1;
+        }
+    }
+
+    private List<CatalogEntry> catalog() {
+        long now = System.nanoTime();
+        if (catalogLoadedAt != 0 && now - catalogLoadedAt < CATALOG_TTL_NANOS) {
+            return catalog;
+        }
+
+        try {
+            List<CatalogEntry> entries = new ArrayList<>();
+            for (Dispositivo dispositivo : dispositivoRepository.findAll()) {
+                if (dispositivo.getNome() == null || dispositivo.getCategoria() == null) continue;
+                entries.add(new CatalogEntry(normalize(dispositivo.getNome()), dispositivo.getCategoria()));
+            }
+            catalog = List.copyOf(entries);
+        } catch (Exception e) {
+            log.warn("Unable to load device catalog for query routing: {}", e.getMessage());
+        }
+        catalogLoadedAt = now;
+        return catalog;
+    }
+}
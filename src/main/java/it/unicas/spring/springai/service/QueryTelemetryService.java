@@ -0,0 +1,133 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.QueryTelemetryProperties;
+import it.unicas.spring.springai.dto.TopQuery;
+import it.unicas.spring.springai.repository.QueryLogRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Log asincrono delle query chatbot: il thread della richiesta accoda solo un evento in memoria,
+ * lo scheduler scrive a batch su {@code query_log}. Fornisce anche l'aggregato delle query più frequenti.
+ */
+@Service
+@Slf4j
+public class QueryTelemetryService {
+
+    private final QueryTelemetryProperties properties;
+    private final QueryLogRepository queryLogRepository;
+    private final BlockingQueue<QueryLogRepository.QueryLogRow> queue;
+    private final LongAdder dropped = new LongAdder();
+
+    public QueryTelemetryService(QueryTelemetryProperties properties, QueryLogRepository queryLogRepository) {
+        this.properties = properties;
+        this.queryLogRepository = queryLogRepository;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+    }
+
+    /**
+     * Accoda l'evento di una query senza bloccare; se la coda è piena l'evento viene scartato.
+     * Chiamata da {@link ChatbotService} al termine di ogni turno.
+     *
+     * @param question domanda originale (viene normalizzata)
+     * @param retrieved chunk recuperati
+     * @param retrievalNanos durata della retrieval
+     * @param generationNanos durata della chiamata al modello (0 se non eseguita)
+     * @param totalNanos durata complessiva del turno
+     */
+    public void record(String question, List<Document> retrieved, long retrievalNanos, long generationNanos, long totalNanos) {
+        if (!properties.isEnabled() || question == null) {
+            return;
+        }
+
+        Double topScore = retrieved.stream()
+                .map(Document::getScore)
+                .filter(Objects::nonNull)
+                .max(Double::compare)
+                .orElse(null);
+        String scores = retrieved.stream()
+                .map(doc -> doc.getScore() != null ? String.format(Locale.ROOT, "%.4f", doc.getScore()) : "")
+                .collect(Collectors.joining(","));
+        String chunkIds = retrieved.stream()
+                .map(Document::getId)
+                .collect(Collectors.joining(","));
+
+        QueryLogRepository.QueryLogRow row = new QueryLogRepository.QueryLogRow(
+                LocalDateTime.now(),
+                normalize(question),
+                retrieved.size(),
+                topScore,
+                scores,
+                chunkIds,
+                retrievalNanos / 1_000_000,
+                generationNanos / 1_000_000,
+                totalNanos / 1_000_000
+        );
+
+        if (!queue.offer(row)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Domande più frequenti nella finestra indicata.
+     * Chiamata da {@link StartupWarmupService} e dall'endpoint admin {@code GET /api/admin/top-queries}.
+     *
+     * @param limit numero massimo di domande
+     * @param since inizio della finestra
+     * @return domande ordinate per frequenza, vuoto se il log non è disponibile
+     */
+    public List<TopQuery> topQueries(int limit, LocalDateTime since) {
+        try {
+            return queryLogRepository.findTopQueries(limit, since);
+        } catch (Exception e) {
+            log.debug("Unable to read top queries: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Scrive a batch gli eventi accodati.
+     * Chiamata dallo scheduler Spring ogni {@code app.rag.telemetry.flush-interval}.
+     */
+    @Scheduled(fixedDelayString = "${app.rag.telemetry.flush-interval:2s}")
+    public void flush() {
+        long droppedEvents = dropped.sumThenReset();
+        if (droppedEvents > 0) {
+            log.warn("Query log queue full, dropped {} events", droppedEvents);
+        }
+
+        List<QueryLogRepository.QueryLogRow> batch = new ArrayList<>(properties.getBatchSize());
+        while (queue.drainTo(batch, properties.getBatchSize()) > 0) {
+            try {
+                queryLogRepository.insertBatch(batch);
+            } catch (Exception e) {
+                log.warn("Unable to write {} query log events: {}", batch.size(), e.getMessage());
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    static String normalize(String question) {
+        return QueryCategoryRouter.normalize(question).replaceAll("[\\s?!.]+$", "");
+    }
+}
@@ -0,0 +1,19 @@
+package it.unicas.spring.springai.service;
+
+/**
+ * Segnala il superamento di un limite di utilizzo del modello.
+ * Lanciata da {@link UsageQuotaService} e tradotta in HTTP 429 dal controller chatbot.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public QuotaExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,14 +1,21 @@
 package it.unicas.spring.springai.service;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import it.unicas.spring.springai.model.CategoriaDispositivo;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,44 +24,119 @@ import java.util.stream.Collectors;
 public class RagService {
 
     private final VectorStore vectorStore;
+    private final VectorPartitionService vectorPartitionService;
+    private final QueryCategoryRouter queryCategoryRouter;
+    private final ObservationRegistry observationRegistry;
+    private final SlowSearchService slowSearchService;
+    private final RetrievalTuningService retrievalTuningService;
+    private final PlatformTransactionManager transactionManager;
 
-    private static final int DEFAULT_TOP_K = 5;
-    private static final double DEFAULT_SIMILARITY_THRESHOLD = 0.7;
+    @Value("${app.datasource.routing.enabled:false}")
+    private boolean readRouting;
 
     /**
-     * Esegue una ricerca vettoriale con i parametri di default.
+     * Observation di una ricerca vettoriale completa (routing, embedding e query).
+     */
+    public static final String OBSERVATION = "rag.search";
+
+    /**
+     * Esegue una ricerca vettoriale con il topK in vigore ({@code app.rag.tuning.search-top-k} o il braccio
+     * dell'esperimento corrente).
      * Chiamata dai servizi di dominio che non devono personalizzare il numero di chunk.
      *
      * @param query testo della domanda/requisito da cercare
      * @return lista di documenti rilevanti recuperati dal vector store
      */
     public List<Document> searchRelevantDocuments(String query) {
-        return searchRelevantDocuments(query, DEFAULT_TOP_K);
+        return searchRelevantDocuments(query, retrievalTuningService.parameters().searchTopK());
     }
 
     /**
      * Esegue la ricerca vettoriale con numero risultati configurabile.
      * Chiamata da chatbot, consultazione guidata e altri servizi che controllano la profondità RAG.
+     * Con il partizionamento attivo interroga solo le partizioni delle categorie individuate dal router.
+     * Dentro una richiesta di chat rispetta il {@link RequestDeadline} corrente: non parte se il budget è esaurito
+     * e, sul percorso SQL diretto, limita lo {@code statement_timeout} della transazione al tempo residuo.
+     * L'embedding della query è calcolato prima di aprire la transazione read-only, così la connessione
+     * del pool non resta occupata durante la chiamata HTTP al modello. La soglia di similarità è quella
+     * del braccio dell'esperimento legato al turno ({@link RetrievalTuningService}).
+     * La ricerca è tracciata come {@value #OBSERVATION} con topK, soglia, numero di risultati e score;
+     * le ricerche oltre {@code app.rag.slow-search.threshold} finiscono nel log di {@link SlowSearchService}.
      *
      * @param query testo su cui fare similarità semantica
      * @param topK numero massimo di chunk da recuperare
      * @return documenti più simili alla query
      */
     public List<Document> searchRelevantDocuments(String query, int topK) {
-        log.info("Searching for relevant documents with query: {}", query);
+        double similarityThreshold = retrievalTuningService.parameters().similarityThreshold();
+        Observation observation = Observation.createNotStarted(OBSERVATION, observationRegistry)
+                .contextualName("rag search")
+                .lowCardinalityKeyValue("rag.path", vectorPartitionService.handlesSearch() ? "partitions" : "vector-store")
+                .highCardinalityKeyValue("rag.top_k", String.valueOf(topK))
+                .highCardinalityKeyValue("rag.similarity_threshold", String.valueOf(similarityThreshold));
+        return observation.observe(() -> {
+            List<Document> results = search(query, topK, similarityThreshold);
+            observation.highCardinalityKeyValue("rag.results", String.valueOf(results.size()));
+            if (!results.isEmpty()) {
+                observation.highCardinalityKeyValue("rag.score.max", String.valueOf(results.get(0).getScore()));
+                observation.highCardinalityKeyValue("rag.score.min", String.valueOf(results.get(results.size() - 1).getScore()));
+            }
+            return results;
+        });
+    }
+
+    private List<Document> search(String query, int topK, double similarityThreshold) {
+        log.debug("Searching for relevant documents with query: {}", query);
+
+        RequestDeadline.checkCurrent("vector-search");
 
         SearchRequest searchRequest = SearchRequest.builder()
                 .query(query)
                 .topK(topK)
-                .similarityThreshold(DEFAULT_SIMILARITY_THRESHOLD)
+                .similarityThreshold(similarityThreshold)
                 .build();
 
-        List<Document> results = vectorStore.similaritySearch(searchRequest);
+        long start = System.nanoTime();
+        boolean partitioned = vectorPartitionService.handlesSearch();
+        Set<CategoriaDispositivo> categories = Set.of();
+        List<Document> results;
+        if (partitioned) {
+            categories = vectorPartitionService.isEnabled()
+                    ? queryCategoryRouter.route(query)
+                    : Set.of();
+            log.debug("Routing query to partitions {}", categories);
+            float[] embedding = vectorPartitionService.embed(query);
+            results = vectorPartitionService.search(searchRequest, categories, embedding);
+        } else {
+            results = vectorStoreSearch(searchRequest);
+        }
+        slowSearchService.record(searchRequest, partitioned, categories, results.size(), System.nanoTime() - start);
 
-        log.info("Found {} relevant documents", results.size());
+        log.debug("Found {} relevant documents", results.size());
         return results;
     }
 
+    /**
+     * Ricerca tramite il {@code VectorStore} dello starter, che calcola da sé l'embedding prima della query.
+     * La transazione read-only serve solo a instradare la query su una replica: con il routing attivo il
+     * {@code DataSource} è un {@code LazyConnectionDataSourceProxy}, che prende la connessione alla prima query
+     * e quindi dopo l'embedding. Senza routing la ricerca gira fuori transazione e il {@code JdbcTemplate}
+     * occupa la connessione solo per la query; lo {@code statement_timeout} locale non si imposta perché
+     * richiederebbe la connessione prima dell'embedding.
+     * Chiamata da {@link #searchRelevantDocuments(String, int)}.
+     *
+     * @param searchRequest richiesta di ricerca
+     * @return documenti più simili alla query
+     */
+    private List<Document> vectorStoreSearch(SearchRequest searchRequest) {
+        if (!readRouting) {
+            return vectorStore.similaritySearch(searchRequest);
+        }
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> vectorStore.similaritySearch(searchRequest));
+    }
+
     /**
      * Costruisce direttamente il contesto testuale partendo dalla query.
      * Chiamata dai servizi che hanno bisogno di un contesto testuale sintetico per il prompt.
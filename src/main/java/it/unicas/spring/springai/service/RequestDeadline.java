@@ -0,0 +1,201 @@
+package it.unicas.spring.springai.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Budget di tempo di una richiesta di chat, propagato lungo retrieval, embedding, query SQL e chiamata al modello.
+ * È legato al thread che esegue la richiesta ({@link #bind()}) e va propagato esplicitamente ai pool
+ * interni con {@link #propagate(Supplier)}. Alla cancellazione (annullata dal client o budget esaurito)
+ * interrompe il lavoro registrato e fa fallire i checkpoint successivi.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    public enum CancelReason {
+        CLIENT_CANCELLED,
+        BUDGET_EXHAUSTED
+    }
+
+    /**
+     * Riceve gli annullamenti, per le metriche.
+     */
+    interface Listener {
+
+        void requestCancelled(CancelReason reason);
+
+        void workCancelled(CancelReason reason, String stage);
+    }
+
+    private final long deadlineNanos;
+    private final Listener listener;
+    private final Map<Future<?>, String> work = new ConcurrentHashMap<>();
+    private final AtomicReference<CancelReason> cancelReason = new AtomicReference<>();
+
+    private volatile boolean completed;
+
+    /**
+     * @param budgetMillis budget della richiesta in millisecondi
+     * @param listener notificato a ogni richiesta e unità di lavoro annullata
+     */
+    RequestDeadline(long budgetMillis, Listener listener) {
+        this.deadlineNanos = System.nanoTime() + budgetMillis * 1_000_000L;
+        this.listener = listener;
+    }
+
+    /**
+     * Budget della richiesta in corso sul thread corrente.
+     *
+     * @return budget corrente, {@code null} fuori da una richiesta di chat
+     */
+    public static RequestDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Verifica il budget della richiesta corrente, se presente.
+     *
+     * @param stage fase che sta per iniziare (es. {@code vector-search})
+     * @throws DeadlineExceededException se la richiesta è stata annullata o il budget è esaurito
+     */
+    public static void checkCurrent(String stage) {
+        RequestDeadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check(stage);
+        }
+    }
+
+    /**
+     * Avvolge un'operazione da eseguire su un altro thread in modo che veda il budget del thread chiamante
+     * e l'observation corrente ({@link TracingContext}).
+     *
+     * @param task operazione da eseguire
+     * @return operazione con il budget corrente legato durante l'esecuzione
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        RequestDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return TracingContext.wrap(task);
+        }
+        return TracingContext.wrap(() -> {
+            try (Scope ignored = deadline.bind()) {
+                return task.get();
+            }
+        });
+    }
+
+    /**
+     * Lega il budget al thread corrente fino alla chiusura dello scope.
+     *
+     * @return scope che ripristina il budget precedente
+     */
+    public Scope bind() {
+        RequestDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, (deadlineNanos - System.nanoTime()) / 1_000_000L);
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelReason.get() != null;
+    }
+
+    /**
+     * @return motivo dell'annullamento, {@code null} se la richiesta è ancora attiva
+     */
+    public CancelReason cancelReason() {
+        return cancelReason.get();
+    }
+
+    /**
+     * Checkpoint prima di una fase costosa.
+     *
+     * @param stage fase che sta per iniziare
+     * @throws DeadlineExceededException se la richiesta è stata annullata o il budget è esaurito
+     */
+    public void check(String stage) {
+        if (cancelReason.get() == null && isExpired()) {
+            cancel(CancelReason.BUDGET_EXHAUSTED);
+        }
+
+        CancelReason reason = cancelReason.get();
+        if (reason != null) {
+            listener.workCancelled(reason, stage);
+            throw new DeadlineExceededException(stage, reason);
+        }
+    }
+
+    /**
+     * Registra un lavoro asincrono da interrompere se la richiesta viene annullata.
+     *
+     * @param stage fase a cui appartiene il lavoro
+     * @param future lavoro in corso
+     */
+    public void register(String stage, Future<?> future) {
+        if (completed) return;
+
+        work.put(future, stage);
+        CancelReason reason = cancelReason.get();
+        if (reason != null) {
+            cancelWork(reason);
+        }
+    }
+
+    /**
+     * Annulla la richiesta: interrompe il lavoro registrato ancora in corso e fa fallire i checkpoint successivi.
+     * Chiamata da {@link RequestDeadlineService} all'annullamento da parte del client o allo scadere del budget,
+     * e dai checkpoint quando trovano il budget esaurito.
+     *
+     * @param reason motivo dell'annullamento
+     */
+    public void cancel(CancelReason reason) {
+        if (completed || !cancelReason.compareAndSet(null, reason)) return;
+
+        listener.requestCancelled(reason);
+        cancelWork(reason);
+    }
+
+    /**
+     * Segna la richiesta come conclusa: il lavoro ancora in corso (es. una risposta differita) non viene più annullato.
+     */
+    public void complete() {
+        completed = true;
+        work.clear();
+    }
+
+    private void cancelWork(CancelReason reason) {
+        for (Map.Entry<Future<?>, String> entry : work.entrySet()) {
+            if (work.remove(entry.getKey()) == null) continue;
+            if (entry.getKey().cancel(true)) {
+                listener.workCancelled(reason, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Scope di {@link #bind()} utilizzabile in try-with-resources.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
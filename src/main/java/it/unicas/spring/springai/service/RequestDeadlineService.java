@@ -0,0 +1,203 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.RequestDeadlineProperties;
+import it.unicas.spring.springai.dto.CancelledWorkStats;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Crea il budget delle richieste di chat, le esegue su un pool dedicato così da poterle interrompere
+ * e conta il lavoro annullato per budget esaurito o annullamento del client.
+ * <p>
+ * Il Servlet API non notifica la disconnessione di un client su una richiesta asincrona senza I/O in corso:
+ * per annullare il lavoro il client identifica la richiesta con {@link #REQUEST_ID_HEADER} e la annulla
+ * esplicitamente ({@link #cancel(String, String)}). Senza identificativo solo lo scadere del budget annulla il lavoro.
+ */
+@Service
+@Slf4j
+public class RequestDeadlineService {
+
+    /**
+     * Header con cui il client indica il proprio budget in millisecondi.
+     */
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    /**
+     * Header con cui il client identifica la richiesta, per poterla annullare.
+     */
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private final RequestDeadlineProperties properties;
+    private final ExecutorService executor;
+
+    private final Map<RequestDeadline.CancelReason, LongAdder> requestsByReason = new EnumMap<>(RequestDeadline.CancelReason.class);
+    private final Map<String, LongAdder> workByStage = new ConcurrentHashMap<>();
+    private final Map<String, Runnable> cancellable = new ConcurrentHashMap<>();
+
+    private final RequestDeadline.Listener metrics = new RequestDeadline.Listener() {
+
+        @Override
+        public void requestCancelled(RequestDeadline.CancelReason reason) {
+            requestsByReason.get(reason).increment();
+            log.debug("Chat request cancelled: {}", reason);
+        }
+
+        @Override
+        public void workCancelled(RequestDeadline.CancelReason reason, String stage) {
+            workByStage.computeIfAbsent(stage, s -> new LongAdder()).increment();
+        }
+    };
+
+    public RequestDeadlineService(RequestDeadlineProperties properties) {
+        this.properties = properties;
+        int threads = Math.max(1, properties.getWorkerThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())), runnable -> {
+            Thread thread = new Thread(runnable, "chat-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (RequestDeadline.CancelReason reason : RequestDeadline.CancelReason.values()) {
+            requestsByReason.put(reason, new LongAdder());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Crea il budget di una richiesta di chat.
+     * Chiamata dal controller chatbot all'arrivo di {@code POST /api/chatbot/chat}.
+     *
+     * @param requestedMillis budget inviato dal client nell'header {@link #HEADER}, {@code null} se assente
+     * @return budget limitato a {@code app.chat.deadline.max-budget}
+     */
+    public RequestDeadline start(Long requestedMillis) {
+        long budget = requestedMillis != null && requestedMillis > 0
+                ? Math.min(requestedMillis, properties.getMaxBudget().toMillis())
+                : properties.getDefaultBudget().toMillis();
+        return new RequestDeadline(budget, metrics);
+    }
+
+    /**
+     * Esegue la richiesta su un thread del pool con il budget legato e l'observation HTTP come padre delle span.
+     * Chiamata dal controller chatbot.
+     *
+     * @param deadline budget della richiesta
+     * @param task elaborazione della richiesta
+     * @return esecuzione in corso, da passare a {@link #cancel(RequestDeadline, Future, RequestDeadline.CancelReason)}
+     * @throws RejectedExecutionException se tutti i thread sono occupati e la coda ({@code app.chat.deadline.queue-capacity})
+     *         è piena
+     */
+    public Future<?> execute(RequestDeadline deadline, Runnable task) {
+        try {
+            return executor.submit(TracingContext.wrap(() -> {
+                try (RequestDeadline.Scope ignored = deadline.bind()) {
+                    task.run();
+                } finally {
+                    deadline.complete();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            deadline.complete();
+            log.warn("Chat request rejected: {} workers busy and queue full", properties.getWorkerThreads());
+            throw e;
+        }
+    }
+
+    /**
+     * Annulla una richiesta in corso: interrompe il thread che la esegue e il lavoro asincrono registrato.
+     * Chiamata dal controller chatbot allo scadere del budget e, tramite {@link #cancel(String, String)},
+     * all'annullamento da parte del client.
+     *
+     * @param deadline budget della richiesta
+     * @param execution esecuzione restituita da {@link #execute(RequestDeadline, Runnable)}
+     * @param reason motivo dell'annullamento
+     */
+    public void cancel(RequestDeadline deadline, Future<?> execution, RequestDeadline.CancelReason reason) {
+        deadline.cancel(reason);
+        if (execution.cancel(true)) {
+            metrics.workCancelled(reason, "request");
+        }
+    }
+
+    /**
+     * Rende annullabile dal client una richiesta in corso. Chiamata dal controller chatbot dopo
+     * {@link #execute(RequestDeadline, Runnable)}; la registrazione va rimossa con {@link #untrack(String, String)}.
+     *
+     * @param username utente proprietario della richiesta
+     * @param requestId identificativo inviato nell'header {@link #REQUEST_ID_HEADER}
+     * @param cancellation annullamento della richiesta
+     */
+    public void track(String username, String requestId, Runnable cancellation) {
+        cancellable.put(key(username, requestId), cancellation);
+    }
+
+    /**
+     * Rimuove la registrazione di una richiesta conclusa.
+     * Chiamata dal controller chatbot al completamento della risposta asincrona.
+     *
+     * @param username utente proprietario della richiesta
+     * @param requestId identificativo della richiesta
+     */
+    public void untrack(String username, String requestId) {
+        cancellable.remove(key(username, requestId));
+    }
+
+    /**
+     * Annulla una richiesta in corso dell'utente, se esiste ancora.
+     * Chiamata dall'endpoint {@code POST /api/chatbot/chat/{requestId}/cancel}.
+     *
+     * @param username utente autenticato
+     * @param requestId identificativo della richiesta
+     * @return {@code true} se la richiesta era in corso ed è stata annullata
+     */
+    public boolean cancel(String username, String requestId) {
+        Runnable cancellation = cancellable.remove(key(username, requestId));
+        if (cancellation == null) {
+            return false;
+        }
+        cancellation.run();
+        return true;
+    }
+
+    /**
+     * Restituisce i contatori del lavoro annullato.
+     * Chiamata dall'endpoint admin {@code GET /api/admin/cancelled-work}.
+     *
+     * @return richieste annullate per motivo e lavoro annullato per fase
+     */
+    public CancelledWorkStats snapshot() {
+        Map<String, Long> reasons = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<RequestDeadline.CancelReason, LongAdder> entry : requestsByReason.entrySet()) {
+            long count = entry.getValue().sum();
+            reasons.put(entry.getKey().name(), count);
+            total += count;
+        }
+
+        Map<String, Long> stages = new TreeMap<>();
+        workByStage.forEach((stage, count) -> stages.put(stage, count.sum()));
+        return new CancelledWorkStats(total, reasons, stages);
+    }
+
+    private static String key(String username, String requestId) {
+        return username + ":" + requestId;
+    }
+}
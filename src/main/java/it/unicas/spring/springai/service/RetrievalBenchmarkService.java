@@ -0,0 +1,378 @@
+package it.unicas.spring.springai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicas.spring.springai.config.QuantizationProperties;
+import it.unicas.spring.springai.config.RetrievalBenchmarkProperties;
+import it.unicas.spring.springai.dto.RetrievalBenchmarkReport;
+import it.unicas.spring.springai.dto.RetrievalBenchmarkResult;
+import it.unicas.spring.springai.dto.RetrievalParameters;
+import it.unicas.spring.springai.repository.VectorPartitionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Misura qualità (recall@k, MRR) e latenza del retrieval su un corpus fisso di schede tecniche e su domande
+ * di riferimento con le pagine attese, al variare di topK, soglia, {@code hnsw.ef_search}, dimensione dei chunk
+ * e modalità di ricerca. Ogni dimensione dei chunk ha una tabella temporanea dedicata, così il benchmark
+ * non tocca la knowledge base né i suoi indici.
+ */
+@Service
+@Slf4j
+public class RetrievalBenchmarkService {
+
+    private static final double NO_THRESHOLD = -1.0;
+
+    // parametri TokenTextSplitter di PdfIngestionService oltre alla dimensione dei chunk
+    private static final int MIN_CHUNK_SIZE_CHARS = 350;
+    private static final int MIN_CHUNK_LENGTH_TO_EMBED = 5;
+    private static final int MAX_NUM_CHUNKS = 10_000;
+
+    // valori in produzione: TokenTextSplitter di default e default pgvector; topK e soglia da RetrievalTuningService
+    private static final int PRODUCTION_CHUNK_SIZE = 800;
+    private static final int PRODUCTION_EF_SEARCH = 40;
+
+    private final RetrievalBenchmarkProperties properties;
+    private final QuantizationProperties quantizationProperties;
+    private final VectorPartitionRepository vectorPartitionRepository;
+    private final BulkVectorLoader bulkVectorLoader;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final ResourcePatternResolver resourceResolver;
+    private final TransactionTemplate transactionTemplate;
+    private final RetrievalTuningService retrievalTuningService;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Griglia di parametri da misurare.
+     */
+    public record Sweep(List<Integer> topK, List<Double> thresholds, List<Integer> efSearch,
+                        List<Integer> chunkSizes, List<RetrievalBenchmarkProperties.Mode> modes) {
+    }
+
+    record GoldenQuestion(String question, String fileName, List<Integer> pages) {
+    }
+
+    record GoldenSet(String description, List<GoldenQuestion> questions) {
+    }
+
+    private record Measure(List<List<Document>> results, double avgMs, double p95Ms) {
+    }
+
+    public RetrievalBenchmarkService(RetrievalBenchmarkProperties properties, QuantizationProperties quantizationProperties,
+                                     VectorPartitionRepository vectorPartitionRepository, BulkVectorLoader bulkVectorLoader,
+                                     EmbeddingModel embeddingModel, ObjectMapper objectMapper, ResourceLoader resourceLoader,
+                                     PlatformTransactionManager transactionManager,
+                                     RetrievalTuningService retrievalTuningService) {
+        this.properties = properties;
+        this.quantizationProperties = quantizationProperties;
+        this.vectorPartitionRepository = vectorPartitionRepository;
+        this.bulkVectorLoader = bulkVectorLoader;
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.resourceResolver = ResourcePatternUtils.getResourcePatternResolver(resourceLoader);
+        // transazioni di scrittura: con le repliche attive tabelle temporanee e query restano sul primario
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retrievalTuningService = retrievalTuningService;
+    }
+
+    /**
+     * Costruisce la griglia completando i parametri mancanti con i default di {@code app.rag.benchmark.*}.
+     * Chiamata dall'endpoint admin prima di {@link #run(Sweep)}.
+     *
+     * @throws IllegalArgumentException se un valore è fuori dai limiti ammessi
+     */
+    public Sweep sweep(List<Integer> topK, List<Double> thresholds, List<Integer> efSearch,
+                       List<Integer> chunkSizes, List<RetrievalBenchmarkProperties.Mode> modes) {
+        Sweep sweep = new Sweep(
+                orDefault(topK, properties.getTopK()),
+                orDefault(thresholds, properties.getThresholds()),
+                orDefault(efSearch, properties.getEfSearch()),
+                orDefault(chunkSizes, properties.getChunkSizes()),
+                orDefault(modes, properties.getModes()));
+
+        if (sweep.topK().stream().anyMatch(k -> k < 1 || k > 100)
+                || sweep.thresholds().stream().anyMatch(t -> t < 0 || t > 1)
+                || sweep.efSearch().stream().anyMatch(ef -> ef < 1 || ef > 1_000)
+                || sweep.chunkSizes().stream().anyMatch(size -> size < 32 || size > 4_000)) {
+            throw new IllegalArgumentException("Parametri benchmark non validi");
+        }
+        return sweep;
+    }
+
+    /**
+     * Esegue il benchmark sull'intera griglia.
+     * Chiamata dall'endpoint admin {@code POST /api/admin/retrieval-benchmark}.
+     *
+     * @param sweep parametri da misurare
+     * @return report con recall@k, MRR e latenza per combinazione
+     * @throws IllegalStateException se un altro benchmark è in corso
+     */
+    public RetrievalBenchmarkReport run(Sweep sweep) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Un benchmark del retrieval è già in esecuzione");
+        }
+
+        try {
+            List<Resource> corpus = loadCorpus();
+            List<GoldenQuestion> questions = loadGoldenSet().questions();
+            List<float[]> queryEmbeddings = embeddingModel.embed(questions.stream().map(GoldenQuestion::question).toList());
+
+            Map<Integer, Integer> chunksBySize = new LinkedHashMap<>();
+            List<RetrievalBenchmarkResult> results = new ArrayList<>();
+            for (int chunkSize : sweep.chunkSizes()) {
+                String table = properties.getTablePrefix() + chunkSize;
+                try {
+                    chunksBySize.put(chunkSize, loadCorpusTable(table, corpus, chunkSize));
+                    results.addAll(measureTable(table, chunkSize, sweep, questions, queryEmbeddings));
+                } finally {
+                    if (!properties.isKeepTables()) {
+                        vectorPartitionRepository.dropTable(table);
+                    }
+                }
+            }
+
+            RetrievalBenchmarkReport report = new RetrievalBenchmarkReport(
+                    corpus.size(), questions.size(), chunksBySize, withRecallLoss(results));
+            log.info("Retrieval benchmark on {} documents and {} questions:\n{}", corpus.size(), questions.size(), formatTable(report));
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Formatta il report come tabella di testo, una riga per combinazione.
+     * Chiamata dall'endpoint admin con {@code format=table} e per il log a fine run.
+     *
+     * @param report report del benchmark
+     * @return tabella a colonne fisse
+     */
+    public String formatTable(RetrievalBenchmarkReport report) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-6s %-8s %5s %5s %6s %9s %7s %7s %9s %9s %9s%n",
+                "chunk", "mode", "ef", "topK", "thr", "recall@k", "MRR", "chunks", "avg ms", "p95 ms", "loss pp"));
+        for (RetrievalBenchmarkResult r : report.results()) {
+            out.append(String.format(Locale.ROOT, "%-6d %-8s %5s %5d %6.2f %9.3f %7.3f %7.1f %9.2f %9.2f %9s%s%n",
+                    r.chunkSize(), r.mode(), r.efSearch() != null ? r.efSearch() : "-", r.topK(), r.threshold(),
+                    r.recallAtK(), r.mrr(), r.avgChunks(), r.avgLatencyMs(), r.p95LatencyMs(),
+                    r.recallLossVsExact() != null ? String.format(Locale.ROOT, "%.1f", r.recallLossVsExact()) : "-",
+                    r.production() ? "  <- produzione" : ""));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Legge e divide il corpus con la dimensione di chunk indicata, poi lo carica nella tabella temporanea
+     * con il percorso massivo (embedding a batch + COPY).
+     */
+    private int loadCorpusTable(String table, List<Resource> corpus, int chunkSize) {
+        TokenTextSplitter splitter = new TokenTextSplitter(
+                chunkSize, MIN_CHUNK_SIZE_CHARS, MIN_CHUNK_LENGTH_TO_EMBED, MAX_NUM_CHUNKS, true);
+
+        List<Document> chunks = new ArrayList<>();
+        for (Resource pdf : corpus) {
+            for (Document chunk : splitter.apply(new PagePdfDocumentReader(pdf).get())) {
+                Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+                metadata.put("fileName", pdf.getFilename());
+                Integer page = PdfIngestionService.extractPageNumber(metadata);
+                if (page != null) {
+                    metadata.put("page", page);
+                }
+                chunks.add(chunk.mutate().metadata(metadata).build());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            vectorPartitionRepository.dropTable(table);
+            vectorPartitionRepository.createVectorTable(table);
+            bulkVectorLoader.loadDocuments(Map.of(table, chunks));
+        });
+        log.info("Retrieval benchmark: loaded {} chunks of {} tokens into {}", chunks.size(), chunkSize, table);
+        return chunks.size();
+    }
+
+    private List<RetrievalBenchmarkResult> measureTable(String table, int chunkSize, Sweep sweep,
+                                                        List<GoldenQuestion> questions, List<float[]> queryEmbeddings) {
+        List<RetrievalBenchmarkResult> results = new ArrayList<>();
+        for (RetrievalBenchmarkProperties.Mode mode : sweep.modes()) {
+            if (mode == RetrievalBenchmarkProperties.Mode.HALFVEC || mode == RetrievalBenchmarkProperties.Mode.BINARY) {
+                vectorPartitionRepository.ensureQuantizedIndex(table, QuantizationProperties.Mode.valueOf(mode.name()));
+            }
+
+            // la ricerca esatta non usa l'indice: ef_search non ha effetto
+            List<Integer> efValues = mode == RetrievalBenchmarkProperties.Mode.EXACT
+                    ? Arrays.asList((Integer) null)
+                    : sweep.efSearch();
+            for (Integer efSearch : efValues) {
+                for (int topK : sweep.topK()) {
+                    Measure measure = measure(table, mode, efSearch, topK, queryEmbeddings);
+                    for (double threshold : sweep.thresholds()) {
+                        results.add(score(chunkSize, mode, efSearch, topK, threshold, questions, measure));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private Measure measure(String table, RetrievalBenchmarkProperties.Mode mode, Integer efSearch, int topK,
+                            List<float[]> queryEmbeddings) {
+        // riscaldamento: porta in cache le pagine dell'indice prima di misurare
+        search(table, mode, efSearch, topK, queryEmbeddings.get(0), new double[1], 0);
+
+        double[] latencies = new double[queryEmbeddings.size()];
+        List<List<Document>> results = new ArrayList<>(queryEmbeddings.size());
+        for (int i = 0; i < queryEmbeddings.size(); i++) {
+            results.add(search(table, mode, efSearch, topK, queryEmbeddings.get(i), latencies, i));
+        }
+
+        Arrays.sort(latencies);
+        double avg = Arrays.stream(latencies).average().orElse(0);
+        double p95 = latencies[Math.min(latencies.length - 1, (int) Math.ceil(latencies.length * 0.95) - 1)];
+        return new Measure(results, avg, p95);
+    }
+
+    /**
+     * Esegue una query in una transazione dedicata, dove valgono {@code hnsw.ef_search} e il divieto di seq scan.
+     */
+    private List<Document> search(String table, RetrievalBenchmarkProperties.Mode mode, Integer efSearch, int topK,
+                                  float[] embedding, double[] latencies, int index) {
+        return transactionTemplate.execute(status -> {
+            if (efSearch != null) {
+                vectorPartitionRepository.setLocalHnswSearch(efSearch);
+            }
+
+            long start = System.nanoTime();
+            List<Document> found = mode == RetrievalBenchmarkProperties.Mode.EXACT
+                    ? vectorPartitionRepository.exactSearch(table, embedding, topK)
+                    : vectorPartitionRepository.searchQuantized(table, embedding, topK, NO_THRESHOLD,
+                    QuantizationProperties.Mode.valueOf(mode.name()),
+                    topK * Math.max(1, quantizationProperties.getRescoreFactor()));
+            latencies[index] = (System.nanoTime() - start) / 1_000_000.0;
+            return found;
+        });
+    }
+
+    /**
+     * Applica la soglia ai risultati misurati e calcola recall@k e MRR rispetto alle pagine attese.
+     */
+    private RetrievalBenchmarkResult score(int chunkSize, RetrievalBenchmarkProperties.Mode mode, Integer efSearch,
+                                           int topK, double threshold, List<GoldenQuestion> questions, Measure measure) {
+        double recallSum = 0;
+        double reciprocalRankSum = 0;
+        long chunkSum = 0;
+        for (int i = 0; i < questions.size(); i++) {
+            GoldenQuestion question = questions.get(i);
+            List<Document> kept = measure.results().get(i).stream()
+                    .filter(doc -> doc.getScore() != null && doc.getScore() >= threshold)
+                    .limit(topK)
+                    .toList();
+            chunkSum += kept.size();
+
+            long pagesFound = question.pages().stream()
+                    .filter(page -> kept.stream().anyMatch(doc -> isRelevant(doc, question.fileName(), List.of(page))))
+                    .count();
+            recallSum += question.pages().isEmpty() ? 0 : (double) pagesFound / question.pages().size();
+
+            for (int rank = 0; rank < kept.size(); rank++) {
+                if (isRelevant(kept.get(rank), question.fileName(), question.pages())) {
+                    reciprocalRankSum += 1.0 / (rank + 1);
+                    break;
+                }
+            }
+        }
+
+        int n = Math.max(1, questions.size());
+        // fuori da un turno di chat parameters() restituisce i default configurati
+        RetrievalParameters current = retrievalTuningService.parameters();
+        boolean production = chunkSize == PRODUCTION_CHUNK_SIZE
+                && topK == current.chatTopK()
+                && threshold == current.similarityThreshold()
+                && mode.name().equals(quantizationProperties.getMode().name())
+                && Objects.equals(efSearch, PRODUCTION_EF_SEARCH);
+        return new RetrievalBenchmarkResult(chunkSize, mode.name(), efSearch, topK, threshold,
+                recallSum / n, reciprocalRankSum / n, (double) chunkSum / n,
+                measure.avgMs(), measure.p95Ms(), null, production);
+    }
+
+    /**
+     * Aggiunge la perdita di recall rispetto alla ricerca esatta con stessi chunk, topK e soglia.
+     */
+    private List<RetrievalBenchmarkResult> withRecallLoss(List<RetrievalBenchmarkResult> results) {
+        Map<String, Double> exactRecall = new HashMap<>();
+        for (RetrievalBenchmarkResult r : results) {
+            if (RetrievalBenchmarkProperties.Mode.EXACT.name().equals(r.mode())) {
+                exactRecall.put(r.chunkSize() + "/" + r.topK() + "/" + r.threshold(), r.recallAtK());
+            }
+        }
+
+        return results.stream()
+                .map(r -> {
+                    Double exact = exactRecall.get(r.chunkSize() + "/" + r.topK() + "/" + r.threshold());
+                    return new RetrievalBenchmarkResult(r.chunkSize(), r.mode(), r.efSearch(), r.topK(), r.threshold(),
+                            r.recallAtK(), r.mrr(), r.avgChunks(), r.avgLatencyMs(), r.p95LatencyMs(),
+                            exact != null ? (exact - r.recallAtK()) * 100 : null, r.production());
+                })
+                .toList();
+    }
+
+    private static boolean isRelevant(Document doc, String fileName, List<Integer> pages) {
+        Object docFile = doc.getMetadata().get("fileName");
+        Object page = doc.getMetadata().get("page");
+        return fileName.equals(docFile) && page instanceof Number number && pages.contains(number.intValue());
+    }
+
+    private List<Resource> loadCorpus() {
+        try {
+            List<Resource> corpus = new ArrayList<>(Arrays.asList(resourceResolver.getResources(properties.getCorpus())));
+            corpus.sort(Comparator.comparing(Resource::getFilename, Comparator.nullsLast(Comparator.naturalOrder())));
+            if (corpus.isEmpty()) {
+                throw new IllegalArgumentException("Nessun PDF trovato per il corpus del benchmark: " + properties.getCorpus());
+            }
+            return corpus;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private GoldenSet loadGoldenSet() {
+        try (InputStream in = resourceResolver.getResource(properties.getGoldenSet()).getInputStream()) {
+            GoldenSet goldenSet = objectMapper.readValue(in, GoldenSet.class);
+            if (goldenSet.questions() == null || goldenSet.questions().isEmpty()) {
+                throw new IllegalArgumentException("Il golden set del benchmark non contiene domande");
+            }
+            return goldenSet;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> List<T> orDefault(List<T> values, List<T> defaults) {
+        return values == null || values.isEmpty() ? List.copyOf(defaults) : List.copyOf(values);
+    }
+}
@@ -0,0 +1,163 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.PrefetchProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Retrieval speculativa mentre l'utente scrive: il frontend invia la domanda parziale e qui si eseguono
+ * embedding e ricerca vettoriale in anticipo, conservando il risultato in uno slot per utente di breve durata.
+ * Se la domanda inviata coincide, la chat riusa il risultato senza rifare la ricerca.
+ * Ogni utente ha al più un prefetch in corso e un intervallo minimo tra le richieste, e il pool è limitato,
+ * così il prefetch non può moltiplicare il carico.
+ */
+@Service
+@Slf4j
+public class RetrievalPrefetchService {
+
+    public enum Outcome {
+        ACCEPTED,
+        SKIPPED,
+        RATE_LIMITED
+    }
+
+    private final PrefetchProperties properties;
+    private final ComparisonRetrievalService comparisonRetrievalService;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastRequestNanos = new ConcurrentHashMap<>();
+
+    private record Slot(String query, int topK, CompletableFuture<List<Document>> documents, long createdNanos) {
+    }
+
+    public RetrievalPrefetchService(PrefetchProperties properties, ComparisonRetrievalService comparisonRetrievalService) {
+        this.properties = properties;
+        this.comparisonRetrievalService = comparisonRetrievalService;
+        int threads = Math.max(1, properties.getParallelism());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "retrieval-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Avvia la retrieval speculativa di una domanda parziale.
+     * Chiamata da {@link ChatbotService#prefetch(String, String)}.
+     *
+     * @param username utente autenticato
+     * @param question testo parziale della domanda
+     * @param topK numero di chunk che userà la chat
+     * @return esito: avviato, inutile (testo corto o già anticipato) o rifiutato per limite di frequenza
+     */
+    public Outcome prefetch(String username, String question, int topK) {
+        if (!properties.isEnabled() || username == null || question == null
+                || question.trim().length() < properties.getMinChars()) {
+            return Outcome.SKIPPED;
+        }
+
+        String query = QueryTelemetryService.normalize(question);
+        Slot current = slots.get(username);
+        if (current != null && current.query().equals(query) && current.topK() == topK) {
+            return Outcome.SKIPPED;
+        }
+        if (current != null && !current.documents().isDone()) {
+            return Outcome.RATE_LIMITED;
+        }
+
+        long now = System.nanoTime();
+        AtomicBoolean allowed = new AtomicBoolean();
+        lastRequestNanos.compute(username, (user, last) -> {
+            if (last != null && now - last < properties.getMinInterval().toNanos()) {
+                return last;
+            }
+            allowed.set(true);
+            return now;
+        });
+        if (!allowed.get()) {
+            return Outcome.RATE_LIMITED;
+        }
+
+        String text = question.trim();
+        CompletableFuture<List<Document>> documents;
+        try {
+            documents = CompletableFuture.supplyAsync(
+                    TracingContext.wrap(() -> comparisonRetrievalService.search(text, topK)), executor);
+        } catch (RejectedExecutionException e) {
+            return Outcome.RATE_LIMITED;
+        }
+        slots.put(username, new Slot(query, topK, documents, now));
+        return Outcome.ACCEPTED;
+    }
+
+    /**
+     * Ritira il risultato anticipato se corrisponde alla domanda finale; lo slot viene comunque svuotato.
+     * Se il prefetch è ancora in corso lo attende, perché è partito prima di quanto farebbe una nuova ricerca.
+     * Chiamata da {@link FollowUpRetrievalService} al posto della ricerca vettoriale.
+     *
+     * @param username utente autenticato
+     * @param question domanda finale
+     * @param topK numero di chunk richiesti
+     * @return chunk anticipati, vuoto se non c'è un prefetch valido per questa domanda
+     */
+    public Optional<List<Document>> take(String username, String question, int topK) {
+        if (username == null) return Optional.empty();
+
+        Slot slot = slots.remove(username);
+        if (slot == null || slot.topK() != topK || isExpired(slot)
+                || !slot.query().equals(QueryTelemetryService.normalize(question))) {
+            return Optional.empty();
+        }
+
+        try {
+            RequestDeadline deadline = RequestDeadline.current();
+            List<Document> documents = deadline != null
+                    ? slot.documents().get(deadline.remainingMillis(), TimeUnit.MILLISECONDS)
+                    : slot.documents().get();
+            log.debug("Chat retrieval served by prefetch ({} chunks)", documents.size());
+            return Optional.of(documents);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (Exception e) {
+            log.debug("Prefetched retrieval unusable: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Scarta gli slot scaduti e i limiti di frequenza non più rilevanti.
+     * Chiamata dallo scheduler Spring ogni {@code app.chat.prefetch.ttl}.
+     */
+    @Scheduled(fixedDelayString = "${app.chat.prefetch.ttl:30s}")
+    public void evictExpired() {
+        slots.values().removeIf(this::isExpired);
+        long cutoff = System.nanoTime() - properties.getMinInterval().toNanos();
+        lastRequestNanos.values().removeIf(last -> last - cutoff < 0);
+    }
+
+    private boolean isExpired(Slot slot) {
+        return System.nanoTime() - slot.createdNanos() > properties.getTtl().toNanos();
+    }
+}
@@ -0,0 +1,311 @@
+package it.unicas.spring.springai.service;
+
+import io.micrometer.context.ContextRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import it.unicas.spring.springai.config.RetrievalTuningProperties;
+import it.unicas.spring.springai.dto.ExperimentArmStats;
+import it.unicas.spring.springai.dto.RetrievalExperimentArm;
+import it.unicas.spring.springai.dto.RetrievalParameters;
+import it.unicas.spring.springai.dto.RetrievalTuningConfig;
+import it.unicas.spring.springai.dto.RetrievalTuningStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Parametri di retrieval e prompt modificabili a runtime, con esperimenti A/B: ogni utente è assegnato
+ * stabilmente a un braccio in base all'hash del nome, e per braccio si misurano durata del turno, token
+ * e frazione di ricerche vuote. Il braccio del turno è legato al thread ({@link #bind(Assignment)}) e segue
+ * la richiesta sui pool interni tramite {@link TracingContext}.
+ * La configurazione è per nodo e torna ai valori {@code app.rag.tuning.*} al riavvio.
+ */
+@Service
+@Slf4j
+public class RetrievalTuningService {
+
+    public static final String CONTROL_ARM = "control";
+
+    static final String TURN_METER = "rag.experiment.turn";
+    static final String EMPTY_METER = "rag.experiment.empty";
+    static final String TOKENS_METER = "rag.experiment.tokens";
+
+    private static final ThreadLocal<Assignment> CURRENT = new ThreadLocal<>();
+
+    static {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(
+                RetrievalTuningService.class.getName(), CURRENT::get, CURRENT::set, CURRENT::remove);
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final String salt;
+
+    private volatile Config config;
+
+    /**
+     * Braccio assegnato a un turno di chat.
+     *
+     * @param arm nome del braccio
+     * @param parameters parametri del braccio
+     */
+    public record Assignment(String arm, RetrievalParameters parameters) {
+    }
+
+    /**
+     * Ripristina l'assegnazione precedente del thread.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record ResolvedArm(String name, int percent, RetrievalParameters parameters, RetrievalExperimentArm source) {
+    }
+
+    private record Config(RetrievalParameters defaults, List<ResolvedArm> arms) {
+    }
+
+    public RetrievalTuningService(RetrievalTuningProperties properties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.salt = properties.getSalt() != null ? properties.getSalt() : "";
+
+        RetrievalParameters defaults = new RetrievalParameters(properties.getSearchTopK(), properties.getChatTopK(),
+                properties.getSimilarityThreshold(), properties.getMaxChunkChars(), properties.getMaxHistoryMessages());
+        List<RetrievalExperimentArm> arms = properties.getArms().stream()
+                .map(arm -> new RetrievalExperimentArm(arm.getName(), arm.getPercent(), arm.getSearchTopK(),
+                        arm.getChatTopK(), arm.getSimilarityThreshold(), arm.getMaxChunkChars(), arm.getMaxHistoryMessages()))
+                .toList();
+        this.config = resolve(new RetrievalTuningConfig(defaults, arms));
+    }
+
+    /**
+     * Parametri del turno corrente: quelli del braccio legato al thread o, fuori da un turno di chat, i default.
+     * Chiamata da {@link RagService} e {@link ChatbotService} a ogni uso di un parametro.
+     *
+     * @return parametri in vigore
+     */
+    public RetrievalParameters parameters() {
+        Assignment assignment = CURRENT.get();
+        return assignment != null ? assignment.parameters() : config.defaults();
+    }
+
+    /**
+     * Assegna un utente al proprio braccio: l'hash di sale e username sceglie un bucket 0-99 e i bracci
+     * occupano bucket consecutivi secondo la loro percentuale.
+     * Chiamata da {@link ChatbotService} all'inizio di ogni turno e di ogni prefetch.
+     *
+     * @param username utente autenticato, {@code null} per il braccio di controllo
+     * @return braccio e parametri
+     */
+    public Assignment assign(String username) {
+        Config current = config;
+        if (username != null && !current.arms().isEmpty()) {
+            int bucket = bucket(username);
+            int upper = 0;
+            for (ResolvedArm arm : current.arms()) {
+                upper += arm.percent();
+                if (bucket < upper) {
+                    return new Assignment(arm.name(), arm.parameters());
+                }
+            }
+        }
+        return new Assignment(CONTROL_ARM, current.defaults());
+    }
+
+    /**
+     * Lega al thread il braccio del turno, così che retrieval e costruzione del prompt ne usino i parametri.
+     *
+     * @param assignment braccio del turno
+     * @return scope da chiudere a fine turno
+     */
+    public Scope bind(Assignment assignment) {
+        Assignment previous = CURRENT.get();
+        CURRENT.set(assignment);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Registra la durata di un turno di chat e se la retrieval è risultata vuota.
+     * Chiamata da {@link ChatbotService} a fine turno.
+     *
+     * @param arm braccio del turno
+     * @param nanos durata del turno
+     * @param empty se non è stato recuperato alcun chunk
+     */
+    public void recordTurn(String arm, long nanos, boolean empty) {
+        Timer.builder(TURN_METER)
+                .tag("arm", arm)
+                .publishPercentiles(0.95)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter counter = Counter.builder(EMPTY_METER).tag("arm", arm).register(meterRegistry);
+        if (empty) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Registra i token di una chiamata al modello del braccio.
+     * Chiamata da {@link ChatbotService} al termine della generazione.
+     *
+     * @param arm braccio del turno
+     * @param response risposta del modello
+     */
+    public void recordTokens(String arm, ChatResponse response) {
+        Usage usage = response != null && response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage == null) {
+            return;
+        }
+        tokens(arm, "prompt").record(usage.getPromptTokens() != null ? usage.getPromptTokens() : 0);
+        tokens(arm, "completion").record(usage.getGenerationTokens() != null ? usage.getGenerationTokens() : 0);
+    }
+
+    /**
+     * Sostituisce default ed esperimenti dopo averli validati.
+     * Chiamata dall'endpoint admin {@code PUT /api/admin/retrieval-tuning}.
+     *
+     * @param update nuova configurazione
+     * @return configurazione e metriche aggiornate
+     * @throws IllegalArgumentException se un parametro è fuori intervallo o i bracci non sono coerenti
+     */
+    public RetrievalTuningStatus update(RetrievalTuningConfig update) {
+        Config resolved = resolve(update);
+        config = resolved;
+        log.info("Retrieval tuning updated: defaults={}, arms={}", resolved.defaults(),
+                resolved.arms().stream().map(arm -> arm.name() + "=" + arm.percent() + "%").toList());
+        return status();
+    }
+
+    /**
+     * Restituisce la configurazione in vigore e le metriche di ogni braccio, compresi quelli rimossi.
+     * Chiamata dall'endpoint admin {@code GET /api/admin/retrieval-tuning}.
+     *
+     * @return configurazione e metriche per braccio
+     */
+    public RetrievalTuningStatus status() {
+        Config current = config;
+        Map<String, RetrievalParameters> parametersByArm = new LinkedHashMap<>();
+        parametersByArm.put(CONTROL_ARM, current.defaults());
+        current.arms().forEach(arm -> parametersByArm.put(arm.name(), arm.parameters()));
+        for (Timer timer : meterRegistry.find(TURN_METER).timers()) {
+            parametersByArm.putIfAbsent(timer.getId().getTag("arm"), null);
+        }
+
+        List<ExperimentArmStats> stats = new ArrayList<>();
+        parametersByArm.forEach((arm, parameters) -> stats.add(stats(arm, parameters)));
+        return new RetrievalTuningStatus(
+                new RetrievalTuningConfig(current.defaults(),
+                        current.arms().stream().map(ResolvedArm::source).toList()),
+                stats);
+    }
+
+    private ExperimentArmStats stats(String arm, RetrievalParameters parameters) {
+        Timer timer = meterRegistry.find(TURN_METER).tag("arm", arm).timer();
+        Counter empty = meterRegistry.find(EMPTY_METER).tag("arm", arm).counter();
+        DistributionSummary prompt = meterRegistry.find(TOKENS_METER).tags("arm", arm, "type", "prompt").summary();
+        DistributionSummary completion = meterRegistry.find(TOKENS_METER).tags("arm", arm, "type", "completion").summary();
+
+        long turns = timer != null ? timer.count() : 0;
+        double p95 = 0;
+        if (timer != null) {
+            for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                p95 = percentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return new ExperimentArmStats(
+                arm,
+                parameters,
+                turns,
+                timer != null ? timer.mean(TimeUnit.MILLISECONDS) : 0,
+                p95,
+                turns == 0 || empty == null ? 0 : empty.count() / turns,
+                prompt != null ? prompt.mean() : 0,
+                completion != null ? completion.mean() : 0);
+    }
+
+    private DistributionSummary tokens(String arm, String type) {
+        return DistributionSummary.builder(TOKENS_METER)
+                .baseUnit("tokens")
+                .tags("arm", arm, "type", type)
+                .register(meterRegistry);
+    }
+
+    private int bucket(String username) {
+        CRC32 crc = new CRC32();
+        crc.update((salt + ":" + username).getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % 100);
+    }
+
+    private static Config resolve(RetrievalTuningConfig update) {
+        if (update == null || update.defaults() == null) {
+            throw new IllegalArgumentException("I parametri di default sono obbligatori");
+        }
+        RetrievalParameters defaults = validate(update.defaults(), CONTROL_ARM);
+
+        List<ResolvedArm> arms = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        int totalPercent = 0;
+        for (RetrievalExperimentArm arm : update.arms() != null ? update.arms() : List.<RetrievalExperimentArm>of()) {
+            String name = arm.name() != null ? arm.name().trim() : "";
+            if (name.isEmpty() || !name.matches("[A-Za-z0-9_-]{1,32}")) {
+                throw new IllegalArgumentException("Nome del braccio non valido: usare fino a 32 lettere, cifre, '-' o '_'");
+            }
+            if (CONTROL_ARM.equals(name) || !names.add(name)) {
+                throw new IllegalArgumentException("Nome del braccio duplicato o riservato: " + name);
+            }
+            if (arm.percent() < 1) {
+                throw new IllegalArgumentException("La percentuale del braccio " + name + " deve essere almeno 1");
+            }
+            totalPercent += arm.percent();
+
+            RetrievalParameters parameters = validate(new RetrievalParameters(
+                    arm.searchTopK() != null ? arm.searchTopK() : defaults.searchTopK(),
+                    arm.chatTopK() != null ? arm.chatTopK() : defaults.chatTopK(),
+                    arm.similarityThreshold() != null ? arm.similarityThreshold() : defaults.similarityThreshold(),
+                    arm.maxChunkChars() != null ? arm.maxChunkChars() : defaults.maxChunkChars(),
+                    arm.maxHistoryMessages() != null ? arm.maxHistoryMessages() : defaults.maxHistoryMessages()), name);
+            arms.add(new ResolvedArm(name, arm.percent(), parameters, arm));
+        }
+        if (totalPercent > 100) {
+            throw new IllegalArgumentException("La somma delle percentuali dei bracci supera 100");
+        }
+        return new Config(defaults, List.copyOf(arms));
+    }
+
+    private static RetrievalParameters validate(RetrievalParameters parameters, String arm) {
+        if (parameters.searchTopK() < 1 || parameters.searchTopK() > 50
+                || parameters.chatTopK() < 1 || parameters.chatTopK() > 50) {
+            throw new IllegalArgumentException("topK deve essere tra 1 e 50 (" + arm + ")");
+        }
+        if (parameters.similarityThreshold() < 0 || parameters.similarityThreshold() > 1) {
+            throw new IllegalArgumentException("La soglia di similarità deve essere tra 0 e 1 (" + arm + ")");
+        }
+        if (parameters.maxChunkChars() < 200 || parameters.maxChunkChars() > 20_000) {
+            throw new IllegalArgumentException("maxChunkChars deve essere tra 200 e 20000 (" + arm + ")");
+        }
+        if (parameters.maxHistoryMessages() < 0 || parameters.maxHistoryMessages() > 50) {
+            throw new IllegalArgumentException("maxHistoryMessages deve essere tra 0 e 50 (" + arm + ")");
+        }
+        return parameters;
+    }
+}
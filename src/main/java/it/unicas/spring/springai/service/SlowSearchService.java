@@ -0,0 +1,247 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.QuantizationProperties;
+import it.unicas.spring.springai.config.SlowSearchProperties;
+import it.unicas.spring.springai.dto.SlowSearch;
+import it.unicas.spring.springai.dto.SlowSearchReport;
+import it.unicas.spring.springai.dto.VectorIndexStats;
+import it.unicas.spring.springai.model.CategoriaDispositivo;
+import it.unicas.spring.springai.repository.VectorPartitionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rileva le ricerche vettoriali più lente di {@code app.rag.slow-search.threshold}, le registra con i parametri
+ * e, per un campione, riesegue in background la stessa query con {@code EXPLAIN (ANALYZE, BUFFERS)} raccogliendo
+ * anche dimensione e buffer hit degli indici. Serve a riconoscere i casi in cui il planner salta l'indice HNSW
+ * o l'indice non sta più in memoria (es. dopo un caricamento massivo).
+ */
+@Service
+@Slf4j
+public class SlowSearchService {
+
+    private final SlowSearchProperties properties;
+    private final QuantizationProperties quantizationProperties;
+    private final VectorPartitionService vectorPartitionService;
+    private final VectorPartitionRepository vectorPartitionRepository;
+    private final EmbeddingModel embeddingModel;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong lastExplainNanos = new AtomicLong(System.nanoTime() - TimeUnit.DAYS.toNanos(1));
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder slowSearches = new LongAdder();
+    private final LongAdder explained = new LongAdder();
+
+    private static final class Entry {
+        final long id;
+        final LocalDateTime at;
+        final String query;
+        final int topK;
+        final double similarityThreshold;
+        final String path;
+        final List<String> tables;
+        final QuantizationProperties.Mode mode;
+        final int results;
+        final long durationMs;
+
+        volatile String explain = "NOT_SAMPLED";
+        volatile Map<String, List<String>> plans = Map.of();
+        volatile List<VectorIndexStats> indexStats = List.of();
+        volatile String explainError;
+
+        Entry(long id, SearchRequest request, String path, List<String> tables, QuantizationProperties.Mode mode,
+              int results, long durationMs) {
+            this.id = id;
+            this.at = LocalDateTime.now();
+            this.query = request.getQuery();
+            this.topK = request.getTopK();
+            this.similarityThreshold = request.getSimilarityThreshold();
+            this.path = path;
+            this.tables = tables;
+            this.mode = mode;
+            this.results = results;
+            this.durationMs = durationMs;
+        }
+
+        SlowSearch toDto() {
+            return new SlowSearch(id, at, query, topK, similarityThreshold, path, tables, mode.name(), results,
+                    durationMs, explain, plans, indexStats, explainError);
+        }
+    }
+
+    public SlowSearchService(SlowSearchProperties properties, QuantizationProperties quantizationProperties,
+                             VectorPartitionService vectorPartitionService,
+                             VectorPartitionRepository vectorPartitionRepository, EmbeddingModel embeddingModel,
+                             PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.quantizationProperties = quantizationProperties;
+        this.vectorPartitionService = vectorPartitionService;
+        this.vectorPartitionRepository = vectorPartitionRepository;
+        this.embeddingModel = embeddingModel;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(4), runnable -> {
+            Thread thread = new Thread(runnable, "slow-search-explain");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Registra la durata di una ricerca; se supera la soglia la conserva, la scrive nel log e, se campionata,
+     * ne avvia la cattura del piano.
+     * Chiamata da {@link RagService#searchRelevantDocuments(String, int)} al termine di ogni ricerca.
+     *
+     * @param request richiesta di ricerca (query, topK, soglia)
+     * @param partitioned se la ricerca è passata da {@link VectorPartitionService} invece che dal {@code VectorStore}
+     * @param categories categorie selezionate dal router
+     * @param results chunk restituiti
+     * @param nanos durata della ricerca
+     */
+    public void record(SearchRequest request, boolean partitioned, Set<CategoriaDispositivo> categories,
+                       int results, long nanos) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        searches.increment();
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (durationMs < properties.getThreshold().toMillis()) {
+            return;
+        }
+
+        slowSearches.increment();
+        List<String> tables = vectorPartitionService.tablesFor(categories);
+        QuantizationProperties.Mode mode = partitioned ? quantizationProperties.getMode() : QuantizationProperties.Mode.FULL;
+        Entry entry = new Entry(ids.incrementAndGet(), request, partitioned ? "partitions" : "vector-store",
+                tables, mode, results, durationMs);
+        log.warn("Slow vector search #{}: {} ms (topK={}, threshold={}, path={}, tables={}, mode={}, results={}): {}",
+                entry.id, durationMs, entry.topK, entry.similarityThreshold, entry.path, tables, mode, results, entry.query);
+
+        synchronized (entries) {
+            entries.addFirst(entry);
+            while (entries.size() > Math.max(1, properties.getMaxEntries())) {
+                entries.removeLast();
+            }
+        }
+
+        if (sampled()) {
+            entry.explain = "PENDING";
+            try {
+                executor.execute(() -> explain(entry));
+            } catch (RejectedExecutionException e) {
+                entry.explain = "NOT_SAMPLED";
+            }
+        }
+    }
+
+    /**
+     * Restituisce le ricerche lente più recenti e le statistiche correnti degli indici vettoriali.
+     * Chiamata dall'endpoint admin {@code GET /api/admin/slow-searches}.
+     *
+     * @param limit numero massimo di ricerche
+     * @return report delle ricerche lente
+     */
+    public SlowSearchReport report(int limit) {
+        List<SlowSearch> recent = new ArrayList<>(limit);
+        synchronized (entries) {
+            for (Entry entry : entries) {
+                if (recent.size() >= limit) {
+                    break;
+                }
+                recent.add(entry.toDto());
+            }
+        }
+
+        List<VectorIndexStats> indexStats = new ArrayList<>();
+        for (String table : vectorPartitionService.tablesFor(EnumSet.allOf(CategoriaDispositivo.class))) {
+            try {
+                indexStats.addAll(vectorPartitionRepository.indexStats(table));
+            } catch (Exception e) {
+                log.debug("Unable to read index stats for {}: {}", table, e.getMessage());
+            }
+        }
+        return new SlowSearchReport(properties.getThreshold().toMillis(), searches.sum(), slowSearches.sum(),
+                explained.sum(), recent, indexStats);
+    }
+
+    /**
+     * Campiona le ricerche lente da spiegare rispettando l'intervallo minimo tra due catture.
+     *
+     * @return se la ricerca corrente va spiegata
+     */
+    private boolean sampled() {
+        if (ThreadLocalRandom.current().nextDouble() >= properties.getExplainSampleRate()) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long last = lastExplainNanos.get();
+        return now - last >= properties.getExplainMinInterval().toNanos() && lastExplainNanos.compareAndSet(last, now);
+    }
+
+    /**
+     * Ricalcola l'embedding della query e riesegue la ricerca su ogni tabella con {@code EXPLAIN (ANALYZE, BUFFERS)},
+     * poi legge le statistiche degli indici. Eseguita sul thread dedicato, fuori dal percorso della richiesta.
+     *
+     * @param entry ricerca lenta da spiegare
+     */
+    private void explain(Entry entry) {
+        try {
+            float[] embedding = embeddingModel.embed(entry.query);
+            int candidates = entry.topK * Math.max(1, quantizationProperties.getRescoreFactor());
+
+            Map<String, List<String>> plans = new LinkedHashMap<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                vectorPartitionRepository.setLocalStatementTimeout(properties.getExplainTimeout().toMillis());
+                for (String table : entry.tables) {
+                    plans.put(table, vectorPartitionRepository.explainSearch(
+                            table, embedding, entry.topK, entry.similarityThreshold, entry.mode, candidates));
+                }
+            });
+
+            List<VectorIndexStats> indexStats = new ArrayList<>();
+            for (String table : entry.tables) {
+                indexStats.addAll(vectorPartitionRepository.indexStats(table));
+            }
+
+            entry.plans = plans;
+            entry.indexStats = indexStats;
+            explained.increment();
+            entry.explain = "DONE";
+            log.info("Captured EXPLAIN for slow vector search #{} ({} tables)", entry.id, plans.size());
+        } catch (Exception e) {
+            entry.explainError = e.getMessage();
+            entry.explain = "FAILED";
+            log.warn("Unable to capture EXPLAIN for slow vector search #{}: {}", entry.id, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package it.unicas.spring.springai.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato binario degli snapshot della knowledge base (flusso GZIP).
+ * <pre>
+ * header : MAGIC, int versione, int dimensioni embedding
+ * record : byte tag + payload (DOCUMENT | TABLE | CHUNK), ripetuti
+ * footer : byte END, long documenti, long chunk
+ * </pre>
+ * Gli embedding sono scritti come float32 big-endian così come sono, senza conversioni testuali.
+ */
+final class SnapshotFormat {
+
+    static final byte[] MAGIC = {'K', 'B', 'S', 'N', 'A', 'P'};
+    static final int VERSION = 1;
+
+    static final byte END = 0;
+    static final byte DOCUMENT = 1;
+    static final byte TABLE = 2;
+    static final byte CHUNK = 3;
+
+    private SnapshotFormat() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new IOException("Snapshot troncato");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new IOException("Snapshot troncato");
+        }
+        return bytes;
+    }
+
+    static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        buffer.asFloatBuffer().put(values);
+        out.writeInt(values.length);
+        out.write(buffer.array());
+    }
+
+    static float[] readFloats(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        byte[] bytes = in.readNBytes(length * 4);
+        if (bytes.length != length * 4) {
+            throw new IOException("Snapshot troncato");
+        }
+        float[] values = new float[length];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(values);
+        return values;
+    }
+}
@@ -0,0 +1,77 @@
+package it.unicas.spring.springai.service;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+
+/**
+ * Misura le observation della pipeline di chat (applicative e di Spring AI) e ne somma la durata
+ * nelle {@link StageTimings} dell'observation {@value StageTimings#OBSERVATION} da cui discendono.
+ * Registrato da {@code TracingConfig}; lavora anche con l'export delle span disattivo.
+ */
+public class StageTimingObservationHandler implements ObservationHandler<Observation.Context> {
+
+    private static final String START_KEY = StageTimingObservationHandler.class.getName() + ".start";
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(START_KEY, System.nanoTime());
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Long start = context.get(START_KEY);
+        String stage = stageOf(context);
+        if (start == null || stage == null) {
+            return;
+        }
+        StageTimings timings = timingsOf(context);
+        if (timings != null) {
+            timings.record(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Fase a cui appartiene un'observation, {@code null} per quelle non riportate nell'header.
+     * La chiamata LLM è misurata sul {@code ChatClient}, così vale anche con il routing multi-provider;
+     * con il {@code VectorStore} di Spring AI la ricerca vettoriale comprende il proprio embedding.
+     *
+     * @param context contesto dell'observation appena chiusa
+     * @return nome della fase
+     */
+    private static String stageOf(Observation.Context context) {
+        String name = context.getName();
+        if (name == null) {
+            return null;
+        }
+        return switch (name) {
+            case RagService.OBSERVATION -> StageTimings.RETRIEVAL;
+            case VectorPartitionService.OBSERVATION, "db.vector.client.operation" -> StageTimings.VECTOR_SEARCH;
+            case "spring.ai.chat.client" -> StageTimings.LLM;
+            case ChatbotService.PARSE_OBSERVATION -> StageTimings.PARSE;
+            case "gen_ai.client.operation" -> {
+                KeyValue operation = context.getLowCardinalityKeyValue("gen_ai.operation.name");
+                yield operation != null && "embedding".equals(operation.getValue()) ? StageTimings.EMBEDDING : null;
+            }
+            default -> null;
+        };
+    }
+
+    private static StageTimings timingsOf(Observation.Context context) {
+        ObservationView parent = context.getParentObservation();
+        while (parent != null) {
+            StageTimings timings = parent.getContextView().get(StageTimings.class);
+            if (timings != null) {
+                return timings;
+            }
+            parent = parent.getContextView().getParentObservation();
+        }
+        return null;
+    }
+}
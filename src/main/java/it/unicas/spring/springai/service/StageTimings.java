@@ -0,0 +1,75 @@
+package it.unicas.spring.springai.service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durata delle fasi di una richiesta di chat, accumulata da {@link StageTimingObservationHandler}
+ * alla chiusura delle observation figlie di {@value #OBSERVATION} e restituita nell'header {@code Server-Timing}.
+ * Le fasi eseguite più volte (es. una ricerca per prodotto) sommano le durate.
+ */
+public final class StageTimings {
+
+    /**
+     * Observation radice della richiesta di chat, che porta le durate nel proprio contesto.
+     */
+    public static final String OBSERVATION = "chat.request";
+
+    public static final String RETRIEVAL = "retrieval";
+    public static final String EMBEDDING = "embedding";
+    public static final String VECTOR_SEARCH = "vector-search";
+    public static final String LLM = "llm";
+    public static final String PARSE = "parse";
+
+    private static final List<String> ORDER = List.of(RETRIEVAL, EMBEDDING, VECTOR_SEARCH, LLM, PARSE);
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Stage> stages = new ConcurrentHashMap<>();
+
+    /**
+     * Aggiunge la durata di una fase.
+     * Chiamata da {@link StageTimingObservationHandler}, anche dai thread dei pool di retrieval e generazione.
+     *
+     * @param stage nome della fase
+     * @param nanos durata in nanosecondi
+     */
+    public void record(String stage, long nanos) {
+        Stage timing = stages.computeIfAbsent(stage, s -> new Stage());
+        timing.nanos.add(nanos);
+        timing.count.increment();
+    }
+
+    /**
+     * Formatta le durate secondo la sintassi {@code Server-Timing}, con il totale trascorso dalla creazione.
+     * Chiamata dal controller chatbot a fine richiesta.
+     *
+     * @return valore dell'header, es. {@code retrieval;dur=41.2, embedding;dur=12.0, llm;dur=2310.5, total;dur=2360.1}
+     */
+    public String toHeader() {
+        StringJoiner header = new StringJoiner(", ");
+        for (String name : ORDER) {
+            Stage timing = stages.get(name);
+            if (timing == null) {
+                continue;
+            }
+            String entry = name + ";dur=" + millis(timing.nanos.sum());
+            long count = timing.count.sum();
+            header.add(count > 1 ? entry + ";desc=\"" + count + "x\"" : entry);
+        }
+        header.add("total;dur=" + millis(System.nanoTime() - startNanos));
+        return header.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    private static final class Stage {
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder count = new LongAdder();
+    }
+}
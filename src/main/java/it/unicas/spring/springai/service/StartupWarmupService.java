@@ -0,0 +1,346 @@
+package it.unicas.spring.springai.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.unicas.spring.springai.config.QueryTelemetryProperties;
+import it.unicas.spring.springai.config.ReplicaLagTracker;
+import it.unicas.spring.springai.config.StartupWarmupProperties;
+import it.unicas.spring.springai.dto.ChatTurn;
+import it.unicas.spring.springai.dto.RetrievalParameters;
+import it.unicas.spring.springai.dto.TopQuery;
+import it.unicas.spring.springai.repository.VectorPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warm-up all'avvio dei percorsi che rendono lente le prime richieste dopo un deploy: apre le connessioni
+ * dei pool Hikari, carica gli indici HNSW in {@code shared_buffers} ({@code pg_prewarm}), esegue embedding
+ * e ricerche sintetiche (che caricano anche il modello di embedding su Ollama), ripete le domande più frequenti
+ * del log delle query e i percorsi CPU della chat finché il JIT non li compila. Fino al termine l'health
+ * indicator {@code warmup} tiene la readiness probe in OUT_OF_SERVICE; la durata di ogni fase è registrata
+ * nel timer {@code startup.warmup}. Dopo ogni modifica della knowledge base le domande più frequenti vengono
+ * ripetute in background, senza toccare la readiness.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StartupWarmupService {
+
+    static final String DURATION_METER = "startup.warmup";
+
+    private static final String SAMPLE_ANSWER = "{\"answer\":\"La batteria da 4700 mAh garantisce circa una giornata "
+            + "di uso intenso e si ricarica a 27 W.\",\"chunkIds\":[1,3]}";
+
+    private final StartupWarmupProperties properties;
+    private final ObjectProvider<HikariDataSource> hikariDataSources;
+    private final ObjectProvider<ReplicaLagTracker> replicaLagTracker;
+    private final VectorPartitionService vectorPartitionService;
+    private final VectorPartitionRepository vectorPartitionRepository;
+    private final EmbeddingModel embeddingModel;
+    private final RagService ragService;
+    private final ChatbotService chatbotService;
+    private final RetrievalTuningService retrievalTuningService;
+    private final QueryTelemetryProperties telemetryProperties;
+    private final QueryTelemetryService queryTelemetryService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, String> stages = new LinkedHashMap<>();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private volatile State state = State.PENDING;
+    private volatile long startNanos;
+    private volatile long durationMs;
+
+    private enum State {
+        PENDING, RUNNING, DONE
+    }
+
+    /**
+     * Avvia il warm-up su un thread dedicato, a contesto pronto.
+     * Chiamata da Spring alla pubblicazione di {@link ApplicationReadyEvent}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!properties.isEnabled()) {
+            state = State.DONE;
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "startup-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Esegue in sequenza le fasi del warm-up; una fase fallita viene registrata e non blocca le successive.
+     * Chiamata da {@link #start()} sul thread {@code startup-warmup}.
+     */
+    public void warmUp() {
+        startNanos = System.nanoTime();
+        state = State.RUNNING;
+        try {
+            stage("pool", this::openPools);
+            if (properties.isPrewarmIndexes()) {
+                stage("prewarm", this::prewarmIndexes);
+            }
+            stage("embedding", () -> embeddingModel.embed(firstQuery()).length + " dimensions");
+            List<Document> documents = new ArrayList<>();
+            stage("search", () -> search(documents));
+            if (telemetryProperties.getWarmup().isEnabled()) {
+                stage("top-queries", this::replayTopQueries);
+            }
+            stage("chat", () -> exerciseChatPaths(documents));
+        } finally {
+            long nanos = System.nanoTime() - startNanos;
+            durationMs = TimeUnit.NANOSECONDS.toMillis(nanos);
+            timer("total", "success").record(nanos, TimeUnit.NANOSECONDS);
+            state = State.DONE;
+            log.info("Startup warm-up completed in {} ms: {}", durationMs, stageDetails());
+        }
+    }
+
+    /**
+     * Ripete in background le domande più frequenti dopo il commit di una modifica della knowledge base.
+     * Durante il warm-up di avvio l'evento viene ignorato: la fase {@code top-queries} è ancora da eseguire.
+     *
+     * @param event modifica della knowledge base
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKnowledgeBaseChanged(KnowledgeBaseChangedEvent event) {
+        if (!telemetryProperties.getWarmup().isEnabled() || state != State.DONE) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                log.info("Knowledge base changed, {}", replayTopQueries());
+            } catch (Exception e) {
+                log.warn("Top query replay failed: {}", e.getMessage());
+            }
+        }, "query-warmup-trigger");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stato del warm-up per l'health indicator {@code warmup} del gruppo readiness: OUT_OF_SERVICE finché
+     * il warm-up è in corso, UP al termine o allo scadere di {@code app.warmup.timeout}.
+     * Chiamata da Spring Boot Actuator a ogni interrogazione della probe.
+     *
+     * @return stato e durata delle fasi
+     */
+    public Health health() {
+        State current = state;
+        Health.Builder builder;
+        if (current == State.DONE) {
+            builder = Health.up().withDetail("durationMs", durationMs);
+        } else if (current == State.RUNNING
+                && System.nanoTime() - startNanos > properties.getTimeout().toNanos()) {
+            builder = Health.up().withDetail("timedOut", true);
+        } else {
+            builder = Health.outOfService();
+        }
+        return builder.withDetail("state", current.name()).withDetail("stages", stageDetails()).build();
+    }
+
+    private void stage(String name, Callable<String> work) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        String detail;
+        try {
+            detail = work.call();
+        } catch (Exception e) {
+            outcome = "failure";
+            detail = "failed: " + e.getMessage();
+            log.warn("Startup warm-up stage {} failed: {}", name, e.getMessage());
+        }
+        long nanos = System.nanoTime() - start;
+        timer(name, outcome).record(nanos, TimeUnit.NANOSECONDS);
+        synchronized (stages) {
+            stages.put(name, TimeUnit.NANOSECONDS.toMillis(nanos) + " ms, " + detail);
+        }
+    }
+
+    /**
+     * Apre in ogni pool (primary e repliche) tante connessioni quante ne prevede {@code minimumIdle},
+     * così le prime richieste non pagano handshake TCP/TLS e autenticazione.
+     *
+     * @return connessioni aperte per pool
+     */
+    private String openPools() throws Exception {
+        List<HikariDataSource> pools = new ArrayList<>(hikariDataSources.orderedStream().toList());
+        ReplicaLagTracker tracker = replicaLagTracker.getIfAvailable();
+        if (tracker != null) {
+            for (DataSource replica : tracker.replicaDataSources().values()) {
+                if (replica instanceof HikariDataSource hikari) {
+                    pools.add(hikari);
+                }
+            }
+        }
+
+        Map<String, Integer> opened = new LinkedHashMap<>();
+        for (HikariDataSource pool : pools) {
+            List<Connection> connections = new ArrayList<>();
+            try {
+                do {
+                    Connection connection = pool.getConnection();
+                    connections.add(connection);
+                    connection.isValid(5);
+                } while (connections.size() < Math.min(pool.getMinimumIdle(), pool.getMaximumPoolSize()));
+            } finally {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+            opened.put(pool.getPoolName(), connections.size());
+        }
+        return "connections " + opened;
+    }
+
+    private String prewarmIndexes() {
+        long blocks = 0;
+        List<String> tables = vectorPartitionService.allTables();
+        for (String table : tables) {
+            blocks += vectorPartitionRepository.prewarmIndexes(table);
+        }
+        return blocks + " blocks from " + tables.size() + " tables";
+    }
+
+    private String search(List<Document> documents) {
+        for (String query : properties.getQueries()) {
+            List<Document> results = ragService.searchRelevantDocuments(query);
+            if (documents.isEmpty()) {
+                documents.addAll(results);
+            }
+        }
+        return properties.getQueries().size() + " queries";
+    }
+
+    /**
+     * Esegue in parallelo le domande più frequenti del log delle query entro {@code app.rag.telemetry.warmup.timeout};
+     * più richieste ravvicinate producono una sola esecuzione.
+     *
+     * @return domande eseguite con successo
+     */
+    private String replayTopQueries() {
+        if (!replaying.compareAndSet(false, true)) {
+            return "top query replay already running";
+        }
+
+        QueryTelemetryProperties.Warmup warmup = telemetryProperties.getWarmup();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, warmup.getParallelism()), runnable -> {
+            Thread thread = new Thread(runnable, "query-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<TopQuery> queries = queryTelemetryService.topQueries(
+                    warmup.getTopQueries(), LocalDateTime.now().minus(warmup.getWindow()));
+            if (queries.isEmpty()) {
+                return "no query history";
+            }
+
+            List<Future<?>> futures = new ArrayList<>(queries.size());
+            for (TopQuery query : queries) {
+                futures.add(executor.submit(() -> ragService.searchRelevantDocuments(query.query(), warmup.getTopK())));
+            }
+
+            long deadline = System.nanoTime() + warmup.getTimeout().toNanos();
+            int completed = 0;
+            for (Future<?> future : futures) {
+                try {
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    completed++;
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.debug("Warm-up query failed: {}", e.getMessage());
+                }
+            }
+            return "replayed " + completed + "/" + queries.size() + " top queries";
+        } finally {
+            executor.shutdownNow();
+            replaying.set(false);
+        }
+    }
+
+    /**
+     * Ripete conversione dei chunk, costruzione del prompt e parsing della risposta del modello con gli stessi
+     * parametri dei turni reali. Se la knowledge base è vuota usa chunk sintetici.
+     *
+     * @param documents chunk restituiti dalle ricerche sintetiche
+     * @return iterazioni eseguite
+     */
+    private String exerciseChatPaths(List<Document> documents) {
+        List<Document> input = documents.isEmpty() ? syntheticDocuments() : documents;
+        List<ChatTurn> history = new ArrayList<>();
+        for (String query : properties.getQueries()) {
+            history.add(new ChatTurn("user", query));
+            history.add(new ChatTurn("assistant", SAMPLE_ANSWER));
+        }
+
+        RetrievalParameters parameters = retrievalTuningService.parameters();
+        long sink = 0;
+        for (int i = 0; i < properties.getJitIterations(); i++) {
+            List<ChatbotService.RetrievedChunk> chunks = chatbotService.toRetrievedChunks(input, parameters.maxChunkChars());
+            sink += Objects.hashCode(chatbotService.buildChunksContext(chunks));
+            sink += Objects.hashCode(chatbotService.buildHistorySection(history, parameters.maxHistoryMessages()));
+            sink += Objects.hashCode(chatbotService.parseAnswer(SAMPLE_ANSWER));
+        }
+        log.debug("Chat path warm-up checksum {}", sink);
+        return properties.getJitIterations() + " iterations over " + input.size() + " chunks";
+    }
+
+    private List<Document> syntheticDocuments() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            documents.add(Document.builder()
+                    .text(SAMPLE_ANSWER.repeat(8))
+                    .metadata(Map.of("fileName", "warmup.pdf", "page", i + 1))
+                    .score(0.9 - i * 0.02)
+                    .build());
+        }
+        return documents;
+    }
+
+    private String firstQuery() {
+        return properties.getQueries().isEmpty() ? "warm-up" : properties.getQueries().get(0);
+    }
+
+    private Map<String, String> stageDetails() {
+        synchronized (stages) {
+            return new LinkedHashMap<>(stages);
+        }
+    }
+
+    private Timer timer(String stage, String outcome) {
+        return Timer.builder(DURATION_METER)
+                .tags("stage", stage, "outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,298 @@
+package it.unicas.spring.springai.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import it.unicas.spring.springai.config.TokenUsageProperties;
+import it.unicas.spring.springai.dto.TokenHistogram;
+import it.unicas.spring.springai.dto.TokenUsageReport;
+import it.unicas.spring.springai.repository.TokenUsageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contabilità dei token delle chiamate al modello: token di prompt, completion e totali letti dai metadati
+ * di utilizzo della risposta, con i token di prompt ripartiti tra le sezioni (sistema, chunk, storia, domanda).
+ * Registra istogrammi Micrometer per endpoint e modello e somma periodicamente gli aggregati giornalieri
+ * su Postgres ({@code llm_token_usage}).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenUsageService {
+
+    static final String TOKENS_METER = "llm.tokens";
+    static final String PROMPT_SECTION_METER = "llm.prompt.tokens";
+
+    private static final String[] SECTIONS = {"system", "chunks", "history", "question"};
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final TokenUsageProperties properties;
+    private final TokenUsageRepository tokenUsageRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final TokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Testo delle sezioni del prompt, usato per ripartire i token di input.
+     *
+     * @param system prompt di sistema
+     * @param chunks contesto dei chunk recuperati
+     * @param history storia o riassunto della conversazione
+     * @param question domanda utente
+     */
+    public record PromptSections(String system, String chunks, String history, String question) {
+
+        private String[] texts() {
+            return new String[]{system, chunks, history, question};
+        }
+    }
+
+    private record Key(LocalDate day, String endpoint, String model) {
+    }
+
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAccumulator maxPromptTokens = new LongAccumulator(Math::max, 0);
+        final LongAdder[] sectionTokens = {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+    }
+
+    /**
+     * Registra i token di una chiamata al modello. Se il provider non restituisce l'utilizzo, i token di prompt
+     * sono stimati dalle sezioni e quelli di completion dal testo della risposta.
+     * Chiamata da {@link ChatbotService} al termine di ogni generazione.
+     *
+     * @param endpoint endpoint applicativo che ha chiamato il modello
+     * @param fallbackModel modello richiesto, usato se la risposta non indica quello effettivo
+     * @param response risposta del modello
+     * @param sections sezioni del prompt inviato
+     */
+    public void record(String endpoint, String fallbackModel, ChatResponse response, PromptSections sections) {
+        if (!properties.isEnabled() || response == null) {
+            return;
+        }
+
+        long[] sectionEstimates = estimate(sections.texts());
+        Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        long prompt = usage != null && usage.getPromptTokens() != null && usage.getPromptTokens() > 0
+                ? usage.getPromptTokens()
+                : sum(sectionEstimates);
+        long completion = usage != null && usage.getGenerationTokens() != null && usage.getGenerationTokens() > 0
+                ? usage.getGenerationTokens()
+                : estimate(outputText(response));
+        long[] sectionTokens = apportion(prompt, sectionEstimates);
+
+        String model = modelOf(response, fallbackModel);
+        summary(TOKENS_METER, endpoint, model, "type", "prompt").record(prompt);
+        summary(TOKENS_METER, endpoint, model, "type", "completion").record(completion);
+        summary(TOKENS_METER, endpoint, model, "type", "total").record(prompt + completion);
+        for (int i = 0; i < SECTIONS.length; i++) {
+            summary(PROMPT_SECTION_METER, endpoint, model, "section", SECTIONS[i]).record(sectionTokens[i]);
+        }
+
+        Counters c = counters.computeIfAbsent(new Key(LocalDate.now(), endpoint, model), k -> new Counters());
+        c.calls.increment();
+        c.promptTokens.add(prompt);
+        c.completionTokens.add(completion);
+        c.maxPromptTokens.accumulate(prompt);
+        for (int i = 0; i < SECTIONS.length; i++) {
+            c.sectionTokens[i].add(sectionTokens[i]);
+        }
+    }
+
+    /**
+     * Restituisce gli aggregati giornalieri (dopo aver scritto quelli del nodo) e le distribuzioni recenti.
+     * Chiamata dall'endpoint admin {@code GET /api/admin/token-usage}.
+     *
+     * @param days giorni da includere, oggi compreso
+     * @return aggregati giornalieri e istogrammi
+     */
+    public TokenUsageReport report(int days) {
+        flush();
+        LocalDate since = LocalDate.now().minusDays(Math.min(days, properties.getMaxDays()) - 1L);
+        return new TokenUsageReport(tokenUsageRepository.findDaily(since), histograms());
+    }
+
+    /**
+     * Somma su Postgres gli incrementi locali e scarta i contatori dei giorni passati.
+     * Chiamata dallo scheduler Spring ogni {@code app.chat.token-usage.flush-interval}.
+     */
+    @Scheduled(fixedDelayString = "${app.chat.token-usage.flush-interval:30s}")
+    public synchronized void flush() {
+        List<TokenUsageRepository.UsageDelta> deltas = new ArrayList<>();
+        List<Map.Entry<Key, Counters>> drained = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (Map.Entry<Key, Counters> entry : counters.entrySet()) {
+            Key key = entry.getKey();
+            Counters c = entry.getValue();
+            if (!today.equals(key.day())) {
+                counters.remove(key, c);
+            }
+            long calls = c.calls.sumThenReset();
+            if (calls == 0) {
+                continue;
+            }
+            deltas.add(new TokenUsageRepository.UsageDelta(key.day(), key.endpoint(), key.model(), calls,
+                    c.promptTokens.sumThenReset(), c.completionTokens.sumThenReset(), c.maxPromptTokens.getThenReset(),
+                    c.sectionTokens[0].sumThenReset(), c.sectionTokens[1].sumThenReset(),
+                    c.sectionTokens[2].sumThenReset(), c.sectionTokens[3].sumThenReset()));
+            drained.add(entry);
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            tokenUsageRepository.addUsage(deltas);
+        } catch (Exception e) {
+            log.warn("Unable to flush token usage ({} rows): {}", deltas.size(), e.getMessage());
+            for (int i = 0; i < deltas.size(); i++) {
+                restore(drained.get(i), deltas.get(i));
+            }
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Ripartisce i token di prompt reali in proporzione alle stime delle sezioni (metodo dei resti maggiori),
+     * così la somma delle sezioni coincide con i token fatturati, overhead di formattazione compreso.
+     *
+     * @param promptTokens token di prompt da ripartire
+     * @param estimates stima dei token di ciascuna sezione
+     * @return token attribuiti a ciascuna sezione
+     */
+    static long[] apportion(long promptTokens, long[] estimates) {
+        long[] shares = new long[estimates.length];
+        long estimated = sum(estimates);
+        if (estimated == 0 || promptTokens <= 0) {
+            return shares;
+        }
+
+        double[] remainders = new double[estimates.length];
+        long assigned = 0;
+        for (int i = 0; i < estimates.length; i++) {
+            double exact = (double) promptTokens * estimates[i] / estimated;
+            shares[i] = (long) exact;
+            remainders[i] = exact - shares[i];
+            assigned += shares[i];
+        }
+        for (long left = promptTokens - assigned; left > 0; left--) {
+            int best = 0;
+            for (int i = 1; i < remainders.length; i++) {
+                if (remainders[i] > remainders[best]) {
+                    best = i;
+                }
+            }
+            shares[best]++;
+            remainders[best] = -1;
+        }
+        return shares;
+    }
+
+    private List<TokenHistogram> histograms() {
+        List<TokenHistogram> histograms = new ArrayList<>();
+        for (DistributionSummary summary : meterRegistry.find(TOKENS_METER).summaries()) {
+            histograms.add(histogram(summary, summary.getId().getTag("type")));
+        }
+        for (DistributionSummary summary : meterRegistry.find(PROMPT_SECTION_METER).summaries()) {
+            histograms.add(histogram(summary, "prompt." + summary.getId().getTag("section")));
+        }
+        histograms.sort(Comparator.comparing(TokenHistogram::endpoint)
+                .thenComparing(TokenHistogram::model)
+                .thenComparing(TokenHistogram::type));
+        return histograms;
+    }
+
+    private TokenHistogram histogram(DistributionSummary summary, String type) {
+        HistogramSnapshot snapshot = summary.takeSnapshot();
+        double[] values = new double[PERCENTILES.length];
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                if (percentile.percentile() == PERCENTILES[i]) {
+                    values[i] = percentile.value();
+                }
+            }
+        }
+        return new TokenHistogram(summary.getId().getTag("endpoint"), summary.getId().getTag("model"), type,
+                snapshot.count(), snapshot.mean(), values[0], values[1], values[2], snapshot.max());
+    }
+
+    private DistributionSummary summary(String name, String endpoint, String model, String tag, String value) {
+        return DistributionSummary.builder(name)
+                .baseUnit("tokens")
+                .tags("endpoint", endpoint, "model", model, tag, value)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void restore(Map.Entry<Key, Counters> entry, TokenUsageRepository.UsageDelta delta) {
+        Counters c = counters.computeIfAbsent(entry.getKey(), k -> entry.getValue());
+        c.calls.add(delta.calls());
+        c.promptTokens.add(delta.promptTokens());
+        c.completionTokens.add(delta.completionTokens());
+        c.maxPromptTokens.accumulate(delta.maxPromptTokens());
+        c.sectionTokens[0].add(delta.systemTokens());
+        c.sectionTokens[1].add(delta.chunksTokens());
+        c.sectionTokens[2].add(delta.historyTokens());
+        c.sectionTokens[3].add(delta.questionTokens());
+    }
+
+    private long[] estimate(String[] texts) {
+        long[] estimates = new long[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            estimates[i] = estimate(texts[i]);
+        }
+        return estimates;
+    }
+
+    private long estimate(String text) {
+        return text == null || text.isBlank() ? 0 : estimator.estimate(text);
+    }
+
+    private static String outputText(ChatResponse response) {
+        return response.getResult() != null && response.getResult().getOutput() != null
+                ? response.getResult().getOutput().getContent()
+                : null;
+    }
+
+    private static String modelOf(ChatResponse response, String fallbackModel) {
+        String model = response.getMetadata() != null ? response.getMetadata().getModel() : null;
+        if (model != null && !model.isBlank()) {
+            return model;
+        }
+        return fallbackModel != null && !fallbackModel.isBlank() ? fallbackModel : "default";
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+}
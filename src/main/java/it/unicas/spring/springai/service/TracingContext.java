@@ -0,0 +1,53 @@
+package it.unicas.spring.springai.service;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+
+import java.util.function.Supplier;
+
+/**
+ * Porta l'observation corrente (e quindi la span di tracing) sui thread dei pool applicativi,
+ * così che embedding, query e chiamate LLM eseguite altrove risultino figlie della richiesta di chat.
+ * Con lo stesso meccanismo viaggia il braccio dell'esperimento di retrieval ({@link RetrievalTuningService}).
+ */
+public final class TracingContext {
+
+    private static final ContextSnapshotFactory SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private TracingContext() {
+    }
+
+    /**
+     * Lega al task il contesto del thread chiamante.
+     * Chiamata da {@link RequestDeadlineService} prima di passare la richiesta al pool.
+     *
+     * @param task lavoro da eseguire su un altro thread
+     * @return task che ripristina il contesto catturato durante l'esecuzione
+     */
+    public static Runnable wrap(Runnable task) {
+        ContextSnapshot snapshot = SNAPSHOTS.captureAll();
+        return () -> {
+            try (ContextSnapshot.Scope ignored = snapshot.setThreadLocals()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * Lega al task il contesto del thread chiamante.
+     * Chiamata da {@link RequestDeadline#propagate(Supplier)}, {@link DeferredAnswerService}
+     * e {@link RetrievalPrefetchService}.
+     *
+     * @param task lavoro da eseguire su un altro thread
+     * @param <T> tipo del risultato
+     * @return task che ripristina il contesto catturato durante l'esecuzione
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        ContextSnapshot snapshot = SNAPSHOTS.captureAll();
+        return () -> {
+            try (ContextSnapshot.Scope ignored = snapshot.setThreadLocals()) {
+                return task.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,276 @@
+package it.unicas.spring.springai.service;
+
+import it.unicas.spring.springai.config.UsageQuotaProperties;
+import it.unicas.spring.springai.dto.UsageQuotaStatus;
+import it.unicas.spring.springai.repository.LlmUsageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Quote di utilizzo del modello per utente e globali.
+ * Sul percorso della richiesta usa solo contatori {@link LongAdder} in memoria; gli incrementi vengono
+ * sommati periodicamente su Postgres ({@code llm_usage}) e i totali riletti, così i limiti giornalieri
+ * sopravvivono ai riavvii e sono condivisi tra i nodi. I limiti al minuto sono applicati per nodo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UsageQuotaService {
+
+    static final String GLOBAL_SCOPE = "*";
+
+    private final UsageQuotaProperties properties;
+    private final LlmUsageRepository llmUsageRepository;
+
+    private final Map<String, UsageCounter> counters = new ConcurrentHashMap<>();
+
+    private static final class UsageCounter {
+        final String scope;
+        volatile LocalDate day;
+        volatile boolean loaded;
+
+        final LongAdder pendingTokens = new LongAdder();
+        final LongAdder pendingRequests = new LongAdder();
+        volatile long persistedTokens;
+        volatile long persistedRequests;
+
+        final AtomicReference<MinuteWindow> minuteWindow = new AtomicReference<>(new MinuteWindow(0, new LongAdder()));
+
+        UsageCounter(String scope, LocalDate day) {
+            this.scope = scope;
+            this.day = day;
+        }
+
+        long tokensToday() {
+            return persistedTokens + pendingTokens.sum();
+        }
+
+        long requestsToday() {
+            return persistedRequests + pendingRequests.sum();
+        }
+
+        long requestsInMinute(long currentMinute) {
+            MinuteWindow window = minuteWindow.get();
+            return window.minute() == currentMinute ? window.requests().sum() : 0;
+        }
+
+        void countRequest(long currentMinute) {
+            // il nuovo minuto sostituisce la finestra invece di azzerarla, così un incremento
+            // concorrente finisce sempre in una finestra e non viene cancellato da un reset()
+            MinuteWindow window = minuteWindow.get();
+            while (window.minute() < currentMinute) {
+                MinuteWindow next = new MinuteWindow(currentMinute, new LongAdder());
+                window = minuteWindow.compareAndSet(window, next) ? next : minuteWindow.get();
+            }
+            window.requests().increment();
+            pendingRequests.increment();
+        }
+    }
+
+    private record MinuteWindow(long minute, LongAdder requests) {
+    }
+
+    /**
+     * Verifica le quote prima di una chiamata al modello e conteggia la richiesta.
+     * Chiamata da {@link ChatbotService} all'inizio di ogni turno di chat.
+     *
+     * @param username utente autenticato
+     * @throws QuotaExceededException se l'utente o il sistema hanno superato un limite
+     */
+    public void acquire(String username) {
+        if (!properties.isEnabled() || username == null) {
+            return;
+        }
+
+        long currentMinute = System.currentTimeMillis() / 60_000;
+        UsageCounter user = counter(username);
+        UsageCounter global = counter(GLOBAL_SCOPE);
+
+        check(user, currentMinute, properties.getUserRequestsPerMinute(), properties.getUserTokensPerDay(),
+                "Hai raggiunto il limite di richieste al minuto, riprova tra poco",
+                "Hai esaurito la quota giornaliera di utilizzo del chatbot");
+        check(global, currentMinute, properties.getGlobalRequestsPerMinute(), properties.getGlobalTokensPerDay(),
+                "Il chatbot è momentaneamente sovraccarico, riprova tra poco",
+                "Il budget giornaliero del chatbot è esaurito, riprova domani");
+
+        user.countRequest(currentMinute);
+        global.countRequest(currentMinute);
+    }
+
+    /**
+     * Aggiunge i token consumati, letti dai metadati di utilizzo della risposta del modello.
+     * Chiamata da {@link ChatbotService} dopo ogni chiamata al modello.
+     *
+     * @param username utente autenticato
+     * @param response risposta del modello
+     */
+    public void recordUsage(String username, ChatResponse response) {
+        if (!properties.isEnabled() || username == null) {
+            return;
+        }
+
+        long tokens = tokensOf(response);
+        if (tokens <= 0) return;
+
+        counter(username).pendingTokens.add(tokens);
+        counter(GLOBAL_SCOPE).pendingTokens.add(tokens);
+    }
+
+    /**
+     * Restituisce l'utilizzo odierno di tutti gli utenti attivi su questo nodo, più il totale globale.
+     * Chiamata dall'endpoint admin {@code GET /api/admin/usage}.
+     *
+     * @return utilizzo per scope, globale in testa e poi per token decrescenti
+     */
+    public List<UsageQuotaStatus> currentUsage() {
+        long currentMinute = System.currentTimeMillis() / 60_000;
+        LocalDate today = LocalDate.now();
+
+        List<UsageQuotaStatus> statuses = new ArrayList<>();
+        for (UsageCounter counter : counters.values()) {
+            if (!today.equals(counter.day)) continue;
+
+            boolean global = GLOBAL_SCOPE.equals(counter.scope);
+            statuses.add(new UsageQuotaStatus(
+                    counter.scope,
+                    counter.tokensToday(),
+                    global ? properties.getGlobalTokensPerDay() : properties.getUserTokensPerDay(),
+                    counter.requestsToday(),
+                    counter.requestsInMinute(currentMinute),
+                    global ? properties.getGlobalRequestsPerMinute() : properties.getUserRequestsPerMinute()
+            ));
+        }
+
+        statuses.sort(Comparator.comparing((UsageQuotaStatus s) -> !GLOBAL_SCOPE.equals(s.scope()))
+                .thenComparing(UsageQuotaStatus::tokensToday, Comparator.reverseOrder()));
+        return statuses;
+    }
+
+    /**
+     * Somma su Postgres gli incrementi locali, rilegge i totali condivisi e scarta i contatori dei giorni passati.
+     * Chiamata dallo scheduler Spring ogni {@code app.chat.quotas.flush-interval}.
+     */
+    @Scheduled(fixedDelayString = "${app.chat.quotas.flush-interval:10s}")
+    public void flush() {
+        LocalDate today = LocalDate.now();
+        for (UsageCounter counter : counters.values()) {
+            synchronized (counter) {
+                flush(counter);
+                if (!today.equals(counter.day) && counter.pendingTokens.sum() == 0 && counter.pendingRequests.sum() == 0) {
+                    counters.remove(counter.scope, counter);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void check(UsageCounter counter, long currentMinute, int requestsPerMinute, long tokensPerDay,
+                       String minuteMessage, String dayMessage) {
+        if (requestsPerMinute > 0 && counter.requestsInMinute(currentMinute) >= requestsPerMinute) {
+            long secondsLeft = 60 - (System.currentTimeMillis() / 1000) % 60;
+            throw new QuotaExceededException(minuteMessage, secondsLeft);
+        }
+        if (tokensPerDay > 0 && counter.tokensToday() >= tokensPerDay) {
+            LocalDateTime now = LocalDateTime.now();
+            long secondsLeft = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toSeconds();
+            throw new QuotaExceededException(dayMessage, secondsLeft);
+        }
+    }
+
+    private UsageCounter counter(String scope) {
+        LocalDate today = LocalDate.now();
+        UsageCounter counter = counters.computeIfAbsent(scope, s -> new UsageCounter(s, today));
+
+        if (!counter.loaded || !today.equals(counter.day)) {
+            synchronized (counter) {
+                if (!today.equals(counter.day)) {
+                    flush(counter);
+                    counter.day = today;
+                    counter.persistedTokens = 0;
+                    counter.persistedRequests = 0;
+                    counter.loaded = false;
+                }
+                if (!counter.loaded) {
+                    loadTotals(counter);
+                    counter.loaded = true;
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Sposta gli incrementi locali nei totali persistiti e li scrive su Postgres.
+     * Il delta viene sommato a {@code persisted*} prima di essere tolto da {@code pending*} (e viceversa
+     * in caso di errore), così i totali visti da {@link #check} possono solo sovrastimare per un istante,
+     * mai scendere e lasciar passare richieste oltre il limite.
+     * Chiamata con il lock del contatore.
+     *
+     * @param counter contatore da scrivere
+     */
+    private void flush(UsageCounter counter) {
+        long tokens = counter.pendingTokens.sum();
+        long requests = counter.pendingRequests.sum();
+        counter.persistedTokens += tokens;
+        counter.persistedRequests += requests;
+        counter.pendingTokens.add(-tokens);
+        counter.pendingRequests.add(-requests);
+        try {
+            if (tokens > 0 || requests > 0) {
+                llmUsageRepository.addUsage(counter.scope, counter.day, tokens, requests);
+            }
+        } catch (Exception e) {
+            counter.pendingTokens.add(tokens);
+            counter.pendingRequests.add(requests);
+            counter.persistedTokens -= tokens;
+            counter.persistedRequests -= requests;
+            log.warn("Unable to flush LLM usage for {}: {}", counter.scope, e.getMessage());
+            return;
+        }
+        loadTotals(counter);
+    }
+
+    private void loadTotals(UsageCounter counter) {
+        try {
+            LlmUsageRepository.UsageTotals totals = llmUsageRepository.findTotals(counter.scope, counter.day);
+            // nella stessa giornata i totali condivisi crescono soltanto: una lettura che non vede ancora
+            // l'ultimo flush locale non deve abbassarli
+            counter.persistedTokens = Math.max(counter.persistedTokens, totals.tokens());
+            counter.persistedRequests = Math.max(counter.persistedRequests, totals.requests());
+        } catch (Exception e) {
+            log.debug("Unable to load LLM usage for {}: {}", counter.scope, e.getMessage());
+        }
+    }
+
+    private long tokensOf(ChatResponse response) {
+        Usage usage = response != null && response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage == null) return 0;
+
+        Long total = usage.getTotalTokens();
+        if (total != null && total > 0) return total;
+
+        long prompt = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+        long generation = usage.getGenerationTokens() != null ? usage.getGenerationTokens() : 0;
+        return prompt + generation;
+    }
+}
@@ -0,0 +1,261 @@
+package it.unicas.spring.springai.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import it.unicas.spring.springai.config.QuantizationProperties;
+import it.unicas.spring.springai.config.VectorPartitionProperties;
+import it.unicas.spring.springai.model.CategoriaDispositivo;
+import it.unicas.spring.springai.repository.VectorPartitionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gestisce le partizioni vettoriali per categoria: una tabella PGVector con indice HNSW dedicato
+ * per smartphone, smartwatch e tablet, più la tabella condivisa per i chunk senza categoria.
+ * Esegue anche la ricerca diretta via SQL quando è attiva una modalità di quantizzazione.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VectorPartitionService {
+
+    private final VectorPartitionProperties properties;
+    private final QuantizationProperties quantizationProperties;
+    private final VectorPartitionRepository vectorPartitionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingModel embeddingModel;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Observation della query SQL su una singola tabella vettoriale.
+     */
+    public static final String OBSERVATION = "rag.vector.query";
+
+    @Value("${spring.ai.vectorstore.pgvector.dimensions:768}")
+    private int dimensions;
+
+    private final Map<CategoriaDispositivo, VectorStore> stores = new EnumMap<>(CategoriaDispositivo.class);
+
+    /**
+     * Crea (se necessario) le tabelle di partizione con il rispettivo indice HNSW.
+     * Chiamata da Spring all'avvio quando {@code app.rag.partitioning.enabled=true}.
+     */
+    @PostConstruct
+    void initPartitions() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        for (CategoriaDispositivo categoria : CategoriaDispositivo.values()) {
+            PgVectorStore store = PgVectorStore.builder(jdbcTemplate, embeddingModel)
+                    .vectorTableName(partitionTable(categoria))
+                    .dimensions(dimensions)
+                    .distanceType(PgVectorStore.PgDistanceType.COSINE_DISTANCE)
+                    .indexType(PgVectorStore.PgIndexType.HNSW)
+                    .initializeSchema(true)
+                    .build();
+            try {
+                store.afterPropertiesSet();
+            } catch (Exception e) {
+                throw new IllegalStateException("Impossibile inizializzare la partizione " + categoria, e);
+            }
+            stores.put(categoria, store);
+        }
+
+        log.info("Vector partitioning enabled for categories {}", stores.keySet());
+    }
+
+    /**
+     * Prepara gli indici quantizzati (ed eventualmente rimuove quelli full-precision) su tutte le tabelle.
+     * Chiamata da Spring a contesto pronto, quando le tabelle dello starter PGVector esistono già.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void prepareQuantizedIndexes() {
+        QuantizationProperties.Mode mode = quantizationProperties.getMode();
+        if (mode == QuantizationProperties.Mode.FULL) {
+            return;
+        }
+
+        for (String table : allTables()) {
+            vectorPartitionRepository.ensureQuantizedIndex(table, mode);
+            if (quantizationProperties.isDropFullPrecisionIndex()) {
+                vectorPartitionRepository.dropFullPrecisionIndexes(table);
+            }
+        }
+    }
+
+    /**
+     * Indica se il partizionamento per categoria è attivo.
+     *
+     * @return {@code true} se le partizioni sono configurate
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled() && !stores.isEmpty();
+    }
+
+    /**
+     * Indica se la ricerca deve passare da questo servizio (partizioni o indice quantizzato)
+     * invece che dal {@code VectorStore} dello starter.
+     *
+     * @return {@code true} se serve la ricerca SQL diretta
+     */
+    public boolean handlesSearch() {
+        return isEnabled() || quantizationProperties.getMode() != QuantizationProperties.Mode.FULL;
+    }
+
+    /**
+     * Elenca tutte le tabelle vettoriali attive: partizioni (se abilitate) e tabella condivisa.
+     *
+     * @return nomi tabella
+     */
+    public List<String> allTables() {
+        List<String> tables = new ArrayList<>();
+        if (isEnabled()) {
+            for (CategoriaDispositivo categoria : stores.keySet()) {
+                tables.add(tableFor(categoria));
+            }
+        }
+        tables.add(properties.getDefaultTable());
+        return tables;
+    }
+
+    /**
+     * Restituisce lo store di scrittura della categoria indicata.
+     * Chiamata da {@link PdfIngestionService} durante l'ingestione di un documento categorizzato.
+     *
+     * @param categoria categoria del documento
+     * @return vector store della partizione
+     */
+    public VectorStore storeFor(CategoriaDispositivo categoria) {
+        VectorStore store = stores.get(categoria);
+        if (store == null) {
+            throw new IllegalStateException("Partizione non disponibile per la categoria " + categoria);
+        }
+        return store;
+    }
+
+    /**
+     * Calcola l'embedding della query, da passare a {@link #search(SearchRequest, Set, float[])}.
+     * Chiamata da {@link RagService#searchRelevantDocuments(String, int)} prima di aprire la transazione di ricerca.
+     *
+     * @param query testo della domanda
+     * @return embedding della query
+     */
+    public float[] embed(String query) {
+        RequestDeadline.checkCurrent("embedding");
+        return embeddingModel.embed(query);
+    }
+
+    /**
+     * Cerca nelle partizioni delle categorie indicate e nella tabella condivisa con un embedding già calcolato,
+     * in una transazione read-only (instradata sulle repliche se il routing è attivo).
+     * Dentro una richiesta di chat limita lo {@code statement_timeout} della transazione al budget residuo.
+     * Con un indice quantizzato recupera {@code topK × rescoreFactor} candidati e li riordina in full-precision.
+     * Ogni query è tracciata come {@value #OBSERVATION} con tabella, modalità e numero di risultati.
+     * Chiamata da {@link RagService#searchRelevantDocuments(String, int)}.
+     *
+     * @param request richiesta di ricerca (query, topK, soglia)
+     * @param categories categorie selezionate dal router (ignorate se il partizionamento è disattivo)
+     * @param embedding embedding della query ({@link #embed(String)})
+     * @return chunk ordinati per score, al massimo {@code topK}
+     */
+    @Transactional(readOnly = true)
+    public List<Document> search(SearchRequest request, Set<CategoriaDispositivo> categories, float[] embedding) {
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null) {
+            limitStatementTimeout(deadline.remainingMillis());
+        }
+
+        List<String> tables = tablesFor(categories);
+
+        QuantizationProperties.Mode mode = quantizationProperties.getMode();
+        int candidates = request.getTopK() * Math.max(1, quantizationProperties.getRescoreFactor());
+
+        List<Document> merged = new ArrayList<>();
+        for (String table : tables) {
+            RequestDeadline.checkCurrent("vector-search");
+            Observation observation = Observation.createNotStarted(OBSERVATION, observationRegistry)
+                    .contextualName("vector query " + table)
+                    .lowCardinalityKeyValue("db.system", "postgresql")
+                    .lowCardinalityKeyValue("db.sql.table", table)
+                    .lowCardinalityKeyValue("rag.quantization", mode.name())
+                    .highCardinalityKeyValue("rag.candidates", String.valueOf(candidates));
+            merged.addAll(observation.observe(() -> {
+                List<Document> found = vectorPartitionRepository.searchQuantized(
+                        table, embedding, request.getTopK(), request.getSimilarityThreshold(), mode, candidates);
+                observation.highCardinalityKeyValue("rag.results", String.valueOf(found.size()));
+                return found;
+            }));
+        }
+
+        return merged.stream()
+                .sorted(Comparator.comparing(Document::getScore, Comparator.nullsLast(Comparator.reverseOrder())))
+                .limit(request.getTopK())
+                .toList();
+    }
+
+    /**
+     * Tabelle interrogate da una ricerca: le partizioni delle categorie indicate (se il partizionamento è attivo)
+     * più la tabella condivisa.
+     * Chiamata da {@link #search(SearchRequest, Set, float[])} e da {@link SlowSearchService} per rieseguire le query lente.
+     *
+     * @param categories categorie selezionate dal router
+     * @return nomi delle tabelle, la condivisa per ultima
+     */
+    public List<String> tablesFor(Set<CategoriaDispositivo> categories) {
+        List<String> tables = new ArrayList<>(categories.size() + 1);
+        if (isEnabled()) {
+            for (CategoriaDispositivo categoria : categories) {
+                tables.add(tableFor(categoria));
+            }
+        }
+        tables.add(properties.getDefaultTable());
+        return tables;
+    }
+
+    /**
+     * Nome della tabella in cui vanno i chunk di una categoria: la partizione dedicata se il partizionamento
+     * è attivo, altrimenti (o per categoria {@code null}) la tabella condivisa.
+     *
+     * @param categoria categoria dispositivo, anche {@code null}
+     * @return nome tabella
+     */
+    public String tableFor(CategoriaDispositivo categoria) {
+        if (categoria == null || !properties.isEnabled()) {
+            return properties.getDefaultTable();
+        }
+        return partitionTable(categoria);
+    }
+
+    private void limitStatementTimeout(long remainingMillis) {
+        try {
+            vectorPartitionRepository.setLocalStatementTimeout(Math.max(1, remainingMillis));
+        } catch (Exception e) {
+            log.debug("Unable to set statement timeout: {}", e.getMessage());
+        }
+    }
+
+    private String partitionTable(CategoriaDispositivo categoria) {
+        return properties.getTablePrefix() + categoria.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,6 +1,12 @@
 const API_BASE = "/api";
 const CONSULTATION_WELCOME = "Ciao! Sono il tuo assistente per la scelta del dispositivo perfetto. Per iniziare, dimmi: stai cercando uno smartphone, uno smartwatch o un tablet?";
 const CHATBOT_WELCOME = "Fai pure una domanda su smartphone, smartwatch o tablet. Rispondo usando le schede tecniche PDF caricate nel sistema.";
+const CHATBOT_PENDING_POLL_MS = 3000;
+const CHATBOT_PENDING_MAX_POLLS = 40;
+const CHATBOT_PREFETCH_DEBOUNCE_MS = 700;
+const CHATBOT_PREFETCH_MIN_INTERVAL_MS = 1500;
+const CHATBOT_PREFETCH_BACKOFF_MS = 5000;
+const CHATBOT_PREFETCH_MIN_CHARS = 12;
 
 const state = {
     isAdmin: false,
@@ -13,7 +19,14 @@ const state = {
         recommendation: []
     },
     chatbot: {
-        history: []
+        sessionId: null,
+        history: [],
+        pendingRequest: null,
+        prefetch: {
+            timer: null,
+            lastText: "",
+            nextAllowedAt: 0
+        }
     }
 };
 
@@ -566,14 +579,63 @@ function renderDocuments() {
 function initChatbot() {
     dom.chatbotResetBtn.addEventListener("click", startNewChatbot);
     dom.chatbotForm.addEventListener("submit", onChatbotSubmit);
+    dom.chatbotInput.addEventListener("input", onChatbotInput);
+    window.addEventListener("pagehide", cancelPendingChat);
     startNewChatbot();
 }
 
 function startNewChatbot() {
+    cancelPendingChat();
+    if (state.chatbot.sessionId) {
+        fetch(`${API_BASE}/chatbot/sessions/${encodeURIComponent(state.chatbot.sessionId)}`, { method: "DELETE" })
+            .catch(() => {});
+    }
+    state.chatbot.sessionId = null;
     state.chatbot.history = [{ role: "assistant", content: CHATBOT_WELCOME }];
     renderChatbot();
 }
 
+function cancelPendingChat() {
+    const pending = state.chatbot.pendingRequest;
+    state.chatbot.pendingRequest = null;
+    if (!pending) {
+        return;
+    }
+    pending.controller.abort();
+    // il server non vede la disconnessione: l'annullamento va inviato esplicitamente
+    navigator.sendBeacon(`${API_BASE}/chatbot/chat/${encodeURIComponent(pending.requestId)}/cancel`);
+}
+
+function onChatbotInput() {
+    const prefetch = state.chatbot.prefetch;
+    clearTimeout(prefetch.timer);
+    prefetch.timer = setTimeout(prefetchChatbotRetrieval, CHATBOT_PREFETCH_DEBOUNCE_MS);
+}
+
+async function prefetchChatbotRetrieval() {
+    const prefetch = state.chatbot.prefetch;
+    const text = dom.chatbotInput.value.trim();
+    const now = Date.now();
+    if (text.length < CHATBOT_PREFETCH_MIN_CHARS || text === prefetch.lastText || now < prefetch.nextAllowedAt) {
+        return;
+    }
+
+    prefetch.lastText = text;
+    prefetch.nextAllowedAt = now + CHATBOT_PREFETCH_MIN_INTERVAL_MS;
+    try {
+        const response = await fetch(`${API_BASE}/chatbot/prefetch`, {
+            method: "POST",
+            headers: { "Content-Type": "application/json" },
+            body: JSON.stringify({ question: text, sessionId: state.chatbot.sessionId })
+        });
+        if (response.status === 429) {
+            prefetch.nextAllowedAt = Date.now() + CHATBOT_PREFETCH_BACKOFF_MS;
+        }
+    } catch (error) {
+        // il prefetch è solo un'ottimizzazione
+    }
+}
+
 async function onChatbotSubmit(event) {
     event.preventDefault();
     const message = dom.chatbotInput.value.trim();
@@ -581,29 +643,73 @@ async function onChatbotSubmit(event) {
         return;
     }
 
+    clearTimeout(state.chatbot.prefetch.timer);
+    state.chatbot.prefetch.lastText = "";
+
     const historyBefore = state.chatbot.history.map(stripMessage);
     state.chatbot.history.push({ role: "user", content: message });
     dom.chatbotInput.value = "";
     renderChatbot();
 
+    const pendingRequest = { controller: new AbortController(), requestId: createSessionId() };
+    state.chatbot.pendingRequest = pendingRequest;
+
     try {
         const response = await fetchJson(`${API_BASE}/chatbot/chat`, {
             method: "POST",
+            signal: pendingRequest.controller.signal,
+            headers: { "X-Request-Id": pendingRequest.requestId },
             body: JSON.stringify({
                 question: message,
-                history: historyBefore,
-                systemPrompt: null
+                history: state.chatbot.sessionId ? [] : historyBefore,
+                systemPrompt: null,
+                sessionId: state.chatbot.sessionId
             })
         });
 
-        state.chatbot.history.push({
+        state.chatbot.sessionId = response.sessionId || state.chatbot.sessionId;
+        const reply = {
             role: "assistant",
             content: response.answer,
-            sources: response.sources?.map((source) => source.reference) || []
-        });
+            sources: response.sources?.map((source) => source.reference) || [],
+            degraded: Boolean(response.degraded)
+        };
+        state.chatbot.history.push(reply);
+        renderChatbot();
+
+        if (response.pendingAnswerId) {
+            pollPendingAnswer(response.pendingAnswerId, reply);
+        }
+    } catch (error) {
+        if (error.name !== "AbortError") {
+            showToast(error.message || "Errore durante la chat");
+        }
+    } finally {
+        if (state.chatbot.pendingRequest === pendingRequest) {
+            state.chatbot.pendingRequest = null;
+        }
+    }
+}
+
+async function pollPendingAnswer(answerId, reply, attempt = 0) {
+    if (attempt >= CHATBOT_PENDING_MAX_POLLS || !state.chatbot.history.includes(reply)) {
+        return;
+    }
+
+    await new Promise((resolve) => setTimeout(resolve, CHATBOT_PENDING_POLL_MS));
+    try {
+        const response = await fetchJson(`${API_BASE}/chatbot/answers/${encodeURIComponent(answerId)}`);
+        if (response.status === "PENDING") {
+            pollPendingAnswer(answerId, reply, attempt + 1);
+            return;
+        }
+
+        reply.content = response.answer;
+        reply.sources = response.sources?.map((source) => source.reference) || [];
+        reply.degraded = false;
         renderChatbot();
     } catch (error) {
-        showToast(error.message || "Errore durante la chat");
+        // la risposta estrattiva resta visibile
     }
 }
 
@@ -627,6 +733,7 @@ function renderChatMessage(message) {
         <article class="message ${message.role}">
             <div class="message-meta">${meta}</div>
             <div class="bubble">${escapeHtml(message.content).replace(/\n/g, "<br>")}</div>
+            ${message.degraded ? `<div class="degraded-note">Risposta rapida estratta dalle schede tecniche</div>` : ""}
             ${cards}
             ${sources}
         </article>
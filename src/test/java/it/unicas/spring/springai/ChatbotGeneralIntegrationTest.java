@@ -3,6 +3,9 @@ package it.unicas.spring.springai;
 import org.junit.jupiter.api.Test;
 import org.mockito.Answers;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
@@ -14,6 +17,7 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.List;
 import java.util.Map;
@@ -22,8 +26,10 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -49,11 +55,12 @@ class ChatbotGeneralIntegrationTest {
 
         ChatClient chatClient = mock(ChatClient.class, Answers.RETURNS_DEEP_STUBS);
         when(chatClientBuilder.build()).thenReturn(chatClient);
-        when(chatClient.prompt().system(anyString()).user(anyString()).call().content()).thenReturn("""
-                {"answer":"Il display AMOLED e la batteria sono i punti chiave emersi dai PDF.","chunkIds":[1]}
-                """);
+        when(chatClient.prompt().system(anyString()).user(anyString()).options(any()).call().chatResponse())
+                .thenReturn(new ChatResponse(List.of(new Generation(new AssistantMessage("""
+                        {"answer":"Il display AMOLED e la batteria sono i punti chiave emersi dai PDF.","chunkIds":[1]}
+                        """)))));
 
-        mockMvc.perform(post("/api/chatbot/chat")
+        MvcResult result = mockMvc.perform(post("/api/chatbot/chat")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("""
                                 {
@@ -61,8 +68,13 @@ class ChatbotGeneralIntegrationTest {
                                   "history": []
                                 }
                                 """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.answer").exists())
-                .andExpect(jsonPath("$.sources[0].reference").value("tab-s10.pdf, Pag. 3"));
+                .andExpect(jsonPath("$.sources[0].reference").value("tab-s10.pdf, Pag. 3"))
+                .andExpect(jsonPath("$.sessionId").isNotEmpty());
     }
 }
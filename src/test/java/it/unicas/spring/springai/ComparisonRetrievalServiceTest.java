@@ -0,0 +1,74 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.ComparisonRetrievalProperties;
+import it.unicas.spring.springai.model.CategoriaDispositivo;
+import it.unicas.spring.springai.model.Dispositivo;
+import it.unicas.spring.springai.repository.DispositivoRepository;
+import it.unicas.spring.springai.repository.DocumentRepository;
+import it.unicas.spring.springai.service.ComparisonRetrievalService;
+import it.unicas.spring.springai.service.QueryCategoryRouter;
+import it.unicas.spring.springai.service.RagService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ComparisonRetrievalServiceTest {
+
+    private RagService ragService;
+    private ComparisonRetrievalService service;
+
+    @BeforeEach
+    void setUp() {
+        DispositivoRepository dispositivoRepository = mock(DispositivoRepository.class);
+        Dispositivo pixel = new Dispositivo();
+        pixel.setNome("Pixel 9");
+        pixel.setCategoria(CategoriaDispositivo.SMARTPHONE);
+        when(dispositivoRepository.findAll()).thenReturn(List.of(pixel));
+
+        DocumentRepository documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.findProcessedOriginalFileNames()).thenReturn(List.of("Scheda_Tecnica-iPhone-16.pdf"));
+
+        ragService = mock(RagService.class);
+        service = new ComparisonRetrievalService(new ComparisonRetrievalProperties(), ragService,
+                new QueryCategoryRouter(dispositivoRepository), documentRepository);
+    }
+
+    @Test
+    void comparison_runs_one_search_per_product_and_interleaves() {
+        when(ragService.searchRelevantDocuments(eq("pixel 9 fotocamera"), anyInt()))
+                .thenReturn(List.of(chunk("p1"), chunk("p2"), chunk("p3"), chunk("p4")));
+        when(ragService.searchRelevantDocuments(eq("iphone 16 fotocamera"), anyInt()))
+                .thenReturn(List.of(chunk("i1"), chunk("i2"), chunk("i3"), chunk("i4")));
+
+        List<Document> docs = service.search("Meglio il Pixel 9 o l'iPhone 16 per la fotocamera?", 6);
+
+        assertThat(docs).extracting(Document::getId).containsExactly("p1", "i1", "p2", "i2", "p3", "i3");
+        verify(ragService).searchRelevantDocuments("pixel 9 fotocamera", 3);
+        verify(ragService).searchRelevantDocuments("iphone 16 fotocamera", 3);
+    }
+
+    @Test
+    void single_product_question_uses_plain_search() {
+        String question = "Che fotocamera ha il Pixel 9?";
+        when(ragService.searchRelevantDocuments(question, 8)).thenReturn(List.of(chunk("p1")));
+
+        assertThat(service.search(question, 8)).extracting(Document::getId).containsExactly("p1");
+        verify(ragService, never()).searchRelevantDocuments(eq("pixel 9"), anyInt());
+        verify(ragService).searchRelevantDocuments(anyString(), eq(8));
+    }
+
+    private Document chunk(String id) {
+        return Document.builder().id(id).text("testo " + id).build();
+    }
+}
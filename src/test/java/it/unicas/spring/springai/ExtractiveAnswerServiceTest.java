@@ -0,0 +1,38 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.service.ExtractiveAnswerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExtractiveAnswerServiceTest {
+
+    private final ExtractiveAnswerService service = new ExtractiveAnswerService();
+
+    @Test
+    void picks_sentences_matching_the_question() {
+        List<String> chunks = List.of(
+                "Il Pixel 9 ha un display OLED da 6,3 pollici. La batteria ha una capacità di 4700 mAh con ricarica rapida a 27 W.",
+                "Il design è in alluminio riciclato. Disponibile in quattro colori."
+        );
+
+        List<ExtractiveAnswerService.ExtractedSentence> sentences =
+                service.extract("Che capacità ha la batteria del Pixel 9?", chunks, 1);
+
+        assertThat(sentences).hasSize(1);
+        assertThat(sentences.get(0).chunkId()).isEqualTo(1);
+        assertThat(sentences.get(0).text()).contains("4700 mAh");
+    }
+
+    @Test
+    void falls_back_to_leading_sentences_without_overlap() {
+        List<ExtractiveAnswerService.ExtractedSentence> sentences = service.extract(
+                "Resistenza all'acqua?",
+                List.of("Processore Google Tensor G4 con 12 GB di RAM.", "Schermo Super Actua da 2700 nit."),
+                4);
+
+        assertThat(sentences).extracting(ExtractiveAnswerService.ExtractedSentence::chunkId).containsExactly(1, 2);
+    }
+}
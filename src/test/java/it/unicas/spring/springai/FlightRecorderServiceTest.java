@@ -0,0 +1,52 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.FlightRecorderProperties;
+import it.unicas.spring.springai.service.FlightRecorderService;
+import it.unicas.spring.springai.service.PipelineEvents;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FlightRecorderServiceTest {
+
+    @Test
+    void recording_contains_stage_events_with_request_id(@TempDir Path directory) throws Exception {
+        FlightRecorderProperties properties = new FlightRecorderProperties();
+        properties.setDirectory(directory.toString());
+        FlightRecorderService service = new FlightRecorderService(properties, new DefaultResourceLoader());
+
+        assertThatThrownBy(() -> service.start("everything", null)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(service.start(null, Duration.ofMinutes(1)).state()).isEqualTo("RUNNING");
+        assertThatThrownBy(() -> service.start("default", null)).isInstanceOf(IllegalStateException.class);
+
+        try (PipelineEvents.Scope ignored = PipelineEvents.bind(PipelineEvents.CHAT, "req-1")) {
+            PipelineEvents.chat(PipelineEvents.RETRIEVAL).commit();
+            PipelineEvents.ingestion(PipelineEvents.SPLIT).commit();
+        }
+        PipelineEvents.chat(PipelineEvents.PARSE).commit();
+
+        Path file = service.stop();
+        assertThat(service.status().state()).isEqualTo("NONE");
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().startsWith("it.unicas.springai."))
+                .toList();
+        assertThat(events).extracting(e -> e.getEventType().getName() + ":" + e.getString("stage") + ":" + e.getString("requestId"))
+                .containsExactlyInAnyOrder(
+                        "it.unicas.springai.ChatStage:retrieval:req-1",
+                        "it.unicas.springai.IngestionStage:split:req-1",
+                        "it.unicas.springai.ChatStage:parse:null");
+        Files.delete(file);
+    }
+}
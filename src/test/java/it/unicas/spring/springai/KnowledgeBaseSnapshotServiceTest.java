@@ -0,0 +1,114 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.VectorPartitionProperties;
+import it.unicas.spring.springai.repository.VectorCopyWriter;
+import it.unicas.spring.springai.service.BulkVectorLoader;
+import it.unicas.spring.springai.service.KnowledgeBaseSnapshotService;
+import it.unicas.spring.springai.service.VectorPartitionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KnowledgeBaseSnapshotServiceTest {
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final BulkVectorLoader bulkVectorLoader = mock(BulkVectorLoader.class);
+
+    @Configuration
+    @EnableTransactionManagement
+    static class TransactionConfig {
+    }
+
+    @Test
+    void truncated_snapshot_rolls_back_truncation_and_dropped_indexes() throws IOException {
+        TransactionStatus status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+
+        try (AnnotationConfigApplicationContext context = transactionalContext()) {
+            KnowledgeBaseSnapshotService service = context.getBean(KnowledgeBaseSnapshotService.class);
+
+            assertThatThrownBy(() -> service.importSnapshot(new ByteArrayInputStream(truncatedSnapshot()), true))
+                    .isInstanceOf(EOFException.class);
+        }
+
+        // TRUNCATE e DROP INDEX sono avvenuti nella transazione, che deve essere annullata e non confermata
+        verify(jdbcTemplate).execute("TRUNCATE documents");
+        verify(bulkVectorLoader).deferIndexes(List.of("vector_store"));
+        verify(bulkVectorLoader, never()).rebuildIndexes(any());
+        verify(transactionManager).rollback(status);
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void import_without_replace_refuses_orphaned_chunks() {
+        when(jdbcTemplate.queryForObject(eq("SELECT EXISTS (SELECT 1 FROM documents)"), eq(Boolean.class))).thenReturn(false);
+        when(jdbcTemplate.queryForObject(eq("SELECT EXISTS (SELECT 1 FROM vector_store)"), eq(Boolean.class))).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        try (AnnotationConfigApplicationContext context = transactionalContext()) {
+            KnowledgeBaseSnapshotService service = context.getBean(KnowledgeBaseSnapshotService.class);
+
+            assertThatThrownBy(() -> service.importSnapshot(new ByteArrayInputStream(truncatedSnapshot()), false))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("non è vuota");
+        }
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    /**
+     * Contesto con il servizio dietro il proxy transazionale di Spring, come in produzione.
+     */
+    private AnnotationConfigApplicationContext transactionalContext() {
+        VectorPartitionService vectorPartitionService = mock(VectorPartitionService.class);
+        when(vectorPartitionService.allTables()).thenReturn(List.of("vector_store"));
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(TransactionConfig.class);
+        context.registerBean(PlatformTransactionManager.class, () -> transactionManager);
+        context.registerBean(KnowledgeBaseSnapshotService.class, () -> new KnowledgeBaseSnapshotService(
+                mock(DataSource.class), jdbcTemplate, mock(VectorCopyWriter.class), bulkVectorLoader,
+                vectorPartitionService, new VectorPartitionProperties(), mock(ApplicationEventPublisher.class)));
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * Header valido seguito da un record DOCUMENT interrotto dopo l'id.
+     */
+    private static byte[] truncatedSnapshot() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.write(new byte[]{'K', 'B', 'S', 'N', 'A', 'P'});
+            out.writeInt(1);
+            out.writeInt(768);
+            out.writeByte(1);
+            out.writeLong(42);
+        }
+        return bytes.toByteArray();
+    }
+}
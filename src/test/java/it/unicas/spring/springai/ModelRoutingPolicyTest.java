@@ -0,0 +1,64 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.ModelRoutingProperties;
+import it.unicas.spring.springai.model.CategoriaDispositivo;
+import it.unicas.spring.springai.model.Dispositivo;
+import it.unicas.spring.springai.repository.DispositivoRepository;
+import it.unicas.spring.springai.service.ModelRoutingPolicy;
+import it.unicas.spring.springai.service.QueryCategoryRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ModelRoutingPolicyTest {
+
+    private ModelRoutingPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        DispositivoRepository repository = mock(DispositivoRepository.class);
+        when(repository.findAll()).thenReturn(List.of(
+                device("Pixel 9", CategoriaDispositivo.SMARTPHONE),
+                device("iPhone 16", CategoriaDispositivo.SMARTPHONE)
+        ));
+        policy = new ModelRoutingPolicy(new ModelRoutingProperties(), new QueryCategoryRouter(repository));
+    }
+
+    @Test
+    void short_confident_lookup_goes_to_small_model() {
+        ModelRoutingPolicy.Decision decision = policy.decide("Che processore ha il Pixel 9?", chunks(0.86));
+        assertThat(decision.tier()).isEqualTo(ModelRoutingPolicy.Tier.SMALL);
+        assertThat(decision.maxTokens()).isEqualTo(512);
+    }
+
+    @Test
+    void comparisons_stay_on_large_model() {
+        assertThat(policy.decide("Meglio il Pixel 9 o l'iPhone 16?", chunks(0.9)).tier())
+                .isEqualTo(ModelRoutingPolicy.Tier.LARGE);
+        assertThat(policy.decide("Pixel 9 e iPhone 16: autonomia?", chunks(0.9)).tier())
+                .isEqualTo(ModelRoutingPolicy.Tier.LARGE);
+    }
+
+    @Test
+    void low_retrieval_confidence_stays_on_large_model() {
+        assertThat(policy.decide("Che processore ha il Pixel 9?", chunks(0.55)).tier())
+                .isEqualTo(ModelRoutingPolicy.Tier.LARGE);
+    }
+
+    private List<Document> chunks(double score) {
+        return List.of(Document.builder().text("Google Tensor G4").score(score).build());
+    }
+
+    private Dispositivo device(String nome, CategoriaDispositivo categoria) {
+        Dispositivo dispositivo = new Dispositivo();
+        dispositivo.setNome(nome);
+        dispositivo.setCategoria(categoria);
+        return dispositivo;
+    }
+}
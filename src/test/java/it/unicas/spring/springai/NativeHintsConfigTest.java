@@ -0,0 +1,26 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.NativeHintsConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeHintsConfigTest {
+
+    @Test
+    void hints_cover_pdfbox_resources_and_golden_set() throws Exception {
+        RuntimeHints hints = new RuntimeHints();
+        new NativeHintsConfig.ApplicationRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertThat(RuntimeHintsPredicates.resource().forResource("org/apache/pdfbox/resources/glyphlist/glyphlist.txt"))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("retrieval-benchmark/golden-set.json")).accepts(hints);
+
+        String goldenSet = "it.unicas.spring.springai.service.RetrievalBenchmarkService$GoldenSet";
+        assertThat(Class.forName(goldenSet)).isNotNull();
+        assertThat(RuntimeHintsPredicates.reflection().onType(TypeReference.of(goldenSet))).accepts(hints);
+    }
+}
@@ -0,0 +1,73 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.model.CategoriaDispositivo;
+import it.unicas.spring.springai.model.Dispositivo;
+import it.unicas.spring.springai.repository.DispositivoRepository;
+import it.unicas.spring.springai.service.QueryCategoryRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryCategoryRouterTest {
+
+    private QueryCategoryRouter router;
+
+    @BeforeEach
+    void setUp() {
+        DispositivoRepository repository = mock(DispositivoRepository.class);
+        when(repository.findAll()).thenReturn(List.of(
+                device("Garmin Venu 3", CategoriaDispositivo.SMARTWATCH),
+                device("Galaxy Tab S10+", CategoriaDispositivo.TABLET)
+        ));
+        router = new QueryCategoryRouter(repository);
+    }
+
+    @Test
+    void routes_single_category_from_keywords() {
+        assertThat(router.route("Che processore ha il Pixel 9?"))
+                .containsExactly(CategoriaDispositivo.SMARTPHONE);
+    }
+
+    @Test
+    void routes_catalog_device_names() {
+        assertThat(router.route("Quanto dura la batteria del Venu 3 di Garmin?"))
+                .containsExactly(CategoriaDispositivo.SMARTWATCH);
+        assertThat(router.route("galaxy tab s10+ ha la penna inclusa?"))
+                .contains(CategoriaDispositivo.TABLET);
+    }
+
+    @Test
+    void routes_galaxy_phone_families_with_model_numbers() {
+        assertThat(router.route("Il Galaxy S24 Ultra scatta foto migliori?"))
+                .containsExactly(CategoriaDispositivo.SMARTPHONE);
+        assertThat(router.route("Quanto è resistente la cerniera del Galaxy Z Fold6?"))
+                .containsExactly(CategoriaDispositivo.SMARTPHONE);
+        assertThat(router.detect("Galaxy Tab S9 con tastiera")).doesNotContain(CategoriaDispositivo.SMARTPHONE);
+    }
+
+    @Test
+    void falls_back_to_all_partitions_when_unsure() {
+        Set<CategoriaDispositivo> categories = router.route("Qual è il migliore sotto i 500 euro?");
+        assertThat(categories).isEqualTo(EnumSet.allOf(CategoriaDispositivo.class));
+    }
+
+    @Test
+    void keeps_every_category_of_cross_category_questions() {
+        assertThat(router.route("Meglio un iPad o uno smartphone pieghevole?"))
+                .containsExactlyInAnyOrder(CategoriaDispositivo.TABLET, CategoriaDispositivo.SMARTPHONE);
+    }
+
+    private Dispositivo device(String nome, CategoriaDispositivo categoria) {
+        Dispositivo dispositivo = new Dispositivo();
+        dispositivo.setNome(nome);
+        dispositivo.setCategoria(categoria);
+        return dispositivo;
+    }
+}
@@ -0,0 +1,35 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.ReplicaLagTracker;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ReplicaLagTrackerTest {
+
+    @Test
+    void read_your_writes_pins_only_the_user_who_wrote() {
+        ReplicaLagTracker tracker = new ReplicaLagTracker(Map.of("replica-0", mock(DataSource.class)),
+                Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        // flush write-behind dallo scheduler: nessun utente, le letture restano sulle repliche
+        tracker.markWrite();
+        try (ReplicaLagTracker.Scope ignored = ReplicaLagTracker.bindUser("alice")) {
+            assertThat(tracker.pickReplica()).contains("replica-0");
+        }
+
+        try (ReplicaLagTracker.Scope ignored = ReplicaLagTracker.bindUser("alice")) {
+            tracker.markWrite();
+            assertThat(tracker.pickReplica()).isEmpty();
+        }
+        try (ReplicaLagTracker.Scope ignored = ReplicaLagTracker.bindUser("bob")) {
+            assertThat(tracker.pickReplica()).contains("replica-0");
+        }
+        assertThat(tracker.pickReplica()).contains("replica-0");
+    }
+}
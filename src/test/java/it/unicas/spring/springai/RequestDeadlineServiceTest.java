@@ -0,0 +1,45 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.RequestDeadlineProperties;
+import it.unicas.spring.springai.service.RequestDeadline;
+import it.unicas.spring.springai.service.RequestDeadlineService;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestDeadlineServiceTest {
+
+    @Test
+    void client_cancels_its_own_running_request_by_id() throws Exception {
+        RequestDeadlineService service = new RequestDeadlineService(new RequestDeadlineProperties());
+        RequestDeadline deadline = service.start(10_000L);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> execution = service.execute(deadline, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        service.track("alice", "req-1", () -> service.cancel(deadline, execution, RequestDeadline.CancelReason.CLIENT_CANCELLED));
+
+        assertThat(service.cancel("bob", "req-1")).isFalse();
+        assertThat(service.cancel("alice", "req-1")).isTrue();
+        assertThat(service.cancel("alice", "req-1")).isFalse();
+
+        assertThat(execution.isCancelled()).isTrue();
+        assertThat(service.snapshot().requestsByReason()).containsEntry("CLIENT_CANCELLED", 1L);
+
+        service.track("alice", "req-2", () -> {
+            throw new AssertionError("request already completed");
+        });
+        service.untrack("alice", "req-2");
+        assertThat(service.cancel("alice", "req-2")).isFalse();
+    }
+}
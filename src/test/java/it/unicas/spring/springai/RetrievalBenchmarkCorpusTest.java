@@ -0,0 +1,42 @@
+package it.unicas.spring.springai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica che ogni domanda del golden set punti a un PDF del corpus e a pagine esistenti e leggibili.
+ */
+class RetrievalBenchmarkCorpusTest {
+
+    @Test
+    void golden_set_references_existing_pages() throws Exception {
+        JsonNode goldenSet;
+        try (InputStream in = new ClassPathResource("retrieval-benchmark/golden-set.json").getInputStream()) {
+            goldenSet = new ObjectMapper().readTree(in);
+        }
+        assertThat(goldenSet.path("questions").size()).isGreaterThanOrEqualTo(20);
+
+        Map<String, List<Document>> pagesByFile = new HashMap<>();
+        for (JsonNode question : goldenSet.path("questions")) {
+            String fileName = question.path("fileName").asText();
+            List<Document> pages = pagesByFile.computeIfAbsent(fileName, name ->
+                    new PagePdfDocumentReader(new ClassPathResource("retrieval-benchmark/corpus/" + name)).get());
+
+            for (JsonNode page : question.path("pages")) {
+                assertThat(page.asInt()).isBetween(1, pages.size());
+                assertThat(pages.get(page.asInt() - 1).getText()).isNotBlank();
+            }
+        }
+    }
+}
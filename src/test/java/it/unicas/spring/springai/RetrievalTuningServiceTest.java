@@ -0,0 +1,75 @@
+package it.unicas.spring.springai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.unicas.spring.springai.config.RetrievalTuningProperties;
+import it.unicas.spring.springai.dto.ExperimentArmStats;
+import it.unicas.spring.springai.dto.RetrievalExperimentArm;
+import it.unicas.spring.springai.dto.RetrievalParameters;
+import it.unicas.spring.springai.dto.RetrievalTuningConfig;
+import it.unicas.spring.springai.dto.RetrievalTuningStatus;
+import it.unicas.spring.springai.service.RetrievalTuningService;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetrievalTuningServiceTest {
+
+    @Test
+    void users_are_split_into_stable_arms_and_arm_parameters_apply_while_bound() {
+        RetrievalTuningService service = new RetrievalTuningService(new RetrievalTuningProperties(), new SimpleMeterRegistry());
+        RetrievalParameters defaults = service.parameters();
+        service.update(new RetrievalTuningConfig(defaults, List.of(
+                new RetrievalExperimentArm("topk12", 30, null, 12, null, null, null))));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            String username = "user" + i;
+            RetrievalTuningService.Assignment assignment = service.assign(username);
+            assertThat(service.assign(username).arm()).isEqualTo(assignment.arm());
+            counts.merge(assignment.arm(), 1, Integer::sum);
+        }
+        assertThat(counts.get("topk12")).isBetween(500, 700);
+        assertThat(service.assign(null).arm()).isEqualTo(RetrievalTuningService.CONTROL_ARM);
+
+        RetrievalTuningService.Assignment arm = new RetrievalTuningService.Assignment("topk12",
+                new RetrievalParameters(5, 12, 0.7, 2_000, 10));
+        try (RetrievalTuningService.Scope ignored = service.bind(arm)) {
+            assertThat(service.parameters().chatTopK()).isEqualTo(12);
+        }
+        assertThat(service.parameters()).isEqualTo(defaults);
+
+        service.recordTurn("topk12", TimeUnit.MILLISECONDS.toNanos(40), true);
+        service.recordTurn("topk12", TimeUnit.MILLISECONDS.toNanos(60), false);
+        RetrievalTuningStatus status = service.status();
+        assertThat(status.arms()).extracting(ExperimentArmStats::arm).containsExactly("control", "topk12");
+        ExperimentArmStats stats = status.arms().get(1);
+        assertThat(stats.turns()).isEqualTo(2);
+        assertThat(stats.emptyResultRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void invalid_updates_are_rejected_and_keep_the_current_configuration() {
+        RetrievalTuningService service = new RetrievalTuningService(new RetrievalTuningProperties(), new SimpleMeterRegistry());
+        RetrievalParameters defaults = service.parameters();
+
+        assertThatThrownBy(() -> service.update(new RetrievalTuningConfig(
+                new RetrievalParameters(0, 8, 0.7, 2_000, 10), List.of())))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.update(new RetrievalTuningConfig(defaults, List.of(
+                new RetrievalExperimentArm("a", 60, null, null, null, null, null),
+                new RetrievalExperimentArm("b", 50, null, null, null, null, null)))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.update(new RetrievalTuningConfig(defaults, List.of(
+                new RetrievalExperimentArm("control", 10, null, null, null, null, null)))))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(service.parameters()).isEqualTo(defaults);
+        assertThat(service.status().config().arms()).isEmpty();
+    }
+}
@@ -0,0 +1,133 @@
+package it.unicas.spring.springai;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.observation.ObservationRegistry;
+import it.unicas.spring.springai.config.LlmEndpoint;
+import it.unicas.spring.springai.config.LlmRoutingProperties;
+import it.unicas.spring.springai.config.RoutingChatModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica failover, circuit breaker e hedging contro server OpenAI-compatibili stub locali.
+ */
+class RoutingChatModelTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void fails_over_to_backup_when_primary_errors() throws Exception {
+        AtomicInteger primaryCalls = new AtomicInteger();
+        String primary = stub(500, 0, "errore", primaryCalls);
+        String backup = stub(200, 0, "risposta backup", new AtomicInteger());
+
+        LlmRoutingProperties properties = properties(false);
+        try (RoutingChatModel model = model(properties, primary, backup)) {
+            String answer = model.call(new Prompt("ciao")).getResult().getOutput().getContent();
+            assertThat(answer).isEqualTo("risposta backup");
+            assertThat(primaryCalls.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void skips_primary_while_circuit_is_open() throws Exception {
+        AtomicInteger primaryCalls = new AtomicInteger();
+        String primary = stub(500, 0, "errore", primaryCalls);
+        String backup = stub(200, 0, "ok", new AtomicInteger());
+
+        LlmRoutingProperties properties = properties(false);
+        properties.getCircuitBreaker().setFailureThreshold(2);
+        try (RoutingChatModel model = model(properties, primary, backup)) {
+            for (int i = 0; i < 5; i++) {
+                model.call(new Prompt("ciao"));
+            }
+            assertThat(primaryCalls.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void hedges_to_backup_when_primary_is_slow() throws Exception {
+        String primary = stub(200, 3_000, "lenta", new AtomicInteger());
+        String backup = stub(200, 0, "veloce", new AtomicInteger());
+
+        LlmRoutingProperties properties = properties(true);
+        properties.getHedging().setInitialDelay(Duration.ofMillis(200));
+        try (RoutingChatModel model = model(properties, primary, backup)) {
+            long start = System.nanoTime();
+            String answer = model.call(new Prompt("ciao")).getResult().getOutput().getContent();
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertThat(answer).isEqualTo("veloce");
+            assertThat(elapsedMs).isLessThan(2_000);
+        }
+    }
+
+    private LlmRoutingProperties properties(boolean hedging) {
+        LlmRoutingProperties properties = new LlmRoutingProperties();
+        properties.getHedging().setEnabled(hedging);
+        properties.setTotalTimeout(Duration.ofSeconds(10));
+        return properties;
+    }
+
+    private RoutingChatModel model(LlmRoutingProperties properties, String... baseUrls) {
+        List<LlmEndpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < baseUrls.length; i++) {
+            LlmRoutingProperties.Endpoint endpoint = new LlmRoutingProperties.Endpoint();
+            endpoint.setName("stub-" + i);
+            endpoint.setBaseUrl(baseUrls[i]);
+            endpoint.setApiKey("test-key");
+            endpoint.setModel("stub-model");
+            endpoint.setTimeout(Duration.ofSeconds(5));
+            properties.getEndpoints().add(endpoint);
+            endpoints.add(LlmEndpoint.openAiCompatible(endpoint, properties, ObservationRegistry.NOOP));
+        }
+        return new RoutingChatModel(endpoints, properties);
+    }
+
+    private String stub(int status, long delayMs, String content, AtomicInteger calls) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/chat/completions", exchange -> {
+            calls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            String body = status == 200 ? """
+                    {"id":"stub","object":"chat.completion","created":1,"model":"stub-model",
+                     "choices":[{"index":0,"message":{"role":"assistant","content":"%s"},"finish_reason":"stop"}],
+                     "usage":{"prompt_tokens":1,"completion_tokens":1,"total_tokens":2}}
+                    """.formatted(content) : "{\"error\":{\"message\":\"%s\"}}".formatted(content);
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+}
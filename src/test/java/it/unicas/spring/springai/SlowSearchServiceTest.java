@@ -0,0 +1,81 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.QuantizationProperties;
+import it.unicas.spring.springai.config.SlowSearchProperties;
+import it.unicas.spring.springai.dto.SlowSearch;
+import it.unicas.spring.springai.dto.SlowSearchReport;
+import it.unicas.spring.springai.dto.VectorIndexStats;
+import it.unicas.spring.springai.repository.VectorPartitionRepository;
+import it.unicas.spring.springai.service.SlowSearchService;
+import it.unicas.spring.springai.service.VectorPartitionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlowSearchServiceTest {
+
+    @Test
+    void searches_over_threshold_are_logged_and_explained() throws Exception {
+        SlowSearchProperties properties = new SlowSearchProperties();
+        properties.setThreshold(Duration.ofMillis(100));
+        properties.setExplainSampleRate(1.0);
+        properties.setExplainMinInterval(Duration.ZERO);
+
+        VectorPartitionService vectorPartitionService = mock(VectorPartitionService.class);
+        when(vectorPartitionService.tablesFor(any())).thenReturn(List.of("vector_store"));
+        VectorPartitionRepository repository = mock(VectorPartitionRepository.class);
+        when(repository.explainSearch(eq("vector_store"), any(), anyInt(), anyDouble(), any(), anyInt()))
+                .thenReturn(List.of("Limit  (actual time=812.4..812.5 rows=5 loops=1)", "  Buffers: shared read=9120"));
+        when(repository.indexStats("vector_store")).thenReturn(List.of(new VectorIndexStats(
+                "vector_store", "spring_ai_vector_index", 1L << 30, "1024 MB", 10, 100, 50, 200, 9120, 0.02)));
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{0.1f, 0.2f});
+
+        SlowSearchService service = new SlowSearchService(properties, new QuantizationProperties(),
+                vectorPartitionService, repository, embeddingModel, mock(PlatformTransactionManager.class));
+        SearchRequest request = SearchRequest.builder().query("autonomia batteria").topK(5).similarityThreshold(0.7).build();
+
+        service.record(request, false, Set.of(), 5, TimeUnit.MILLISECONDS.toNanos(20));
+        service.record(request, false, Set.of(), 5, TimeUnit.MILLISECONDS.toNanos(850));
+
+        SlowSearch entry = awaitExplain(service);
+        assertThat(entry.durationMs()).isEqualTo(850);
+        assertThat(entry.path()).isEqualTo("vector-store");
+        assertThat(entry.mode()).isEqualTo("FULL");
+        assertThat(entry.explain()).isEqualTo("DONE");
+        assertThat(entry.plans().get("vector_store")).hasSize(2);
+        assertThat(entry.indexStats()).extracting(VectorIndexStats::index).containsExactly("spring_ai_vector_index");
+
+        SlowSearchReport report = service.report(10);
+        assertThat(report.searches()).isEqualTo(2);
+        assertThat(report.slowSearches()).isEqualTo(1);
+        assertThat(report.explained()).isEqualTo(1);
+    }
+
+    private static SlowSearch awaitExplain(SlowSearchService service) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            List<SlowSearch> entries = service.report(10).entries();
+            assertThat(entries).hasSize(1);
+            if (!"PENDING".equals(entries.get(0).explain()) || System.nanoTime() > deadline) {
+                return entries.get(0);
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package it.unicas.spring.springai;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import it.unicas.spring.springai.service.ChatbotService;
+import it.unicas.spring.springai.service.RagService;
+import it.unicas.spring.springai.service.StageTimingObservationHandler;
+import it.unicas.spring.springai.service.StageTimings;
+import it.unicas.spring.springai.service.VectorPartitionService;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StageTimingObservationHandlerTest {
+
+    @Test
+    void child_observations_are_summed_into_request_timings() {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new StageTimingObservationHandler());
+
+        StageTimings timings = new StageTimings();
+        Observation request = Observation.createNotStarted(StageTimings.OBSERVATION, registry);
+        request.getContext().put(StageTimings.class, timings);
+
+        request.observe(() -> {
+            Observation.createNotStarted(RagService.OBSERVATION, registry).observe(() -> {
+                Observation.createNotStarted(VectorPartitionService.OBSERVATION, registry).observe(() -> { });
+                Observation.createNotStarted(VectorPartitionService.OBSERVATION, registry).observe(() -> { });
+            });
+            Observation.createNotStarted(ChatbotService.PARSE_OBSERVATION, registry).observe(() -> { });
+            Observation.createNotStarted("unrelated", registry).observe(() -> { });
+        });
+
+        String header = timings.toHeader();
+        assertThat(header).matches("retrieval;dur=\\d+\\.\\d, vector-search;dur=\\d+\\.\\d;desc=\"2x\", "
+                + "parse;dur=\\d+\\.\\d, total;dur=\\d+\\.\\d");
+    }
+}
@@ -0,0 +1,84 @@
+package it.unicas.spring.springai;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.unicas.spring.springai.config.QueryTelemetryProperties;
+import it.unicas.spring.springai.config.ReplicaLagTracker;
+import it.unicas.spring.springai.config.RetrievalTuningProperties;
+import it.unicas.spring.springai.config.StartupWarmupProperties;
+import it.unicas.spring.springai.dto.TopQuery;
+import it.unicas.spring.springai.repository.VectorPartitionRepository;
+import it.unicas.spring.springai.service.ChatbotService;
+import it.unicas.spring.springai.service.QueryTelemetryService;
+import it.unicas.spring.springai.service.RagService;
+import it.unicas.spring.springai.service.RetrievalTuningService;
+import it.unicas.spring.springai.service.StartupWarmupService;
+import it.unicas.spring.springai.service.VectorPartitionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StartupWarmupServiceTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void readiness_stays_out_of_service_until_all_stages_ran_even_if_one_fails() {
+        StartupWarmupProperties properties = new StartupWarmupProperties();
+        properties.setJitIterations(10);
+
+        VectorPartitionService vectorPartitionService = mock(VectorPartitionService.class);
+        when(vectorPartitionService.allTables()).thenReturn(List.of("vector_store"));
+        VectorPartitionRepository repository = mock(VectorPartitionRepository.class);
+        when(repository.prewarmIndexes("vector_store"))
+                .thenThrow(new IllegalStateException("function pg_prewarm(regclass) does not exist"));
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed(anyString())).thenReturn(new float[768]);
+        RagService ragService = mock(RagService.class);
+        ChatbotService chatbotService = mock(ChatbotService.class);
+        QueryTelemetryProperties telemetryProperties = new QueryTelemetryProperties();
+        QueryTelemetryService queryTelemetryService = mock(QueryTelemetryService.class);
+        when(queryTelemetryService.topQueries(anyInt(), any())).thenReturn(List.of(
+                new TopQuery("quanto dura la batteria", 42, 0.83, 1200),
+                new TopQuery("che display ha il tablet", 17, 0.79, 1100)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        StartupWarmupService service = new StartupWarmupService(properties, mock(ObjectProvider.class),
+                mock(ObjectProvider.class), vectorPartitionService, repository, embeddingModel, ragService,
+                chatbotService, new RetrievalTuningService(new RetrievalTuningProperties(), meterRegistry),
+                telemetryProperties, queryTelemetryService, meterRegistry);
+
+        assertThat(service.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        service.warmUp();
+
+        Health health = service.health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        Map<String, String> stages = (Map<String, String>) health.getDetails().get("stages");
+        assertThat(stages).containsOnlyKeys("pool", "prewarm", "embedding", "search", "top-queries", "chat");
+        assertThat(stages.get("prewarm")).contains("failed");
+        assertThat(stages.get("top-queries")).contains("replayed 2/2");
+        assertThat(stages.get("chat")).contains("10 iterations");
+        verify(ragService, times(properties.getQueries().size())).searchRelevantDocuments(anyString());
+        verify(ragService).searchRelevantDocuments("quanto dura la batteria", telemetryProperties.getWarmup().getTopK());
+        verify(ragService).searchRelevantDocuments(eq("che display ha il tablet"), anyInt());
+
+        assertThat(meterRegistry.find("startup.warmup").tag("stage", "total").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("startup.warmup").tags("stage", "prewarm", "outcome", "failure").timer())
+                .isNotNull();
+    }
+}
@@ -0,0 +1,69 @@
+package it.unicas.spring.springai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.unicas.spring.springai.config.TokenUsageProperties;
+import it.unicas.spring.springai.repository.TokenUsageRepository;
+import it.unicas.spring.springai.service.TokenUsageService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenUsageServiceTest {
+
+    @Test
+    void usage_is_split_by_section_and_flushed_as_daily_aggregate() {
+        TokenUsageRepository repository = mock(TokenUsageRepository.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TokenUsageService service = new TokenUsageService(new TokenUsageProperties(), repository, meterRegistry);
+
+        TokenUsageService.PromptSections sections = new TokenUsageService.PromptSections(
+                "Sei un assistente virtuale specializzato in tecnologia consumer.",
+                "[CHUNK 1] Il Pixel 9 ha una batteria da 4700 mAh con ricarica rapida a 27 W. ".repeat(20),
+                "",
+                "Quanto dura la batteria?");
+        service.record("chat", null, response(500L, 40L), sections);
+        service.record("chat", null, response(300L, 20L), sections);
+
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TokenUsageRepository.UsageDelta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).addUsage(captor.capture());
+        assertThat(captor.getValue()).hasSize(1);
+
+        TokenUsageRepository.UsageDelta delta = captor.getValue().get(0);
+        assertThat(delta.model()).isEqualTo("gpt-test");
+        assertThat(delta.calls()).isEqualTo(2);
+        assertThat(delta.promptTokens()).isEqualTo(800);
+        assertThat(delta.completionTokens()).isEqualTo(60);
+        assertThat(delta.maxPromptTokens()).isEqualTo(500);
+        assertThat(delta.systemTokens() + delta.chunksTokens() + delta.historyTokens() + delta.questionTokens())
+                .isEqualTo(800);
+        assertThat(delta.historyTokens()).isZero();
+        assertThat(delta.chunksTokens()).isGreaterThan(delta.systemTokens() + delta.questionTokens());
+
+        assertThat(meterRegistry.find("llm.tokens").tag("type", "prompt").summary().count()).isEqualTo(2);
+        assertThat(meterRegistry.find("llm.prompt.tokens").tag("section", "chunks").summary().totalAmount())
+                .isEqualTo(delta.chunksTokens());
+    }
+
+    private static ChatResponse response(long promptTokens, long completionTokens) {
+        Usage usage = mock(Usage.class);
+        when(usage.getPromptTokens()).thenReturn(promptTokens);
+        when(usage.getGenerationTokens()).thenReturn(completionTokens);
+
+        ChatResponse response = mock(ChatResponse.class, RETURNS_DEEP_STUBS);
+        when(response.getMetadata().getUsage()).thenReturn(usage);
+        when(response.getMetadata().getModel()).thenReturn("gpt-test");
+        return response;
+    }
+}
@@ -0,0 +1,87 @@
+package it.unicas.spring.springai;
+
+import it.unicas.spring.springai.config.UsageQuotaProperties;
+import it.unicas.spring.springai.dto.UsageQuotaStatus;
+import it.unicas.spring.springai.repository.LlmUsageRepository;
+import it.unicas.spring.springai.service.UsageQuotaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UsageQuotaServiceTest {
+
+    private final LlmUsageRepository repository = mock(LlmUsageRepository.class);
+    private final UsageQuotaService service = new UsageQuotaService(new UsageQuotaProperties(), repository);
+
+    @Test
+    void flush_never_lowers_the_visible_daily_total() {
+        when(repository.findTotals(anyString(), any())).thenReturn(new LlmUsageRepository.UsageTotals(0, 0));
+        service.acquire("alice");
+        service.recordUsage("alice", response(1_500));
+
+        // durante la scrittura su Postgres il delta non è più pending: deve già essere nei totali persistiti
+        List<Long> seenDuringWrite = new ArrayList<>();
+        doAnswer(invocation -> {
+            seenDuringWrite.add(tokensOf("alice"));
+            return null;
+        }).when(repository).addUsage(eq("alice"), any(), anyLong(), anyLong());
+        when(repository.findTotals(eq("alice"), any())).thenReturn(new LlmUsageRepository.UsageTotals(1_500, 1));
+
+        service.flush();
+
+        assertThat(seenDuringWrite).containsExactly(1_500L);
+        assertThat(tokensOf("alice")).isEqualTo(1_500);
+    }
+
+    @Test
+    void failed_flush_keeps_the_total_and_retries_the_delta() {
+        when(repository.findTotals(anyString(), any())).thenReturn(new LlmUsageRepository.UsageTotals(0, 0));
+        service.acquire("alice");
+        service.recordUsage("alice", response(800));
+
+        doThrow(new IllegalStateException("db down")).when(repository).addUsage(anyString(), any(), anyLong(), anyLong());
+        service.flush();
+        assertThat(tokensOf("alice")).isEqualTo(800);
+
+        // una rilettura in ritardo che non vede ancora il flush non abbassa il totale
+        List<Long> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            written.add(invocation.getArgument(2));
+            return null;
+        }).when(repository).addUsage(eq("alice"), any(), anyLong(), anyLong());
+        service.flush();
+
+        assertThat(written).containsExactly(800L);
+        assertThat(tokensOf("alice")).isEqualTo(800);
+    }
+
+    private long tokensOf(String scope) {
+        return service.currentUsage().stream()
+                .filter(status -> scope.equals(status.scope()))
+                .mapToLong(UsageQuotaStatus::tokensToday)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static ChatResponse response(long totalTokens) {
+        Usage usage = mock(Usage.class);
+        when(usage.getTotalTokens()).thenReturn(totalTokens);
+        ChatResponse response = mock(ChatResponse.class, RETURNS_DEEP_STUBS);
+        when(response.getMetadata().getUsage()).thenReturn(usage);
+        return response;
+    }
+}